@@ -0,0 +1,118 @@
+package net.sourceforge.kolmafia.benchmark;
+
+import internal.extensions.ForbidNetworkAccess;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import net.sourceforge.kolmafia.KoLCharacter;
+import net.sourceforge.kolmafia.preferences.BoolPref;
+import net.sourceforge.kolmafia.preferences.IntPref;
+import net.sourceforge.kolmafia.preferences.Preferences;
+
+/**
+ * Measures the cost of reading and writing preferences, looked up by name and through handles: the
+ * time and allocation per operation on one thread, and the throughput of several threads at once.
+ *
+ * <p>Configuration is through system properties:
+ *
+ * <ul>
+ *   <li>benchmark.threads: threads for the contended runs (default: 4)
+ *   <li>benchmark.millis: how long each run lasts (default: 1000)
+ * </ul>
+ */
+public class PreferencesBenchmark {
+  private record Case(String name, IntConsumer action) {}
+
+  private static final String INT_NAME = "autoBuyPriceLimit";
+  private static final String BOOL_NAME = "maximizerFoldables";
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  // Keeps the JIT from discarding reads whose results are unused
+  private static volatile long sink;
+
+  public static void main(final String[] args) throws InterruptedException {
+    int threads = Integer.getInteger("benchmark.threads", 4);
+    long millis = Long.getLong("benchmark.millis", 1000);
+
+    ForbidNetworkAccess.blockNetwork();
+    Preferences.saveSettingsToFile = false;
+    KoLCharacter.reset("PreferencesBenchmark");
+
+    IntPref intPref = Preferences.intPref(INT_NAME);
+    BoolPref boolPref = Preferences.boolPref(BOOL_NAME);
+
+    List<Case> cases =
+        List.of(
+            new Case("getInteger", i -> sink += Preferences.getInteger(INT_NAME)),
+            new Case("IntPref.get", i -> sink += intPref.get()),
+            new Case("getBoolean", i -> sink += Preferences.getBoolean(BOOL_NAME) ? 1 : 0),
+            new Case("BoolPref.get", i -> sink += boolPref.get() ? 1 : 0),
+            new Case("setInteger", i -> Preferences.setInteger(INT_NAME, i)),
+            new Case("IntPref.set", intPref::set),
+            new Case(
+                "set then get",
+                i -> {
+                  intPref.set(i);
+                  sink += intPref.get();
+                }));
+
+    String format = "%-14s %10s %10s %16s%n";
+    System.out.printf(format, "case", "ns/op", "bytes/op", "ops/s (" + threads + " threads)");
+
+    for (Case c : cases) {
+      // Warm up
+      PreferencesBenchmark.run(c, 1, millis / 2);
+
+      long bytes = THREADS.getCurrentThreadAllocatedBytes();
+      long nanos = System.nanoTime();
+      long ops = PreferencesBenchmark.iterate(c, System.nanoTime() + millis * 1_000_000);
+      nanos = System.nanoTime() - nanos;
+      bytes = THREADS.getCurrentThreadAllocatedBytes() - bytes;
+
+      long contended = PreferencesBenchmark.run(c, threads, millis);
+      System.out.printf(
+          format,
+          c.name(),
+          String.format("%.1f", (double) nanos / ops),
+          String.format("%.1f", (double) bytes / ops),
+          contended);
+    }
+
+    System.exit(0);
+  }
+
+  private static long run(final Case c, final int threads, final long millis)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + millis * 1_000_000;
+    long[] counts = new long[threads];
+    List<Thread> workers = new ArrayList<>();
+
+    for (int t = 0; t < threads; ++t) {
+      int index = t;
+      Thread worker = new Thread(() -> counts[index] = PreferencesBenchmark.iterate(c, deadline));
+      workers.add(worker);
+      worker.start();
+    }
+
+    long total = 0;
+    for (int t = 0; t < threads; ++t) {
+      workers.get(t).join();
+      total += counts[t];
+    }
+
+    return total * 1000 / millis;
+  }
+
+  private static long iterate(final Case c, final long deadline) {
+    long count = 0;
+    // Only look at the clock every so often, so that it does not dominate cheap operations
+    while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+      c.action().accept((int) count);
+      count++;
+    }
+    return count;
+  }
+}
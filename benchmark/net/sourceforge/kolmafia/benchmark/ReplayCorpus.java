@@ -0,0 +1,81 @@
+package net.sourceforge.kolmafia.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of recorded (URL, response text) pairs. The corpus file has one entry per line: the URL
+ * that was requested and the file holding KoL's response, separated by a tab. Blank lines and lines
+ * starting with # are ignored.
+ */
+public class ReplayCorpus {
+  public static final String DEFAULT_CORPUS = "replay_corpus.txt";
+
+  public record Entry(String url, String file, String responseText) {
+    public String page() {
+      int index = this.url.indexOf('?');
+      return index == -1 ? this.url : this.url.substring(0, index);
+    }
+  }
+
+  private final List<Entry> entries;
+
+  private ReplayCorpus(final List<Entry> entries) {
+    this.entries = entries;
+  }
+
+  public List<Entry> getEntries() {
+    return this.entries;
+  }
+
+  public static ReplayCorpus load(final String location) throws IOException {
+    Path path = Path.of(location);
+    if (Files.exists(path)) {
+      try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+        return ReplayCorpus.load(reader);
+      }
+    }
+
+    InputStream istream = ReplayCorpus.class.getClassLoader().getResourceAsStream(location);
+    if (istream == null) {
+      throw new IOException("Cannot find replay corpus " + location);
+    }
+
+    try (Reader reader = new InputStreamReader(istream, StandardCharsets.UTF_8)) {
+      return ReplayCorpus.load(reader);
+    }
+  }
+
+  private static ReplayCorpus load(final Reader reader) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    BufferedReader in = new BufferedReader(reader);
+
+    String line;
+    while ((line = in.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      String[] data = line.split("\t");
+      if (data.length != 2) {
+        throw new IOException("Bad corpus line: " + line);
+      }
+
+      String url = data[0];
+      String file = data[1];
+      String responseText = Files.readString(Path.of(file), StandardCharsets.UTF_8).trim();
+      entries.add(new Entry(url, file, responseText));
+    }
+
+    return new ReplayCorpus(entries);
+  }
+}
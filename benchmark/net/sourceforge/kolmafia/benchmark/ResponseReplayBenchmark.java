@@ -0,0 +1,239 @@
+package net.sourceforge.kolmafia.benchmark;
+
+import internal.extensions.ForbidNetworkAccess;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import net.sourceforge.kolmafia.KoLCharacter;
+import net.sourceforge.kolmafia.KoLmafia;
+import net.sourceforge.kolmafia.RequestLogger;
+import net.sourceforge.kolmafia.preferences.Preferences;
+import net.sourceforge.kolmafia.request.AdventureRequest;
+import net.sourceforge.kolmafia.request.FightRequest;
+import net.sourceforge.kolmafia.request.GenericRequest;
+import net.sourceforge.kolmafia.session.ChoiceManager;
+import net.sourceforge.kolmafia.session.ResponseTextParser;
+import net.sourceforge.kolmafia.session.ResultProcessor;
+import net.sourceforge.kolmafia.utilities.ChoiceUtilities;
+import net.sourceforge.kolmafia.utilities.NullStream;
+import net.sourceforge.kolmafia.utilities.ResponseIndex;
+
+/**
+ * Replays a corpus of recorded (URL, response text) pairs through KoLmafia's response processing
+ * with the network stubbed out, and reports the latency and allocation of each handler.
+ *
+ * <p>Configuration is through system properties:
+ *
+ * <ul>
+ *   <li>benchmark.corpus: the corpus file (default: replay_corpus.txt on the classpath)
+ *   <li>benchmark.warmup: unmeasured iterations per handler and entry (default: 20)
+ *   <li>benchmark.iterations: measured iterations per handler and entry (default: 100)
+ *   <li>benchmark.output: file to which the report is also written
+ * </ul>
+ */
+public class ResponseReplayBenchmark {
+  private record Handler(
+      String name, Predicate<ReplayCorpus.Entry> appliesTo, Consumer<GenericRequest> action) {}
+
+  private record Result(
+      String handler, ReplayCorpus.Entry entry, long[] nanos, long allocatedBytes) {
+    double mean() {
+      return Arrays.stream(this.nanos).average().orElse(0.0);
+    }
+
+    long percentile(final int percent) {
+      long[] sorted = this.nanos.clone();
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+      return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    long bytesPerOp() {
+      return this.allocatedBytes / this.nanos.length;
+    }
+  }
+
+  private static final List<Handler> HANDLERS =
+      List.of(
+          new Handler("processResponse", entry -> true, GenericRequest::processResponse),
+          new Handler("externalUpdate", entry -> true, ResponseTextParser::externalUpdate),
+          new Handler(
+              "ResultProcessor",
+              entry -> true,
+              request -> ResultProcessor.processResults(false, request.responseText)),
+          new Handler("registerEncounter", entry -> true, AdventureRequest::registerEncounter),
+          new Handler(
+              "findNewItems",
+              entry -> true,
+              request -> ResponseTextParser.findNewItems(request.responseText)),
+          new Handler(
+              "parseChoices",
+              entry -> entry.page().equals("choice.php"),
+              request -> ChoiceUtilities.parseChoices(request.responseText)),
+          new Handler(
+              "updateCombatData",
+              entry -> entry.page().equals("fight.php"),
+              request -> FightRequest.updateCombatData(null, null, request.responseText)));
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  public static void main(final String[] args) throws IOException {
+    String location = System.getProperty("benchmark.corpus", ReplayCorpus.DEFAULT_CORPUS);
+    int warmup = Integer.getInteger("benchmark.warmup", 20);
+    int iterations = Integer.getInteger("benchmark.iterations", 100);
+    String output = System.getProperty("benchmark.output");
+
+    ReplayCorpus corpus = ReplayCorpus.load(location);
+
+    ResponseReplayBenchmark.initialize();
+
+    List<Result> results = new ArrayList<>();
+
+    RequestLogger.openCustom(NullStream.INSTANCE);
+    try {
+      for (Handler handler : HANDLERS) {
+        for (ReplayCorpus.Entry entry : corpus.getEntries()) {
+          if (handler.appliesTo().test(entry)) {
+            results.add(ResponseReplayBenchmark.measure(handler, entry, warmup, iterations));
+          }
+        }
+      }
+    } finally {
+      RequestLogger.closeCustom();
+    }
+
+    String report = ResponseReplayBenchmark.report(results, corpus, warmup, iterations);
+    System.out.print(report);
+
+    if (output != null) {
+      Files.writeString(Path.of(output), report, StandardCharsets.UTF_8);
+    }
+
+    System.exit(0);
+  }
+
+  private static void initialize() {
+    // Same starting point as the unit tests: no user, no saved settings, no network.
+    ForbidNetworkAccess.blockNetwork();
+    KoLCharacter.reset("");
+    KoLCharacter.reset(true);
+    Preferences.reset("");
+    Preferences.saveSettingsToFile = false;
+    GenericRequest.sessionId = null;
+    KoLmafia.forceContinue();
+  }
+
+  private static GenericRequest prepare(final ReplayCorpus.Entry entry) {
+    FightRequest.currentRound = 0;
+    ChoiceManager.handlingChoice = false;
+    KoLmafia.forceContinue();
+
+    // Every replayed response pays for indexing the page, as a freshly retrieved one would.
+    ResponseIndex.reset();
+
+    GenericRequest request = new GenericRequest(entry.url());
+    request.setHasResult(true);
+    request.responseText = entry.responseText();
+
+    if (entry.page().equals("choice.php")) {
+      ChoiceManager.preChoice(request);
+    }
+
+    return request;
+  }
+
+  private static Result measure(
+      final Handler handler,
+      final ReplayCorpus.Entry entry,
+      final int warmup,
+      final int iterations) {
+    for (int i = 0; i < warmup; ++i) {
+      handler.action().accept(ResponseReplayBenchmark.prepare(entry));
+    }
+
+    long[] nanos = new long[iterations];
+    long allocatedBytes = 0;
+
+    for (int i = 0; i < iterations; ++i) {
+      GenericRequest request = ResponseReplayBenchmark.prepare(entry);
+
+      long bytes = THREADS.getCurrentThreadAllocatedBytes();
+      long start = System.nanoTime();
+      handler.action().accept(request);
+      nanos[i] = System.nanoTime() - start;
+      allocatedBytes += THREADS.getCurrentThreadAllocatedBytes() - bytes;
+    }
+
+    return new Result(handler.name(), entry, nanos, allocatedBytes);
+  }
+
+  private static String report(
+      final List<Result> results,
+      final ReplayCorpus corpus,
+      final int warmup,
+      final int iterations) {
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("Replayed ");
+    buffer.append(corpus.getEntries().size());
+    buffer.append(" responses (");
+    buffer.append(warmup);
+    buffer.append(" warmup, ");
+    buffer.append(iterations);
+    buffer.append(" measured iterations)\n\n");
+
+    String format = "%-18s %-52s %10s %10s %10s %12s%n";
+    buffer.append(
+        String.format(format, "handler", "response", "mean us", "p50 us", "p95 us", "KB/op"));
+
+    results.sort(
+        Comparator.comparing(Result::handler)
+            .thenComparing(Comparator.comparingDouble(Result::mean).reversed()));
+
+    for (Result result : results) {
+      buffer.append(
+          String.format(
+              format,
+              result.handler(),
+              Path.of(result.entry().file()).getFileName(),
+              micros(result.mean()),
+              micros(result.percentile(50)),
+              micros(result.percentile(95)),
+              String.format("%.1f", result.bytesPerOp() / 1024.0)));
+    }
+
+    buffer.append('\n');
+
+    String totals = "%-18s %10s %12s%n";
+    buffer.append(String.format(totals, "handler", "total us", "total KB"));
+
+    for (Handler handler : HANDLERS) {
+      double mean = 0.0;
+      long bytes = 0;
+      for (Result result : results) {
+        if (result.handler().equals(handler.name())) {
+          mean += result.mean();
+          bytes += result.bytesPerOp();
+        }
+      }
+      buffer.append(
+          String.format(
+              totals, handler.name(), micros(mean), String.format("%.1f", bytes / 1024.0)));
+    }
+
+    return buffer.toString();
+  }
+
+  private static String micros(final double nanos) {
+    return String.format("%.1f", nanos / 1000.0);
+  }
+}
@@ -39,9 +39,13 @@
 package net.java.dev.spellcast.utilities;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -71,15 +75,29 @@ public class ChatBuffer
 	private static final Pattern TAG_PATTERN = Pattern.compile( "<\\s*([^\\s>]+)(.*?)>" );
 	private static final Pattern COMMENT_PATTERN = Pattern.compile( "<!--(.*?)-->" );
 
+	public static final String OLDER_MESSAGES_LINK = "olderMessages";
+
 	private final String title;
 
-	private final StringBuffer content = new StringBuffer();
+	// Only the most recent lines are kept in memory and shown. Older lines
+	// are read back from the chat log, if there is one, when asked for.
+
+	private final ArrayDeque<Line> lines = new ArrayDeque<>();
+	private int contentLength = 0;
+	private int pagedLines = 0;
+	private long olderOffset = 0;
+
 	private final LinkedList<JEditorPane> displayPanes = new LinkedList<>();
 
 	private final Set<JEditorPane> stickyPanes = new LinkedHashSet<>();
 	private final LinkedList<JEditorPane> addStickyPanes = new LinkedList<>();
 	private final LinkedList<JEditorPane> removeStickyPanes = new LinkedList<>();
 
+	// Appends made between two runs of the Swing event thread are shown together
+
+	private final StringBuilder pendingContent = new StringBuilder();
+	private boolean flushScheduled = false;
+
 	private volatile int resetSequence = 0;
 
 	// Every queued update for this ChatBuffer carries the then-current value of resetSequence,
@@ -87,13 +105,70 @@ public class ChatBuffer
 	// with an outdated sequence number is simply ignored.
 
 	private File logFile;
-	private PrintWriter logWriter;
+	private LogFile logWriter;
 
-	protected static final HashMap<String, PrintWriter> ACTIVE_LOG_FILES = new HashMap<>();
+	protected static final HashMap<String, LogFile> ACTIVE_LOG_FILES = new HashMap<>();
 
 	private static final int MAXIMUM_LENGTH = 50000;
 	private static final int TRIM_TO_LENGTH = 45000;
 
+	private static final int MAXIMUM_LINES = 500;
+	private static final int TRIM_TO_LINES = 400;
+	private static final int PAGE_LINES = 100;
+
+	private static class Line
+	{
+		private final String content;
+		// Where this line starts in the chat log, or -1 if it is not logged
+		private final long logOffset;
+
+		private Line( final String content, final long logOffset )
+		{
+			this.content = content;
+			this.logOffset = logOffset;
+		}
+	}
+
+	/**
+	 * A chat log, shared by every buffer which writes to it, which knows how long it is.
+	 */
+
+	protected static class LogFile
+	{
+		private final PrintWriter writer;
+		private long length;
+
+		private LogFile( final File f, final boolean append )
+		{
+			this.writer = new PrintWriter( DataUtilities.getOutputStream( f, append ), true , StandardCharsets.UTF_8 );
+			this.length = append ? f.length() : 0;
+		}
+
+		/**
+		 * Writes a line, returning where in the file it starts.
+		 */
+
+		public synchronized long println( final String line )
+		{
+			long offset = this.length;
+			this.writer.println( line );
+			this.length += line.getBytes( StandardCharsets.UTF_8 ).length + LINE_SEPARATOR_LENGTH;
+			return offset;
+		}
+
+		public synchronized long length()
+		{
+			return this.length;
+		}
+
+		public void close()
+		{
+			this.writer.close();
+		}
+	}
+
+	private static final int LINE_SEPARATOR_LENGTH = System.lineSeparator().length();
+
 	/**
 	 * Constructs a new <code>ChatBuffer</code>. However, note that this does not automatically translate into the
 	 * messages being displayed; until a chat display is set, this buffer merely stores the message content to be
@@ -159,7 +234,7 @@ public class ChatBuffer
 		{
 			boolean shouldAppend = f.exists();
 			this.logFile = f;
-			this.logWriter = new PrintWriter( DataUtilities.getOutputStream( f, shouldAppend ), true , StandardCharsets.UTF_8 );
+			this.logWriter = new LogFile( f, shouldAppend );
 
 			ChatBuffer.ACTIVE_LOG_FILES.put( filename, this.logWriter );
 
@@ -175,6 +250,12 @@ public class ChatBuffer
 				this.logWriter.println( "<body>" );
 			}
 		}
+
+		synchronized ( this.lines )
+		{
+			// Anything already in the log was written before this buffer existed
+			this.olderOffset = this.logWriter.length();
+		}
 	}
 
 	/**
@@ -193,7 +274,12 @@ public class ChatBuffer
 			this.logWriter.close();
 		}
 
-		this.content.setLength( 0 );
+		synchronized ( this.lines )
+		{
+			this.lines.clear();
+			this.contentLength = 0;
+			this.pendingContent.setLength( 0 );
+		}
 	}
 
 	private static void printHTML( final HTMLDocument doc )
@@ -217,9 +303,14 @@ public class ChatBuffer
 
 	public void clear()
 	{
-		this.content.setLength( 0 );
-
-		SwingUtilities.invokeLater( new ResetHandler( this.getHTMLContent() ) );
+		synchronized ( this.lines )
+		{
+			this.lines.clear();
+			this.contentLength = 0;
+			this.pagedLines = 0;
+			this.olderOffset = this.logWriter == null ? 0 : this.logWriter.length();
+			this.reset();
+		}
 	}
 
 	public File getLogFile() {
@@ -239,11 +330,20 @@ public class ChatBuffer
 
 			this.stickyPanes.removeAll( this.removeStickyPanes );
 			this.removeStickyPanes.clear();
+
+			if ( !this.stickyPanes.isEmpty() )
+			{
+				// Someone is watching the newest lines, so older ones they paged back to can go
+				this.pagedLines = 0;
+			}
 		}
 
 		if ( newContents == null )
 		{
-			SwingUtilities.invokeLater( new ResetHandler( this.getHTMLContent() ) );
+			synchronized ( this.lines )
+			{
+				this.reset();
+			}
 			return;
 		}
 
@@ -254,39 +354,191 @@ public class ChatBuffer
 			return;
 		}
 
-		this.content.append( newContents );
+		// Balance the HTML here, rather than in the Swing thread
+		String balancedContents = ChatBuffer.balanceTags( newContents );
 
-		if ( this.logWriter != null )
+		synchronized ( this.lines )
 		{
-			this.logWriter.println( newContents );
+			long logOffset = this.logWriter == null ? -1 : this.logWriter.println( newContents );
+
+			this.lines.addLast( new Line( newContents, logOffset ) );
+			this.contentLength += newContents.length();
+
+			if ( this.trim() )
+			{
+				this.reset();
+				return;
+			}
+
+			this.pendingContent.append( balancedContents );
+
+			if ( !this.flushScheduled )
+			{
+				this.flushScheduled = true;
+				SwingUtilities.invokeLater( new AppendHandler( this.resetSequence ) );
+			}
 		}
+	}
+
+	/**
+	 * Drops the oldest lines once there are too many. Returns whether any were dropped.
+	 */
+
+	private boolean trim()
+	{
+		int maximumLines = ChatBuffer.MAXIMUM_LINES + this.pagedLines;
 
-		if ( this.content.length() < ChatBuffer.MAXIMUM_LENGTH )
+		if ( this.lines.size() <= maximumLines && this.contentLength < ChatBuffer.MAXIMUM_LENGTH )
 		{
-			SwingUtilities.invokeLater( new AppendHandler( newContents ) );
-			SwingUtilities.invokeLater( new ScrollHandler() );
-			return;
+			return false;
 		}
 
-		int lineIndex = this.content.indexOf( "<br", ChatBuffer.MAXIMUM_LENGTH - ChatBuffer.TRIM_TO_LENGTH );
+		int trimToLines = ChatBuffer.TRIM_TO_LINES + this.pagedLines;
 
-		if ( lineIndex != -1 )
+		while ( !this.lines.isEmpty() &&
+			( this.lines.size() > trimToLines || this.contentLength > ChatBuffer.TRIM_TO_LENGTH ) )
 		{
-			lineIndex = this.content.indexOf( ">", lineIndex ) + 1;
+			Line line = this.lines.removeFirst();
+			this.contentLength -= line.content.length();
 		}
 
-		if ( lineIndex == -1 )
+		this.pagedLines = Math.min( this.pagedLines, this.lines.size() );
+
+		Line first = this.lines.peekFirst();
+		if ( first != null && first.logOffset != -1 )
 		{
-			this.clear();
-			return;
+			this.olderOffset = first.logOffset;
 		}
 
-		this.content.delete( 0, lineIndex );
+		return true;
+	}
+
+	/**
+	 * Rewrites every display from the lines now in the buffer. Must be called holding the lines lock.
+	 */
+
+	private void reset()
+	{
+		// Anything waiting to be appended is part of the new content
+		this.pendingContent.setLength( 0 );
+		this.flushScheduled = false;
 
 		SwingUtilities.invokeLater( new ResetHandler( this.getHTMLContent() ) );
 		SwingUtilities.invokeLater( new ScrollHandler() );
 	}
 
+	/**
+	 * Returns whether there are older lines in the chat log than those shown.
+	 */
+
+	public boolean hasOlder()
+	{
+		synchronized ( this.lines )
+		{
+			return this.logFile != null && this.olderOffset > 0;
+		}
+	}
+
+	/**
+	 * Reads up to the given number of lines from the chat log which come before those shown, and shows them too.
+	 */
+
+	public void showOlder( final int count )
+	{
+		synchronized ( this.lines )
+		{
+			if ( !this.hasOlder() )
+			{
+				return;
+			}
+
+			LinkedList<Line> older = ChatBuffer.readLinesBefore( this.logFile, this.olderOffset, count );
+
+			for ( Iterator<Line> it = older.descendingIterator(); it.hasNext(); )
+			{
+				Line line = it.next();
+				this.lines.addFirst( line );
+				this.contentLength += line.content.length();
+			}
+
+			this.pagedLines += older.size();
+			// Fewer lines than asked for means the start of the log was reached
+			this.olderOffset = older.size() < count ? 0 : older.getFirst().logOffset;
+
+			this.reset();
+		}
+	}
+
+	public void showOlder()
+	{
+		this.showOlder( ChatBuffer.PAGE_LINES );
+	}
+
+	/**
+	 * Reads up to the given number of lines which end before the given offset in a chat log, stopping at the start of
+	 * the messages.
+	 */
+
+	static LinkedList<Line> readLinesBefore( final File f, final long offset, final int count )
+	{
+		LinkedList<Line> result = new LinkedList<>();
+
+		try ( RandomAccessFile file = new RandomAccessFile( f, "r" ) )
+		{
+			long position = Math.min( offset, file.length() );
+
+			// The start of the line which the last chunk read ends in the middle of
+			byte[] partial = new byte[ 0 ];
+
+			while ( position > 0 )
+			{
+				int length = (int) Math.min( 8192, position );
+				position -= length;
+
+				byte[] data = new byte[ length + partial.length ];
+				file.seek( position );
+				file.readFully( data, 0, length );
+				System.arraycopy( partial, 0, data, length, partial.length );
+
+				int lineEnd = data.length;
+
+				for ( int i = data.length - 1; i >= 0; --i )
+				{
+					if ( data[ i ] != '\n' )
+					{
+						continue;
+					}
+
+					String text = new String( data, i + 1, lineEnd - i - 1, StandardCharsets.UTF_8 ).trim();
+					lineEnd = i;
+
+					if ( text.equals( "<body>" ) )
+					{
+						return result;
+					}
+
+					if ( text.length() > 0 )
+					{
+						result.addFirst( new Line( text, position + i + 1 ) );
+
+						if ( result.size() >= count )
+						{
+							return result;
+						}
+					}
+				}
+
+				partial = Arrays.copyOf( data, lineEnd );
+			}
+		}
+		catch ( IOException e )
+		{
+		}
+
+		// The log has no header, or it was reached; what is left is the start of the file
+		return result;
+	}
+
 	/**
 	 * Returns the styling used by this buffer.
 	 */
@@ -302,7 +554,15 @@ public class ChatBuffer
 
 	public String getContent()
 	{
-		return this.content.toString();
+		synchronized ( this.lines )
+		{
+			StringBuilder content = new StringBuilder( this.contentLength );
+			for ( Line line : this.lines )
+			{
+				content.append( line.content );
+			}
+			return content.toString();
+		}
 	}
 
 	/**
@@ -317,7 +577,14 @@ public class ChatBuffer
 		htmlContent.append( this.getStyle() );
 		htmlContent.append( "</style></head><body><main>" );
 
-		htmlContent.append( this.content.toString() );
+		if ( this.hasOlder() )
+		{
+			htmlContent.append( "<a href=\"" );
+			htmlContent.append( ChatBuffer.OLDER_MESSAGES_LINK );
+			htmlContent.append( "\">(show older messages)</a><br>" );
+		}
+
+		htmlContent.append( this.getContent() );
 
 		htmlContent.append( "</main></body></html>" );
 
@@ -377,95 +644,115 @@ public class ChatBuffer
 		}
 	}
 
-	private class AppendHandler
-		implements Runnable
-	{
-		private final String newContent;
-		private final int resetSequence;
+	/**
+	 * Closes any tags left open in a line, so that the next line is not drawn inside them.
+	 */
 
-		public AppendHandler( final String newContent )
-		{
-			// Check for imbalanced HTML here
+	static String balanceTags( final String newContent )
+	{
+		Stack<String> openTags = new Stack<>();
+		Set<String> skippedTags = new HashSet<>();
+		StringBuffer buffer = new StringBuffer();
 
-			Stack<String> openTags = new Stack<>();
-			Set<String> skippedTags = new HashSet<>();
-			StringBuffer buffer = new StringBuffer();
+		String noCommentsContent = COMMENT_PATTERN.matcher( newContent ).replaceAll( "" );
 
-			String noCommentsContent = COMMENT_PATTERN.matcher( newContent ).replaceAll( "" );
+		Matcher tagMatcher = TAG_PATTERN.matcher( noCommentsContent );
 
-			Matcher tagMatcher = TAG_PATTERN.matcher( noCommentsContent );
+		while ( tagMatcher.find() )
+		{
+			String tagName = tagMatcher.group( 1 );
+			StringBuffer replacement = new StringBuffer();
 
-			while ( tagMatcher.find() )
+			if ( tagName.startsWith( "/" ) )
 			{
-				String tagName = tagMatcher.group( 1 );
-				StringBuffer replacement = new StringBuffer();
+				String closeTag = tagName.substring( 1 );
 
-				if ( tagName.startsWith( "/" ) )
+				if ( skippedTags.contains( closeTag ) )
 				{
-					String closeTag = tagName.substring( 1 );
-
-					if ( skippedTags.contains( closeTag ) )
-					{
-						skippedTags.remove( closeTag );
-					}
-					else
+					skippedTags.remove( closeTag );
+				}
+				else
+				{
+					while ( !openTags.isEmpty() )
 					{
-						while ( !openTags.isEmpty() )
+						String openTag = openTags.pop();
+						replacement.append( "</" );
+						replacement.append( openTag );
+						replacement.append( ">" );
+
+						if ( openTag.equalsIgnoreCase( closeTag ) )
+						{
+							break;
+						}
+						else if ( skippedTags.contains( closeTag ) )
 						{
-							String openTag = openTags.pop();
-							replacement.append( "</" );
-							replacement.append( openTag );
-							replacement.append( ">" );
-
-							if ( openTag.equalsIgnoreCase( closeTag ) )
-							{
-								break;
-							}
-							else if ( skippedTags.contains( closeTag ) )
-							{
-								skippedTags.remove( closeTag );
-								break;
-							}
-							else
-							{
-								skippedTags.add( closeTag );
-							}
+							skippedTags.remove( closeTag );
+							break;
+						}
+						else
+						{
+							skippedTags.add( closeTag );
 						}
 					}
 				}
-				else
+			}
+			else
+			{
+				if ( !tagName.equalsIgnoreCase( "br" ) )
 				{
-					if ( !tagName.equalsIgnoreCase( "br" ) )
-					{
-						openTags.push( tagName );
-					}
-
-					replacement.append( "<$1$2>" );
+					openTags.push( tagName );
 				}
 
-				tagMatcher.appendReplacement( buffer, replacement.toString() );
+				replacement.append( "<$1$2>" );
 			}
 
-			tagMatcher.appendTail( buffer );
+			tagMatcher.appendReplacement( buffer, replacement.toString() );
+		}
 
-			while ( !openTags.isEmpty() )
-			{
-				String openTag = openTags.pop();
-				buffer.append( "</" );
-				buffer.append( openTag );
-				buffer.append( ">" );
-			}
+		tagMatcher.appendTail( buffer );
 
-			this.newContent = buffer.toString();
+		while ( !openTags.isEmpty() )
+		{
+			String openTag = openTags.pop();
+			buffer.append( "</" );
+			buffer.append( openTag );
+			buffer.append( ">" );
+		}
+
+		return buffer.toString();
+	}
+
+	private class AppendHandler
+		implements Runnable
+	{
+		private final int resetSequence;
 
-			this.resetSequence = ChatBuffer.this.resetSequence;
+		public AppendHandler( final int resetSequence )
+		{
+			this.resetSequence = resetSequence;
 		}
 
 		public void run()
 		{
-			if ( this.resetSequence != ChatBuffer.this.resetSequence )
+			String newContent;
+
+			synchronized ( ChatBuffer.this.lines )
 			{
-				return;	// outdated by a subsequent display reset
+				if ( this.resetSequence != ChatBuffer.this.resetSequence )
+				{
+					return;	// outdated by a subsequent display reset
+				}
+
+				ChatBuffer.this.flushScheduled = false;
+
+				// Everything appended since this was scheduled is shown at once
+				newContent = ChatBuffer.this.pendingContent.toString();
+				ChatBuffer.this.pendingContent.setLength( 0 );
+			}
+
+			if ( newContent.length() == 0 )
+			{
+				return;
 			}
 
 			Iterator<JEditorPane> paneIterator = ChatBuffer.this.displayPanes.iterator();
@@ -491,7 +778,7 @@ public class ChatBuffer
 
 				try
 				{
-					currentHTML.insertAfterEnd( contentElement, this.newContent );
+					currentHTML.insertAfterEnd( contentElement, newContent );
 					// If the insertion contained any non-ASCII characters, the "multiByte"
 					// property will be set on the document.  This causes the use of
 					// an alternate layout algorithm that handles bidirectional text
@@ -510,6 +797,9 @@ public class ChatBuffer
 
 				// ChatBuffer.printHTML( currentHTML );
 			}
+
+			// Scroll once, after everything in this batch has been added
+			new ScrollHandler( this.resetSequence ).run();
 		}
 	}
 
@@ -520,7 +810,12 @@ public class ChatBuffer
 
 		public ScrollHandler()
 		{
-			this.resetSequence = ChatBuffer.this.resetSequence;
+			this( ChatBuffer.this.resetSequence );
+		}
+
+		public ScrollHandler( final int resetSequence )
+		{
+			this.resetSequence = resetSequence;
 		}
 
 		public void run()
@@ -237,6 +237,7 @@ public interface KoLConstants extends UtilityConstants {
   String BASEMENT_JS = "basement.js";
   String BASICS_CSS = "basics.1.css";
   String BASICS_JS = "basics.js";
+  String CHARPANE_UPDATES_JS = "charpaneupdates.1.js";
   String CHAT_HTML = "chat.html";
   String CLI_HTML = "cli.html";
   String COMBATFILTER_JS = "combatfilter.1.js";
@@ -255,6 +256,7 @@ public interface KoLConstants extends UtilityConstants {
     BASEMENT_JS,
     BASICS_CSS,
     BASICS_JS,
+    CHARPANE_UPDATES_JS,
     CHAT_HTML,
     CLI_HTML,
     COMBATFILTER_JS,
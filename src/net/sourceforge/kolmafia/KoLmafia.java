@@ -37,6 +37,7 @@ import net.sourceforge.kolmafia.objectpool.ItemPool;
 import net.sourceforge.kolmafia.objectpool.SkillPool;
 import net.sourceforge.kolmafia.persistence.BountyDatabase;
 import net.sourceforge.kolmafia.persistence.ConcoctionDatabase;
+import net.sourceforge.kolmafia.persistence.DatabaseInitializer;
 import net.sourceforge.kolmafia.persistence.EffectDatabase;
 import net.sourceforge.kolmafia.persistence.EquipmentDatabase;
 import net.sourceforge.kolmafia.persistence.FamiliarDatabase;
@@ -325,6 +326,9 @@ public abstract class KoLmafia {
       KoLmafia.initLookAndFeel();
     }
 
+    // Load the databases now, in parallel, rather than one at a time as they are first used
+    DatabaseInitializer.initialize();
+
     FlaggedItems.initializeLists();
     VolcanoMazeManager.downloadImages();
 
@@ -517,6 +521,11 @@ public abstract class KoLmafia {
 
     RequestLogger.printLine(state, message);
 
+    if (state == MafiaState.ABORT) {
+      // Whatever led up to an abort is worth having on disk
+      RequestLogger.flushLogs();
+    }
+
     if (KoLmafia.allowDisplayUpdate) {
       SystemTrayFrame.updateToolTip(message);
     }
@@ -635,7 +644,7 @@ public abstract class KoLmafia {
     // provides data from a lot of different standard pages
 
     // We are in Valhalla if this redirects to afterlife.php
-    String redirection = ApiRequest.updateStatus();
+    String redirection = ApiRequest.updateStatus(false, true);
     if (redirection != null && redirection.startsWith("afterlife.php")) {
       // In Valhalla, ApiRequest parsed the charpane for us.
       KoLmafia.updateDisplay("Welcome to Valhalla!");
@@ -965,7 +974,7 @@ public abstract class KoLmafia {
     // Start out fetching the status using the KoL API. This
     // provides data from a lot of different standard pages
 
-    ApiRequest.updateStatus();
+    ApiRequest.updateStatus(false, true);
 
     // Retrieve the character sheet. We must do this before
     // concoctions have a chance to get refreshed.
@@ -1046,7 +1055,7 @@ public abstract class KoLmafia {
 
     // Start out fetching the status using the KoL API. This
     // provides data from a lot of different standard pages
-    ApiRequest.updateStatus();
+    ApiRequest.updateStatus(false, true);
 
     // Retrieve the character sheet. It's necessary to do this
     // before concoctions have a chance to get refreshed.
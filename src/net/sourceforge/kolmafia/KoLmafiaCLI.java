@@ -627,6 +627,7 @@ public class KoLmafiaCLI {
     new CrimboTreeCommand().register("crimbotree");
     new CrossStreamsCommand().register("crossstreams");
     new DadCommand().register("dad");
+    new DatabasesCommand().register("databases");
     new DaycareCommand().register("daycare");
     new DebugCreateCommand().register("debugcreate");
     new DebugRequestCommand().register("debug");
@@ -680,6 +681,7 @@ public class KoLmafiaCLI {
     new HermitCommand().register("hermit");
     new HorseryCommand().register("horsery");
     new HotTubCommand().register("hottub").register("soak");
+    new HttpMetricsCommand().register("httpmetrics");
     new IfStatement().register("if");
     new ItemTraceCommand().register("itrace");
     new JavaScriptCommand()
@@ -766,6 +768,7 @@ public class KoLmafiaCLI {
     new SaveAsMoodCommand().register("save as mood");
     new SearchMallCommand().register("searchmall");
     new SendMessageCommand().register("send").register("kmail").register("csend");
+    new SessionLogCommand().register("sessionlog");
     new SetHolidayCommand().register("holiday");
     new SetPreferencesCommand().register("get").register("set");
     new ShopCommand().register("shop");
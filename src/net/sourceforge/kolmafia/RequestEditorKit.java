@@ -78,7 +78,9 @@ import net.sourceforge.kolmafia.utilities.StringUtilities;
 import net.sourceforge.kolmafia.webui.BasementDecorator;
 import net.sourceforge.kolmafia.webui.BeerPongDecorator;
 import net.sourceforge.kolmafia.webui.CharPaneDecorator;
+import net.sourceforge.kolmafia.webui.CharPaneUpdates;
 import net.sourceforge.kolmafia.webui.ClanFortuneDecorator;
+import net.sourceforge.kolmafia.webui.DecoratorMetrics;
 import net.sourceforge.kolmafia.webui.DiscoCombatHelper;
 import net.sourceforge.kolmafia.webui.FightDecorator;
 import net.sourceforge.kolmafia.webui.HobopolisDecorator;
@@ -86,6 +88,7 @@ import net.sourceforge.kolmafia.webui.IslandDecorator;
 import net.sourceforge.kolmafia.webui.MemoriesDecorator;
 import net.sourceforge.kolmafia.webui.MineDecorator;
 import net.sourceforge.kolmafia.webui.NemesisDecorator;
+import net.sourceforge.kolmafia.webui.PageEdits;
 import net.sourceforge.kolmafia.webui.StationaryButtonDecorator;
 import net.sourceforge.kolmafia.webui.TopMenuDecorator;
 import net.sourceforge.kolmafia.webui.UseItemDecorator;
@@ -252,11 +255,15 @@ public class RequestEditorKit extends HTMLEditorKit {
 
     // Apply individual page adjustments
 
-    RequestEditorKit.applyPageAdjustments(location, buffer, addComplexFeatures);
+    DecoratorMetrics.time(
+        "page adjustments",
+        () -> RequestEditorKit.applyPageAdjustments(location, buffer, addComplexFeatures));
 
     // Apply adjustments that should be on all pages
 
-    RequestEditorKit.applyGlobalAdjustments(location, buffer, addComplexFeatures);
+    DecoratorMetrics.time(
+        "global adjustments",
+        () -> RequestEditorKit.applyGlobalAdjustments(location, buffer, addComplexFeatures));
   }
 
   protected static final void applyPageAdjustments(
@@ -265,7 +272,7 @@ public class RequestEditorKit extends HTMLEditorKit {
 
     if (location.startsWith("charpane.php")) {
       if (addComplexFeatures) {
-        CharPaneDecorator.decorate(buffer);
+        DecoratorMetrics.time("CharPaneDecorator", () -> CharPaneDecorator.decorateCached(buffer));
       }
 
       return;
@@ -274,7 +281,7 @@ public class RequestEditorKit extends HTMLEditorKit {
     // Handle topmenu
 
     if (location.contains("menu.php")) {
-      TopMenuDecorator.decorate(buffer, location);
+      DecoratorMetrics.time("TopMenuDecorator", () -> TopMenuDecorator.decorate(buffer, location));
       return;
     }
 
@@ -302,7 +309,7 @@ public class RequestEditorKit extends HTMLEditorKit {
       RequestEditorKit.fixBallroom1(buffer);
       RequestEditorKit.fixDucks(buffer);
       RequestEditorKit.fixPortal(buffer);
-      StationaryButtonDecorator.decorate(location, buffer);
+      RequestEditorKit.decorateStationaryButtons(location, buffer);
       RequestEditorKit.fixBallroom2(buffer);
       RequestEditorKit.fixGovernmentLab(buffer);
     } else if (location.startsWith("ascend.php")) {
@@ -342,7 +349,7 @@ public class RequestEditorKit extends HTMLEditorKit {
       NemesisManager.decorate(location, buffer);
     } else if (location.startsWith("choice.php")) {
       RequestEditorKit.fixTavernCellar(buffer);
-      StationaryButtonDecorator.decorate(location, buffer);
+      RequestEditorKit.decorateStationaryButtons(location, buffer);
       RequestEditorKit.addChoiceSpoilers(location, buffer, addComplexFeatures);
       RequestEditorKit.addBarrelSounds(buffer);
     } else if (location.startsWith("clan_hobopolis.php")) {
@@ -364,9 +371,10 @@ public class RequestEditorKit extends HTMLEditorKit {
       RequestEditorKit.fixTavernCellar(buffer);
 
       // Decorate end of fight before stationary buttons
-      FightDecorator.decorateEndOfFight(buffer);
+      DecoratorMetrics.time(
+          "FightDecorator.decorateEndOfFight", () -> FightDecorator.decorateEndOfFight(buffer));
 
-      StationaryButtonDecorator.decorate(location, buffer);
+      RequestEditorKit.decorateStationaryButtons(location, buffer);
 
       ElVibratoManager.decorate(buffer);
       DiscoCombatHelper.decorate(buffer);
@@ -378,10 +386,12 @@ public class RequestEditorKit extends HTMLEditorKit {
       RequestEditorKit.addChaostheticianLink(buffer);
 
       // Do any monster-specific decoration
-      FightDecorator.decorateMonster(buffer);
+      DecoratorMetrics.time(
+          "FightDecorator.decorateMonster", () -> FightDecorator.decorateMonster(buffer));
 
       // Do any location-specific decoration
-      FightDecorator.decorateLocation(buffer);
+      DecoratorMetrics.time(
+          "FightDecorator.decorateLocation", () -> FightDecorator.decorateLocation(buffer));
     } else if (location.startsWith("fambattle.php")) {
       // Do a subset of the above for a Pokefam battle
       RequestEditorKit.fixTavernCellar(buffer);
@@ -466,20 +476,39 @@ public class RequestEditorKit extends HTMLEditorKit {
     }
   }
 
+  private static void decorateStationaryButtons(final String location, final StringBuffer buffer) {
+    DecoratorMetrics.time(
+        "StationaryButtonDecorator", () -> StationaryButtonDecorator.decorate(location, buffer));
+  }
+
   protected static final void applyGlobalAdjustments(
       final String location, final StringBuffer buffer, final boolean addComplexFeatures) {
     // Make basics.js and basics.css available to all pages
 
     if (addComplexFeatures) {
-      StringUtilities.insertBefore(
-          buffer,
+      PageEdits edits = new PageEdits(buffer);
+      edits.insertBefore(
           "</head>",
           "<script language=\"Javascript\" src=\"/" + KoLConstants.BASICS_JS + "\"></script>");
+      edits.insertBefore(
+          "</head>", "<link rel=\"stylesheet\" href=\"/" + KoLConstants.BASICS_CSS + "\" />");
+
+      // Let the charpane follow changes to the character, rather than being reloaded by every
+      // page which might have changed something
+      if (location.startsWith("charpane.php") && Preferences.getBoolean("relayPushesCharPane")) {
+        CharPaneUpdates.start();
+        edits.insertBefore(
+            "</head>",
+            "<script>var charpaneVersion = "
+                + CharPaneUpdates.getVersion()
+                + "; var charpanePwd = \""
+                + GenericRequest.passwordHash
+                + "\";</script><script language=\"Javascript\" src=\"/"
+                + KoLConstants.CHARPANE_UPDATES_JS
+                + "\"></script>");
+      }
 
-      StringUtilities.insertBefore(
-          buffer,
-          "</head>",
-          "<link rel=\"stylesheet\" href=\"/" + KoLConstants.BASICS_CSS + "\" />");
+      edits.applyTo(buffer);
     }
 
     // Skip additional decorations for the character pane and the top menu
@@ -516,7 +545,8 @@ public class RequestEditorKit extends HTMLEditorKit {
       }
 
       if (Preferences.getBoolean("relayAddsUseLinks")) {
-        UseLinkDecorator.decorate(location, buffer);
+        DecoratorMetrics.time(
+            "UseLinkDecorator", () -> UseLinkDecorator.decorate(location, buffer));
       }
 
       if (buffer.indexOf("showplayer.php") != -1 && !RCM_JS_PATTERN.matcher(buffer).find()) {
@@ -526,15 +556,18 @@ public class RequestEditorKit extends HTMLEditorKit {
       // Always select the contents of text fields when you
       // click on them to make for easy editing.
 
-      if (Preferences.getBoolean("autoHighlightOnFocus") && buffer.indexOf("</html>") != -1) {
-        StringUtilities.insertBefore(
-            buffer, "</html>", "<script src=\"/" + KoLConstants.ONFOCUS_JS + "\"></script>");
+      PageEdits edits = new PageEdits(buffer);
+
+      if (Preferences.getBoolean("autoHighlightOnFocus")) {
+        edits.insertBefore("</html>", "<script src=\"/" + KoLConstants.ONFOCUS_JS + "\"></script>");
       }
 
       if (location.contains("fight.php")) {
-        StringUtilities.insertBefore(
-            buffer, "</html>", "<script src=\"/" + KoLConstants.COMBATFILTER_JS + "\"></script>");
+        edits.insertBefore(
+            "</html>", "<script src=\"/" + KoLConstants.COMBATFILTER_JS + "\"></script>");
       }
+
+      edits.applyTo(buffer);
     }
 
     var eventMatcher = EventManager.findEventsBlock(buffer);
@@ -890,8 +923,10 @@ public class RequestEditorKit extends HTMLEditorKit {
   private static void suppressRedundantRefreshes(final StringBuffer buffer) {
     Matcher matcher = CHARPANE_REFRESH_PATTERN.matcher(buffer);
     MatchResult[] matches = matcher.results().toArray(MatchResult[]::new);
-    // Index of the last match - if any
-    int index = matches.length - 1;
+    // Index of the last match - if any. If the charpane follows updates by itself, it needs
+    // none of them.
+    int index =
+        Preferences.getBoolean("relayPushesCharPane") ? matches.length : matches.length - 1;
     // If there is more than one match, retain only the final one. Since we are
     // removing matches from the buffer, count down to preserve earlier indices
     while (index > 0) {
@@ -1,19 +1,27 @@
 package net.sourceforge.kolmafia;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import net.sourceforge.kolmafia.KoLConstants.MafiaState;
 import net.sourceforge.kolmafia.listener.NamedListenerRegistry;
 import net.sourceforge.kolmafia.persistence.SkillDatabase;
+import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.request.*;
 import net.sourceforge.kolmafia.session.ChoiceManager;
 import net.sourceforge.kolmafia.session.DvorakManager;
 import net.sourceforge.kolmafia.session.ElVibratoManager;
 import net.sourceforge.kolmafia.session.OceanManager;
+import net.sourceforge.kolmafia.session.SessionLogIndex;
 import net.sourceforge.kolmafia.session.SorceressLairManager;
+import net.sourceforge.kolmafia.utilities.AsyncLogWriter;
 import net.sourceforge.kolmafia.utilities.LogStream;
 import net.sourceforge.kolmafia.utilities.NullStream;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
@@ -179,6 +187,25 @@ public class RequestLogger extends NullStream {
 
   public static PrintStream openStream(
       final String filename, final PrintStream originalStream, boolean hasLocation) {
+    return RequestLogger.openStream(
+        filename, originalStream, hasLocation, AsyncLogWriter.Overflow.BLOCK);
+  }
+
+  public static PrintStream openStream(
+      final String filename,
+      final PrintStream originalStream,
+      boolean hasLocation,
+      final AsyncLogWriter.Overflow overflow) {
+    return RequestLogger.openStream(
+        filename, originalStream, hasLocation, overflow, UnaryOperator.identity());
+  }
+
+  public static PrintStream openStream(
+      final String filename,
+      final PrintStream originalStream,
+      boolean hasLocation,
+      final AsyncLogWriter.Overflow overflow,
+      final UnaryOperator<OutputStream> filter) {
     if (!hasLocation && KoLCharacter.getUserName().isEmpty()) {
       return NullStream.INSTANCE;
     }
@@ -194,7 +221,16 @@ public class RequestLogger extends NullStream {
       RequestLogger.closeStream(originalStream);
     }
 
-    return LogStream.openStream(filename, false);
+    return LogStream.openAsyncStream(
+        new File(KoLConstants.ROOT_LOCATION, filename), overflow, filter);
+  }
+
+  /**
+   * Waits until everything written to the session, debug and other logs has reached the disk.
+   * Writing to them does not otherwise wait.
+   */
+  public static void flushLogs() {
+    AsyncLogWriter.syncAll();
   }
 
   public static void closeStream(final PrintStream stream) {
@@ -232,15 +268,59 @@ public class RequestLogger extends NullStream {
   }
 
   public static void openSessionLog() {
+    String userName = StringUtilities.globalStringReplace(KoLCharacter.getUserName(), " ", "_");
+    String filename = userName + "_" + KoLConstants.DAILY_FORMAT.format(new Date()) + ".txt";
+
     RequestLogger.sessionStream =
         RequestLogger.openStream(
-            KoLConstants.SESSIONS_DIRECTORY
-                + StringUtilities.globalStringReplace(KoLCharacter.getUserName(), " ", "_")
-                + "_"
-                + KoLConstants.DAILY_FORMAT.format(new Date())
-                + ".txt",
+            KoLConstants.SESSIONS_DIRECTORY + filename,
             RequestLogger.sessionStream,
-            false);
+            false,
+            AsyncLogWriter.Overflow.BLOCK,
+            SessionLogIndex.indexing(new File(KoLConstants.SESSIONS_LOCATION, filename)));
+
+    if (!userName.isEmpty() && Preferences.getBoolean("compressSessionLogs")) {
+      RequestThread.runInParallel(
+          () ->
+              RequestLogger.compressSessionLogs(KoLConstants.SESSIONS_LOCATION, userName, filename),
+          false);
+    }
+  }
+
+  private static final Pattern SESSION_LOG_DATE = Pattern.compile("_\\d{8}\\.txt");
+
+  /**
+   * Compresses the character's session logs from earlier days, which are no longer being written.
+   * session_logs() reads them either way.
+   */
+  public static void compressSessionLogs(
+      final File directory, final String userName, final String current) {
+    File[] files =
+        directory.listFiles(
+            (dir, name) ->
+                name.startsWith(userName)
+                    && !name.equals(current)
+                    && SESSION_LOG_DATE.matcher(name.substring(userName.length())).matches());
+
+    if (files == null) {
+      return;
+    }
+
+    for (File file : files) {
+      File compressed = new File(directory, file.getName() + ".gz");
+      if (compressed.exists()) {
+        continue;
+      }
+
+      try {
+        SessionLogIndex.compress(file, compressed);
+      } catch (IOException e) {
+        compressed.delete();
+        continue;
+      }
+
+      file.delete();
+    }
   }
 
   public static void closeSessionLog() {
@@ -273,7 +353,8 @@ public class RequestLogger extends NullStream {
         RequestLogger.openStream(
             "DEBUG_" + KoLConstants.DAILY_FORMAT.format(new Date()) + ".txt",
             RequestLogger.debugStream,
-            true);
+            true,
+            AsyncLogWriter.Overflow.DROP);
     NamedListenerRegistry.fireChange("(debug)");
   }
 
@@ -316,7 +397,8 @@ public class RequestLogger extends NullStream {
         RequestLogger.openStream(
             "TRACE_" + KoLConstants.DAILY_FORMAT.format(new Date()) + ".txt",
             RequestLogger.traceStream,
-            true);
+            true,
+            AsyncLogWriter.Overflow.DROP);
   }
 
   public static void closeTraceStream() {
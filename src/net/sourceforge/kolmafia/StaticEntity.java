@@ -380,6 +380,8 @@ public abstract class StaticEntity {
 
     if (shouldOpenStream) {
       RequestLogger.closeDebugLog();
+    } else {
+      RequestLogger.flushLogs();
     }
   }
 
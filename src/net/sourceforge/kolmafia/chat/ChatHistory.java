@@ -0,0 +1,133 @@
+package net.sourceforge.kolmafia.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The most recent chat history entries, in a fixed-size ring indexed by their sequence number, so
+ * that the chat GUI and any number of relay browser tabs can add and read entries without waiting
+ * for each other.
+ *
+ * <p>Each reader keeps a {@link Cursor}: the sequence number of the last entry it has seen. Finding
+ * the entries after it takes time proportional to how many there are, not to the size of the
+ * history. A reader which falls more than a ring behind misses the oldest entries, which are
+ * counted.
+ */
+public class ChatHistory {
+  private final int capacity;
+  private final int mask;
+  private final AtomicReferenceArray<HistoryEntry> ring;
+
+  // The last sequence number handed out. Entries are numbered from 1.
+  private final AtomicLong last = new AtomicLong();
+  private final AtomicLong missed = new AtomicLong();
+
+  public ChatHistory(final int size) {
+    // Round up to a power of two, so that a sequence number maps to a slot with a mask
+    this.capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+    this.mask = this.capacity - 1;
+    this.ring = new AtomicReferenceArray<>(this.capacity);
+  }
+
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /** Returns the sequence number for a new entry, which should then be {@link #publish}ed. */
+  public long next() {
+    return this.last.incrementAndGet();
+  }
+
+  public void publish(final HistoryEntry entry) {
+    this.ring.set((int) (entry.getLocalLastSeen() & this.mask), entry);
+  }
+
+  public long getLast() {
+    return this.last.get();
+  }
+
+  /** Returns how many entries have been overwritten before some reader saw them. */
+  public long getMissed() {
+    return this.missed.get();
+  }
+
+  public void clear() {
+    for (int i = 0; i < this.capacity; ++i) {
+      this.ring.set(i, null);
+    }
+    this.last.set(0);
+    this.missed.set(0);
+  }
+
+  /**
+   * Returns the entries with sequence numbers after the given one, oldest first. Stops before any
+   * entry which has been numbered but not yet published, so that it is not skipped.
+   */
+  public List<HistoryEntry> since(final long seen) {
+    List<HistoryEntry> entries = new ArrayList<>();
+
+    long newest = this.last.get();
+    long from = Math.max(seen + 1, newest - this.capacity + 1);
+
+    for (long sequence = from; sequence <= newest; ++sequence) {
+      HistoryEntry entry = this.ring.get((int) (sequence & this.mask));
+      if (entry == null || entry.getLocalLastSeen() < sequence) {
+        break;
+      }
+      if (entry.getLocalLastSeen() == sequence) {
+        entries.add(entry);
+      }
+      // Otherwise it has already been overwritten by a later entry
+    }
+
+    return entries;
+  }
+
+  public Cursor newCursor() {
+    return new Cursor();
+  }
+
+  /** Where one reader is in the history. */
+  public class Cursor {
+    private final AtomicLong seen = new AtomicLong();
+
+    private Cursor() {}
+
+    public long getSeen() {
+      return this.seen.get();
+    }
+
+    /** Returns how many entries have been added which this reader has not yet seen. */
+    public long getBacklog() {
+      return Math.max(0, ChatHistory.this.last.get() - this.seen.get());
+    }
+
+    public void reset() {
+      this.seen.set(0);
+    }
+
+    /** Returns the entries this reader has not yet seen, and marks them seen. */
+    public List<HistoryEntry> poll() {
+      while (true) {
+        long from = this.seen.get();
+        List<HistoryEntry> entries = ChatHistory.this.since(from);
+        if (entries.isEmpty()) {
+          return entries;
+        }
+
+        long to = entries.get(entries.size() - 1).getLocalLastSeen();
+        if (this.seen.compareAndSet(from, to)) {
+          long skipped = (to - from) - entries.size();
+          if (skipped > 0) {
+            ChatHistory.this.missed.addAndGet(skipped);
+          }
+          return entries;
+        }
+
+        // Another thread polled this cursor first; try again from where it left off
+      }
+    }
+  }
+}
@@ -2,9 +2,10 @@ package net.sourceforge.kolmafia.chat;
 
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import net.sourceforge.kolmafia.KoLCharacter;
 import net.sourceforge.kolmafia.RequestThread;
 import net.sourceforge.kolmafia.StaticEntity;
@@ -12,7 +13,6 @@ import net.sourceforge.kolmafia.listener.NamedListenerRegistry;
 import net.sourceforge.kolmafia.request.ChatRequest;
 import net.sourceforge.kolmafia.request.GenericRequest;
 import net.sourceforge.kolmafia.utilities.PauseObject;
-import net.sourceforge.kolmafia.utilities.RollingLinkedList;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -20,17 +20,27 @@ import org.json.JSONObject;
 
 public class ChatPoller extends Thread {
   // The most recent HistoryEntries we processed
-  private static final LinkedList<HistoryEntry> chatHistoryEntries = new RollingLinkedList<>(25);
+  private static final ChatHistory chatHistory = new ChatHistory(32);
 
-  // The sequence number of the last HistoryEntry we have added
-  public static long localLastSeen = 0;
+  // Where the relay browser and the chat GUI are in the history
+  private static final ChatHistory.Cursor relayCursor = ChatPoller.chatHistory.newCursor();
+  private static final ChatHistory.Cursor guiCursor = ChatPoller.chatHistory.newCursor();
+
+  // The sequence number of the last HistoryEntry the relay browser has seen
+  public static volatile long localLastSeen = 0;
 
   // The sequence number of the last poll from a chat client, either our
   // chat GUI or the browser
-  public static long serverLastSeen = 0;
+  public static volatile long serverLastSeen = 0;
+
+  // Polls of KoL's chat are made one at a time, so that each continues from
+  // where the last left off
+  private static final ReentrantLock serverPollLock = new ReentrantLock();
 
-  // ***
-  public static long localLastSent = 0;
+  private static final AtomicLong polls = new AtomicLong();
+  private static final AtomicLong pollNanos = new AtomicLong();
+  private static final AtomicLong maxPollNanos = new AtomicLong();
+  private static final AtomicLong pollWaitNanos = new AtomicLong();
 
   // Milliseconds between polls. Extracted from the Javascript source on
   // Oct 21, 2022
@@ -56,11 +66,12 @@ public class ChatPoller extends Thread {
   private static String rightClickMenu = "";
 
   public static final void reset() {
-    ChatPoller.chatHistoryEntries.clear();
+    ChatPoller.chatHistory.clear();
+    ChatPoller.relayCursor.reset();
+    ChatPoller.guiCursor.reset();
 
     ChatPoller.serverLastSeen = 0;
     ChatPoller.localLastSeen = 0;
-    ChatPoller.localLastSent = 0;
   }
 
   // The instance of the chat poller currently serving the chat GUI
@@ -209,26 +220,20 @@ public class ChatPoller extends Thread {
     }
   }
 
-  public static synchronized void addEntry(ChatMessage message) {
-    HistoryEntry entry = new HistoryEntry(message, ++ChatPoller.localLastSent);
-
-    synchronized (ChatPoller.chatHistoryEntries) {
-      ChatPoller.chatHistoryEntries.add(entry);
-    }
+  public static void addEntry(ChatMessage message) {
+    HistoryEntry entry = new HistoryEntry(message, ChatPoller.chatHistory.next());
+    ChatPoller.chatHistory.publish(entry);
 
     ChatManager.processMessages(entry.getChatMessages());
   }
 
-  public static synchronized void addSentEntry(
-      final String responseText, final boolean isRelayRequest) {
+  public static void addSentEntry(final String responseText, final boolean isRelayRequest) {
     SentMessageEntry entry =
-        new SentMessageEntry(responseText, ++ChatPoller.localLastSent, isRelayRequest);
+        new SentMessageEntry(responseText, ChatPoller.chatHistory.next(), isRelayRequest);
 
     entry.executeAjaxCommand();
 
-    synchronized (ChatPoller.chatHistoryEntries) {
-      ChatPoller.chatHistoryEntries.add(entry);
-    }
+    ChatPoller.chatHistory.publish(entry);
   }
 
   private static void addValidEntry(
@@ -250,52 +255,95 @@ public class ChatPoller extends Thread {
     return;
   }
 
-  public static synchronized List<HistoryEntry> getOldEntries(final boolean isRelayRequest) {
-    List<HistoryEntry> newEntries = new ArrayList<>();
-    final long lastSeen = ChatPoller.localLastSeen;
-
-    synchronized (ChatPoller.chatHistoryEntries) {
-      Iterator<HistoryEntry> entryIterator = ChatPoller.chatHistoryEntries.iterator();
-      while (entryIterator.hasNext()) {
-        HistoryEntry entry = entryIterator.next();
+  private static ChatHistory.Cursor getCursor(final boolean isRelayRequest) {
+    return isRelayRequest ? ChatPoller.relayCursor : ChatPoller.guiCursor;
+  }
 
-        if (entry.getLocalLastSeen() > lastSeen) {
-          ChatPoller.addValidEntry(newEntries, entry, isRelayRequest);
+  private static List<HistoryEntry> pollHistory(final boolean isRelayRequest) {
+    ChatHistory.Cursor cursor = ChatPoller.getCursor(isRelayRequest);
+    List<HistoryEntry> newEntries = new ArrayList<>();
 
-          while (entryIterator.hasNext()) {
-            ChatPoller.addValidEntry(newEntries, entryIterator.next(), isRelayRequest);
-          }
-        }
-      }
+    for (HistoryEntry entry : cursor.poll()) {
+      ChatPoller.addValidEntry(newEntries, entry, isRelayRequest);
     }
 
-    ChatPoller.localLastSeen = ChatPoller.localLastSent;
+    if (isRelayRequest) {
+      ChatPoller.localLastSeen = cursor.getSeen();
+    }
 
     return newEntries;
   }
 
-  public static synchronized List<HistoryEntry> getEntries(
-      final long lastSeen, final boolean isRelayRequest, final boolean paused) {
-    List<HistoryEntry> newEntries = ChatPoller.getOldEntries(isRelayRequest);
+  public static List<HistoryEntry> getOldEntries(final boolean isRelayRequest) {
+    return ChatPoller.pollHistory(isRelayRequest);
+  }
 
+  public static List<HistoryEntry> getEntries(
+      final long lastSeen, final boolean isRelayRequest, final boolean paused) {
     if (ChatManager.getCurrentChannel() == null) {
       ChatSender.sendMessage(null, "/listen", true);
     }
 
-    ChatRequest request = new ChatRequest(ChatPoller.serverLastSeen, false, paused);
-    request.run();
-
-    HistoryEntry entry = new HistoryEntry(request.responseText, ++ChatPoller.localLastSent);
-    ChatPoller.localLastSeen = ChatPoller.localLastSent;
-    ChatPoller.setServerLast(entry.getServerLastSeen());
-    newEntries.add(entry);
+    long start = System.nanoTime();
+    ChatPoller.serverPollLock.lock();
+    long locked = System.nanoTime();
 
-    synchronized (ChatPoller.chatHistoryEntries) {
-      ChatPoller.chatHistoryEntries.add(entry);
+    try {
+      ChatRequest request = new ChatRequest(ChatPoller.serverLastSeen, false, paused);
+      request.run();
+
+      HistoryEntry entry = new HistoryEntry(request.responseText, ChatPoller.chatHistory.next());
+      ChatPoller.setServerLast(entry.getServerLastSeen());
+      ChatPoller.chatHistory.publish(entry);
+      ChatManager.processMessages(entry.getChatMessages());
+    } finally {
+      ChatPoller.serverPollLock.unlock();
+      ChatPoller.recordPoll(locked - start, System.nanoTime() - start);
     }
-    ChatManager.processMessages(entry.getChatMessages());
 
-    return newEntries;
+    // Everything this reader has not seen, ending with what we just polled
+    return ChatPoller.pollHistory(isRelayRequest);
+  }
+
+  private static void recordPoll(final long waitNanos, final long nanos) {
+    ChatPoller.polls.incrementAndGet();
+    ChatPoller.pollNanos.addAndGet(nanos);
+    ChatPoller.pollWaitNanos.addAndGet(waitNanos);
+    ChatPoller.maxPollNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  public static void resetMetrics() {
+    ChatPoller.polls.set(0);
+    ChatPoller.pollNanos.set(0);
+    ChatPoller.pollWaitNanos.set(0);
+    ChatPoller.maxPollNanos.set(0);
+  }
+
+  /** Returns chat poll latency and history backlog as an HTML table, as shown in the CLI. */
+  public static String getMetricsHTMLTable() {
+    long count = ChatPoller.polls.get();
+
+    StringBuilder buffer = new StringBuilder();
+    buffer.append("<table border=2 cols=2>");
+    ChatPoller.appendRow(buffer, "Polls", count);
+    ChatPoller.appendRow(
+        buffer, "Avg poll ms", count == 0 ? 0 : ChatPoller.pollNanos.get() / count / 1000000);
+    ChatPoller.appendRow(buffer, "Max poll ms", ChatPoller.maxPollNanos.get() / 1000000);
+    ChatPoller.appendRow(
+        buffer,
+        "Avg wait for other poll ms",
+        count == 0 ? 0 : ChatPoller.pollWaitNanos.get() / count / 1000000);
+    ChatPoller.appendRow(buffer, "History entries", ChatPoller.chatHistory.getLast());
+    ChatPoller.appendRow(buffer, "Relay backlog", ChatPoller.relayCursor.getBacklog());
+    ChatPoller.appendRow(buffer, "GUI backlog", ChatPoller.guiCursor.getBacklog());
+    ChatPoller.appendRow(buffer, "Missed entries", ChatPoller.chatHistory.getMissed());
+    buffer.append("</table>");
+
+    return buffer.toString();
+  }
+
+  private static void appendRow(final StringBuilder buffer, final String name, final long value) {
+    buffer.append("<tr><td>").append(name).append("</td><td>").append(value).append("</td></tr>");
   }
 
   public static final String getRightClickMenu() {
@@ -316,13 +364,11 @@ public class ChatPoller extends Thread {
 
   private static boolean messageAlreadySeen(
       final String recipient, final String content, final long localLastSeen) {
-    synchronized (ChatPoller.chatHistoryEntries) {
-      for (HistoryEntry entry : ChatPoller.chatHistoryEntries) {
-        if (entry instanceof SentMessageEntry && entry.getLocalLastSeen() > localLastSeen) {
-          for (ChatMessage message : entry.getChatMessages()) {
-            if (recipient.equals(message.getRecipient()) && content.equals(message.getContent())) {
-              return true;
-            }
+    for (HistoryEntry entry : ChatPoller.chatHistory.since(localLastSeen)) {
+      if (entry instanceof SentMessageEntry) {
+        for (ChatMessage message : entry.getChatMessages()) {
+          if (recipient.equals(message.getRecipient()) && content.equals(message.getContent())) {
+            return true;
           }
         }
       }
@@ -1,9 +1,14 @@
 package net.sourceforge.kolmafia.listener;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class ItemListenerRegistry extends ListenerRegistry {
   // The registry of listeners:
   private static final ListenerRegistry INSTANCE = new ListenerRegistry();
 
+  // Bumped whenever any item count changes, so that caches can tell whether they are stale
+  private static final AtomicLong changes = new AtomicLong();
+
   public static void registerItemListener(final int itemId, final Listener listener) {
     if (itemId < 1) {
       return;
@@ -16,7 +21,12 @@ public class ItemListenerRegistry extends ListenerRegistry {
     ItemListenerRegistry.INSTANCE.unregisterListener(itemId, listener);
   }
 
+  public static long getChangeCount() {
+    return ItemListenerRegistry.changes.get();
+  }
+
   public static void fireItemChanged(final int itemId) {
+    ItemListenerRegistry.changes.incrementAndGet();
     ItemListenerRegistry.INSTANCE.fireListener(itemId);
   }
 }
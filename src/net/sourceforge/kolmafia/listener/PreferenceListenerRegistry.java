@@ -1,9 +1,14 @@
 package net.sourceforge.kolmafia.listener;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class PreferenceListenerRegistry extends ListenerRegistry {
   // The registry of listeners:
   private static final ListenerRegistry INSTANCE = new ListenerRegistry();
 
+  // Bumped whenever any preference changes, so that caches can tell whether they are stale
+  private static final AtomicLong changes = new AtomicLong();
+
   // For testing
   public static void reset() {
     INSTANCE.clear();
@@ -27,11 +32,17 @@ public class PreferenceListenerRegistry extends ListenerRegistry {
     PreferenceListenerRegistry.INSTANCE.unregisterListener(name, listener);
   }
 
+  public static long getChangeCount() {
+    return PreferenceListenerRegistry.changes.get();
+  }
+
   public static void firePreferenceChanged(final String name) {
+    PreferenceListenerRegistry.changes.incrementAndGet();
     PreferenceListenerRegistry.INSTANCE.fireListener(name);
   }
 
   public static void fireAllPreferencesChanged() {
+    PreferenceListenerRegistry.changes.incrementAndGet();
     PreferenceListenerRegistry.INSTANCE.fireAllListeners();
   }
 }
@@ -12,6 +12,7 @@ import net.sourceforge.kolmafia.persistence.ItemDatabase;
 import net.sourceforge.kolmafia.persistence.ItemDatabase.FoldGroup;
 import net.sourceforge.kolmafia.persistence.MallPriceDatabase;
 import net.sourceforge.kolmafia.persistence.NPCStoreDatabase;
+import net.sourceforge.kolmafia.preferences.BoolPref;
 import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.request.MrStoreRequest;
 import net.sourceforge.kolmafia.request.StandardRequest;
@@ -19,6 +20,11 @@ import net.sourceforge.kolmafia.session.InventoryManager;
 import net.sourceforge.kolmafia.session.MallPriceManager;
 
 public class CheckedItem extends AdventureResult {
+  // Read for every item the maximizer considers
+  private static final BoolPref FOLDABLES = Preferences.boolPref("maximizerFoldables");
+  private static final BoolPref CREATE_ON_HAND = Preferences.boolPref("maximizerCreateOnHand");
+  private static final BoolPref NO_ADVENTURES = Preferences.boolPref("maximizerNoAdventures");
+
   public CheckedItem(int itemId, EquipScope equipScope, int maxPrice, PriceLevel priceLevel) {
     super(itemId, 1, false);
 
@@ -36,7 +42,7 @@ public class CheckedItem extends AdventureResult {
     String itemName = this.getName();
     this.foldable = 0;
 
-    if (itemId > 0 && Preferences.getBoolean("maximizerFoldables")) {
+    if (itemId > 0 && CheckedItem.FOLDABLES.get()) {
       FoldGroup group = ItemDatabase.getFoldGroup(itemName);
       if (group != null) {
         for (int i = 0; i < group.names.size(); ++i) {
@@ -75,7 +81,7 @@ public class CheckedItem extends AdventureResult {
     }
 
     boolean skillCreateCheck =
-        Preferences.getBoolean("maximizerCreateOnHand")
+        CheckedItem.CREATE_ON_HAND.get()
             && equipScope == EquipScope.SPECULATE_INVENTORY
             && !ItemDatabase.isEquipment(itemId);
     if (this.initial >= 3 || (equipScope.checkInventoryOnly() && !skillCreateCheck)) {
@@ -87,7 +93,7 @@ public class CheckedItem extends AdventureResult {
 
     this.creatable = c.creatable;
 
-    if (c.getAdventuresNeeded(1) > 0 && Preferences.getBoolean("maximizerNoAdventures")) {
+    if (c.getAdventuresNeeded(1) > 0 && CheckedItem.NO_ADVENTURES.get()) {
       this.creatable = 0;
     } else if (c.price > 0) {
       this.npcBuyable = maxPrice / c.price;
@@ -139,7 +145,7 @@ public class CheckedItem extends AdventureResult {
       }
 
       this.pullfoldable = 0;
-      if (itemId > 0 && Preferences.getBoolean("maximizerFoldables")) {
+      if (itemId > 0 && CheckedItem.FOLDABLES.get()) {
         FoldGroup group = ItemDatabase.getFoldGroup(itemName);
         if (group != null) {
           for (int i = 0; i < group.names.size(); ++i) {
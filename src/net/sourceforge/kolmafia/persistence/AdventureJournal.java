@@ -0,0 +1,204 @@
+package net.sourceforge.kolmafia.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.sourceforge.kolmafia.StaticEntity;
+
+/**
+ * A character's adventure queue or turns spent, as a file of small binary records, so that noting
+ * an encounter appends a few bytes rather than rewriting every zone.
+ *
+ * <p>A record is a type and a list of fields, each either a number or a name. A name is written in
+ * full only the first time the file uses it, after which it is referred to by number. Loading
+ * replays every record in order; a partial last record, as left by a crash in the middle of a
+ * write, is ignored.
+ *
+ * <p>Rewriting the file in full, as is done when it is loaded and once enough records have been
+ * appended, replaces it with just the records needed to rebuild what it holds.
+ */
+class AdventureJournal {
+  private static final int MAGIC = 0x4B4D414A; // "KMAJ"
+  private static final int FORMAT = 1;
+
+  // Defines the next name; read as part of the records which use it
+  private static final int NAME = 0;
+
+  static final int COMPACT_RECORDS = 1000;
+
+  record Record(int type, List<Object> fields) {
+    Record(final int type, final Object... fields) {
+      this(type, List.of(fields));
+    }
+  }
+
+  private final File file;
+  private final Map<String, Integer> names = new HashMap<>();
+  private int records = 0;
+
+  AdventureJournal(final File file) {
+    this.file = file;
+  }
+
+  File getFile() {
+    return this.file;
+  }
+
+  /**
+   * Appends a record, whose fields are Integers or Strings. Returns true if the file should be
+   * rewritten, either because it has grown enough or because it is not there to append to.
+   */
+  synchronized boolean append(final Record record) {
+    if (!this.file.exists()) {
+      return true;
+    }
+
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    this.encode(record, buffer);
+
+    try {
+      Files.write(this.file.toPath(), buffer.toByteArray(), StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      StaticEntity.printStackTrace(e, "Unable to append to " + this.file.getName());
+      return true;
+    }
+
+    return ++this.records >= COMPACT_RECORDS;
+  }
+
+  /** Replaces the file with the given records. */
+  synchronized void rewrite(final List<Record> snapshot) {
+    this.names.clear();
+    this.records = 0;
+
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    buffer.writeBytes(ByteBuffer.allocate(8).putInt(MAGIC).putInt(FORMAT).array());
+    for (Record record : snapshot) {
+      this.encode(record, buffer);
+    }
+
+    File temporary = new File(this.file.getParentFile(), this.file.getName() + ".tmp");
+    try {
+      this.file.getParentFile().mkdirs();
+      Files.write(temporary.toPath(), buffer.toByteArray());
+      Files.move(
+          temporary.toPath(),
+          this.file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      StaticEntity.printStackTrace(e, "Unable to write " + this.file.getName());
+    }
+  }
+
+  private void encode(final Record record, final ByteArrayOutputStream buffer) {
+    List<Long> fields = new ArrayList<>(record.fields().size());
+
+    for (Object field : record.fields()) {
+      if (field instanceof String name) {
+        Integer id = this.names.get(name);
+        if (id == null) {
+          id = this.names.size();
+          this.names.put(name, id);
+
+          byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+          buffer.write(NAME);
+          AdventureJournal.writeVarLong(buffer, bytes.length);
+          buffer.writeBytes(bytes);
+        }
+        fields.add(((long) id << 1) | 1);
+      } else {
+        // Zigzag encode, so that small negative numbers stay small
+        long value = ((Integer) field).longValue();
+        fields.add(((value << 1) ^ (value >> 63)) << 1);
+      }
+    }
+
+    buffer.write(record.type());
+    AdventureJournal.writeVarLong(buffer, fields.size());
+    for (long field : fields) {
+      AdventureJournal.writeVarLong(buffer, field);
+    }
+  }
+
+  /**
+   * Reads every record in a file, in the order written. Returns null if the file is not one of
+   * these, or cannot be read.
+   */
+  static List<Record> read(final File file) {
+    ByteBuffer buffer;
+    try {
+      buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    } catch (IOException e) {
+      StaticEntity.printStackTrace(e, "Unable to read " + file.getName());
+      return null;
+    }
+
+    if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+      return null;
+    }
+
+    List<String> names = new ArrayList<>();
+    List<Record> records = new ArrayList<>();
+
+    try {
+      while (buffer.hasRemaining()) {
+        int type = buffer.get();
+
+        if (type == NAME) {
+          byte[] bytes = new byte[(int) AdventureJournal.readVarLong(buffer)];
+          buffer.get(bytes);
+          names.add(new String(bytes, StandardCharsets.UTF_8));
+          continue;
+        }
+
+        int count = (int) AdventureJournal.readVarLong(buffer);
+        List<Object> fields = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+          long field = AdventureJournal.readVarLong(buffer);
+          if ((field & 1) != 0) {
+            fields.add(names.get((int) (field >>> 1)));
+          } else {
+            long value = field >>> 1;
+            fields.add((int) ((value >>> 1) ^ -(value & 1)));
+          }
+        }
+        records.add(new Record(type, fields));
+      }
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+      // A partial or damaged last record; keep what came before it
+    }
+
+    return records;
+  }
+
+  private static long readVarLong(final ByteBuffer buffer) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return value;
+  }
+
+  private static void writeVarLong(final ByteArrayOutputStream buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.write((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer.write((int) value);
+  }
+}
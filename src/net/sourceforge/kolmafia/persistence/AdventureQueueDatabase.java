@@ -1,15 +1,9 @@
 package net.sourceforge.kolmafia.persistence;
 
-import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serial;
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -29,11 +23,14 @@ import net.sourceforge.kolmafia.utilities.RollingLinkedList;
 
 /*
  * Instead of packing and unpacking a giant treemap into user preference files, this is a way of persisting a variable across sessions.
- * Uses the Java Serializable interface.
+ * Each encounter is appended to <username>_queue.dat as it happens; see AdventureJournal.
  */
 
-public class AdventureQueueDatabase implements Serializable {
-  @Serial private static final long serialVersionUID = -180241952508113931L;
+public class AdventureQueueDatabase {
+  // Records of an encounter in a zone, followed by the monster's ID or name
+  private static final int COMBAT = 1;
+  // ... or by the noncombat's name, if it had one
+  private static final int NONCOMBAT = 2;
 
   private static TreeMap<String, RollingLinkedList<String>> COMBAT_QUEUE = new TreeMap<>();
   private static TreeMap<String, RollingLinkedList<String>> NONCOMBAT_QUEUE = new TreeMap<>();
@@ -41,6 +38,9 @@ public class AdventureQueueDatabase implements Serializable {
   // for testing only, otherwise leave at true;
   public static boolean allowSerializationWrite = true;
 
+  // The file being appended to, once one has been loaded or written
+  private static AdventureJournal journal = null;
+
   // debugging tool
   public static void showQueue() {
     Set<String> keys = COMBAT_QUEUE.keySet();
@@ -159,6 +159,9 @@ public class AdventureQueueDatabase implements Serializable {
     }
 
     zoneQueue.add(mon.getName());
+    AdventureQueueDatabase.append(
+        new AdventureJournal.Record(
+            COMBAT, adventureName, AdventureQueueDatabase.monsterField(mon.getName())));
   }
 
   public static void enqueueNoncombat(String noncombatAdventureName, String name) {
@@ -169,6 +172,8 @@ public class AdventureQueueDatabase implements Serializable {
     if (zoneQueue == null) return;
 
     zoneQueue.add(name);
+    AdventureQueueDatabase.append(
+        AdventureQueueDatabase.noncombatRecord(noncombatAdventureName, name));
   }
 
   public static RollingLinkedList<String> getZoneQueue(KoLAdventure adv) {
@@ -187,64 +192,141 @@ public class AdventureQueueDatabase implements Serializable {
     return NONCOMBAT_QUEUE.get(adv);
   }
 
+  private static File getFile() {
+    return new File(KoLConstants.DATA_LOCATION, KoLCharacter.baseUserName() + "_queue.dat");
+  }
+
+  // Known monsters are recorded by ID, which is shorter than most names
+  private static Object monsterField(final String name) {
+    MonsterData mon = MonsterDatabase.findMonster(name);
+    if (mon == null || !mon.getName().equals(name) || mon.getId() <= 0) {
+      return name;
+    }
+    return MonsterDatabase.findMonsterById(mon.getId()) == mon ? mon.getId() : name;
+  }
+
+  private static AdventureJournal.Record noncombatRecord(final String zone, final String name) {
+    return name == null
+        ? new AdventureJournal.Record(NONCOMBAT, zone)
+        : new AdventureJournal.Record(NONCOMBAT, zone, name);
+  }
+
+  private static void append(final AdventureJournal.Record record) {
+    if (!allowSerializationWrite || AdventureQueueDatabase.journal == null) return;
+
+    if (AdventureQueueDatabase.journal.append(record)) {
+      AdventureQueueDatabase.serialize();
+    }
+  }
+
+  /*
+   * Rewrites <username>_queue.dat with just the current queues
+   */
   public static void serialize() {
     if (!allowSerializationWrite) return;
-    File file =
-        new File(KoLConstants.DATA_LOCATION, KoLCharacter.baseUserName() + "_" + "queue.ser");
+    File file = AdventureQueueDatabase.getFile();
+
+    if (AdventureQueueDatabase.journal == null
+        || !AdventureQueueDatabase.journal.getFile().equals(file)) {
+      AdventureQueueDatabase.journal = new AdventureJournal(file);
+    }
 
-    try {
-      FileOutputStream fileOut = new FileOutputStream(file);
-      ObjectOutputStream out = new ObjectOutputStream(fileOut);
-
-      // make a collection with combat queue first
-      List<TreeMap<String, RollingLinkedList<String>>> queues = new ArrayList<>();
-      queues.add(COMBAT_QUEUE);
-      queues.add(NONCOMBAT_QUEUE);
-      out.writeObject(queues);
-      out.close();
-    } catch (IOException e) {
-      e.printStackTrace();
+    List<AdventureJournal.Record> records = new ArrayList<>();
+
+    for (var entry : COMBAT_QUEUE.entrySet()) {
+      for (String monster : entry.getValue()) {
+        records.add(
+            monster == null
+                ? new AdventureJournal.Record(COMBAT, entry.getKey())
+                : new AdventureJournal.Record(
+                    COMBAT, entry.getKey(), AdventureQueueDatabase.monsterField(monster)));
+      }
+    }
+
+    for (var entry : NONCOMBAT_QUEUE.entrySet()) {
+      for (String name : entry.getValue()) {
+        records.add(AdventureQueueDatabase.noncombatRecord(entry.getKey(), name));
+      }
     }
+
+    AdventureQueueDatabase.journal.rewrite(records);
   }
 
   /*
-   * Attempts to load saved adventure queue settings from <username>_queue.ser
+   * Attempts to load saved adventure queue settings from <username>_queue.dat, or from the
+   * <username>_queue.ser written by older versions, which is then replaced.
    */
-  @SuppressWarnings("unchecked")
   public static void deserialize() {
-    File file =
+    File file = AdventureQueueDatabase.getFile();
+    File legacy =
         new File(KoLConstants.DATA_LOCATION, KoLCharacter.baseUserName() + "_" + "queue.ser");
 
-    if (!file.exists()) {
+    AdventureQueueDatabase.journal = null;
+
+    List<AdventureJournal.Record> records = file.exists() ? AdventureJournal.read(file) : null;
+
+    if (records != null) {
+      AdventureQueueDatabase.resetQueue(false);
+      AdventureQueueDatabase.replay(records);
+    } else if (!legacy.exists() || !AdventureQueueDatabase.deserializeLegacy(legacy)) {
       AdventureQueueDatabase.resetQueue(false);
-      return;
     }
-    try {
-      FileInputStream fileIn = new FileInputStream(file);
-      ObjectInputStream in = new ObjectInputStream(fileIn);
 
+    // after successfully loading, check if there were new zones added that aren't yet in the
+    // TreeMap.
+    AdventureQueueDatabase.checkZones();
+
+    // Start appending to a file holding just what was loaded
+    AdventureQueueDatabase.serialize();
+
+    if (legacy.exists() && file.exists()) {
+      legacy.delete();
+    }
+  }
+
+  private static void replay(final List<AdventureJournal.Record> records) {
+    for (AdventureJournal.Record record : records) {
+      List<Object> fields = record.fields();
+      if (fields.isEmpty()) {
+        continue;
+      }
+
+      String zone = (String) fields.get(0);
+      Object value = fields.size() > 1 ? fields.get(1) : null;
+
+      switch (record.type()) {
+        case COMBAT -> {
+          String monster =
+              value instanceof Integer id ? MonsterDatabase.getMonsterName(id) : (String) value;
+          if (monster == null || !monster.isEmpty()) {
+            COMBAT_QUEUE.computeIfAbsent(zone, k -> new RollingLinkedList<>(5)).add(monster);
+          }
+        }
+        case NONCOMBAT -> {
+          String name = (String) value;
+          NONCOMBAT_QUEUE.computeIfAbsent(zone, k -> new RollingLinkedList<>(5)).add(name);
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static boolean deserializeLegacy(final File file) {
+    try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
       List<TreeMap<String, RollingLinkedList<String>>> queues =
           (List<TreeMap<String, RollingLinkedList<String>>>) in.readObject();
 
       // Combat queue is first
       COMBAT_QUEUE = queues.get(0);
       NONCOMBAT_QUEUE = queues.get(1);
-
-      in.close();
-
-      // after successfully loading, check if there were new zones added that aren't yet in the
-      // TreeMap.
-      AdventureQueueDatabase.checkZones();
-    } catch (FileNotFoundException e) {
-      AdventureQueueDatabase.resetQueue(false);
-    } catch (ClassNotFoundException | EOFException | ClassCastException e) {
+      return true;
+    } catch (ClassNotFoundException
+        | ClassCastException
+        | IndexOutOfBoundsException
+        | IOException e) {
       // Found the file, but the contents did not contain a properly-serialized treemap or
       // old version of the combat queue handling or some other kind of malformed data.
-      // Wipe the bogus file.
-      file.delete();
-      AdventureQueueDatabase.resetQueue();
-    } catch (IOException e) {
-      e.printStackTrace();
+      return false;
     }
   }
 
@@ -2,13 +2,9 @@ package net.sourceforge.kolmafia.persistence;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serial;
-import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -22,11 +18,13 @@ import net.sourceforge.kolmafia.request.FightRequest;
 /*
  * Instead of packing and unpacking a giant map into user preference files,
  * this is a way of persisting a variable across sessions.
- * Uses the Java Serializable interface.
+ * Each change is appended to <username>_turns.dat as it happens; see AdventureJournal.
  */
 
-public class AdventureSpentDatabase implements Serializable {
-  @Serial private static final long serialVersionUID = -180241952508113933L;
+public class AdventureSpentDatabase {
+  // Records of the turns spent in a zone: zone, then turns
+  private static final int TURNS_SPENT = 1;
+
   private static Map<String, Integer> TURNS = new TreeMap<>();
 
   // Including free-fights, free-runs, delay burning turns, across all zones
@@ -39,6 +37,9 @@ public class AdventureSpentDatabase implements Serializable {
   // for testing only, otherwise leave at true;
   public static boolean allowSerializationWrite = true;
 
+  // The file being appended to, once one has been loaded or written
+  private static AdventureJournal journal = null;
+
   // debugging tool
   public static void showTurns() {
     Set<String> keys = TURNS.keySet();
@@ -104,6 +105,7 @@ public class AdventureSpentDatabase implements Serializable {
     int turns = AdventureSpentDatabase.TURNS.getOrDefault(loc, 0);
     AdventureSpentDatabase.TURNS.put(loc, turns + 1);
     totalTrackedTurns = totalTrackedTurns + 1;
+    AdventureSpentDatabase.append(loc, turns + 1);
   }
 
   public static void setTurns(KoLAdventure adv, final int turns) {
@@ -124,6 +126,7 @@ public class AdventureSpentDatabase implements Serializable {
     int prevTurns = AdventureSpentDatabase.TURNS.getOrDefault(loc, 0);
     AdventureSpentDatabase.TURNS.put(loc, turns);
     totalTrackedTurns = totalTrackedTurns + (turns - prevTurns);
+    AdventureSpentDatabase.append(loc, turns);
   }
 
   public static int getTurns(KoLAdventure adv) {
@@ -152,57 +155,91 @@ public class AdventureSpentDatabase implements Serializable {
     return totalTrackedTurns;
   }
 
+  private static File getFile() {
+    return new File(KoLConstants.DATA_LOCATION, KoLCharacter.baseUserName() + "_turns.dat");
+  }
+
+  private static void append(final String loc, final int turns) {
+    if (!allowSerializationWrite || AdventureSpentDatabase.journal == null) return;
+
+    if (AdventureSpentDatabase.journal.append(
+        new AdventureJournal.Record(TURNS_SPENT, loc, turns))) {
+      AdventureSpentDatabase.serialize();
+    }
+  }
+
+  /*
+   * Rewrites <username>_turns.dat with just the zones in which turns have been spent
+   */
   public static void serialize() {
     if (!allowSerializationWrite) return;
-    File file =
-        new File(KoLConstants.DATA_LOCATION, KoLCharacter.baseUserName() + "_" + "turns.ser");
+    File file = AdventureSpentDatabase.getFile();
 
-    try {
-      FileOutputStream fileOut = new FileOutputStream(file);
-      ObjectOutputStream out = new ObjectOutputStream(fileOut);
+    if (AdventureSpentDatabase.journal == null
+        || !AdventureSpentDatabase.journal.getFile().equals(file)) {
+      AdventureSpentDatabase.journal = new AdventureJournal(file);
+    }
 
-      out.writeObject(AdventureSpentDatabase.TURNS);
-      out.close();
-    } catch (IOException e) {
-      e.printStackTrace();
+    List<AdventureJournal.Record> records = new ArrayList<>();
+    for (var entry : AdventureSpentDatabase.TURNS.entrySet()) {
+      if (entry.getValue() != 0) {
+        records.add(new AdventureJournal.Record(TURNS_SPENT, entry.getKey(), entry.getValue()));
+      }
     }
+
+    AdventureSpentDatabase.journal.rewrite(records);
   }
 
   /*
-   * Attempts to load saved adventure spent settings from <username>_turns.ser
+   * Attempts to load saved adventure spent settings from <username>_turns.dat, or from the
+   * <username>_turns.ser written by older versions, which is then replaced.
    */
   public static void deserialize() {
-    File file =
+    File file = AdventureSpentDatabase.getFile();
+    File legacy =
         new File(KoLConstants.DATA_LOCATION, KoLCharacter.baseUserName() + "_" + "turns.ser");
 
-    if (!file.exists()) {
+    AdventureSpentDatabase.journal = null;
+
+    List<AdventureJournal.Record> records = file.exists() ? AdventureJournal.read(file) : null;
+
+    if (records != null) {
+      AdventureSpentDatabase.resetTurns(false);
+      for (AdventureJournal.Record record : records) {
+        if (record.type() == TURNS_SPENT
+            && record.fields().size() == 2
+            && record.fields().get(0) instanceof String loc
+            && record.fields().get(1) instanceof Integer turns) {
+          AdventureSpentDatabase.TURNS.put(loc, turns);
+        }
+      }
+    } else if (!legacy.exists() || !AdventureSpentDatabase.deserializeLegacy(legacy)) {
       AdventureSpentDatabase.resetTurns(false);
-      return;
     }
-    try {
-      FileInputStream fileIn = new FileInputStream(file);
-      ObjectInputStream in = new ObjectInputStream(fileIn);
 
-      AdventureSpentDatabase.TURNS = (TreeMap<String, Integer>) in.readObject();
+    // after successfully loading, check if there were new zones added that aren't yet in the
+    // TreeMap.
+    AdventureSpentDatabase.checkZones();
 
-      in.close();
+    // set totalTrackedTurns to the combined total of all zones
+    totalTrackedTurns = AdventureSpentDatabase.TURNS.values().stream().reduce(0, Integer::sum);
 
-      // after successfully loading, check if there were new zones added that aren't yet in the
-      // TreeMap.
-      AdventureSpentDatabase.checkZones();
+    // Start appending to a file holding just what was loaded
+    AdventureSpentDatabase.serialize();
 
-      // set totalTrackedTurns to the combined total of all zones
-      totalTrackedTurns = AdventureSpentDatabase.TURNS.values().stream().reduce(0, Integer::sum);
-    } catch (FileNotFoundException e) {
-      AdventureSpentDatabase.resetTurns(false);
-    } catch (ClassNotFoundException | ClassCastException e) {
-      // Found the file, but the contents did not contain a properly-serialized treemap or
-      // old version of the combat queue handling.
-      // Wipe the bogus file.
-      file.delete();
-      AdventureSpentDatabase.resetTurns();
-    } catch (IOException e) {
-      e.printStackTrace();
+    if (legacy.exists() && file.exists()) {
+      legacy.delete();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static boolean deserializeLegacy(final File file) {
+    try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+      AdventureSpentDatabase.TURNS = (TreeMap<String, Integer>) in.readObject();
+      return true;
+    } catch (ClassNotFoundException | ClassCastException | IOException e) {
+      // Found the file, but the contents did not contain a properly-serialized treemap
+      return false;
     }
   }
 
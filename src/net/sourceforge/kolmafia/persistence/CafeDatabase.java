@@ -22,17 +22,25 @@ public class CafeDatabase {
     }
   }
 
-  private static final Map<Integer, String> cafeFood = new TreeMap<>(new InverseIntegerOrder());
-  private static final Map<Integer, String> cafeBooze = new TreeMap<>(new InverseIntegerOrder());
-
-  // Map from item name to descid, since ItemDatabase can't help with these
-  private static final Map<String, String> nameToDescId = new TreeMap<>();
-
-  static {
-    CafeDatabase.readCafeData(
-        "cafe_booze.txt", KoLConstants.CAFE_BOOZE_VERSION, CafeDatabase.cafeBooze);
-    CafeDatabase.readCafeData(
-        "cafe_food.txt", KoLConstants.CAFE_FOOD_VERSION, CafeDatabase.cafeFood);
+  // Loaded the first time a menu is needed, rather than whenever anything uses
+  // InverseIntegerOrder, as TCRSDatabase does in every session
+  private static class Menus {
+    private static final Map<Integer, String> cafeFood = new TreeMap<>(new InverseIntegerOrder());
+    private static final Map<Integer, String> cafeBooze = new TreeMap<>(new InverseIntegerOrder());
+
+    // Map from item name to descid, since ItemDatabase can't help with these
+    private static final Map<String, String> nameToDescId = new TreeMap<>();
+
+    static {
+      DatabaseInitializer.loadOnDemand(
+          "cafe",
+          () -> {
+            CafeDatabase.readCafeData(
+                "cafe_booze.txt", KoLConstants.CAFE_BOOZE_VERSION, Menus.cafeBooze);
+            CafeDatabase.readCafeData(
+                "cafe_food.txt", KoLConstants.CAFE_FOOD_VERSION, Menus.cafeFood);
+          });
+    }
   }
 
   private static void readCafeData(String filename, int version, Map<Integer, String> map) {
@@ -56,31 +64,31 @@ public class CafeDatabase {
   }
 
   public static String getCafeBoozeName(int id) {
-    return cafeBooze.get(id);
+    return Menus.cafeBooze.get(id);
   }
 
   public static String getCafeFoodName(int id) {
-    return cafeFood.get(id);
+    return Menus.cafeFood.get(id);
   }
 
   public static final Set<Integer> cafeBoozeKeySet() {
-    return CafeDatabase.cafeBooze.keySet();
+    return Menus.cafeBooze.keySet();
   }
 
   public static final Set<Entry<Integer, String>> cafeBoozeEntrySet() {
-    return CafeDatabase.cafeBooze.entrySet();
+    return Menus.cafeBooze.entrySet();
   }
 
   public static final Set<Integer> cafeFoodKeySet() {
-    return CafeDatabase.cafeFood.keySet();
+    return Menus.cafeFood.keySet();
   }
 
   public static final Set<Entry<Integer, String>> cafeFoodEntrySet() {
-    return CafeDatabase.cafeFood.entrySet();
+    return Menus.cafeFood.entrySet();
   }
 
   public static final String nameToDescId(final String name) {
-    String descId = nameToDescId.get(name);
+    String descId = Menus.nameToDescId.get(name);
     if (descId != null) {
       return descId;
     }
@@ -96,11 +104,11 @@ public class CafeDatabase {
     int itemId = StringUtilities.parseInt(id);
     String name = data[1];
     map.put(itemId, name);
-    String descId = (map == cafeBooze) ? boozeDescId(itemId) : foodDescId(itemId);
-    nameToDescId.put(name, descId);
+    String descId = (map == Menus.cafeBooze) ? boozeDescId(itemId) : foodDescId(itemId);
+    Menus.nameToDescId.put(name, descId);
   }
 
   public static boolean isCafeConsumable(String name) {
-    return nameToDescId.containsKey(name);
+    return Menus.nameToDescId.containsKey(name);
   }
 }
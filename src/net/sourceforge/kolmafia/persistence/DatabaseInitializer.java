@@ -0,0 +1,258 @@
+package net.sourceforge.kolmafia.persistence;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import net.sourceforge.kolmafia.Modifiers;
+import net.sourceforge.kolmafia.RequestLogger;
+import net.sourceforge.kolmafia.StaticEntity;
+import net.sourceforge.kolmafia.preferences.Preferences;
+
+/**
+ * Loads the databases at startup, running those which do not depend on each other concurrently.
+ *
+ * <p>Each database loads its data files in its static initializer, touching whatever other
+ * databases it needs, which load in turn. Run on one thread, this happens in whatever order
+ * startup first touches them. Here the order is explicit: a database is only loaded once every
+ * database its initializer touches has been. That also keeps two threads from waiting on each
+ * other to finish initializing a class, so every database an initializer touches must be listed
+ * among its dependencies.
+ *
+ * <p>ItemDatabase's initializer pulls in the consumables, concoction and candy databases and
+ * KoLCharacter, so they load as part of it.
+ *
+ * <p>Rarely used databases are not loaded at startup, but the first time something asks for their
+ * data, through {@link #loadOnDemand}. Setting <code>loadDatabasesAtStartup</code> to false leaves
+ * every database to load on demand, as it would without this class, for the smallest heap and
+ * quickest start in sessions which use few of them.
+ */
+public class DatabaseInitializer {
+  /** How long loading a database took, and how much it allocated. */
+  public record Load(String name, boolean onDemand, long millis, long bytes) {}
+
+  public record Node(String name, Runnable load, List<String> dependencies) {
+    public Node(final String name, final Class<?> database, final String... dependencies) {
+      this(name, () -> DatabaseInitializer.initialize(database), List.of(dependencies));
+    }
+  }
+
+  private static final List<Node> GRAPH =
+      List.of(
+          new Node("effects", EffectDatabase.class),
+          new Node("skills", SkillDatabase.class, "effects"),
+          new Node("bounties", BountyDatabase.class),
+          new Node("modifiers", Modifiers.class, "effects"),
+          new Node("items", ItemDatabase.class, "effects", "skills", "modifiers"),
+          new Node("concoctions", ConcoctionDatabase.class, "items"),
+          new Node("equipment", EquipmentDatabase.class, "items"),
+          new Node("familiars", FamiliarDatabase.class, "items"),
+          new Node("monsters", MonsterDatabase.class, "items"),
+          new Node("npcstores", NPCStoreDatabase.class, "items"),
+          new Node("coinmasters", CoinmastersDatabase.class, "items"),
+          new Node("restores", RestoresDatabase.class, "items"),
+          new Node("quests", QuestDatabase.class, "items"),
+          new Node("dailylimits", DailyLimitDatabase.class, "items", "skills"),
+          new Node("adventures", AdventureDatabase.class, "items", "monsters", "bounties"),
+          new Node("pockets", PocketDatabase.class, "effects", "monsters"));
+
+  private static final Map<String, Load> LOADS = Collections.synchronizedMap(new LinkedHashMap<>());
+
+  // How long loading at startup took altogether, and on how many threads
+  private static long startupMillis = 0;
+  private static int startupThreads = 0;
+
+  private DatabaseInitializer() {}
+
+  /** Loads every database not left to load on demand, returning once all have loaded. */
+  public static void initialize() {
+    if (!Preferences.getBoolean("loadDatabasesAtStartup")) {
+      return;
+    }
+
+    int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+    ForkJoinPool pool = new ForkJoinPool(threads);
+
+    long start = System.nanoTime();
+    try {
+      DatabaseInitializer.loadAll(pool);
+    } finally {
+      pool.shutdown();
+    }
+    DatabaseInitializer.startupMillis = (System.nanoTime() - start) / 1_000_000;
+    DatabaseInitializer.startupThreads = threads;
+
+    for (Load load : DatabaseInitializer.getLoads()) {
+      RequestLogger.updateDebugLog("Loaded " + load.name() + " in " + load.millis() + " ms");
+    }
+    RequestLogger.updateDebugLog(
+        "Loaded databases in "
+            + DatabaseInitializer.startupMillis
+            + " ms using "
+            + threads
+            + " threads");
+  }
+
+  /** Loads every database in the startup graph on the given executor. */
+  static Map<String, Long> loadAll(final Executor executor) {
+    return DatabaseInitializer.run(GRAPH, executor);
+  }
+
+  /**
+   * Loads a database the first time it is needed, recording how long it took. Call from the
+   * static initializer of a holder class for the database's data.
+   */
+  public static void loadOnDemand(final String name, final Runnable load) {
+    DatabaseInitializer.measure(name, load, true);
+  }
+
+  /** Returns the databases loaded so far, in the order they finished loading. */
+  public static List<Load> getLoads() {
+    synchronized (DatabaseInitializer.LOADS) {
+      return new ArrayList<>(DatabaseInitializer.LOADS.values());
+    }
+  }
+
+  private static Load measure(final String name, final Runnable load, final boolean onDemand) {
+    long start = System.nanoTime();
+    long bytes = DatabaseInitializer.allocatedBytes();
+    try {
+      load.run();
+    } catch (Throwable t) {
+      // Load the rest anyway, as loading them one at a time would have
+      StaticEntity.printStackTrace(t, "Error loading " + name);
+    }
+
+    Load result =
+        new Load(
+            name,
+            onDemand,
+            (System.nanoTime() - start) / 1_000_000,
+            DatabaseInitializer.allocatedBytes() - bytes);
+    DatabaseInitializer.LOADS.put(name, result);
+    return result;
+  }
+
+  private static long allocatedBytes() {
+    return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+        ? threads.getCurrentThreadAllocatedBytes()
+        : 0;
+  }
+
+  public static String getHTMLTable() {
+    StringBuilder buffer = new StringBuilder();
+    buffer.append("<table border=2 cols=4>");
+    buffer.append("<tr><td>Database</td><td>Loaded</td><td>ms</td><td>KB allocated</td></tr>");
+
+    for (Load load : DatabaseInitializer.getLoads()) {
+      buffer.append("<tr><td>");
+      buffer.append(load.name());
+      buffer.append("</td><td>");
+      buffer.append(load.onDemand() ? "on demand" : "at startup");
+      buffer.append("</td><td>");
+      buffer.append(load.millis());
+      buffer.append("</td><td>");
+      buffer.append(load.bytes() / 1024);
+      buffer.append("</td></tr>");
+    }
+
+    if (DatabaseInitializer.startupThreads > 0) {
+      buffer.append("<tr><td>All at startup</td><td>");
+      buffer.append(DatabaseInitializer.startupThreads);
+      buffer.append(" threads</td><td>");
+      buffer.append(DatabaseInitializer.startupMillis);
+      buffer.append("</td><td></td></tr>");
+    }
+
+    Runtime runtime = Runtime.getRuntime();
+    buffer.append("<tr><td colspan=3>Heap in use</td><td>");
+    buffer.append((runtime.totalMemory() - runtime.freeMemory()) / 1024);
+    buffer.append("</td></tr>");
+
+    buffer.append("</table>");
+    return buffer.toString();
+  }
+
+  /**
+   * Loads the given graph, each node once all of its dependencies have, and returns how long each
+   * took in milliseconds, in the order they finished.
+   */
+  public static Map<String, Long> run(final List<Node> graph, final Executor executor) {
+    Map<String, Long> finished = Collections.synchronizedMap(new LinkedHashMap<>());
+    Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+
+    for (Node node : DatabaseInitializer.sort(graph)) {
+      CompletableFuture<?>[] dependencies =
+          node.dependencies().stream().map(futures::get).toArray(CompletableFuture[]::new);
+
+      futures.put(
+          node.name(),
+          CompletableFuture.allOf(dependencies)
+              .thenRunAsync(
+                  () -> {
+                    Load load = DatabaseInitializer.measure(node.name(), node.load(), false);
+                    finished.put(node.name(), load.millis());
+                  },
+                  executor));
+    }
+
+    CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).join();
+    return finished;
+  }
+
+  /** Orders the graph so that every node follows its dependencies. */
+  private static List<Node> sort(final List<Node> graph) {
+    Map<String, Node> byName = new HashMap<>();
+    for (Node node : graph) {
+      if (byName.put(node.name(), node) != null) {
+        throw new IllegalArgumentException("Duplicate database " + node.name());
+      }
+    }
+
+    List<Node> sorted = new ArrayList<>();
+    Map<String, Boolean> visited = new HashMap<>();
+    for (Node node : graph) {
+      DatabaseInitializer.visit(node, byName, visited, sorted);
+    }
+    return sorted;
+  }
+
+  private static void visit(
+      final Node node,
+      final Map<String, Node> byName,
+      final Map<String, Boolean> visited,
+      final List<Node> sorted) {
+    Boolean done = visited.get(node.name());
+    if (done != null) {
+      if (!done) {
+        throw new IllegalArgumentException("Database " + node.name() + " depends on itself");
+      }
+      return;
+    }
+
+    visited.put(node.name(), false);
+    for (String name : node.dependencies()) {
+      Node dependency = byName.get(name);
+      if (dependency == null) {
+        throw new IllegalArgumentException(node.name() + " depends on unknown database " + name);
+      }
+      DatabaseInitializer.visit(dependency, byName, visited, sorted);
+    }
+    visited.put(node.name(), true);
+    sorted.add(node);
+  }
+
+  private static void initialize(final Class<?> database) {
+    try {
+      Class.forName(database.getName(), true, database.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      // It was loaded to get here
+    }
+  }
+}
@@ -351,14 +351,21 @@ public class FactDatabase {
     }
   }
 
-  private static final EnumMap<Phylum, List<Fact>> facts = new EnumMap<>(Phylum.class);
+  // Loaded the first time a fact is needed, not whenever a Fact type is used
+  private static class Book {
+    private static final EnumMap<Phylum, List<Fact>> facts = new EnumMap<>(Phylum.class);
 
-  static {
-    FactDatabase.reset();
+    static {
+      DatabaseInitializer.loadOnDemand("facts", FactDatabase::load);
+    }
   }
 
   protected static void reset() {
-    facts.clear();
+    Book.facts.clear();
+    FactDatabase.load();
+  }
+
+  private static void load() {
 
     boolean error = false;
     try (BufferedReader reader =
@@ -480,7 +487,7 @@ public class FactDatabase {
   }
 
   private static void addToDatabase(Phylum phylum, Fact fact) {
-    facts.computeIfAbsent(phylum, p -> new ArrayList<>()).add(fact);
+    Book.facts.computeIfAbsent(phylum, p -> new ArrayList<>()).add(fact);
   }
 
   private static boolean isPhylumEffect(final Path path, final Phylum phylum, final int seed) {
@@ -504,7 +511,7 @@ public class FactDatabase {
 
     var phylum = monster.getPhylum();
     var effectivePhylum = isPhylumEffect(path, phylum, seed) ? phylum : Phylum.NONE;
-    var factPool = facts.get(effectivePhylum);
+    var factPool = Book.facts.get(effectivePhylum);
 
     var fact = factPool.get(rng.nextInt(0, factPool.size() - 1));
     return fact.resolve(ascensionClass, path, monster, stateful);
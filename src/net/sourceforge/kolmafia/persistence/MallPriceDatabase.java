@@ -1,7 +1,7 @@
 package net.sourceforge.kolmafia.persistence;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
@@ -13,14 +13,16 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.HashSet;
-import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import net.java.dev.spellcast.utilities.DataUtilities;
 import net.sourceforge.kolmafia.KoLConstants;
 import net.sourceforge.kolmafia.RequestLogger;
 import net.sourceforge.kolmafia.RequestThread;
@@ -31,28 +33,164 @@ import net.sourceforge.kolmafia.utilities.FileUtilities;
 import net.sourceforge.kolmafia.utilities.HttpUtilities;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
+/**
+ * Shared mall prices, kept in a file with a fixed-width slot for each item ID, which is
+ * memory-mapped so that looking up a price reads it straight from its slot, and recording one
+ * writes just that slot.
+ *
+ * <p>The file starts with a header: a magic number, the format, the number of slots and the newest
+ * timestamp merged from a remote source, which is sent with the next request for prices so that
+ * only newer ones need be sent back. Each slot holds the price and when it was seen, or zeros if
+ * there is no price for that item. A mallprices.txt left by older versions is read on first load.
+ *
+ * <p>Prices are exchanged with other users in the text format of mallprices.txt.
+ */
 public class MallPriceDatabase {
   // If false, blocks saving of mall prices. Do not modify outside of tests.
   public static boolean savePricesToFile = true;
 
-  private static final SortedMap<Integer, Price> prices = new TreeMap<>();
   private static final HashSet<String> updated = new HashSet<>();
   private static final HashSet<String> submitted = new HashSet<>();
-  private static int modCount = 0;
+  // Changed holding the class lock
+  private static volatile int modCount = 0;
 
-  public static final File PRICE_FILE = new File(KoLConstants.DATA_LOCATION, "mallprices.txt");
+  public static final File PRICE_FILE = new File(KoLConstants.DATA_LOCATION, "mallprices.bin");
+
+  private static final int MAGIC = 0x4B4D4D50; // "KMMP"
+  private static final int FORMAT = 1;
+  private static final int CAPACITY = 8;
+  private static final int SYNCED = 12;
+  private static final int HEADER = 20;
+
+  // Price, then timestamp
+  private static final int SLOT = 12;
 
   private static final int CONNECT_TIMEOUT = 15 * 1000;
 
-  static {
-    updatePricesFromSource("mallprices.txt");
+  // Loaded when first used; replaced when it grows. Read and written holding the class lock, since
+  // a slot's price and timestamp are written separately.
+  private static volatile ByteBuffer index = null;
+  private static boolean mapped = false;
+
+  private MallPriceDatabase() {}
+
+  private static ByteBuffer getIndex() {
+    ByteBuffer index = MallPriceDatabase.index;
+    return index != null ? index : MallPriceDatabase.load();
+  }
+
+  private static synchronized ByteBuffer load() {
+    if (MallPriceDatabase.index != null) {
+      return MallPriceDatabase.index;
+    }
+
+    if (PRICE_FILE.exists()) {
+      MallPriceDatabase.index = MallPriceDatabase.open();
+    }
+
+    if (MallPriceDatabase.index == null) {
+      MallPriceDatabase.mapped = false;
+      MallPriceDatabase.index =
+          MallPriceDatabase.resize(ByteBuffer.allocate(HEADER), ItemDatabase.maxItemId() + 1);
+
+      if (MallPriceDatabase.updatePricesFromSource("mallprices.txt", false) > 0) {
+        MallPriceDatabase.writePrices();
+      }
+    }
+
     MallPriceDatabase.modCount = 0;
+    return MallPriceDatabase.index;
   }
 
-  private MallPriceDatabase() {}
+  private static ByteBuffer open() {
+    try {
+      // In tests, work on a copy
+      ByteBuffer index =
+          MallPriceDatabase.savePricesToFile
+              ? MallPriceDatabase.map(PRICE_FILE.length())
+              : ByteBuffer.wrap(Files.readAllBytes(PRICE_FILE.toPath()));
+      MallPriceDatabase.mapped = MallPriceDatabase.savePricesToFile;
+
+      if (index.capacity() >= HEADER
+          && index.getInt(0) == MAGIC
+          && index.getInt(4) == FORMAT
+          && index.getInt(CAPACITY) >= 0
+          && HEADER + (long) index.getInt(CAPACITY) * SLOT <= index.capacity()) {
+        return index;
+      }
+      RequestLogger.printLine("Unrecognized " + PRICE_FILE.getName() + "; rebuilding it.");
+    } catch (IOException e) {
+      StaticEntity.printStackTrace(e, "Unable to load " + PRICE_FILE.getName());
+    }
+    return null;
+  }
+
+  private static MappedByteBuffer map(final long size) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            PRICE_FILE.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private static int capacity(final ByteBuffer index) {
+    return index.getInt(CAPACITY);
+  }
+
+  /** Returns an index with room for item IDs below the minimum, holding what this one did. */
+  private static ByteBuffer resize(final ByteBuffer index, final int minimum) {
+    // Leave room for new items, so that the file is not remapped for each one
+    int capacity = ((Math.max(minimum, ItemDatabase.maxItemId() + 1) + 1023) / 1024) * 1024;
+    long size = HEADER + (long) capacity * SLOT;
+
+    ByteBuffer resized;
+    if (MallPriceDatabase.mapped) {
+      try {
+        // Mapping past the end of the file extends it with zeros
+        resized = MallPriceDatabase.map(size);
+      } catch (IOException e) {
+        StaticEntity.printStackTrace(e, "Unable to grow " + PRICE_FILE.getName());
+        MallPriceDatabase.mapped = false;
+        resized = ByteBuffer.allocate((int) size).put(0, index, 0, index.capacity());
+      }
+    } else {
+      resized = ByteBuffer.allocate((int) size).put(0, index, 0, index.capacity());
+    }
+
+    resized.putInt(0, MAGIC);
+    resized.putInt(4, FORMAT);
+    resized.putInt(CAPACITY, capacity);
+    return resized;
+  }
+
+  private static synchronized void setPrice(
+      final int itemId, final int price, final long timestamp) {
+    ByteBuffer index = MallPriceDatabase.getIndex();
+    if (itemId >= MallPriceDatabase.capacity(index)) {
+      index = MallPriceDatabase.resize(index, itemId + 1);
+      MallPriceDatabase.index = index;
+    }
+
+    int offset = HEADER + itemId * SLOT;
+    index.putInt(offset, price);
+    index.putLong(offset + 4, timestamp);
+    ++MallPriceDatabase.modCount;
+  }
+
+  private static synchronized long getTimestamp(final int itemId) {
+    ByteBuffer index = MallPriceDatabase.getIndex();
+    if (itemId < 1 || itemId >= MallPriceDatabase.capacity(index)) {
+      return 0;
+    }
+    return index.getLong(HEADER + itemId * SLOT + 4);
+  }
 
-  private static int updatePricesFromSource(String filename) {
+  private static int updatePricesFromSource(String filename, boolean remote) {
     int count = 0;
+    long synced = MallPriceDatabase.getIndex().getLong(SYNCED);
     try (BufferedReader reader = FileUtilities.getReader(filename)) {
 
       String line = FileUtilities.readLine(reader);
@@ -85,18 +223,18 @@ public class MallPriceDatabase {
           continue;
         }
 
+        synced = Math.max(synced, timestamp);
+
         if (!ItemDatabase.isTradeable(id)) continue;
-        Price p = MallPriceDatabase.prices.get(id);
-        if (p == null) {
-          MallPriceDatabase.prices.put(id, new Price(id, price, timestamp));
-          ++count;
-          ++MallPriceDatabase.modCount;
-        } else if (timestamp > p.timestamp) {
-          p.update(price, timestamp);
+        if (timestamp > MallPriceDatabase.getTimestamp(id)) {
+          MallPriceDatabase.setPrice(id, price, timestamp);
           ++count;
-          ++MallPriceDatabase.modCount;
         }
       }
+
+      if (remote) {
+        MallPriceDatabase.setSynced(synced);
+      }
     } catch (IOException e) {
       StaticEntity.printStackTrace(e);
     }
@@ -109,14 +247,23 @@ public class MallPriceDatabase {
       return;
     }
 
-    if (filename.startsWith("http://") || filename.startsWith("https://")) {
+    boolean remote = filename.startsWith("http://") || filename.startsWith("https://");
+    String source = filename;
+
+    if (remote) {
       if (MallPriceDatabase.updated.contains(filename)) {
         RequestLogger.printLine("Already updated from " + filename + " in this session.");
         return;
       }
       MallPriceDatabase.updated.add(filename);
+
+      // Only ask for prices newer than the last ones merged
+      long synced = MallPriceDatabase.getIndex().getLong(SYNCED);
+      if (synced > 0) {
+        source += (filename.indexOf('?') == -1 ? "?" : "&") + "since=" + synced;
+      }
     }
-    int count = MallPriceDatabase.updatePricesFromSource(filename);
+    int count = MallPriceDatabase.updatePricesFromSource(source, remote);
     if (count > 0) {
       MallPriceDatabase.writePrices();
       ConcoctionDatabase.refreshConcoctions();
@@ -142,43 +289,57 @@ public class MallPriceDatabase {
     }
   }
 
+  private static synchronized void setSynced(final long synced) {
+    MallPriceDatabase.getIndex().putLong(SYNCED, synced);
+  }
+
   public static void recordPrice(int itemId, int price, boolean deferred) {
     long timestamp = MallPriceManager.currentTimeMillis() / 1000L;
-    Price p = MallPriceDatabase.prices.get(itemId);
-    if (p == null) {
-      MallPriceDatabase.prices.put(itemId, new Price(itemId, price, timestamp));
-    } else {
-      p.update(price, timestamp);
-    }
-    ++MallPriceDatabase.modCount;
+    MallPriceDatabase.setPrice(itemId, price, timestamp);
     if (!deferred) {
       MallPriceDatabase.writePrices();
     }
   }
 
-  public static void writePrices() {
+  /**
+   * Saves the prices. Prices are recorded straight into the mapped file, so this only has anything
+   * to write the first time, when there is no file yet.
+   */
+  public static synchronized void writePrices() {
     if (!MallPriceDatabase.savePricesToFile) {
       return;
     }
 
-    try (PrintStream writer =
-        new PrintStream(
-            new BufferedOutputStream(DataUtilities.getOutputStream(PRICE_FILE)), false)) {
-      writePrices(writer);
+    ByteBuffer index = MallPriceDatabase.getIndex();
+    if (MallPriceDatabase.mapped) {
+      ((MappedByteBuffer) index).force();
+      return;
+    }
+
+    try {
+      PRICE_FILE.getParentFile().mkdirs();
+      Files.write(PRICE_FILE.toPath(), index.array());
+      MallPriceDatabase.index = MallPriceDatabase.map(index.capacity());
+      MallPriceDatabase.mapped = true;
+    } catch (IOException e) {
+      StaticEntity.printStackTrace(e);
     }
   }
 
-  static void writePrices(PrintStream writer) {
+  /** Writes the prices in the text format of mallprices.txt, in item ID order. */
+  static synchronized void writePrices(PrintStream writer) {
     writer.println(KoLConstants.MALLPRICES_VERSION);
 
-    MallPriceDatabase.prices.entrySet().stream()
-        .forEach(
-            entry -> {
-              Price p = entry.getValue();
-              if (p != null) {
-                writer.writeBytes(p.encoded);
-              }
-            });
+    ByteBuffer index = MallPriceDatabase.getIndex();
+    int capacity = MallPriceDatabase.capacity(index);
+    for (int itemId = 1; itemId < capacity; ++itemId) {
+      int offset = HEADER + itemId * SLOT;
+      int price = index.getInt(offset);
+      if (price > 0) {
+        long timestamp = index.getLong(offset + 4);
+        writer.print(itemId + "\t" + timestamp + "\t" + price + KoLConstants.LINE_BREAK);
+      }
+    }
   }
 
   public static void submitPrices(String url) {
@@ -239,48 +400,27 @@ public class MallPriceDatabase {
     builder.append(
         "Content-Disposition: form-data; name=\"upload\"; filename=\"mallprices.txt\"\r\n\r\n");
 
-    try (BufferedReader reader = FileUtilities.getReader("mallprices.txt")) {
-      String line;
-      while ((line = FileUtilities.readLine(reader)) != null) {
-        builder.append(line);
-        builder.append('\n');
-      }
-    } catch (IOException e) {
-      StaticEntity.printStackTrace(e);
+    ByteArrayOutputStream prices = new ByteArrayOutputStream();
+    try (PrintStream writer = new PrintStream(prices, false, StandardCharsets.UTF_8)) {
+      MallPriceDatabase.writePrices(writer);
     }
+    builder.append(prices.toString(StandardCharsets.UTF_8));
     builder.append("\r\n----blahblahfishcakes--\r\n");
     return builder.toString();
   }
 
-  public static int getPrice(int itemId) {
-    Price p = MallPriceDatabase.prices.get(itemId);
-    return p == null ? 0 : p.price;
+  public static synchronized int getPrice(int itemId) {
+    ByteBuffer index = MallPriceDatabase.getIndex();
+    if (itemId < 1 || itemId >= MallPriceDatabase.capacity(index)) {
+      return 0;
+    }
+    return index.getInt(HEADER + itemId * SLOT);
   }
 
   // Return age of price data, in fractional days
   public static float getAge(int itemId) {
-    Price p = MallPriceDatabase.prices.get(itemId);
+    long timestamp = MallPriceDatabase.getTimestamp(itemId);
     long now = MallPriceManager.currentTimeMillis() / 1000L;
-    return p == null ? Float.POSITIVE_INFINITY : (now - p.timestamp) / 86400.0f;
-  }
-
-  private static class Price {
-    int id;
-    int price;
-    long timestamp;
-    byte[] encoded;
-
-    public Price(int id, int price, long timestamp) {
-      this.id = id;
-      this.update(price, timestamp);
-    }
-
-    public void update(int price, long timestamp) {
-      this.price = price;
-      this.timestamp = timestamp;
-      this.encoded =
-          (this.id + "\t" + this.timestamp + "\t" + this.price + KoLConstants.LINE_BREAK)
-              .getBytes(StandardCharsets.UTF_8);
-    }
+    return timestamp == 0 ? Float.POSITIVE_INFINITY : (now - timestamp) / 86400.0f;
   }
 }
@@ -0,0 +1,28 @@
+package net.sourceforge.kolmafia.preferences;
+
+/** A boolean preference. See {@link Preferences#boolPref}. */
+public final class BoolPref extends Pref {
+  private record Cached(long stamp, boolean value) {}
+
+  private volatile Cached cached = null;
+
+  BoolPref(final String name) {
+    super(name);
+  }
+
+  public boolean get() {
+    Cached cached = this.cached;
+    if (cached != null && cached.stamp() == this.getStamp()) {
+      return cached.value();
+    }
+
+    long stamp = this.getStamp();
+    boolean value = Preferences.getBoolean(this.name);
+    this.cached = new Cached(stamp, value);
+    return value;
+  }
+
+  public void set(final boolean value) {
+    Preferences.setBoolean(this.name, value);
+  }
+}
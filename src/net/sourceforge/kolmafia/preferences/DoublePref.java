@@ -0,0 +1,28 @@
+package net.sourceforge.kolmafia.preferences;
+
+/** A floating point preference. See {@link Preferences#doublePref}. */
+public final class DoublePref extends Pref {
+  private record Cached(long stamp, double value) {}
+
+  private volatile Cached cached = null;
+
+  DoublePref(final String name) {
+    super(name);
+  }
+
+  public double get() {
+    Cached cached = this.cached;
+    if (cached != null && cached.stamp() == this.getStamp()) {
+      return cached.value();
+    }
+
+    long stamp = this.getStamp();
+    double value = Preferences.getDouble(this.name);
+    this.cached = new Cached(stamp, value);
+    return value;
+  }
+
+  public void set(final double value) {
+    Preferences.setDouble(this.name, value);
+  }
+}
@@ -0,0 +1,32 @@
+package net.sourceforge.kolmafia.preferences;
+
+/** An integer preference. See {@link Preferences#intPref}. */
+public final class IntPref extends Pref {
+  private record Cached(long stamp, int value) {}
+
+  private volatile Cached cached = null;
+
+  IntPref(final String name) {
+    super(name);
+  }
+
+  public int get() {
+    Cached cached = this.cached;
+    if (cached != null && cached.stamp() == this.getStamp()) {
+      return cached.value();
+    }
+
+    long stamp = this.getStamp();
+    int value = Preferences.getInteger(this.name);
+    this.cached = new Cached(stamp, value);
+    return value;
+  }
+
+  public void set(final int value) {
+    Preferences.setInteger(this.name, value);
+  }
+
+  public int increment(final int delta) {
+    return Preferences.increment(this.name, delta);
+  }
+}
@@ -0,0 +1,37 @@
+package net.sourceforge.kolmafia.preferences;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A handle on one preference from defaults.txt, looked up once and kept in a static field, which
+ * caches the preference's value already converted from a string.
+ *
+ * <p>Preferences keeps the value itself; it bumps the handle's stamp whenever the value is stored,
+ * and a cached value with an older stamp is converted again on the next read. A handle takes the
+ * stamp before reading the value, so that a change made while it reads is not hidden.
+ */
+public abstract class Pref {
+  protected final String name;
+  private final AtomicLong stamp = new AtomicLong();
+
+  protected Pref(final String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  protected long getStamp() {
+    return this.stamp.get();
+  }
+
+  void invalidate() {
+    this.stamp.incrementAndGet();
+  }
+
+  @Override
+  public String toString() {
+    return this.name;
+  }
+}
@@ -9,6 +9,7 @@ import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -22,11 +23,13 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import net.java.dev.spellcast.utilities.DataUtilities;
 import net.sourceforge.kolmafia.KoLCharacter;
 import net.sourceforge.kolmafia.KoLConstants;
 import net.sourceforge.kolmafia.KoLmafia;
 import net.sourceforge.kolmafia.RequestLogger;
+import net.sourceforge.kolmafia.RequestThread;
 import net.sourceforge.kolmafia.combat.CombatActionManager;
 import net.sourceforge.kolmafia.listener.PreferenceListenerRegistry;
 import net.sourceforge.kolmafia.moods.MoodManager;
@@ -52,14 +55,17 @@ public class Preferences {
   private static final SortedMap<String, byte[]> globalEncodedValues =
       Collections.synchronizedSortedMap(new TreeMap<>());
   private static File globalPropertiesFile = null;
+  private static PreferencesJournal globalJournal = null;
 
   private static final HashMap<String, String> userNames = new HashMap<>();
   private static final Map<String, Object> userValues = new ConcurrentHashMap<>();
   private static final SortedMap<String, byte[]> userEncodedValues =
       Collections.synchronizedSortedMap(new TreeMap<>());
   private static File userPropertiesFile = null;
+  private static PreferencesJournal userJournal = null;
 
   private static final Set<String> defaultsSet = new HashSet<>();
+  private static final Map<String, Pref> handles = new ConcurrentHashMap<>();
   private static final Set<String> perUserGlobalSet = new HashSet<>();
   private static final Set<String> onlyResetOnRollover =
       new TreeSet<>(List.of("ascensionsToday", "potatoAlarmClockUsed"));
@@ -623,16 +629,24 @@ public class Preferences {
   public static synchronized void reset(String username) {
     // We might not have been tracking encoded values here before this save. Fix that.
     Preferences.reinitializeEncodedValues();
-    Preferences.saveToFile(Preferences.globalPropertiesFile, Preferences.globalEncodedValues);
+    Preferences.saveToFile(
+        Preferences.globalPropertiesFile,
+        Preferences.globalEncodedValues,
+        Preferences.globalJournal);
     // Prevent anybody from manipulating the user map until we are
     // done bulk-loading it.
     synchronized (Preferences.userValues) {
       if (username == null || username.equals("")) {
         if (Preferences.userPropertiesFile != null) {
-          Preferences.saveToFile(Preferences.userPropertiesFile, Preferences.userEncodedValues);
+          Preferences.saveToFile(
+              Preferences.userPropertiesFile,
+              Preferences.userEncodedValues,
+              Preferences.userJournal);
           Preferences.userPropertiesFile = null;
+          Preferences.setUserJournal(null);
           Preferences.userValues.clear();
           Preferences.userEncodedValues.clear();
+          Preferences.invalidateHandles();
         }
 
         return;
@@ -658,8 +672,10 @@ public class Preferences {
     File file =
         new File(KoLConstants.SETTINGS_LOCATION, Preferences.baseUserName("") + "_prefs.txt");
     Preferences.globalPropertiesFile = file;
+    Preferences.globalJournal = new PreferencesJournal(file);
 
     Properties p = Preferences.loadPreferences(file);
+    int replayed = Preferences.globalJournal.replay(p);
     Preferences.globalValues.clear();
     Preferences.globalEncodedValues.clear();
 
@@ -687,6 +703,13 @@ public class Preferences {
         Preferences.putGlobal(key, value);
       }
     }
+
+    Preferences.invalidateHandles();
+
+    if (replayed > 0) {
+      // Fold the journal into the file
+      Preferences.saveToFile(file, Preferences.globalEncodedValues, Preferences.globalJournal);
+    }
   }
 
   private static void loadUserPreferences(String username) {
@@ -694,6 +717,7 @@ public class Preferences {
         new File(KoLConstants.SETTINGS_LOCATION, Preferences.baseUserName(username) + "_prefs.txt");
     File backupFile =
         new File(KoLConstants.SETTINGS_LOCATION, Preferences.baseUserName(username) + "_prefs.bak");
+    Preferences.setUserJournal(new PreferencesJournal(userPrefsFile));
     Preferences.userPropertiesFile = userPrefsFile;
 
     Properties p = Preferences.loadPreferences(userPrefsFile);
@@ -754,6 +778,10 @@ public class Preferences {
                 + "the failure, and attaching the preferences.");
       }
     }
+
+    // Changes made since the file was last written in full
+    int replayed = Preferences.userJournal.replay(p);
+
     Preferences.userValues.clear();
     Preferences.userEncodedValues.clear();
 
@@ -784,6 +812,23 @@ public class Preferences {
       // System.out.println( "Adding new built-in user setting: " + key );
       Preferences.putUser(key, value);
     }
+
+    Preferences.invalidateHandles();
+
+    if (replayed > 0) {
+      // Fold the journal into the file
+      Preferences.saveToFile(userPrefsFile, Preferences.userEncodedValues, Preferences.userJournal);
+    }
+  }
+
+  private static void setUserJournal(final PreferencesJournal journal) {
+    // A compaction of the previous user's journal checks this before writing anything
+    synchronized (lock) {
+      if (Preferences.userJournal != null) {
+        Preferences.userJournal.close();
+      }
+      Preferences.userJournal = journal;
+    }
   }
 
   private static Properties loadPreferences(File file) {
@@ -819,6 +864,12 @@ public class Preferences {
     return buffer.toString();
   }
 
+  static String encodeName(String name) {
+    StringBuffer buffer = new StringBuffer();
+    Preferences.encodeString(buffer, name);
+    return buffer.toString();
+  }
+
   private static boolean mustTrackEncodedValues() {
     return Preferences.getBoolean("saveSettingsOnSet") && Preferences.saveSettingsToFile;
   }
@@ -955,10 +1006,54 @@ public class Preferences {
         if (trackEncoded) Preferences.userEncodedValues.remove(name);
       }
     }
-    Preferences.maybeSaveToFileAfterUpdating(trackEncoded, name);
+    Preferences.maybeSaveToFileAfterUpdating(trackEncoded, null, name);
     PreferenceListenerRegistry.firePreferenceChanged(name);
   }
 
+  public static IntPref intPref(final String name) {
+    return Preferences.handle(name, IntPref.class, IntPref::new);
+  }
+
+  public static BoolPref boolPref(final String name) {
+    return Preferences.handle(name, BoolPref.class, BoolPref::new);
+  }
+
+  public static DoublePref doublePref(final String name) {
+    return Preferences.handle(name, DoublePref.class, DoublePref::new);
+  }
+
+  /**
+   * Returns the one handle on a preference from defaults.txt, for code which reads it often enough
+   * that looking it up and converting it from a string every time shows.
+   */
+  private static <T extends Pref> T handle(
+      final String name, final Class<T> type, final Function<String, T> make) {
+    if (!Preferences.defaultsSet.contains(name)) {
+      throw new IllegalArgumentException(name + " is not in defaults.txt");
+    }
+
+    Pref handle = Preferences.handles.computeIfAbsent(name, make);
+    if (!type.isInstance(handle)) {
+      throw new IllegalArgumentException(
+          name + " already has a " + handle.getClass().getSimpleName());
+    }
+
+    return type.cast(handle);
+  }
+
+  private static void invalidateHandle(final String name) {
+    Pref handle = Preferences.handles.get(name);
+    if (handle != null) {
+      handle.invalidate();
+    }
+  }
+
+  private static void invalidateHandles() {
+    for (Pref handle : Preferences.handles.values()) {
+      handle.invalidate();
+    }
+  }
+
   public static boolean isGlobalProperty(final String name) {
     return Preferences.globalNames.containsKey(name);
   }
@@ -1256,15 +1351,16 @@ public class Preferences {
 
     // We stop tracking encoded values when saveSettingsOnSet is off. When it is turned back on,
     // many encoded values will be out of date, and we don't know which ones, so we have to
-    // recompute all of them.
+    // recompute all of them, and write them all out.
     if (name == "saveSettingsOnSet" && (boolean) object) {
       Preferences.reinitializeEncodedValues();
-      trackEncoded |= Preferences.saveSettingsToFile;
+      Preferences.put(user, name, object, Preferences.saveSettingsToFile);
+      Preferences.saveAllToFile();
+    } else {
+      Preferences.put(user, name, object, trackEncoded);
+      Preferences.maybeSaveToFileAfterUpdating(trackEncoded, user, name);
     }
 
-    Preferences.put(user, name, object, trackEncoded);
-    Preferences.maybeSaveToFileAfterUpdating(trackEncoded, name);
-
     PreferenceListenerRegistry.firePreferenceChanged(name);
 
     if (name.startsWith("choiceAdventure")) {
@@ -1278,6 +1374,7 @@ public class Preferences {
 
   private static void putGlobal(final String name, final Object value, boolean updateEncoded) {
     Preferences.globalValues.put(name, value);
+    Preferences.invalidateHandle(name);
     if (updateEncoded) {
       Preferences.globalEncodedValues.put(
           name, encodeProperty(name, value.toString()).getBytes(StandardCharsets.UTF_8));
@@ -1290,6 +1387,7 @@ public class Preferences {
 
   private static void putUser(final String name, final Object value, boolean updateEncoded) {
     Preferences.userValues.put(name, value);
+    Preferences.invalidateHandle(name);
     if (updateEncoded) {
       Preferences.userEncodedValues.put(
           name, encodeProperty(name, value.toString()).getBytes(StandardCharsets.UTF_8));
@@ -1306,12 +1404,21 @@ public class Preferences {
     }
   }
 
-  private static void maybeSaveToFileAfterUpdating(boolean enable, String updatedProperty) {
+  private static void maybeSaveToFileAfterUpdating(
+      boolean enable, String user, String updatedProperty) {
     if (enable) {
       if (Preferences.isGlobalProperty(updatedProperty)) {
-        Preferences.saveToFile(Preferences.globalPropertiesFile, Preferences.globalEncodedValues);
+        Preferences.journal(
+            Preferences.globalPropertiesFile,
+            Preferences.globalEncodedValues,
+            Preferences.globalJournal,
+            Preferences.propertyName(user, updatedProperty));
       } else if (Preferences.userPropertiesFile != null) {
-        Preferences.saveToFile(Preferences.userPropertiesFile, Preferences.userEncodedValues);
+        Preferences.journal(
+            Preferences.userPropertiesFile,
+            Preferences.userEncodedValues,
+            Preferences.userJournal,
+            updatedProperty);
       }
     }
   }
@@ -1320,41 +1427,120 @@ public class Preferences {
     return user == null ? name : name + "." + Preferences.baseUserName(user);
   }
 
-  private static void saveToFile(File file, Map<String, byte[]> encodedData) {
-    if (!Preferences.saveSettingsToFile) {
+  private static void saveAllToFile() {
+    Preferences.saveToFile(
+        Preferences.globalPropertiesFile,
+        Preferences.globalEncodedValues,
+        Preferences.globalJournal);
+    if (Preferences.userPropertiesFile != null) {
+      Preferences.saveToFile(
+          Preferences.userPropertiesFile,
+          Preferences.userEncodedValues,
+          Preferences.userJournal);
+    }
+  }
+
+  /**
+   * Records a change to one property in the journal of the file it belongs in, rather than
+   * rewriting the whole file. Once the journal grows large enough, the file is rewritten in the
+   * background.
+   */
+  private static void journal(
+      File file, Map<String, byte[]> encodedData, PreferencesJournal journal, String name) {
+    if (!Preferences.saveSettingsToFile || journal == null) {
       return;
     }
 
-    // See Collections.synchronizedSortedMap
-    //
-    // We are essentially iterating over the map. Not exactly - we
-    // are iterating over the entrySet - but let's keep the map and
-    // the file in synch atomically
+    boolean compact;
 
     synchronized (lock) {
-      // Determine the contents of the file by
-      // actually printing them.
+      try {
+        compact = journal.append(name, encodedData.get(name));
+      } catch (IOException e) {
+        System.out.println(e.getMessage() + " trying to write preferences journal.");
+        compact = false;
+        journal.close();
+      }
+    }
 
-      OutputStream fstream = new BufferedOutputStream(DataUtilities.getOutputStream(file));
+    if (compact && journal.scheduleCompaction()) {
+      RequestThread.runInParallel(
+          () -> {
+            try {
+              Preferences.saveToFile(file, encodedData, journal);
+            } finally {
+              journal.compactionDone();
+            }
+          },
+          false);
+    }
+  }
+
+  /** Writes every property to the file, and empties its journal. */
+  private static void saveToFile(
+      File file, Map<String, byte[]> encodedData, PreferencesJournal journal) {
+    if (!Preferences.saveSettingsToFile || journal == null) {
+      return;
+    }
+
+    synchronized (journal.compactLock) {
+      List<byte[]> contents;
+
+      synchronized (lock) {
+        // The user may have changed since this was asked for
+        if (journal != Preferences.globalJournal && journal != Preferences.userJournal) {
+          return;
+        }
+
+        // See Collections.synchronizedSortedMap
+        //
+        // We are essentially iterating over the map. Not exactly - we
+        // are iterating over the entrySet - but let's take a copy of the
+        // map and set the journal aside atomically
 
-      try {
         synchronized (encodedData) {
-          for (Entry<String, byte[]> current : encodedData.entrySet()) {
-            fstream.write(current.getValue());
-          }
+          contents = new ArrayList<>(encodedData.values());
+        }
+
+        try {
+          journal.setAside();
+        } catch (IOException e) {
+          System.out.println(e.getMessage() + " trying to set preferences journal aside.");
         }
-      } catch (IOException e) {
-        System.out.println(e.getMessage() + " trying to write preferences as byte array.");
       }
 
-      try {
-        fstream.close();
-      } catch (IOException e) {
-        System.out.println(e.getMessage() + " trying to close preferences stream.");
+      if (Preferences.writeToFile(file, contents)) {
+        journal.discardSetAside();
       }
     }
   }
 
+  private static boolean writeToFile(File file, List<byte[]> contents) {
+    // Determine the contents of the file by
+    // actually printing them.
+
+    OutputStream fstream = new BufferedOutputStream(DataUtilities.getOutputStream(file));
+    boolean written = true;
+
+    try {
+      for (byte[] current : contents) {
+        fstream.write(current);
+      }
+    } catch (IOException e) {
+      System.out.println(e.getMessage() + " trying to write preferences as byte array.");
+      written = false;
+    }
+
+    try {
+      fstream.close();
+    } catch (IOException e) {
+      System.out.println(e.getMessage() + " trying to close preferences stream.");
+      written = false;
+    }
+
+    return written;
+  }
+
   public static void resetToDefault(String... names) {
     for (var name : names) {
       if (Preferences.userNames.containsKey(name)) {
@@ -1420,6 +1606,12 @@ public class Preferences {
             // fully delete preferences that start with _ and aren't in defaults.txt
             it.remove();
             userEncodedValues.remove(name);
+            // Otherwise replaying the journal would bring it back
+            Preferences.journal(
+                Preferences.userPropertiesFile,
+                Preferences.userEncodedValues,
+                Preferences.userJournal,
+                name);
             continue;
           }
           String val = Preferences.userNames.get(name);
@@ -0,0 +1,178 @@
+package net.sourceforge.kolmafia.preferences;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import net.sourceforge.kolmafia.KoLConstants;
+
+/**
+ * Changes made to a preferences file since it was last written in full, one record per change, so
+ * that setting a preference appends a line rather than rewriting thousands.
+ *
+ * <p>The journal is itself in properties file format: a change is the encoded <code>name=value
+ * </code> line the preferences file would have, and a removal is a comment naming the property.
+ * Loading a preferences file replays its journal over it. A partial last line, as left by a crash
+ * in the middle of a write, is ignored.
+ *
+ * <p>Compacting writes the preferences file in full and empties the journal. The journal is first
+ * set aside, so that changes made while the file is written go to a new one; the old one is only
+ * deleted once the file has been written, and is replayed before the new one if it is still there.
+ */
+class PreferencesJournal {
+  // A property name never starts with '#', since it would be escaped
+  private static final String REMOVED = "#-";
+
+  static final int COMPACT_RECORDS = 1000;
+  static final long COMPACT_BYTES = 256 * 1024;
+
+  private final File journal;
+  private final File setAside;
+
+  // Guarded by Preferences.lock
+  private OutputStream ostream = null;
+  private int records = 0;
+  private long bytes = 0;
+
+  // Held while compacting, so that only one compaction of this file runs at a time
+  final Object compactLock = new Object();
+  private boolean compactionScheduled = false;
+
+  PreferencesJournal(final File preferences) {
+    String name = preferences.getName();
+    int dot = name.lastIndexOf('.');
+    String base = dot == -1 ? name : name.substring(0, dot);
+
+    this.journal = new File(preferences.getParentFile(), base + ".journal");
+    this.setAside = new File(preferences.getParentFile(), base + ".journal.old");
+  }
+
+  /**
+   * Appends the record for a property, given its encoded line or null if it was removed. Returns
+   * true if the journal has grown enough that it should be compacted.
+   */
+  boolean append(final String name, final byte[] encoded) throws IOException {
+    byte[] record =
+        encoded != null
+            ? encoded
+            : (REMOVED + Preferences.encodeName(name) + KoLConstants.LINE_BREAK)
+                .getBytes(StandardCharsets.UTF_8);
+
+    if (this.ostream == null) {
+      this.ostream = new FileOutputStream(this.journal, true);
+    }
+
+    this.ostream.write(record);
+    this.records++;
+    this.bytes += record.length;
+
+    return this.records >= COMPACT_RECORDS || this.bytes >= COMPACT_BYTES;
+  }
+
+  /** Returns whether a compaction should be scheduled, noting that one has been. */
+  synchronized boolean scheduleCompaction() {
+    if (this.compactionScheduled) {
+      return false;
+    }
+    this.compactionScheduled = true;
+    return true;
+  }
+
+  synchronized void compactionDone() {
+    this.compactionScheduled = false;
+  }
+
+  /**
+   * Starts a new journal, setting the current one aside until the preferences file has been
+   * written. Must be called holding Preferences.lock.
+   */
+  void setAside() throws IOException {
+    this.close();
+
+    if (!this.journal.exists()) {
+      return;
+    }
+
+    if (this.setAside.exists()) {
+      // A previous compaction never finished; keep what it set aside, too
+      Files.write(
+          this.setAside.toPath(),
+          Files.readAllBytes(this.journal.toPath()),
+          StandardOpenOption.APPEND);
+      Files.delete(this.journal.toPath());
+    } else {
+      Files.move(this.journal.toPath(), this.setAside.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  /** Called once the preferences file has everything which was set aside. */
+  void discardSetAside() {
+    this.setAside.delete();
+  }
+
+  void close() {
+    if (this.ostream != null) {
+      try {
+        this.ostream.close();
+      } catch (IOException e) {
+        System.out.println(e.getMessage() + " trying to close preferences journal.");
+      }
+      this.ostream = null;
+    }
+
+    this.records = 0;
+    this.bytes = 0;
+  }
+
+  /** Applies everything journaled to properties loaded from the preferences file. */
+  int replay(final Properties properties) {
+    return PreferencesJournal.replay(this.setAside, properties)
+        + PreferencesJournal.replay(this.journal, properties);
+  }
+
+  private static int replay(final File file, final Properties properties) {
+    if (!file.exists()) {
+      return 0;
+    }
+
+    String text;
+    try {
+      text = Files.readString(file.toPath(), StandardCharsets.ISO_8859_1);
+    } catch (IOException e) {
+      System.out.println(e.getMessage() + " trying to read preferences journal.");
+      return 0;
+    }
+
+    int count = 0;
+    int start = 0;
+    int end;
+
+    while ((end = text.indexOf('\n', start)) != -1) {
+      String line = text.substring(start, end);
+      start = end + 1;
+
+      try {
+        if (line.startsWith(REMOVED)) {
+          Properties removed = new Properties();
+          removed.load(new StringReader(line.substring(REMOVED.length())));
+          for (Object name : removed.keySet()) {
+            properties.remove(name);
+          }
+        } else {
+          properties.load(new StringReader(line));
+        }
+        count++;
+      } catch (IOException | IllegalArgumentException e) {
+        // A damaged record; the rest may still be good
+      }
+    }
+
+    return count;
+  }
+}
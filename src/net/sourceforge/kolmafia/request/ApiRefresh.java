@@ -0,0 +1,197 @@
+package net.sourceforge.kolmafia.request;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import net.sourceforge.kolmafia.preferences.Preferences;
+
+/**
+ * Coalesces refreshes of status, inventory, closet and storage from api.php, which many actions
+ * ask for whether or not anything has happened since the last one.
+ *
+ * <p>A refresh asked for after an action must see its effects, so it is only satisfied by a fetch
+ * which started after every request which might have changed something (see {@link
+ * GenericRequest#getChangeCount}). Such a fetch is shared: a caller joins one already in flight,
+ * or reuses one which finished within the last <code>apiRefreshWindow</code> milliseconds. A
+ * caller which arrives while an older fetch is in flight waits for it and then starts a new one,
+ * which everyone else who arrived in the meantime shares.
+ */
+public class ApiRefresh {
+  public enum Kind {
+    STATUS,
+    INVENTORY,
+    CLOSET,
+    STORAGE
+  }
+
+  private static final Map<Kind, ApiRefresh> REFRESHES = new EnumMap<>(Kind.class);
+
+  static {
+    for (Kind kind : Kind.values()) {
+      ApiRefresh.REFRESHES.put(kind, new ApiRefresh(kind));
+    }
+  }
+
+  private final Kind kind;
+
+  // Guarded by this
+  private boolean inFlight = false;
+  private long inFlightChanges = 0;
+  private long completed = 0;
+  private boolean lastOK = false;
+  private long lastChanges = -1;
+  private long lastTime = 0;
+  private String lastResult = null;
+
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicLong fetched = new AtomicLong();
+  private final AtomicLong joined = new AtomicLong();
+  private final AtomicLong reused = new AtomicLong();
+
+  private ApiRefresh(final Kind kind) {
+    this.kind = kind;
+  }
+
+  public static ApiRefresh get(final Kind kind) {
+    return ApiRefresh.REFRESHES.get(kind);
+  }
+
+  /**
+   * Returns the redirect location of a fetch which saw everything done so far, running the given
+   * request to make one if need be. Unless forced, a recent fetch which nothing has happened since
+   * is reused.
+   */
+  public String refresh(final boolean force, final Supplier<GenericRequest> fetch) {
+    this.requested.incrementAndGet();
+
+    long asked = GenericRequest.getChangeCount();
+    long started;
+
+    synchronized (this) {
+      while (true) {
+        if (!force
+            && this.lastOK
+            && this.lastChanges >= asked
+            && System.currentTimeMillis() - this.lastTime
+                <= Preferences.getInteger("apiRefreshWindow")) {
+          this.reused.incrementAndGet();
+          return this.lastResult;
+        }
+
+        if (this.inFlight && this.inFlightChanges >= asked) {
+          // Someone else already started the fetch we need
+          long target = this.completed + 1;
+          while (this.completed < target && this.waitForFetch()) {}
+          this.joined.incrementAndGet();
+          return this.lastResult;
+        }
+
+        if (!this.inFlight) {
+          break;
+        }
+
+        // The fetch in flight started too soon to see what we did; wait for it to finish
+        if (!this.waitForFetch()) {
+          return this.lastResult;
+        }
+      }
+
+      this.inFlight = true;
+      this.inFlightChanges = GenericRequest.getChangeCount();
+      started = this.inFlightChanges;
+    }
+
+    GenericRequest request = null;
+    try {
+      // Only one api.php refresh of any kind runs at a time, as before
+      synchronized (ApiRequest.class) {
+        request = fetch.get();
+      }
+      this.fetched.incrementAndGet();
+    } finally {
+      synchronized (this) {
+        this.inFlight = false;
+        this.lastOK =
+            request != null && (request.responseText != null || request.redirectLocation != null);
+        this.lastChanges = started;
+        this.lastTime = System.currentTimeMillis();
+        this.lastResult = request == null ? null : request.redirectLocation;
+        this.completed++;
+        this.notifyAll();
+      }
+    }
+
+    return request.redirectLocation;
+  }
+
+  private boolean waitForFetch() {
+    try {
+      this.wait();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /** Forgets the last fetch, so that the next refresh goes to the server. */
+  public synchronized void invalidate() {
+    this.lastOK = false;
+  }
+
+  public static void invalidateAll() {
+    for (ApiRefresh refresh : ApiRefresh.REFRESHES.values()) {
+      refresh.invalidate();
+    }
+  }
+
+  public static void resetMetrics() {
+    for (ApiRefresh refresh : ApiRefresh.REFRESHES.values()) {
+      refresh.requested.set(0);
+      refresh.fetched.set(0);
+      refresh.joined.set(0);
+      refresh.reused.set(0);
+    }
+  }
+
+  public long getRequested() {
+    return this.requested.get();
+  }
+
+  public long getFetched() {
+    return this.fetched.get();
+  }
+
+  /** Returns how many refreshes were answered without a request of their own. */
+  public long getSaved() {
+    return this.joined.get() + this.reused.get();
+  }
+
+  public static String getMetricsHTMLTable() {
+    StringBuilder buffer = new StringBuilder();
+    buffer.append("<table border=2 cols=6>");
+    buffer.append(
+        "<tr><td>Refresh</td><td>Asked</td><td>Fetched</td><td>Joined</td><td>Reused</td>"
+            + "<td>Saved</td></tr>");
+
+    for (ApiRefresh refresh : ApiRefresh.REFRESHES.values()) {
+      buffer.append("<tr><td>");
+      buffer.append(refresh.kind.name().toLowerCase());
+      buffer.append("</td><td>");
+      buffer.append(refresh.requested.get());
+      buffer.append("</td><td>");
+      buffer.append(refresh.fetched.get());
+      buffer.append("</td><td>");
+      buffer.append(refresh.joined.get());
+      buffer.append("</td><td>");
+      buffer.append(refresh.reused.get());
+      buffer.append("</td><td>");
+      buffer.append(refresh.getSaved());
+      buffer.append("</td></tr>");
+    }
+
+    buffer.append("</table>");
+    return buffer.toString();
+  }
+}
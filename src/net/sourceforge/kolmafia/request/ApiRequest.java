@@ -61,15 +61,29 @@ public class ApiRequest extends GenericRequest {
     return ApiRequest.updateStatus(false);
   }
 
+  public static String updateStatus(final boolean silent) {
+    return ApiRequest.updateStatus(silent, false);
+  }
+
   private static final AdventureResult TRANSFUNCTIONER = ItemPool.get(ItemPool.TRANSFUNCTIONER);
 
-  public static synchronized String updateStatus(final boolean silent) {
+  /**
+   * Refreshes character status. Unless forced, this may be answered by a refresh which is already
+   * under way or which has just finished, if no request has been sent since which could have
+   * changed anything.
+   */
+  public static String updateStatus(final boolean silent, final boolean force) {
     // api.php doesn't work at all in Valhalla
     if (CharPaneRequest.inValhalla()) {
       ApiRequest.updateStatusFromCharpane();
       return "afterlife.php";
     }
 
+    return ApiRefresh.get(ApiRefresh.Kind.STATUS)
+        .refresh(force, () -> ApiRequest.fetchStatus(silent));
+  }
+
+  private static GenericRequest fetchStatus(final boolean silent) {
     // If in certain LimitModes, Noobcore, PokeFam, and Disguises Delimit, API
     // status is incomplete, so use Character Pane instead.
 
@@ -77,18 +91,24 @@ public class ApiRequest extends GenericRequest {
         || KoLCharacter.inNoobcore()
         || KoLCharacter.inPokefam()
         || KoLCharacter.inDisguise()) {
-      return ApiRequest.updateStatusFromCharpane();
+      ApiRequest.CHARPANE.run();
+      return ApiRequest.CHARPANE;
     }
 
     // Similarly, if you have the continuum transfunctioner equipped,
     // the Character Pane shows you your (8-bit) Score
     if (KoLCharacter.hasEquipped(TRANSFUNCTIONER)) {
-      return ApiRequest.updateStatusFromCharpane();
+      ApiRequest.CHARPANE.run();
+      return ApiRequest.CHARPANE;
     }
 
-    ApiRequest.INSTANCE.silent = silent;
-    ApiRequest.INSTANCE.run();
-    return ApiRequest.INSTANCE.redirectLocation;
+    return ApiRequest.fetch(ApiRequest.INSTANCE, silent);
+  }
+
+  private static GenericRequest fetch(final ApiRequest request, final boolean silent) {
+    request.silent = silent;
+    request.run();
+    return request;
   }
 
   public static String updateStatusFromCharpane() {
@@ -100,30 +120,31 @@ public class ApiRequest extends GenericRequest {
     return ApiRequest.updateInventory(false);
   }
 
-  public static synchronized String updateInventory(final boolean silent) {
-    ApiRequest.INVENTORY.silent = silent;
-    ApiRequest.INVENTORY.run();
-    return ApiRequest.INVENTORY.redirectLocation;
+  public static String updateInventory(final boolean silent) {
+    return ApiRequest.updateInventory(silent, false);
+  }
+
+  public static String updateInventory(final boolean silent, final boolean force) {
+    return ApiRefresh.get(ApiRefresh.Kind.INVENTORY)
+        .refresh(force, () -> ApiRequest.fetch(ApiRequest.INVENTORY, silent));
   }
 
   public static String updateCloset() {
     return ApiRequest.updateCloset(false);
   }
 
-  public static synchronized String updateCloset(final boolean silent) {
-    ApiRequest.CLOSET.silent = silent;
-    ApiRequest.CLOSET.run();
-    return ApiRequest.CLOSET.redirectLocation;
+  public static String updateCloset(final boolean silent) {
+    return ApiRefresh.get(ApiRefresh.Kind.CLOSET)
+        .refresh(false, () -> ApiRequest.fetch(ApiRequest.CLOSET, silent));
   }
 
   public static String updateStorage() {
     return ApiRequest.updateStorage(false);
   }
 
-  public static synchronized String updateStorage(final boolean silent) {
-    ApiRequest.STORAGE.silent = silent;
-    ApiRequest.STORAGE.run();
-    return ApiRequest.STORAGE.redirectLocation;
+  public static String updateStorage(final boolean silent) {
+    return ApiRefresh.get(ApiRefresh.Kind.STORAGE)
+        .refresh(false, () -> ApiRequest.fetch(ApiRequest.STORAGE, silent));
   }
 
   @Override
@@ -131,6 +152,11 @@ public class ApiRequest extends GenericRequest {
     return true;
   }
 
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
   @Override
   public void run() {
     String message =
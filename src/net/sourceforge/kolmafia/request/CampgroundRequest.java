@@ -940,6 +940,14 @@ public class CampgroundRequest extends GenericRequest {
     return action != null && (action.equals("workshed") || action.equals("terminal"));
   }
 
+  @Override
+  public boolean isReadOnly() {
+    return this.action != null
+        && (this.action.equals("inspectdwelling")
+            || this.action.equals("inspectkitchen")
+            || this.action.equals("workshed"));
+  }
+
   public static void handleCinchoRest(final String responseText) {
     var m = CINCHO_LOOSEN_PATTERN.matcher(responseText);
     if (m.find()) {
@@ -59,6 +59,11 @@ public class CharSheetRequest extends GenericRequest {
     return true;
   }
 
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
   @Override
   public String getHashField() {
     return null;
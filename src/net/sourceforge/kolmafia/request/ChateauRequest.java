@@ -60,6 +60,11 @@ public class ChateauRequest extends PlaceRequest {
     KoLConstants.chateau.clear();
   }
 
+  @Override
+  public boolean isReadOnly() {
+    return this.getFormField("action") == null;
+  }
+
   public static void refresh() {
     ChateauRequest.reset();
     if (ChateauRequest.chateauAvailable()) {
@@ -152,6 +152,11 @@ public class ClosetRequest extends TransferItemRequest {
     return true;
   }
 
+  @Override
+  public boolean isReadOnly() {
+    return this.moveType == ClosetRequestType.REFRESH;
+  }
+
   public ClosetRequestType getMoveType() {
     return this.moveType;
   }
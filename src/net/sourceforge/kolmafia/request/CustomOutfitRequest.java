@@ -38,6 +38,11 @@ public class CustomOutfitRequest extends GenericRequest {
     return true;
   }
 
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
   // <option value='-398'>Your Previous Outfit</option>
   private static final Pattern PREVIOUS_OUTFIT_PATTERN =
       Pattern.compile("<option value='(-\\d+)'>Your Previous Outfit</option>");
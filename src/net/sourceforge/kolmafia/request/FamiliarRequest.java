@@ -139,6 +139,11 @@ public class FamiliarRequest extends GenericRequest {
     return !this.locking;
   }
 
+  @Override
+  public boolean isReadOnly() {
+    return this.getFormField("action") == null;
+  }
+
   @Override
   public void run() {
     if (GenericRequest.abortIfInFightOrChoice()) {
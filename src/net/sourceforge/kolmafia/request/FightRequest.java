@@ -74,6 +74,7 @@ import net.sourceforge.kolmafia.session.BatManager;
 import net.sourceforge.kolmafia.session.BugbearManager;
 import net.sourceforge.kolmafia.session.BugbearManager.Bugbear;
 import net.sourceforge.kolmafia.session.ClanManager;
+import net.sourceforge.kolmafia.session.CombatSession;
 import net.sourceforge.kolmafia.session.ConsequenceManager;
 import net.sourceforge.kolmafia.session.CrystalBallManager;
 import net.sourceforge.kolmafia.session.CursedMagnifyingGlassManager;
@@ -164,7 +165,6 @@ public class FightRequest extends GenericRequest {
   public static boolean waitingForSpecial;
 
   public static String lastResponseText = "";
-  public static String lastDecoratedResponseText = "";
   public static String currentEncounter = "";
   private static boolean transformed = false;
   private static boolean haveFought = false;
@@ -1786,13 +1786,16 @@ public class FightRequest extends GenericRequest {
       final String urlString, final String encounter, String responseText) {
     responseText = FightRequest.removeGothy(responseText);
     responseText = FightRequest.removeWordReplacements(responseText);
+    if (FightRequest.currentRound == 0) {
+      CombatSession.begin();
+    }
     FightRequest.updateCombatData(urlString, encounter, responseText);
     FightRequest.parseCombatItems(responseText);
     FightRequest.parseAvailableCombatSkills(responseText);
 
     // Now that we have processed the page, generated the decorated HTML
-    FightRequest.lastDecoratedResponseText =
-        RequestEditorKit.getFeatureRichHTML("fight.php", responseText);
+    CombatSession.publish(
+        FightRequest.currentRound, RequestEditorKit.getFeatureRichHTML("fight.php", responseText));
 
     return FightRequest.shouldRefresh;
   }
@@ -10793,6 +10796,11 @@ public class FightRequest extends GenericRequest {
     return 0;
   }
 
+  /** Returns the decorated page from the most recently processed round. */
+  public static String getLastDecoratedResponseText() {
+    return CombatSession.getDecoratedText();
+  }
+
   public static final int getCurrentRound() {
     return FightRequest.currentRound;
   }
@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -79,12 +80,13 @@ import net.sourceforge.kolmafia.session.ValhallaManager;
 import net.sourceforge.kolmafia.swingui.RequestSynchFrame;
 import net.sourceforge.kolmafia.textui.ScriptRuntime;
 import net.sourceforge.kolmafia.textui.parsetree.Value;
-import net.sourceforge.kolmafia.utilities.ByteBufferUtilities;
 import net.sourceforge.kolmafia.utilities.FileUtilities;
+import net.sourceforge.kolmafia.utilities.HttpMetrics;
 import net.sourceforge.kolmafia.utilities.HttpUtilities;
 import net.sourceforge.kolmafia.utilities.InputFieldUtilities;
 import net.sourceforge.kolmafia.utilities.PauseObject;
 import net.sourceforge.kolmafia.utilities.ResettingHttpClient;
+import net.sourceforge.kolmafia.utilities.ResponseBody;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 import net.sourceforge.kolmafia.webui.RelayAgent;
 import net.sourceforge.kolmafia.webui.RelayServer;
@@ -159,6 +161,12 @@ public class GenericRequest implements Runnable {
   private static ResettingHttpClient client;
   private HttpRequest request;
   protected HttpResponse<InputStream> response;
+  private long sendStarted;
+  private HttpMetrics.CountingInputStream wireStream;
+
+  // How many requests which might change something have been sent
+  private static final AtomicLong changeCount = new AtomicLong();
+  protected ResponseBody responseBody;
 
   // Per-login data
 
@@ -203,6 +211,9 @@ public class GenericRequest implements Runnable {
     if (GenericRequest.client != null) {
       GenericRequest.client.resetClient();
     }
+
+    // Whatever was fetched with the old client may not describe the new session
+    ApiRefresh.invalidateAll();
   }
 
   private Builder getRequestBuilder(URI uri) {
@@ -1576,6 +1587,10 @@ public class GenericRequest implements Runnable {
     }
 
     try {
+      if (!this.isReadOnly()) {
+        GenericRequest.changeCount.incrementAndGet();
+      }
+      this.sendStarted = System.nanoTime();
       response = getClient().send(request, BodyHandlers.ofInputStream());
       return false;
     } catch (SocketTimeoutException | InterruptedException e) {
@@ -1590,6 +1605,9 @@ public class GenericRequest implements Runnable {
       }
 
       ++this.timeoutCount;
+      if (shouldRetry) {
+        HttpMetrics.recordRetry();
+      }
       return !shouldRetry || KoLmafia.refusesContinue();
     } catch (IOException e) {
       String errorMessage = e.getMessage();
@@ -1608,6 +1626,7 @@ public class GenericRequest implements Runnable {
               || errorMessage.contains("parser received no bytes"))) {
         ++this.timeoutCount;
         if (this.timeoutCount < TIMEOUT_LIMIT && this.retryOnTimeout()) {
+          HttpMetrics.recordRetry();
           return this.sendRequest();
         }
       }
@@ -1617,6 +1636,22 @@ public class GenericRequest implements Runnable {
     }
   }
 
+  /**
+   * Returns true if this request only looks at the state of the character or the game and changes
+   * nothing, so that sending it leaves whatever was fetched before it current.
+   */
+  public boolean isReadOnly() {
+    return this.isDescRequest;
+  }
+
+  /**
+   * Returns how many requests which are not read only have been sent, so that anything fetched
+   * since the count last changed is known to be current.
+   */
+  public static long getChangeCount() {
+    return GenericRequest.changeCount.get();
+  }
+
   /**
    * Utility method used to retrieve the server's reply. This method detects the nature of the reply
    * via the response code provided by the server, and also detects the unusual states of server
@@ -1633,10 +1668,12 @@ public class GenericRequest implements Runnable {
     }
 
     this.responseText = "";
+    this.responseBody = null;
 
     this.responseCode = response.statusCode();
 
-    istream = response.body();
+    this.wireStream = HttpMetrics.count(response.body());
+    istream = this.wireStream;
     var encoding = response.headers().firstValue("Content-Encoding").orElse("");
     if ("gzip".equals(encoding)) {
       try {
@@ -1732,6 +1769,8 @@ public class GenericRequest implements Runnable {
         shouldStop = this.retrieveServerReply(istream);
         istream.close();
       } else {
+        this.recordMetrics(0);
+
         if (this.responseCode == 504
             && (this.baseURLString.equals("storage.php")
                 || this.baseURLString.equals("inventory.php"))
@@ -1768,6 +1807,27 @@ public class GenericRequest implements Runnable {
     return shouldStop || KoLmafia.refusesContinue();
   }
 
+  private void recordMetrics(final long decodedLength) {
+    if (this.wireStream == null) {
+      return;
+    }
+
+    long bytesOut = this.formURLString.length();
+    if (!this.data.isEmpty() && this.dataString != null) {
+      bytesOut += this.dataString.length;
+    }
+
+    long bytesIn = this.wireStream.getCount();
+    this.wireStream = null;
+
+    HttpMetrics.recordRequest(
+        this.getBasePath(),
+        System.nanoTime() - this.sendStarted,
+        bytesOut,
+        bytesIn,
+        decodedLength);
+  }
+
   private static void forceClose(final InputStream stream) {
     if (stream != null) {
       try {
@@ -2088,6 +2148,14 @@ public class GenericRequest implements Runnable {
     return true;
   }
 
+  /**
+   * Whether the bytes of the response should be kept alongside the response text. Only requests
+   * which might pass the response on unchanged need them.
+   */
+  protected boolean shouldKeepResponseBytes() {
+    return false;
+  }
+
   protected boolean shouldFollowRedirect() {
     return this.getClass() == GenericRequest.class;
   }
@@ -2097,7 +2165,9 @@ public class GenericRequest implements Runnable {
       RequestLogger.updateDebugLog("Retrieving server reply");
     }
 
-    this.responseText = new String(ByteBufferUtilities.read(istream), StandardCharsets.UTF_8);
+    this.responseBody = ResponseBody.read(istream, this.shouldKeepResponseBytes());
+    this.responseText = this.responseBody.getText();
+    this.recordMetrics(this.responseBody.getLength());
 
     if (this.responseCode == 200 && RequestLogger.isTracing()) {
       String buffer =
@@ -21,6 +21,13 @@ public class MallSearchRequest extends GenericRequest {
   private final int storeId;
   private List<PurchaseRequest> results;
 
+  // When fetching a single page of results, how many results come before it
+  private int pageStart = -1;
+
+  // As reported by the last page of results fetched
+  private int pageSize = 0;
+  private int totalResults = 0;
+
   public MallSearchRequest(final int storeId) {
     super("mallstore.php");
     this.addFormField("whichstore", String.valueOf(storeId));
@@ -151,6 +158,22 @@ public class MallSearchRequest extends GenericRequest {
     this.results = results;
   }
 
+  /**
+   * Fetches only the page of results which follows the given number of results, rather than every
+   * page, so that the pages of a large search can be fetched separately.
+   */
+  public void setPageStart(final int start) {
+    this.pageStart = start;
+  }
+
+  public int getPageSize() {
+    return this.pageSize;
+  }
+
+  public int getTotalResults() {
+    return this.totalResults;
+  }
+
   // *** For testing
   public void setSearchString(final String searchString) {
     this.searchString = searchString;
@@ -188,6 +211,11 @@ public class MallSearchRequest extends GenericRequest {
       items = true;
     }
 
+    if (this.pageStart >= 0) {
+      this.runPage();
+      return;
+    }
+
     // We may need to iterate over multiple pages of search results
     this.removeFormField("start");
 
@@ -206,22 +234,13 @@ public class MallSearchRequest extends GenericRequest {
         return;
       }
 
-      Matcher matcher = MallSearchRequest.ITERATION_PATTERN.matcher(this.responseText);
-      if (!matcher.find()) {
-        break;
-      }
-
-      int start = StringUtilities.parseInt(matcher.group(1));
-      int end = StringUtilities.parseInt(matcher.group(2));
-      int total = StringUtilities.parseInt(matcher.group(3));
-
-      if (end >= total) {
+      int end = this.parseIteration();
+      if (end >= this.totalResults) {
         break;
       }
 
       if (limit == 0) {
-        int size = (end - start) + 1;
-        limit = (total + size - 1) / size;
+        limit = (this.totalResults + this.pageSize - 1) / this.pageSize;
       }
 
       this.addFormField("start", String.valueOf(end));
@@ -234,6 +253,37 @@ public class MallSearchRequest extends GenericRequest {
     KoLmafia.updateDisplay("Search complete.");
   }
 
+  private void runPage() {
+    if (this.pageStart > 0) {
+      this.addFormField("start", String.valueOf(this.pageStart));
+    } else {
+      this.removeFormField("start");
+    }
+
+    super.run();
+
+    if (this.responseText != null) {
+      this.parseIteration();
+    }
+  }
+
+  // Notes the page size and total results, and returns the number of the last result on the page.
+  // With only one page, there is no iteration to find, and the page is all there is.
+  private int parseIteration() {
+    Matcher matcher = MallSearchRequest.ITERATION_PATTERN.matcher(this.responseText);
+    if (!matcher.find()) {
+      this.pageSize = 0;
+      this.totalResults = 0;
+      return 0;
+    }
+
+    int start = StringUtilities.parseInt(matcher.group(1));
+    int end = StringUtilities.parseInt(matcher.group(2));
+    this.pageSize = (end - start) + 1;
+    this.totalResults = StringUtilities.parseInt(matcher.group(3));
+    return end;
+  }
+
   // Public for access from tests.
   public void maybeUpdateMallPrice() {
     // If an exact match, we can think about updating mall_price().
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -73,11 +74,14 @@ import net.sourceforge.kolmafia.session.TurnCounter;
 import net.sourceforge.kolmafia.session.VoteMonsterManager;
 import net.sourceforge.kolmafia.swingui.AdventureFrame;
 import net.sourceforge.kolmafia.swingui.CommandDisplayFrame;
-import net.sourceforge.kolmafia.utilities.ByteBufferUtilities;
 import net.sourceforge.kolmafia.utilities.FileUtilities;
+import net.sourceforge.kolmafia.utilities.HttpMetrics;
 import net.sourceforge.kolmafia.utilities.PauseObject;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 import net.sourceforge.kolmafia.utilities.WikiUtilities;
+import net.sourceforge.kolmafia.webui.CharPaneUpdates;
+import net.sourceforge.kolmafia.webui.DecoratorMetrics;
+import net.sourceforge.kolmafia.webui.RelayAssetCache;
 import net.sourceforge.kolmafia.webui.RelayServer;
 import net.sourceforge.kolmafia.webui.StationaryButtonDecorator;
 import org.json.JSONObject;
@@ -106,6 +110,9 @@ public class RelayRequest extends PasswordHashRequest {
   public Set<ServerCookie> serverCookies = null;
   public String cookies = null;
   public byte[] rawByteBuffer = null;
+  public ByteBuffer mappedByteBuffer = null;
+  public String ifNoneMatch = null;
+  public boolean acceptsGzip = false;
   public String contentType = null;
   public long lastModified = 0;
   public String statusLine = "HTTP/1.1 302 Found";
@@ -207,6 +214,8 @@ public class RelayRequest extends PasswordHashRequest {
     super.constructURLString(newURLString, usePostMethod, encoded);
 
     this.rawByteBuffer = null;
+    this.mappedByteBuffer = null;
+    this.responseBody = null;
     this.headers.clear();
 
     String path = this.getBasePath();
@@ -329,7 +338,7 @@ public class RelayRequest extends PasswordHashRequest {
     String text = null;
 
     if (path.startsWith("fight.php")) {
-      text = FightRequest.lastDecoratedResponseText;
+      text = FightRequest.getLastDecoratedResponseText();
     } else if (path.startsWith("choice.php")) {
       text = ChoiceManager.lastDecoratedResponseText;
     }
@@ -420,7 +429,29 @@ public class RelayRequest extends PasswordHashRequest {
         responseBuffer, "frames.length == 0", "frames.length == -1");
     StringUtilities.globalStringReplace(responseBuffer, " name=adv ", " name=snarfblat ");
 
-    this.responseText = responseBuffer.toString();
+    // If nothing changed, keep the same text so the bytes KoL sent can be passed through
+    if (!text.contentEquals(responseBuffer)) {
+      this.responseText = responseBuffer.toString();
+    } else {
+      this.responseText = text;
+    }
+  }
+
+  @Override
+  protected boolean shouldKeepResponseBytes() {
+    return true;
+  }
+
+  /**
+   * Returns the bytes KoL sent, provided the response text has not been decorated or otherwise
+   * replaced since they were read. Otherwise, returns null.
+   */
+  public byte[] getUnmodifiedResponseBytes() {
+    if (this.responseBody == null || this.responseText != this.responseBody.getText()) {
+      return null;
+    }
+
+    return this.responseBody.getBytes();
   }
 
   public void printHeaders(final PrintStream ostream) {
@@ -456,7 +487,8 @@ public class RelayRequest extends PasswordHashRequest {
         // Just in case, use this key even when using equals
         String ukey = key.toUpperCase();
 
-        // We redo the Content-Type and Content-Length encodings, and ignore Content-Encoding.
+        // We redo the Content-Type encoding, and ignore Content-Encoding. The relay agent sends
+        // the Content-Length of what it actually sends.
         if (ukey.startsWith("CONTENT")) {
           continue;
         }
@@ -494,10 +526,6 @@ public class RelayRequest extends PasswordHashRequest {
         }
 
         ostream.println();
-
-        ostream.print("Content-Length: ");
-        ostream.print(this.rawByteBuffer.length);
-        ostream.println();
       }
     }
   }
@@ -644,6 +672,7 @@ public class RelayRequest extends PasswordHashRequest {
   }
 
   public static void clearImageCache() {
+    RelayAssetCache.clear();
     RelayRequest.clearImageDirectory(KoLConstants.IMAGE_LOCATION, RELAYIMAGES_FILTER);
     Preferences.setLong("lastImageCacheClear", (new Date()).getTime());
   }
@@ -663,19 +692,56 @@ public class RelayRequest extends PasswordHashRequest {
   }
 
   private void sendLocalImage(final String filename) {
-    File imageFile = FileUtilities.downloadImage(RelayRequest.localImagePath(filename));
+    RelayAssetCache.Asset asset = RelayAssetCache.getIfFresh(RelayRequest.findLocalImage(filename));
+
+    if (asset == null) {
+      File imageFile = FileUtilities.downloadImage(RelayRequest.localImagePath(filename));
+      asset = RelayAssetCache.get(imageFile);
+    }
 
-    if (imageFile == null) {
+    if (asset == null) {
       this.sendNotFound();
       return;
     }
 
-    this.lastModified = imageFile.lastModified();
-    this.rawByteBuffer = ByteBufferUtilities.read(imageFile);
     this.headers.add("Access-Control-Allow-Origin: *");
+    this.sendAsset(asset);
+  }
+
+  private void sendAsset(final RelayAssetCache.Asset asset) {
+    byte[] gzipped = this.acceptsGzip ? asset.getGzippedBytes() : null;
+
+    this.lastModified = asset.getLastModified();
+    this.headers.add("ETag: " + (gzipped != null ? asset.getGzippedETag() : asset.getETag()));
+    if (asset.getGzippedBytes() != null) {
+      this.headers.add("Vary: Accept-Encoding");
+    }
+
+    if (asset.matches(this.ifNoneMatch)) {
+      this.pseudoResponse("HTTP/1.1 304 Not Modified", "");
+      this.responseCode = 304;
+      return;
+    }
+
+    if (gzipped != null) {
+      this.headers.add("Content-Encoding: gzip");
+      this.rawByteBuffer = gzipped;
+    } else if (asset.getBytes() != null) {
+      this.rawByteBuffer = asset.getBytes();
+    } else {
+      this.mappedByteBuffer = asset.getMappedBuffer();
+    }
+
     this.pseudoResponse("HTTP/1.1 200 OK", "");
   }
 
+  // Files which are sent exactly as they are in the relay directory
+  private boolean isStaticRelayFile(final String filename) {
+    return !RelayRequest.builtinRelayFile(filename)
+        && !this.isChatRequest
+        && !filename.endsWith("chat.html");
+  }
+
   public static File findRelayFile(final String filename) {
     if ((filename == null) || (filename.contains(".."))) {
       return null;
@@ -685,6 +751,18 @@ public class RelayRequest extends PasswordHashRequest {
   }
 
   private void sendLocalFile(final String filename) {
+    boolean isStatic = this.isStaticRelayFile(filename);
+
+    if (isStatic) {
+      // Sent recently, so it is known to be in the relay directory
+      File cached = RelayRequest.overrideMap.get(filename);
+      RelayAssetCache.Asset asset = cached == null ? null : RelayAssetCache.getIfFresh(cached);
+      if (asset != null) {
+        this.sendAsset(asset);
+        return;
+      }
+    }
+
     if (!RelayRequest.overrideMap.containsKey(filename)) {
       RelayRequest.overrideMap.put(filename, RelayRequest.findRelayFile(filename));
     }
@@ -707,6 +785,14 @@ public class RelayRequest extends PasswordHashRequest {
     } catch (IOException e) {
     }
 
+    if (isStatic && override.exists()) {
+      RelayAssetCache.Asset asset = RelayAssetCache.get(override);
+      if (asset != null) {
+        this.sendAsset(asset);
+        return;
+      }
+    }
+
     // Read the file
     StringBuffer replyBuffer;
 
@@ -3179,8 +3265,28 @@ public class RelayRequest extends PasswordHashRequest {
     } else if (path.endsWith("logout")) {
       submitCommand("logout");
       this.pseudoResponse("HTTP/1.1 302 Found", "/loggedout.php");
+    } else if (path.endsWith("charpaneUpdates")) {
+      // The relay agent waits for changes without holding a thread; anything else which asks
+      // gets what has changed so far straight away.
+      CharPaneUpdates.start();
+      this.contentType = "application/json";
+      this.pseudoResponse(
+          "HTTP/1.1 200 OK",
+          CharPaneUpdates.changesSince(StringUtilities.parseLong(this.getFormField("since")))
+              .toString());
     } else if (path.endsWith("messageUpdate")) {
       this.pseudoResponse("HTTP/1.1 200 OK", RelayServer.getNewStatusMessages());
+    } else if (path.endsWith("httpMetrics")) {
+      this.contentType = "text/html";
+      this.pseudoResponse(
+          "HTTP/1.1 200 OK",
+          "<html><head><title>HTTP Metrics</title></head><body>"
+              + HttpMetrics.getHTMLTable()
+              + "<p>"
+              + RelayServer.getAgentTable()
+              + "<p>"
+              + DecoratorMetrics.getHTMLTable()
+              + "</body></html>");
     } else if (path.endsWith("lookupLocation")) {
       RelayRequest.lastSafety =
           AdventureDatabase.getAdventureByURL(
@@ -3295,11 +3401,9 @@ public class RelayRequest extends PasswordHashRequest {
     // If the browser's lchat is paused, we pause too.
     ChatPoller.pauseChat(paused, false);
 
-    List<HistoryEntry> chatMessages;
-    synchronized (lock) {
-      ChatPoller.serverPolled();
-      chatMessages = ChatPoller.getEntries(lastSeen, true, paused);
-    }
+    // ChatPoller makes one poll of KoL at a time itself
+    ChatPoller.serverPolled();
+    List<HistoryEntry> chatMessages = ChatPoller.getEntries(lastSeen, true, paused);
 
     StringBuilder chatResponse = new StringBuilder();
     boolean needsLineBreak = false;
@@ -20,6 +20,7 @@ import net.sourceforge.kolmafia.KoLConstants;
 import net.sourceforge.kolmafia.RequestLogger;
 import net.sourceforge.kolmafia.StaticEntity;
 import net.sourceforge.kolmafia.objectpool.EffectPool;
+import net.sourceforge.kolmafia.persistence.DatabaseInitializer;
 import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.request.GenericRequest;
 import net.sourceforge.kolmafia.utilities.ChoiceUtilities;
@@ -550,7 +551,15 @@ public abstract class BastilleBattalionManager {
 
   // ***  Data File: Style Set -> Stats
 
-  private static final Map<Integer, Stats> styleSetToStats = new TreeMap<>();
+  // Loaded the first time a prediction is needed
+  private static class StyleSets {
+    private static final Map<Integer, Stats> styleSetToStats = new TreeMap<>();
+
+    static {
+      DatabaseInitializer.loadOnDemand("bastille", BastilleBattalionManager::readStyleSets);
+      assert styleSetToStats.size() == 81;
+    }
+  }
 
   private static final String BASTILLE_FILE_NAME = "bastille.txt";
   private static final int BASTILLE_FILE_VERSION = 1;
@@ -558,7 +567,7 @@ public abstract class BastilleBattalionManager {
   // Load data file
 
   private static void readStyleSets() {
-    styleSetToStats.clear();
+    StyleSets.styleSetToStats.clear();
 
     try (BufferedReader reader =
         FileUtilities.getVersionedReader(BASTILLE_FILE_NAME, BASTILLE_FILE_VERSION)) {
@@ -571,7 +580,7 @@ public abstract class BastilleBattalionManager {
 
         int key = StringUtilities.parseInt(data[0]) - 1;
 
-        if (styleSetToStats.containsKey(key)) {
+        if (StyleSets.styleSetToStats.containsKey(key)) {
           // Should be impossible.
           continue;
         }
@@ -593,7 +602,7 @@ public abstract class BastilleBattalionManager {
 
         Stats stats = new Stats(MA, MD, CA, CD, PA, PD);
 
-        styleSetToStats.put(key, stats);
+        StyleSets.styleSetToStats.put(key, stats);
       }
     } catch (IOException e) {
       StaticEntity.printStackTrace(e);
@@ -606,7 +615,7 @@ public abstract class BastilleBattalionManager {
     Collection<Style> styleSet = keyToStyleSet(key);
     Style[] styles = styleSetToArray(styleSet);
     assert styles.length == 4;
-    Stats stats = styleSetToStats.get(key);
+    Stats stats = StyleSets.styleSetToStats.get(key);
     return joinFields(
         "\t",
         String.valueOf(key + 1),
@@ -633,11 +642,6 @@ public abstract class BastilleBattalionManager {
     }
   }
 
-  static {
-    readStyleSets();
-    assert styleSetToStats.size() == 81;
-  }
-
   // *** Cached state. Resets when you visit the Bastille Battalion control rig
 
   private static final Map<Upgrade, Style> currentStyles = new TreeMap<>();
@@ -1316,7 +1320,7 @@ public abstract class BastilleBattalionManager {
   }
 
   public static Stats getPredictedStats() {
-    return styleSetToStats.get(styleSetToKey(currentStyles.values()));
+    return StyleSets.styleSetToStats.get(styleSetToKey(currentStyles.values()));
   }
 
   public static boolean checkPredictions(Stats stats) {
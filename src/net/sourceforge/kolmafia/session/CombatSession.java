@@ -0,0 +1,91 @@
+package net.sourceforge.kolmafia.session;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One combat, from its first round to the page that ends it. Each time a round is processed, the
+ * decorated page is published as an immutable {@link Snapshot}, so that the relay browser (or a
+ * script) can show the current state of the fight without waiting for an automated fight to
+ * finish.
+ *
+ * <p>Only one thread at a time drives combat from the relay browser; see {@link #automate}.
+ */
+public class CombatSession {
+  public record Snapshot(long combat, int round, String decoratedText) {}
+
+  private static final AtomicLong combats = new AtomicLong();
+  private static final ReentrantLock driver = new ReentrantLock();
+
+  private static volatile CombatSession current = new CombatSession(0);
+
+  private final long id;
+  private volatile Snapshot snapshot;
+
+  private CombatSession(final long id) {
+    this.id = id;
+    this.snapshot = new Snapshot(id, 0, "");
+  }
+
+  public long getId() {
+    return this.id;
+  }
+
+  public Snapshot getSnapshot() {
+    return this.snapshot;
+  }
+
+  public static CombatSession current() {
+    return CombatSession.current;
+  }
+
+  /**
+   * Starts a new combat. The last page of the previous combat remains visible until the first
+   * round of this one is published.
+   */
+  public static CombatSession begin() {
+    CombatSession previous = CombatSession.current;
+    CombatSession session = new CombatSession(CombatSession.combats.incrementAndGet());
+    session.snapshot = new Snapshot(session.id, 0, previous.snapshot.decoratedText());
+    CombatSession.current = session;
+    return session;
+  }
+
+  /** Publishes the decorated page for the round just processed. */
+  public static void publish(final int round, final String decoratedText) {
+    CombatSession session = CombatSession.current;
+    session.snapshot = new Snapshot(session.id, round, decoratedText);
+  }
+
+  /** Returns the most recently published page, without waiting for anything. */
+  public static String getDecoratedText() {
+    return CombatSession.current.snapshot.decoratedText();
+  }
+
+  public static boolean isAutomating() {
+    return CombatSession.driver.isLocked();
+  }
+
+  /**
+   * Runs the given combat automation, unless another thread is already doing so. Either way,
+   * returns the page which is current when it is done, so a second request from the browser in
+   * the middle of an automated fight shows where the fight is rather than queueing up behind it.
+   */
+  public static String automate(final Runnable automation) {
+    if (!CombatSession.driver.tryLock()) {
+      return CombatSession.getDecoratedText();
+    }
+
+    try {
+      automation.run();
+    } finally {
+      CombatSession.driver.unlock();
+    }
+
+    return CombatSession.getDecoratedText();
+  }
+
+  public static void reset() {
+    CombatSession.current = new CombatSession(0);
+  }
+}
@@ -290,7 +290,7 @@ public class LoginManager {
 
     // See if we are timing in across rollover.
     // api.php has rollover time in it
-    String redirection = ApiRequest.updateStatus();
+    String redirection = ApiRequest.updateStatus(false, true);
     if (redirection != null && redirection.startsWith("afterlife.php")) {
       return;
     }
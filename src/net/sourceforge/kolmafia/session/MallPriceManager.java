@@ -4,9 +4,9 @@ import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -133,10 +133,18 @@ public abstract class MallPriceManager {
   // The data structures that this package "manages".
 
   // a Map from itemId -> current mall price (as visible to a scripter.)
-  private static final Map<Integer, Integer> mallPrices = new HashMap<>();
-
-  // a Map from itemId -> the most resent mall search results.
-  private static final Map<Integer, List<PurchaseRequest>> mallSearches = new HashMap<>();
+  // The least recently used are dropped past MALL_PRICE_CACHE_SIZE.
+  private static final Map<Integer, Integer> mallPrices =
+      Collections.synchronizedMap(
+          new LinkedHashMap<Integer, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+              return this.size() > MallPriceManager.MALL_PRICE_CACHE_SIZE;
+            }
+          });
+
+  // itemId -> the most recent mall search results, bounded in number and age.
+  private static final MallSearchCache mallSearches = new MallSearchCache();
 
   // Constants controlling how we manage those data
 
@@ -158,6 +166,23 @@ public abstract class MallPriceManager {
   // How many seconds before a before a "saved search" is "stale"
   public static int MALL_SEARCH_FRESHNESS = 60;
 
+  // How many items to keep saved searches for. Price-watching scripts can search for thousands of
+  // items, each with dozens of results; beyond this, only the "nth cheapest" price is kept.
+  public static int MALL_SEARCH_CACHE_SIZE = 500;
+
+  // How many seconds to keep a saved search. Once stale, it is only weakly held, so it may be
+  // reclaimed sooner.
+  public static int MALL_SEARCH_RETENTION = 600;
+
+  // How many items to keep the "nth cheapest" price for
+  public static int MALL_PRICE_CACHE_SIZE = 20000;
+
+  public static String getSearchCacheSummary() {
+    return MallPriceManager.mallSearches.getSummary()
+        + "; prices cached: "
+        + MallPriceManager.mallPrices.size();
+  }
+
   // For testing
   public static void reset() {
     mallPrices.clear();
@@ -193,15 +218,13 @@ public abstract class MallPriceManager {
     }
 
     // Remove shop from search results for all items
-    Iterator<Entry<Integer, List<PurchaseRequest>>> i =
-        MallPriceManager.mallSearches.entrySet().iterator();
-    while (i.hasNext()) {
-      Entry<Integer, List<PurchaseRequest>> entry = i.next();
+    for (Entry<Integer, List<PurchaseRequest>> entry :
+        MallPriceManager.mallSearches.getSearches().entrySet()) {
       int key = entry.getKey();
       List<PurchaseRequest> search = entry.getValue();
       if (MallPriceManager.removeShopPurchaseRequest(key, shopId, search)) {
         if (search.size() == 0) {
-          i.remove();
+          MallPriceManager.mallSearches.remove(key);
         }
       }
     }
@@ -211,7 +234,7 @@ public abstract class MallPriceManager {
   // disabled status, reset save mall prices to force new mall searchs
   public static final void resetMallPrices(final int shopId) {
     // Reset saved mall prices for all items with this shopId
-    for (List<PurchaseRequest> search : new ArrayList<>(mallSearches.values())) {
+    for (List<PurchaseRequest> search : mallSearches.getSearches().values()) {
       for (PurchaseRequest request : search) {
         if (request instanceof MallPurchaseRequest mpr) {
           if (shopId == mpr.getShopId()) {
@@ -254,12 +277,14 @@ public abstract class MallPriceManager {
 
     if (results == null) {
       // Nothing saved
+      MallPriceManager.mallSearches.countLookup(false);
       return null;
     }
 
     if (results.size() == 0 || MallPriceManager.searchIsTooOld(results)) {
       // Not current
       MallPriceManager.mallSearches.remove(id);
+      MallPriceManager.mallSearches.countLookup(false);
       return null;
     }
 
@@ -270,6 +295,7 @@ public abstract class MallPriceManager {
     // If we don't care how many are available, any saved search is
     // good enough
     if (needed == 0) {
+      MallPriceManager.mallSearches.countLookup(true);
       return filtered;
     }
 
@@ -283,6 +309,7 @@ public abstract class MallPriceManager {
       // available (because this is an NPC store), that is
       // enough for anybody
       if (count == PurchaseRequest.MAX_QUANTITY) {
+        MallPriceManager.mallSearches.countLookup(true);
         return filtered;
       }
 
@@ -292,11 +319,13 @@ public abstract class MallPriceManager {
       // If we have found enough available items, this search
       // is good enough
       if (available >= needed) {
+        MallPriceManager.mallSearches.countLookup(true);
         return filtered;
       }
     }
 
     // Not enough
+    MallPriceManager.mallSearches.countLookup(false);
     return null;
   }
 
@@ -632,11 +661,21 @@ public abstract class MallPriceManager {
     return price;
   }
 
+  // Replaces what we know about an item's mall price with a new search, as one step, so that
+  // searches made at the same time cannot leave behind a mix of their results.
+  private static synchronized void mergeMallSearch(
+      final int itemId, final List<PurchaseRequest> results) {
+    MallPriceManager.flushCache(itemId);
+    MallPriceManager.updateMallPrice(itemId, results, true);
+    MallPriceManager.mallSearches.put(itemId, results);
+  }
+
   public static int getMallPrices(AdventureResult[] items, float maxAge) {
     // Count how many items we retrieved
     int count = 0;
 
     try {
+      List<Runnable> searches = new ArrayList<>();
       for (AdventureResult item : items) {
         int itemId = item.getItemId();
         if (!validMallItem(itemId)) {
@@ -648,15 +687,16 @@ public abstract class MallPriceManager {
         }
         if (MallPriceManager.mallPrices.getOrDefault(itemId, 0) == 0) {
           AdventureResult search = item.getInstance(NTH_CHEAPEST_COUNT);
-          List<PurchaseRequest> results = MallPriceManager.searchMall(search);
-          MallPriceManager.flushCache(itemId);
-          MallPriceManager.updateMallPrice(itemId, results, true);
-          MallPriceManager.mallSearches.put(itemId, results);
-          ++count;
+          searches.add(
+              () -> {
+                List<PurchaseRequest> results = MallPriceManager.searchMall(search);
+                MallPriceManager.mergeMallSearch(itemId, results);
+              });
         }
       }
+      count = MallSearchBatch.run(searches);
     } finally {
-      RequestLogger.printLine("Updating mallprices.txt with " + count + " prices.");
+      RequestLogger.printLine("Updating mall price database with " + count + " prices.");
       MallPriceDatabase.writePrices();
     }
 
@@ -680,11 +720,39 @@ public abstract class MallPriceManager {
       return 0;
     }
 
-    // Issue the search request
+    // Issue the search request for the first page, which tells us how many more there are
     MallSearchRequest request = newMallSearchRequest(category, tiers);
+    request.setPageStart(0);
     RequestThread.postRequest(request);
 
-    List<PurchaseRequest> results = request.getResults();
+    // Fetch the rest of the pages, perhaps several at once. Each request parses its own page.
+    int size = request.getPageSize();
+    int total = request.getTotalResults();
+    int pages = size > 0 ? (total + size - 1) / size : 1;
+
+    List<MallSearchRequest> pageRequests = new ArrayList<>(pages);
+    List<Runnable> searches = new ArrayList<>(pages);
+    pageRequests.add(request);
+    for (int page = 2; page <= pages; ++page) {
+      MallSearchRequest pageRequest = newMallSearchRequest(category, tiers);
+      pageRequest.setPageStart((page - 1) * size);
+      pageRequests.add(pageRequest);
+
+      String message = "Page " + page + " of " + pages + "...";
+      searches.add(
+          () -> {
+            KoLmafia.updateDisplay(message);
+            pageRequest.run();
+          });
+    }
+    MallSearchBatch.run(searches);
+
+    // Put the pages back together in order, since an item's stores can run onto the next page
+    List<PurchaseRequest> results = new ArrayList<>();
+    for (MallSearchRequest pageRequest : pageRequests) {
+      results.addAll(pageRequest.getResults());
+    }
+
     if (results.size() == 0) {
       // None found
       return 0;
@@ -707,10 +775,8 @@ public abstract class MallPriceManager {
         if (itemId != newItemId) {
           // Handle previous item, if any
           if (itemResults != null) {
-            MallPriceManager.flushCache(itemId);
             Collections.sort(itemResults, PurchaseRequest.priceComparator);
-            MallPriceManager.updateMallPrice(itemId, itemResults, true);
-            MallPriceManager.mallSearches.put(itemId, itemResults);
+            MallPriceManager.mergeMallSearch(itemId, itemResults);
             ++count;
           }
 
@@ -724,14 +790,12 @@ public abstract class MallPriceManager {
 
       // Handle final item
       if (itemResults != null) {
-        MallPriceManager.flushCache(itemId);
         Collections.sort(itemResults, PurchaseRequest.priceComparator);
-        MallPriceManager.updateMallPrice(itemId, itemResults, true);
-        MallPriceManager.mallSearches.put(itemId, itemResults);
+        MallPriceManager.mergeMallSearch(itemId, itemResults);
         ++count;
       }
     } finally {
-      RequestLogger.printLine("Updating mallprices.txt with " + count + " prices.");
+      RequestLogger.printLine("Updating mall price database with " + count + " prices.");
       MallPriceDatabase.writePrices();
     }
 
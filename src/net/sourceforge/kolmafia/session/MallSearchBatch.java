@@ -0,0 +1,123 @@
+package net.sourceforge.kolmafia.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sourceforge.kolmafia.KoLmafia;
+import net.sourceforge.kolmafia.RequestThread;
+import net.sourceforge.kolmafia.StaticEntity;
+import net.sourceforge.kolmafia.preferences.Preferences;
+
+/**
+ * Runs a batch of mall searches, several at once if the user allows it.
+ *
+ * <p>At most mallSearchThreads searches run at a time, and each starts at least mallSearchDelay
+ * milliseconds after the one before it, so as not to hammer the server. With one thread, the
+ * searches run in turn on the calling thread, as they always have. Searches not yet started are
+ * skipped once KoLmafia has been told to stop.
+ *
+ * <p>Each search fetches and parses its own results on the thread that runs it, so whatever it
+ * does with them must be safe to do from several threads at once.
+ */
+class MallSearchBatch {
+  // However many threads the user asks for, this is as many searches as we make at once
+  static final int MAX_THREADS = 8;
+
+  private final int threads;
+  private final long delay;
+  private final AtomicInteger completed = new AtomicInteger();
+  private long nextStart = Long.MIN_VALUE;
+
+  MallSearchBatch(final int threads, final int delay) {
+    this.threads = Math.max(1, Math.min(threads, MAX_THREADS));
+    this.delay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay));
+  }
+
+  /** Runs the searches as the user's preferences allow. Returns how many ran. */
+  static int run(final List<Runnable> searches) {
+    MallSearchBatch batch =
+        new MallSearchBatch(
+            Preferences.getInteger("mallSearchThreads"), Preferences.getInteger("mallSearchDelay"));
+    return batch.runAll(searches);
+  }
+
+  /** Runs the searches, returning once they have all finished or been skipped. */
+  int runAll(final List<Runnable> searches) {
+    if (this.threads == 1 || searches.size() < 2) {
+      for (Runnable search : searches) {
+        this.runSearch(search);
+      }
+      return this.completed.get();
+    }
+
+    // Keep the request sequence open until the last search is done, so that no single search
+    // finishing lets the display think all requests are complete.
+    Integer sequence = RequestThread.openRequestSequence(false);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.min(this.threads, searches.size()),
+            runnable -> {
+              Thread thread = new Thread(runnable, "MallSearchBatch");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    try {
+      List<Future<?>> futures = new ArrayList<>(searches.size());
+      for (Runnable search : searches) {
+        futures.add(executor.submit(() -> this.runSearch(search)));
+      }
+
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          StaticEntity.printStackTrace(e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdownNow();
+      RequestThread.closeRequestSequence(sequence);
+    }
+
+    return this.completed.get();
+  }
+
+  private void runSearch(final Runnable search) {
+    if (!KoLmafia.permitsContinue() || !this.awaitTurn()) {
+      return;
+    }
+
+    search.run();
+    this.completed.incrementAndGet();
+  }
+
+  // Waits until this search may start. Returns false if it should not start after all.
+  private boolean awaitTurn() {
+    long wait;
+    synchronized (this) {
+      long now = System.nanoTime();
+      long start = Math.max(now, this.nextStart);
+      this.nextStart = start + this.delay;
+      wait = start - now;
+    }
+
+    if (wait > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+
+    return KoLmafia.permitsContinue();
+  }
+}
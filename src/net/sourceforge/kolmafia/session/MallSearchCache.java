@@ -0,0 +1,200 @@
+package net.sourceforge.kolmafia.session;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import net.sourceforge.kolmafia.request.PurchaseRequest;
+
+/**
+ * The most recent mall search for each item, bounded in both number and age.
+ *
+ * <p>Searches are kept in least recently used order; once there are more than the limit, the
+ * least recently used is dropped. A search kept longer than it stays fresh is only held weakly
+ * from then on, so that the garbage collector may reclaim it; until then, it can still be updated
+ * when a store is flushed or changes status. Once it has been kept for the retention period, it is
+ * dropped. The nth cheapest price worked out from each search is kept separately, so it outlives
+ * the search.
+ *
+ * <p>Ages are measured from when a search was cached, on a clock of its own, so that expiry, which
+ * runs in the background, is not affected by the clock used to timestamp the searches. One daemon
+ * thread expires every cache's searches; a cache stops being expired once it is cleared, until
+ * something is put in it again.
+ */
+class MallSearchCache {
+  private static final ScheduledThreadPoolExecutor EXPIRY = MallSearchCache.createExpiry();
+
+  private static class Entry {
+    private List<PurchaseRequest> search;
+    private WeakReference<List<PurchaseRequest>> stale = null;
+    private final long cached;
+
+    private Entry(final List<PurchaseRequest> search, final long cached) {
+      this.search = search;
+      this.cached = cached;
+    }
+
+    private List<PurchaseRequest> get() {
+      return this.search != null ? this.search : this.stale.get();
+    }
+  }
+
+  private final Map<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long expirations = 0;
+
+  private ScheduledFuture<?> expiry = null;
+
+  /** Returns the search for an item, if it is still held, whether fresh or not. */
+  synchronized List<PurchaseRequest> get(final int itemId) {
+    Entry entry = this.entries.get(itemId);
+    if (entry == null) {
+      return null;
+    }
+
+    List<PurchaseRequest> search = entry.get();
+    if (search == null) {
+      this.entries.remove(itemId);
+      this.expirations++;
+    }
+    return search;
+  }
+
+  synchronized void put(final int itemId, final List<PurchaseRequest> search) {
+    this.entries.put(itemId, new Entry(search, System.nanoTime()));
+
+    Iterator<Entry> i = this.entries.values().iterator();
+    while (this.entries.size() > MallPriceManager.MALL_SEARCH_CACHE_SIZE && i.hasNext()) {
+      i.next();
+      i.remove();
+      this.evictions++;
+    }
+
+    if (this.expiry == null) {
+      this.startExpiry();
+    }
+  }
+
+  synchronized void remove(final int itemId) {
+    this.entries.remove(itemId);
+  }
+
+  synchronized void clear() {
+    this.entries.clear();
+    this.hits = 0;
+    this.misses = 0;
+    this.evictions = 0;
+    this.expirations = 0;
+
+    if (this.expiry != null) {
+      this.expiry.cancel(false);
+      this.expiry = null;
+    }
+  }
+
+  synchronized boolean isExpiring() {
+    return this.expiry != null;
+  }
+
+  /** Returns every search still held, by item ID, without affecting which were used last. */
+  synchronized Map<Integer, List<PurchaseRequest>> getSearches() {
+    Map<Integer, List<PurchaseRequest>> searches = new LinkedHashMap<>();
+    for (var entry : this.entries.entrySet()) {
+      List<PurchaseRequest> search = entry.getValue().get();
+      if (search != null) {
+        searches.put(entry.getKey(), search);
+      }
+    }
+    return searches;
+  }
+
+  synchronized void countLookup(final boolean hit) {
+    if (hit) {
+      this.hits++;
+    } else {
+      this.misses++;
+    }
+  }
+
+  /**
+   * Weakens the hold on searches which are no longer fresh, and drops those kept past the
+   * retention period or already reclaimed.
+   */
+  synchronized void expire() {
+    long now = System.nanoTime();
+    long fresh = TimeUnit.SECONDS.toNanos(MallPriceManager.MALL_SEARCH_FRESHNESS);
+    long retained = TimeUnit.SECONDS.toNanos(MallPriceManager.MALL_SEARCH_RETENTION);
+
+    Iterator<Entry> i = this.entries.values().iterator();
+    while (i.hasNext()) {
+      Entry entry = i.next();
+      long age = now - entry.cached;
+
+      if (age >= retained || entry.get() == null) {
+        i.remove();
+        this.expirations++;
+      } else if (age >= fresh && entry.search != null) {
+        entry.stale = new WeakReference<>(entry.search);
+        entry.search = null;
+      }
+    }
+  }
+
+  private static ScheduledThreadPoolExecutor createExpiry() {
+    ScheduledThreadPoolExecutor executor =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = new Thread(runnable, "MallSearchCache expiry");
+              thread.setDaemon(true);
+              return thread;
+            });
+    // Let a cleared cache be collected, rather than waiting for its next run
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
+  private void startExpiry() {
+    long period = Math.max(1, MallPriceManager.MALL_SEARCH_FRESHNESS);
+    this.expiry =
+        MallSearchCache.EXPIRY.scheduleWithFixedDelay(
+            this::expire, period, period, TimeUnit.SECONDS);
+  }
+
+  synchronized String getSummary() {
+    int strong = 0;
+    for (Entry entry : this.entries.values()) {
+      if (entry.search != null) {
+        strong++;
+      }
+    }
+
+    long lookups = this.hits + this.misses;
+    return "Mall searches cached: "
+        + this.entries.size()
+        + " ("
+        + strong
+        + " held, "
+        + (this.entries.size() - strong)
+        + " weakly held), limit "
+        + MallPriceManager.MALL_SEARCH_CACHE_SIZE
+        + "; "
+        + this.hits
+        + " hits, "
+        + this.misses
+        + " misses"
+        + (lookups > 0 ? " (" + (this.hits * 100 / lookups) + "% hit rate)" : "")
+        + ", "
+        + this.evictions
+        + " evicted, "
+        + this.expirations
+        + " expired";
+  }
+}
@@ -112,6 +112,7 @@ import net.sourceforge.kolmafia.request.VolcanoMazeRequest;
 import net.sourceforge.kolmafia.request.WitchessRequest;
 import net.sourceforge.kolmafia.request.ZapRequest;
 import net.sourceforge.kolmafia.utilities.LockableListFactory;
+import net.sourceforge.kolmafia.utilities.ResponseIndex;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 import net.sourceforge.kolmafia.webui.DiscoCombatHelper;
 import net.sourceforge.kolmafia.webui.MineDecorator;
@@ -839,9 +840,9 @@ public class ResponseTextParser {
       Pattern.compile("on[cC]lick='(?:javascript:)?descitem\\(([\\d]*)\\)'");
 
   public static void findNewItems(final String responseText) {
-    Matcher matcher = ResponseTextParser.ITEM_DESC_PATTERN.matcher(responseText);
-    while (matcher.find()) {
-      ItemDatabase.lookupItemIdFromDescription(matcher.group(1));
+    // Equivalent to matching ITEM_DESC_PATTERN, but shares the page scan
+    for (String descId : ResponseIndex.of(responseText).getDescItemIds()) {
+      ItemDatabase.lookupItemIdFromDescription(descId);
     }
   }
 
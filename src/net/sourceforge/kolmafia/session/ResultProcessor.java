@@ -51,6 +51,7 @@ import net.sourceforge.kolmafia.request.HermitRequest;
 import net.sourceforge.kolmafia.request.PlaceRequest;
 import net.sourceforge.kolmafia.request.UseItemRequest;
 import net.sourceforge.kolmafia.utilities.LockableListFactory;
+import net.sourceforge.kolmafia.utilities.ResponseIndex;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
 public class ResultProcessor {
@@ -106,6 +107,10 @@ public class ResultProcessor {
     // width=30 height=30></td><td valign=center><b>hardboiled egg</b>
     // (44)</td></tr></table></span></td></tr></table>
 
+    if (!ResponseIndex.of(results).hasItemTables()) {
+      return results;
+    }
+
     StringBuffer buffer = new StringBuffer();
     boolean changed = false;
 
@@ -233,6 +238,10 @@ public class ResultProcessor {
   public static LinkedList<AdventureResult> parseItems(final String results) {
     LinkedList<AdventureResult> items = new LinkedList<>();
 
+    if (!ResponseIndex.of(results).hasItemTables()) {
+      return items;
+    }
+
     // Item names have a lot of extra adjectives in Two Crazy Random Summer
     boolean crazyRandomAdjectives = KoLCharacter.isCrazyRandomTwo();
 
@@ -333,6 +342,10 @@ public class ResultProcessor {
 
     LinkedList<AdventureResult> effects = new LinkedList<>();
 
+    if (!ResponseIndex.of(results).hasEffectTables()) {
+      return effects;
+    }
+
     Matcher effectMatcher = ResultProcessor.EFFECT_TABLE_PATTERN.matcher(results);
     while (effectMatcher.find()) {
       String descId = effectMatcher.group(1);
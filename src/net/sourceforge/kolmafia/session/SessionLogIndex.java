@@ -0,0 +1,469 @@
+package net.sourceforge.kolmafia.session;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import net.sourceforge.kolmafia.KoLConstants;
+import net.sourceforge.kolmafia.KoLmafia;
+import net.sourceforge.kolmafia.RequestLogger;
+import net.sourceforge.kolmafia.StaticEntity;
+import net.sourceforge.kolmafia.utilities.AsyncLogWriter;
+import net.sourceforge.kolmafia.utilities.LogStream;
+import net.sourceforge.kolmafia.utilities.StringUtilities;
+
+/**
+ * An index of each day's session log, written alongside it as the log is written, so that scripts
+ * can find adventures by turn, location, encounter or item without reading every log in full.
+ *
+ * <p>The index for <code>Name_20240101.txt</code> is <code>Name_20240101.idx</code>. It has one
+ * tab-separated line per indexed session log line, giving its byte offset in the log:
+ *
+ * <pre>
+ * A  offset  turn  location    an adventure: "[123] The Haunted Pantry"
+ * E  offset  encounter         "Encounter: ..."
+ * I  offset  item              "You acquire an item: ..."
+ * Z  offset  gzipOffset        where a compressed block of the log begins
+ * </pre>
+ *
+ * When an old log is compressed, it is written as a series of independent gzip members, each
+ * listed in a Z line, so that an adventure can be read by decompressing only the block it is in.
+ * Logs without an index, such as those written before it existed, are indexed when first searched.
+ */
+public class SessionLogIndex {
+  private static final Pattern TURN_PATTERN = Pattern.compile("\\[(\\d+)\\] (.*)");
+  private static final Pattern ENCOUNTER_PATTERN = Pattern.compile("Encounter: (.*)");
+  private static final Pattern ITEM_PATTERN =
+      Pattern.compile("You acquire (?:and equip )?an item: (.+?)(?: \\(\\d+\\))?");
+
+  // Uncompressed size of each independently compressed block
+  private static final int BLOCK_SIZE = 64 * 1024;
+  // Longer lines are still counted, but only their start is looked at
+  private static final int MAX_LINE = 4096;
+
+  private SessionLogIndex() {}
+
+  public record Adventure(
+      int turn,
+      String location,
+      List<String> encounters,
+      List<String> items,
+      long start,
+      long end) {}
+
+  public record Match(String date, Adventure adventure, String text) {}
+
+  /**
+   * What to look for. Each part is matched case-insensitively as a substring, and is ignored if
+   * empty.
+   */
+  public record Query(String location, String encounter, String item, int minTurn, int maxTurn) {
+    public static final Query ALL = new Query("", "", "", 0, Integer.MAX_VALUE);
+
+    /**
+     * Parses a filter such as <code>location=haunted pantry; item=seal tooth; turns=10-20</code>.
+     */
+    public static Query parse(final String filter) {
+      String location = "";
+      String encounter = "";
+      String item = "";
+      int minTurn = 0;
+      int maxTurn = Integer.MAX_VALUE;
+
+      for (String part : filter.split(";")) {
+        int equals = part.indexOf("=");
+        if (equals == -1) {
+          continue;
+        }
+
+        String key = part.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+        String value = part.substring(equals + 1).trim();
+
+        switch (key) {
+          case "location", "loc" -> location = value;
+          case "encounter", "monster" -> encounter = value;
+          case "item" -> item = value;
+          case "turn", "turns" -> {
+            int dash = value.indexOf("-");
+            if (dash == -1) {
+              minTurn = maxTurn = StringUtilities.parseInt(value);
+            } else {
+              minTurn = StringUtilities.parseInt(value.substring(0, dash));
+              String max = value.substring(dash + 1).trim();
+              maxTurn = max.isEmpty() ? Integer.MAX_VALUE : StringUtilities.parseInt(max);
+            }
+          }
+        }
+      }
+
+      return new Query(location, encounter, item, minTurn, maxTurn);
+    }
+
+    public boolean matches(final Adventure adventure) {
+      return adventure.turn() >= this.minTurn
+          && adventure.turn() <= this.maxTurn
+          && contains(adventure.location(), this.location)
+          && (this.encounter.isEmpty()
+              || adventure.encounters().stream().anyMatch(e -> contains(e, this.encounter)))
+          && (this.item.isEmpty()
+              || adventure.items().stream().anyMatch(i -> contains(i, this.item)));
+    }
+
+    private static boolean contains(final String text, final String search) {
+      return search.isEmpty()
+          || text.toLowerCase(Locale.ROOT).contains(search.toLowerCase(Locale.ROOT));
+    }
+  }
+
+  public static File getIndexFile(final File log) {
+    String name = log.getName();
+    if (name.endsWith(".gz")) {
+      name = name.substring(0, name.length() - 3);
+    }
+    if (name.endsWith(".txt")) {
+      name = name.substring(0, name.length() - 4);
+    }
+    return new File(log.getParentFile(), name + ".idx");
+  }
+
+  /**
+   * Returns a filter for the stream which writes the given session log, which indexes each line on
+   * its way to the log.
+   */
+  public static UnaryOperator<OutputStream> indexing(final File log) {
+    return ostream -> {
+      File indexFile = SessionLogIndex.getIndexFile(log);
+      if (!indexFile.exists() && log.length() > 0) {
+        SessionLogIndex.rebuild(log);
+      }
+
+      PrintStream index = LogStream.openAsyncStream(indexFile, AsyncLogWriter.Overflow.BLOCK);
+      return new IndexingOutputStream(ostream, log.length(), index);
+    };
+  }
+
+  private static class IndexingOutputStream extends FilterOutputStream {
+    private final PrintStream index;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private long offset;
+    private long lineStart;
+
+    IndexingOutputStream(final OutputStream ostream, final long offset, final PrintStream index) {
+      super(ostream);
+      this.index = index;
+      this.offset = offset;
+      this.lineStart = offset;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      this.out.write(b);
+      this.scan(b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      this.out.write(b, off, len);
+      for (int i = off; i < off + len; ++i) {
+        this.scan(b[i]);
+      }
+    }
+
+    private void scan(final int b) {
+      this.offset++;
+
+      if (b != '\n') {
+        if (this.line.size() < MAX_LINE) {
+          this.line.write(b);
+        }
+        return;
+      }
+
+      String text = this.line.toString(StandardCharsets.UTF_8);
+      String entry = SessionLogIndex.indexLine(this.lineStart, text);
+      if (entry != null) {
+        this.index.println(entry);
+      }
+
+      this.line.reset();
+      this.lineStart = this.offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        this.index.close();
+      }
+    }
+  }
+
+  /** Returns the index entry for a line of the session log, or null if it is not indexed. */
+  static String indexLine(final long offset, String line) {
+    if (line.endsWith("\r")) {
+      line = line.substring(0, line.length() - 1);
+    }
+
+    Matcher matcher = TURN_PATTERN.matcher(line);
+    if (matcher.matches()) {
+      return "A\t" + offset + "\t" + matcher.group(1) + "\t" + matcher.group(2);
+    }
+
+    matcher = ENCOUNTER_PATTERN.matcher(line);
+    if (matcher.matches()) {
+      return "E\t" + offset + "\t" + matcher.group(1);
+    }
+
+    matcher = ITEM_PATTERN.matcher(line);
+    if (matcher.matches()) {
+      return "I\t" + offset + "\t" + matcher.group(1);
+    }
+
+    return null;
+  }
+
+  /** Writes the index of a session log, compressed or not, from scratch. */
+  public static void rebuild(final File log) {
+    File indexFile = SessionLogIndex.getIndexFile(log);
+
+    try (InputStream istream =
+            log.getName().endsWith(".gz")
+                ? new GZIPInputStream(new FileInputStream(log))
+                : new FileInputStream(log);
+        PrintStream index = new PrintStream(new FileOutputStream(indexFile), false, "UTF-8")) {
+      istream.transferTo(new IndexingOutputStream(OutputStream.nullOutputStream(), 0, index));
+    } catch (IOException e) {
+      indexFile.delete();
+    }
+  }
+
+  private record Block(long offset, long compressedOffset) {}
+
+  private record Index(List<Adventure> adventures, List<Block> blocks) {}
+
+  private static Index readIndex(final File indexFile) throws IOException {
+    List<Adventure> adventures = new ArrayList<>();
+    List<Block> blocks = new ArrayList<>();
+
+    int turn = 0;
+    String location = null;
+    List<String> encounters = null;
+    List<String> items = null;
+    long start = 0;
+
+    try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath())) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", 4);
+        if (fields.length < 3) {
+          // The last line may still be being written
+          continue;
+        }
+
+        long offset = StringUtilities.parseLong(fields[1]);
+
+        switch (fields[0]) {
+          case "A" -> {
+            if (location != null) {
+              adventures.add(new Adventure(turn, location, encounters, items, start, offset));
+            }
+            turn = StringUtilities.parseInt(fields[2]);
+            location = fields.length > 3 ? fields[3] : "";
+            encounters = new ArrayList<>();
+            items = new ArrayList<>();
+            start = offset;
+          }
+          case "E" -> {
+            if (encounters != null) {
+              encounters.add(fields[2]);
+            }
+          }
+          case "I" -> {
+            if (items != null) {
+              items.add(fields[2]);
+            }
+          }
+          case "Z" -> blocks.add(new Block(offset, StringUtilities.parseLong(fields[2])));
+        }
+      }
+    }
+
+    if (location != null) {
+      // The last adventure runs to the end of the log
+      adventures.add(new Adventure(turn, location, encounters, items, start, -1));
+    }
+
+    return new Index(adventures, blocks);
+  }
+
+  private static File findLog(final File directory, final String userName, final String date) {
+    File log = new File(directory, userName + "_" + date + ".txt");
+    if (log.exists()) {
+      return log;
+    }
+
+    log = new File(directory, userName + "_" + date + ".txt.gz");
+    return log.exists() ? log : null;
+  }
+
+  /** Returns the adventures in one day's session log which match the query. */
+  public static List<Match> search(
+      final File directory, final String userName, final String date, final Query query) {
+    List<Match> matches = new ArrayList<>();
+
+    File log = SessionLogIndex.findLog(directory, userName, date);
+    if (log == null) {
+      return matches;
+    }
+
+    File indexFile = SessionLogIndex.getIndexFile(log);
+    boolean compressed = log.getName().endsWith(".gz");
+
+    try {
+      if (!indexFile.exists()) {
+        // Logs from before there was an index are read in full, once
+        SessionLogIndex.rebuild(log);
+      }
+
+      Index index = SessionLogIndex.readIndex(indexFile);
+      for (Adventure adventure : index.adventures()) {
+        if (query.matches(adventure)) {
+          String text =
+              compressed
+                  ? SessionLogIndex.readCompressed(log, index.blocks(), adventure)
+                  : SessionLogIndex.read(log, adventure);
+          matches.add(new Match(date, adventure, text));
+        }
+      }
+    } catch (IOException e) {
+      StaticEntity.printStackTrace(e);
+    }
+
+    return matches;
+  }
+
+  /**
+   * Returns the adventures in the character's session logs for the given number of days, ending
+   * today, which match the query. The oldest come first.
+   */
+  public static List<Match> search(final String playerName, final int days, final Query query) {
+    // Today's log may still be on its way to disk
+    RequestLogger.flushLogs();
+
+    String userName = StringUtilities.globalStringReplace(playerName, " ", "_");
+    Calendar timestamp = Calendar.getInstance(KoLmafia.KOL_TIME_ZONE);
+    timestamp.add(Calendar.DATE, 1 - days);
+
+    List<Match> matches = new ArrayList<>();
+    for (int i = 0; i < days; ++i) {
+      String date = KoLConstants.DAILY_FORMAT.format(timestamp.getTime());
+      matches.addAll(
+          SessionLogIndex.search(KoLConstants.SESSIONS_LOCATION, userName, date, query));
+      timestamp.add(Calendar.DATE, 1);
+    }
+
+    return matches;
+  }
+
+  private static String read(final File log, final Adventure adventure) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(log, "r")) {
+      long end = adventure.end() == -1 ? file.length() : adventure.end();
+      byte[] bytes = new byte[(int) Math.max(0, end - adventure.start())];
+      file.seek(adventure.start());
+      file.readFully(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String readCompressed(
+      final File log, final List<Block> blocks, final Adventure adventure) throws IOException {
+    // Start decompressing at the block which holds the start of the adventure
+    Block from = new Block(0, 0);
+    for (Block block : blocks) {
+      if (block.offset() > adventure.start()) {
+        break;
+      }
+      from = block;
+    }
+
+    try (InputStream file = new FileInputStream(log)) {
+      file.skipNBytes(from.compressedOffset());
+      try (InputStream istream = new GZIPInputStream(file)) {
+        istream.skipNBytes(adventure.start() - from.offset());
+        byte[] bytes =
+            adventure.end() == -1
+                ? istream.readAllBytes()
+                : istream.readNBytes((int) (adventure.end() - adventure.start()));
+        return new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  /**
+   * Compresses a session log as a series of independently compressed blocks, which any gzip reader
+   * reads as one file, and notes where each begins in its index.
+   */
+  public static void compress(final File log, final File compressed) throws IOException {
+    File indexFile = SessionLogIndex.getIndexFile(log);
+    if (!indexFile.exists()) {
+      SessionLogIndex.rebuild(log);
+    }
+
+    List<Block> blocks = new ArrayList<>();
+
+    try (InputStream istream = new FileInputStream(log);
+        FileOutputStream ostream = new FileOutputStream(compressed)) {
+      byte[] buffer = new byte[BLOCK_SIZE];
+      long offset = 0;
+      int length;
+
+      while ((length = istream.readNBytes(buffer, 0, BLOCK_SIZE)) > 0) {
+        blocks.add(new Block(offset, ostream.getChannel().position()));
+
+        // Finish this member without closing the file
+        GZIPOutputStream gzip =
+            new GZIPOutputStream(
+                new FilterOutputStream(ostream) {
+                  @Override
+                  public void write(final byte[] b, final int off, final int len)
+                      throws IOException {
+                    this.out.write(b, off, len);
+                  }
+
+                  @Override
+                  public void close() {}
+                });
+        gzip.write(buffer, 0, length);
+        gzip.finish();
+
+        offset += length;
+      }
+    }
+
+    try (PrintStream index =
+        new PrintStream(new FileOutputStream(indexFile, true), false, "UTF-8")) {
+      for (Block block : blocks) {
+        index.println("Z\t" + block.offset() + "\t" + block.compressedOffset());
+      }
+    }
+  }
+}
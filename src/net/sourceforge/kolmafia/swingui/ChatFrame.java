@@ -261,7 +261,6 @@ public class ChatFrame extends GenericFrame {
     public ChatPanel(final String associatedContact) {
       super(new BorderLayout());
       this.chatDisplay = new RequestPane();
-      this.chatDisplay.addHyperlinkListener(new ChatLinkClickedListener());
 
       this.associatedContact = associatedContact;
       this.commandHistory = new ArrayList<>();
@@ -279,6 +278,7 @@ public class ChatFrame extends GenericFrame {
       entryPanel.add(entryButton, BorderLayout.EAST);
 
       ChatBuffer buffer = ChatManager.getBuffer(associatedContact);
+      this.chatDisplay.addHyperlinkListener(new ChatLinkClickedListener(buffer));
       JScrollPane scroller = buffer.addDisplay(this.chatDisplay);
       scroller
           .getVerticalScrollBar()
@@ -420,8 +420,19 @@ public class ChatFrame extends GenericFrame {
    * or opening the page in a browser if you're clicking something other than the username.
    */
   private class ChatLinkClickedListener extends HyperlinkAdapter {
+    private final ChatBuffer buffer;
+
+    public ChatLinkClickedListener(final ChatBuffer buffer) {
+      this.buffer = buffer;
+    }
+
     @Override
     public void handleInternalLink(final String location) {
+      if (location.equals(ChatBuffer.OLDER_MESSAGES_LINK)) {
+        this.buffer.showOlder();
+        return;
+      }
+
       if (location.startsWith("makeoffer")
           || location.startsWith("counteroffer")
           || location.startsWith("bet")
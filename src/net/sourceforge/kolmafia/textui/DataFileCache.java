@@ -1,36 +1,128 @@
 package net.sourceforge.kolmafia.textui;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Collections;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import net.java.dev.spellcast.utilities.DataUtilities;
 import net.sourceforge.kolmafia.KoLConstants;
 import net.sourceforge.kolmafia.KoLmafia;
-import net.sourceforge.kolmafia.RequestLogger;
 import net.sourceforge.kolmafia.textui.parsetree.Value;
 import net.sourceforge.kolmafia.utilities.ByteBufferUtilities;
-import net.sourceforge.kolmafia.utilities.RollingLinkedList;
 
+/**
+ * The contents of the data files scripts read and write, kept so that reading the same file again
+ * need not go back to the disk.
+ *
+ * <p>Files are kept in least recently used order, bounded by how many there are and by how many
+ * bytes they hold on the heap. Large files are memory-mapped rather than read onto the heap,
+ * except on Windows, where a mapped file cannot be rewritten. The cache is split into stripes by
+ * file name, each with its own lock and its own share of the bounds, so that scripts reading
+ * different files seldom wait on each other.
+ *
+ * <p>Once a file name has been found, the file it names is remembered, so that later reads need
+ * only check the file's modification time and size to know whether what is kept is still good, and
+ * that no file has since appeared where the name would be found first.
+ *
+ * <p>Files are written in full to a temporary file which then replaces the original, so that a
+ * mapped file is never truncated under a script still reading it.
+ */
 public class DataFileCache {
-  private static final RollingLinkedList<String> recentlyUsedList = new RollingLinkedList<>(500);
-  private static final Map<String, Long> dataFileTimestampCache =
-      Collections.synchronizedMap(new HashMap<>());
-  private static final Map<String, byte[]> dataFileDataCache =
-      Collections.synchronizedMap(new HashMap<>());
+  // Files at least this large are mapped, rather than read onto the heap
+  static int MAP_THRESHOLD = 1 << 20;
+
+  // How many bytes of file data to keep on the heap, and how many files to keep in all
+  static long CACHE_BYTES = 64L << 20;
+  static int CACHE_FILES = 500;
+
+  private static final int STRIPES = 16;
+
+  private static final boolean MAP_FILES = !System.getProperty("os.name").startsWith("Windows");
+
+  private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+  // What was read, and the modification time and size of the file it was read from. A file which
+  // is not there has a modification time of 0 and a size of -1.
+  private record Entry(long modified, long size, ByteBuffer data) {
+    private long heapBytes() {
+      return this.data.isDirect() ? 0 : this.data.capacity();
+    }
+  }
+
+  private static class Stripe {
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    private void put(final String key, final Entry entry) {
+      Entry old = this.entries.put(key, entry);
+      if (old != null) {
+        this.bytes -= old.heapBytes();
+      }
+      this.bytes += entry.heapBytes();
+
+      long maxBytes = DataFileCache.CACHE_BYTES / STRIPES;
+      int maxFiles = Math.max(1, DataFileCache.CACHE_FILES / STRIPES);
+
+      Iterator<Entry> i = this.entries.values().iterator();
+      while ((this.bytes > maxBytes || this.entries.size() > maxFiles) && i.hasNext()) {
+        this.bytes -= i.next().heapBytes();
+        i.remove();
+      }
+    }
+
+    private void clear() {
+      this.entries.clear();
+      this.bytes = 0;
+    }
+  }
+
+  private static final Stripe[] stripes = new Stripe[STRIPES];
+
+  static {
+    for (int i = 0; i < STRIPES; ++i) {
+      DataFileCache.stripes[i] = new Stripe();
+    }
+  }
+
+  // What getFile found for a file name, and the files it would have found first, had they existed
+  private record Resolution(File file, List<File> preferred) {
+    private boolean isCurrent() {
+      for (File file : this.preferred) {
+        if (file.exists()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  // File name as given by a script -> what getFile found for it
+  private static final Map<String, Resolution> resolvedFiles = new ConcurrentHashMap<>();
 
   private DataFileCache() {}
 
   public static void clearCache() {
-    DataFileCache.recentlyUsedList.clear();
-    DataFileCache.dataFileTimestampCache.clear();
-    DataFileCache.dataFileDataCache.clear();
+    for (Stripe stripe : DataFileCache.stripes) {
+      synchronized (stripe) {
+        stripe.clear();
+      }
+    }
+    DataFileCache.resolvedFiles.clear();
+  }
+
+  private static Stripe getStripe(final String key) {
+    return DataFileCache.stripes[Math.floorMod(key.hashCode(), STRIPES)];
   }
 
   public static File getFile(String filename, boolean readOnly) {
@@ -45,13 +137,7 @@ public class DataFileCache {
     if (!readOnly && filename.endsWith(".ash")) {
       parents = new File[] {KoLConstants.DATA_LOCATION};
     } else {
-      parents =
-          new File[] {
-            KoLConstants.SCRIPT_LOCATION,
-            KoLConstants.RELAY_LOCATION,
-            KoLConstants.DATA_LOCATION,
-            KoLConstants.SESSIONS_LOCATION,
-          };
+      parents = DataFileCache.getSearchPath();
     }
 
     for (File parent : parents) {
@@ -106,6 +192,15 @@ public class DataFileCache {
     }
   }
 
+  private static File[] getSearchPath() {
+    return new File[] {
+      KoLConstants.SCRIPT_LOCATION,
+      KoLConstants.RELAY_LOCATION,
+      KoLConstants.DATA_LOCATION,
+      KoLConstants.SESSIONS_LOCATION,
+    };
+  }
+
   private static boolean checkFile(File[] parents, File file, boolean checkExists) {
     if (checkExists && !file.exists()) {
       return false;
@@ -139,55 +234,124 @@ public class DataFileCache {
     if (filename.startsWith("http://") || filename.startsWith("https://")) {
       return DataUtilities.getReader("", filename);
     }
-    byte[] data = DataFileCache.getBytes(filename);
+    ByteBuffer data = DataFileCache.getBuffer(filename);
 
-    return DataUtilities.getReader(new ByteArrayInputStream(data));
+    return DataUtilities.getReader(ByteBufferUtilities.getInputStream(data));
   }
 
   public static byte[] getBytes(final String filename) {
-    File input = DataFileCache.getFile(filename, true);
+    ByteBuffer data = DataFileCache.getData(filename);
+
+    // Data read onto the heap is handed out as is, as it always has been
+    if (data.hasArray()) {
+      return data.array();
+    }
+
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /** Returns the contents of a file, which may be mapped from the file rather than on the heap. */
+  public static ByteBuffer getBuffer(final String filename) {
+    return DataFileCache.getData(filename).asReadOnlyBuffer();
+  }
 
+  private static ByteBuffer getData(final String filename) {
+    File input = DataFileCache.resolveFile(filename);
     if (input == null) {
-      return new byte[0];
+      return EMPTY_BUFFER;
     }
 
-    String sanitizedFilename =
-        input.getPath().substring(KoLConstants.ROOT_LOCATION.getPath().length() + 1);
+    BasicFileAttributes attributes = DataFileCache.stat(input);
 
-    long modifiedTime = input.lastModified();
+    // If the file has gone since it was found, see whether the name now finds another
+    if (attributes == null && DataFileCache.resolvedFiles.remove(filename) != null) {
+      input = DataFileCache.resolveFile(filename);
+      if (input == null) {
+        return EMPTY_BUFFER;
+      }
+      attributes = DataFileCache.stat(input);
+    }
+
+    String sanitizedFilename = DataFileCache.getKey(input);
+    long modifiedTime = attributes == null ? 0 : attributes.lastModifiedTime().toMillis();
+    long size = attributes == null ? -1 : attributes.size();
+
+    Stripe stripe = DataFileCache.getStripe(sanitizedFilename);
+    synchronized (stripe) {
+      Entry entry = stripe.entries.get(sanitizedFilename);
+      if (entry != null && entry.modified == modifiedTime && entry.size == size) {
+        return entry.data;
+      }
 
-    Long cacheModifiedTime = dataFileTimestampCache.get(sanitizedFilename);
+      ByteBuffer data = DataFileCache.read(input, sanitizedFilename, size);
+      stripe.put(sanitizedFilename, new Entry(modifiedTime, size, data));
+      return data;
+    }
+  }
 
-    if (cacheModifiedTime != null && cacheModifiedTime == modifiedTime) {
-      return dataFileDataCache.get(sanitizedFilename);
+  private static File resolveFile(final String filename) {
+    Resolution resolution = DataFileCache.resolvedFiles.get(filename);
+    if (resolution != null && resolution.isCurrent()) {
+      return resolution.file;
     }
 
-    InputStream istream = null;
+    File file = DataFileCache.getFile(filename, true);
 
-    if (input.exists()) {
-      try {
-        istream = new FileInputStream(input);
-      } catch (IOException e) {
+    // Only remember files which are there; one which is not may yet be created elsewhere
+    if (file != null && file.exists()) {
+      DataFileCache.resolvedFiles.put(
+          filename, new Resolution(file, DataFileCache.getPreferredFiles(filename, file)));
+    } else {
+      DataFileCache.resolvedFiles.remove(filename);
+    }
+    return file;
+  }
+
+  // The files getFile looks for before the one it found
+  private static List<File> getPreferredFiles(final String filename, final File found) {
+    String name = filename.substring(filename.lastIndexOf("\\") + 1);
+    List<File> preferred = new ArrayList<>();
+    for (File parent : DataFileCache.getSearchPath()) {
+      File file = new File(parent, name);
+      if (file.equals(found)) {
+        break;
       }
+      preferred.add(file);
+    }
+    return preferred;
+  }
+
+  private static BasicFileAttributes stat(final File file) {
+    try {
+      return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    } catch (IOException e) {
+      return null;
     }
+  }
+
+  private static String getKey(final File file) {
+    return file.getPath().substring(KoLConstants.ROOT_LOCATION.getPath().length() + 1);
+  }
 
-    if (istream == null) {
-      istream = DataUtilities.getInputStream("", sanitizedFilename);
+  private static ByteBuffer read(
+      final File input, final String sanitizedFilename, final long size) {
+    if (size < 0) {
+      // Not a file; perhaps one of our own, built in
+      return ByteBuffer.wrap(
+          ByteBufferUtilities.read(DataUtilities.getInputStream("", sanitizedFilename)));
     }
 
-    byte[] data = ByteBufferUtilities.read(istream);
-    if (data == null) {
-      // This check is here because a NPE was being thrown intermittently and data was the most
-      // likely candidate.
-      // If the cause was a lack of synchronization then this message should never be displayed.  If
-      // it is displayed
-      // then the hypothesis about synchronization (or the fix) was incorrect.  In any event we want
-      // to see this
-      // message and the NPE if data is null.
-      RequestLogger.printLine("getBytes returning null for file " + sanitizedFilename + ".");
+    if (MAP_FILES && size >= MAP_THRESHOLD) {
+      try (FileChannel channel = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } catch (IOException e) {
+        // Read it onto the heap instead
+      }
     }
-    DataFileCache.updateCache(sanitizedFilename, modifiedTime, data);
-    return data;
+
+    return ByteBuffer.wrap(ByteBufferUtilities.read(input));
   }
 
   public static Value printBytes(final String filename, final byte[] data) {
@@ -197,38 +361,39 @@ public class DataFileCache {
       return DataTypes.FALSE_VALUE;
     }
 
-    if (!output.exists()) {
-      try {
-        File parent = output.getParentFile();
-        if (parent != null) {
-          parent.mkdirs();
-        }
+    String sanitizedFilename = DataFileCache.getKey(output);
+    Stripe stripe = DataFileCache.getStripe(sanitizedFilename);
 
-        output.createNewFile();
+    // Holding the stripe's lock, no one else writes the same temporary file
+    synchronized (stripe) {
+      File temporary = new File(output.getParentFile(), output.getName() + ".tmp");
+      try {
+        output.getParentFile().mkdirs();
+        Files.write(temporary.toPath(), data);
+        Files.move(
+            temporary.toPath(),
+            output.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
       } catch (Exception e) {
+        temporary.delete();
         return DataTypes.FALSE_VALUE;
       }
-    }
 
-    try (FileOutputStream ostream = new FileOutputStream(output, false)) {
-      ostream.write(data);
-    } catch (Exception e) {
-      return DataTypes.FALSE_VALUE;
+      BasicFileAttributes attributes = DataFileCache.stat(output);
+      if (attributes != null) {
+        stripe.put(
+            sanitizedFilename,
+            new Entry(
+                attributes.lastModifiedTime().toMillis(),
+                attributes.size(),
+                ByteBuffer.wrap(data)));
+      }
     }
 
-    DataFileCache.updateCache(filename, output.lastModified(), data);
-    return DataTypes.TRUE_VALUE;
-  }
+    // Reading the name may now find this file rather than the one it found before
+    DataFileCache.resolvedFiles.remove(filename);
 
-  private static void updateCache(String filename, long modifiedTime, byte[] data) {
-    String recentlyUsedCheck = DataFileCache.recentlyUsedList.update(filename);
-
-    if (recentlyUsedCheck != null) {
-      DataFileCache.dataFileTimestampCache.remove(filename);
-      DataFileCache.dataFileDataCache.remove(filename);
-    }
-
-    DataFileCache.dataFileTimestampCache.put(filename, modifiedTime);
-    DataFileCache.dataFileDataCache.put(filename, data);
+    return DataTypes.TRUE_VALUE;
   }
 }
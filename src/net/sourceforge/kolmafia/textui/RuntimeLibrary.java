@@ -163,6 +163,7 @@ import net.sourceforge.kolmafia.session.PingManager;
 import net.sourceforge.kolmafia.session.PingManager.PingTest;
 import net.sourceforge.kolmafia.session.PvpManager;
 import net.sourceforge.kolmafia.session.ResultProcessor;
+import net.sourceforge.kolmafia.session.SessionLogIndex;
 import net.sourceforge.kolmafia.session.SorceressLairManager;
 import net.sourceforge.kolmafia.session.StoreManager;
 import net.sourceforge.kolmafia.session.StoreManager.SoldItem;
@@ -739,6 +740,16 @@ public abstract class RuntimeLibrary {
     functions.add(
         new LibraryFunction("session_logs", new AggregateType(DataTypes.STRING_TYPE, 0), params));
 
+    params = new Type[] {DataTypes.INT_TYPE, DataTypes.STRING_TYPE};
+    functions.add(
+        new LibraryFunction(
+            "session_log_search", new AggregateType(DataTypes.STRING_TYPE, 0), params));
+
+    params = new Type[] {DataTypes.STRING_TYPE, DataTypes.INT_TYPE, DataTypes.STRING_TYPE};
+    functions.add(
+        new LibraryFunction(
+            "session_log_search", new AggregateType(DataTypes.STRING_TYPE, 0), params));
+
     // Major functions related to adventuring and item management.
 
     params = new Type[] {DataTypes.LOCATION_TYPE};
@@ -4049,6 +4060,37 @@ public abstract class RuntimeLibrary {
     return value;
   }
 
+  public static Value session_log_search(
+      ScriptRuntime controller, final Value dayCount, final Value filter) {
+    return RuntimeLibrary.searchSessionLogs(
+        controller, KoLCharacter.getUserName(), (int) dayCount.intValue(), filter.toString());
+  }
+
+  public static Value session_log_search(
+      ScriptRuntime controller, final Value player, final Value dayCount, final Value filter) {
+    return RuntimeLibrary.searchSessionLogs(
+        controller, player.toString(), (int) dayCount.intValue(), filter.toString());
+  }
+
+  private static Value searchSessionLogs(
+      ScriptRuntime controller, final String name, final int dayCount, final String filter) {
+    if (dayCount < 0) {
+      throw controller.runtimeException("Can't search session logs for a negative number of days");
+    }
+
+    List<SessionLogIndex.Match> matches =
+        SessionLogIndex.search(name, dayCount, SessionLogIndex.Query.parse(filter));
+
+    AggregateType type = new AggregateType(DataTypes.STRING_TYPE, matches.size());
+    ArrayValue value = new ArrayValue(type);
+
+    for (int i = 0; i < matches.size(); ++i) {
+      value.aset(new Value(i), new Value(matches.get(i).text()));
+    }
+
+    return value;
+  }
+
   private static String getContentsOfSessionLog(String playerName, String logDate) {
     StringBuilder contents = new StringBuilder();
     String filename =
@@ -6753,7 +6795,7 @@ public abstract class RuntimeLibrary {
     }
 
     return new Value(
-        DataTypes.BUFFER_TYPE, "", new StringBuffer(FightRequest.lastDecoratedResponseText));
+        DataTypes.BUFFER_TYPE, "", new StringBuffer(FightRequest.getLastDecoratedResponseText()));
   }
 
   public static Value run_combat(ScriptRuntime controller, Value filterFunction) {
@@ -8582,8 +8624,7 @@ public abstract class RuntimeLibrary {
 
   public static Value file_to_buffer(ScriptRuntime controller, final Value var1) {
     String location = var1.toString();
-    byte[] bytes = DataFileCache.getBytes(location);
-    String string = new String(bytes, StandardCharsets.UTF_8);
+    String string = StandardCharsets.UTF_8.decode(DataFileCache.getBuffer(location)).toString();
     StringBuffer buffer = new StringBuffer(string);
     return new Value(DataTypes.BUFFER_TYPE, "", buffer);
   }
@@ -3,11 +3,12 @@ package net.sourceforge.kolmafia.textui.command;
 import net.sourceforge.kolmafia.RequestLogger;
 import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.request.RelayRequest;
+import net.sourceforge.kolmafia.session.MallPriceManager;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
 public class CacheCommand extends AbstractCommand {
   public CacheCommand() {
-    this.usage = "[clear] - get image cache status or clear cache.";
+    this.usage = "[clear | mall] - get image cache status, clear cache, or show mall search cache.";
   }
 
   @Override
@@ -27,6 +28,11 @@ public class CacheCommand extends AbstractCommand {
 
     if (command.equals("clear")) {
       RelayRequest.clearImageCache();
+      return;
+    }
+
+    if (command.equals("mall")) {
+      RequestLogger.printLine(MallPriceManager.getSearchCacheSummary());
     }
   }
 }
@@ -36,7 +36,7 @@ public class CheckDataCommand extends AbstractCommand {
       RequestThread.postRequest(new EquipmentRequest(EquipmentRequestType.REFRESH));
 
       // The api registers new status effects
-      ApiRequest.updateStatus();
+      ApiRequest.updateStatus(false, true);
 
       // Write override files, if necessary
       KoLmafia.saveDataOverride();
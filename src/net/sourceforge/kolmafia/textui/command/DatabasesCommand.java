@@ -0,0 +1,18 @@
+package net.sourceforge.kolmafia.textui.command;
+
+import net.sourceforge.kolmafia.RequestLogger;
+import net.sourceforge.kolmafia.persistence.DatabaseInitializer;
+
+public class DatabasesCommand extends AbstractCommand {
+  public DatabasesCommand() {
+    this.usage =
+        " - show which databases have been loaded, whether at startup or on demand, how long each"
+            + " took and how much it allocated.";
+  }
+
+  @Override
+  public void run(final String cmd, final String parameters) {
+    RequestLogger.printLine(DatabaseInitializer.getHTMLTable());
+    RequestLogger.printLine();
+  }
+}
@@ -0,0 +1,78 @@
+package net.sourceforge.kolmafia.textui.command;
+
+import java.io.File;
+import java.io.PrintStream;
+import net.sourceforge.kolmafia.KoLConstants;
+import net.sourceforge.kolmafia.KoLmafia;
+import net.sourceforge.kolmafia.RequestLogger;
+import net.sourceforge.kolmafia.chat.ChatPoller;
+import net.sourceforge.kolmafia.request.ApiRefresh;
+import net.sourceforge.kolmafia.utilities.HttpMetrics;
+import net.sourceforge.kolmafia.utilities.LogStream;
+import net.sourceforge.kolmafia.webui.DecoratorMetrics;
+import net.sourceforge.kolmafia.webui.RelayServer;
+
+public class HttpMetricsCommand extends AbstractCommand {
+  public HttpMetricsCommand() {
+    this.usage =
+        " [relay | decorators | chat | api | reset | export <filename>] - show request counts,"
+            + " latency and bytes per page [or per relay agent, time spent decorating relay pages,"
+            + " chat poll latency and backlog, or api.php refreshes saved by coalescing].";
+  }
+
+  @Override
+  public void run(final String cmd, String parameters) {
+    parameters = parameters.trim();
+
+    if (parameters.equals("relay")) {
+      RequestLogger.printLine(RelayServer.getAgentTable());
+      RequestLogger.printLine();
+      return;
+    }
+
+    if (parameters.equals("decorators")) {
+      RequestLogger.printLine(DecoratorMetrics.getHTMLTable());
+      RequestLogger.printLine();
+      return;
+    }
+
+    if (parameters.equals("chat")) {
+      RequestLogger.printLine(ChatPoller.getMetricsHTMLTable());
+      RequestLogger.printLine();
+      return;
+    }
+
+    if (parameters.equals("api")) {
+      RequestLogger.printLine(ApiRefresh.getMetricsHTMLTable());
+      RequestLogger.printLine();
+      return;
+    }
+
+    if (parameters.equals("reset")) {
+      HttpMetrics.reset();
+      DecoratorMetrics.reset();
+      ChatPoller.resetMetrics();
+      ApiRefresh.resetMetrics();
+      KoLmafia.updateDisplay("HTTP metrics reset.");
+      return;
+    }
+
+    if (parameters.startsWith("export")) {
+      String filename = parameters.substring("export".length()).trim();
+      if (filename.isEmpty()) {
+        filename = "http_metrics.txt";
+      }
+
+      File file = new File(KoLConstants.DATA_LOCATION, filename);
+      try (PrintStream ostream = LogStream.openStream(file, true)) {
+        HttpMetrics.export(ostream);
+      }
+
+      KoLmafia.updateDisplay("HTTP metrics written to " + file.getAbsolutePath());
+      return;
+    }
+
+    RequestLogger.printLine(HttpMetrics.getHTMLTable());
+    RequestLogger.printLine();
+  }
+}
@@ -17,7 +17,6 @@ import net.sourceforge.kolmafia.request.ManageStoreRequest;
 import net.sourceforge.kolmafia.request.QuantumTerrariumRequest;
 import net.sourceforge.kolmafia.request.QuestLogRequest;
 import net.sourceforge.kolmafia.request.StorageRequest;
-import net.sourceforge.kolmafia.session.InventoryManager;
 
 public class RefreshStatusCommand extends AbstractCommand {
   public RefreshStatusCommand() {
@@ -31,7 +30,7 @@ public class RefreshStatusCommand extends AbstractCommand {
       KoLmafia.refreshSession();
       return;
     } else if (parameters.equals("status") || parameters.equals("effects")) {
-      ApiRequest.updateStatus();
+      ApiRequest.updateStatus(false, true);
     } else if (parameters.equals("gear")
         || parameters.startsWith("equip")
         || parameters.equals("outfit")) {
@@ -41,7 +40,7 @@ public class RefreshStatusCommand extends AbstractCommand {
       RequestThread.postRequest(new EquipmentRequest(EquipmentRequestType.BEDAZZLEMENTS));
       parameters = "equipment";
     } else if (parameters.startsWith("inv")) {
-      InventoryManager.refresh();
+      ApiRequest.updateInventory(false, true);
       return;
     } else if (parameters.startsWith("camp")) {
       if (!KoLCharacter.getLimitMode().limitCampground()
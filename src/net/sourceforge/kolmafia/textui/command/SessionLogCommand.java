@@ -0,0 +1,75 @@
+package net.sourceforge.kolmafia.textui.command;
+
+import java.util.List;
+import net.sourceforge.kolmafia.KoLCharacter;
+import net.sourceforge.kolmafia.RequestLogger;
+import net.sourceforge.kolmafia.session.SessionLogIndex;
+import net.sourceforge.kolmafia.utilities.StringUtilities;
+
+public class SessionLogCommand extends AbstractCommand {
+  public SessionLogCommand() {
+    this.usage =
+        " [<days>] [location=<text>; encounter=<text>; item=<text>; turns=<from>-<to>] - find"
+            + " adventures in your session logs for today [and earlier days].";
+  }
+
+  @Override
+  public void run(final String cmd, String parameters) {
+    parameters = parameters.trim();
+
+    int days = 1;
+    String[] split = parameters.split("\\s+", 2);
+    if (StringUtilities.isNumeric(split[0])) {
+      days = StringUtilities.parseInt(split[0]);
+      parameters = split.length > 1 ? split[1] : "";
+    }
+
+    List<SessionLogIndex.Match> matches =
+        SessionLogIndex.search(
+            KoLCharacter.getUserName(), days, SessionLogIndex.Query.parse(parameters));
+
+    if (matches.isEmpty()) {
+      RequestLogger.printLine("No matching adventures found.");
+      return;
+    }
+
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("<table border=2 cols=5>");
+    buffer
+        .append("<tr>")
+        .append("<th>Date</th>")
+        .append("<th>Turn</th>")
+        .append("<th>Location</th>")
+        .append("<th>Encounter</th>")
+        .append("<th>Items</th>")
+        .append("</tr>");
+
+    for (SessionLogIndex.Match match : matches) {
+      SessionLogIndex.Adventure adventure = match.adventure();
+      buffer
+          .append("<tr>")
+          .append("<td>")
+          .append(match.date())
+          .append("</td>")
+          .append("<td>")
+          .append(adventure.turn())
+          .append("</td>")
+          .append("<td>")
+          .append(adventure.location())
+          .append("</td>")
+          .append("<td>")
+          .append(String.join(", ", adventure.encounters()))
+          .append("</td>")
+          .append("<td>")
+          .append(String.join(", ", adventure.items()))
+          .append("</td>")
+          .append("</tr>");
+    }
+
+    buffer.append("</table>");
+
+    RequestLogger.printLine(buffer.toString());
+    RequestLogger.printLine();
+  }
+}
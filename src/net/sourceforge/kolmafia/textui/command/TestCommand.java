@@ -68,6 +68,7 @@ import net.sourceforge.kolmafia.session.BastilleBattalionManager;
 import net.sourceforge.kolmafia.session.BeachManager;
 import net.sourceforge.kolmafia.session.ChoiceAdventures;
 import net.sourceforge.kolmafia.session.ChoiceManager;
+import net.sourceforge.kolmafia.session.CombatSession;
 import net.sourceforge.kolmafia.session.DadManager;
 import net.sourceforge.kolmafia.session.DvorakManager;
 import net.sourceforge.kolmafia.session.EventManager;
@@ -1103,8 +1104,9 @@ public class TestCommand extends AbstractCommand {
         // This command used to use updateCombatData, but processResults will
         // fix text munging from the hewn moon-rune spoon.
         FightRequest.processResults("fight.php", monsterName, responseText);
-        FightRequest.lastDecoratedResponseText =
-            RequestEditorKit.getFeatureRichHTML("fight.php", responseText);
+        CombatSession.publish(
+            FightRequest.currentRound,
+            RequestEditorKit.getFeatureRichHTML("fight.php", responseText));
       } else {
         FightRequest.parseFightHTML(responseText);
       }
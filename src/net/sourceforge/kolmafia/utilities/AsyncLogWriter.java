@@ -0,0 +1,256 @@
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An output stream for log files which never makes the thread writing to the log wait for the
+ * disk. Each write is copied into a fixed-size ring and a background thread writes them out in
+ * batches, syncing the file to disk at most once a second.
+ *
+ * <p>If the ring fills up because the disk cannot keep up, a log which must not lose anything (the
+ * session log) makes writers wait for room, while one which can (the debug log) drops the write
+ * and later notes how many were dropped.
+ *
+ * <p>{@link #flush} does not wait; {@link #sync} does, as does {@link #close}. {@link #syncAll}
+ * is used when aborting, so that the logs show everything which led up to it.
+ */
+public class AsyncLogWriter extends OutputStream {
+  public enum Overflow {
+    BLOCK,
+    DROP
+  }
+
+  private static final int CAPACITY = 4096;
+  private static final int MASK = CAPACITY - 1;
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SYNC_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static final Set<AsyncLogWriter> writers = ConcurrentHashMap.newKeySet();
+
+  static {
+    Runtime.getRuntime()
+        .addShutdownHook(new Thread(AsyncLogWriter::syncAll, "AsyncLogWriter shutdown"));
+  }
+
+  private final AtomicReferenceArray<byte[]> ring = new AtomicReferenceArray<>(CAPACITY);
+  // Next slot to be claimed by a writer; only ever increases
+  private final AtomicLong tail = new AtomicLong();
+  // Next slot to be written out; only the background thread changes this
+  private final AtomicLong head = new AtomicLong();
+  // Every slot before this has reached the disk
+  private final AtomicLong synced = new AtomicLong();
+  private final AtomicLong syncRequested = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final String name;
+  private final Overflow overflow;
+  private final FileOutputStream file;
+  private final OutputStream ostream;
+  private final Thread thread;
+
+  private volatile boolean closed = false;
+  private volatile boolean failed = false;
+
+  public AsyncLogWriter(final File file, final boolean append, final Overflow overflow)
+      throws IOException {
+    File parent = file.getParentFile();
+    if (parent != null && !parent.exists()) {
+      parent.mkdirs();
+    }
+
+    this.name = file.getName();
+    this.overflow = overflow;
+    this.file = new FileOutputStream(file, append);
+    this.ostream = new BufferedOutputStream(this.file, 64 * 1024);
+
+    this.thread = new Thread(this::drainLoop, "AsyncLogWriter " + this.name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+
+    AsyncLogWriter.writers.add(this);
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  /** Returns how many writes have been dropped since the log was opened. */
+  public long getDropped() {
+    return this.dropped.get();
+  }
+
+  @Override
+  public void write(final int b) {
+    this.enqueue(new byte[] {(byte) b});
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) {
+    if (len > 0) {
+      byte[] copy = new byte[len];
+      System.arraycopy(b, off, copy, 0, len);
+      this.enqueue(copy);
+    }
+  }
+
+  private void enqueue(final byte[] chunk) {
+    if (this.closed || this.failed) {
+      return;
+    }
+
+    while (true) {
+      long slot = this.tail.get();
+
+      if (slot - this.head.get() >= CAPACITY) {
+        if (this.overflow == Overflow.DROP) {
+          this.dropped.incrementAndGet();
+          return;
+        }
+
+        // Let the background thread catch up
+        LockSupport.unpark(this.thread);
+        LockSupport.parkNanos(IDLE_NANOS / 10);
+        if (this.closed || this.failed) {
+          return;
+        }
+        continue;
+      }
+
+      if (this.tail.compareAndSet(slot, slot + 1)) {
+        this.ring.set((int) (slot & MASK), chunk);
+        return;
+      }
+    }
+  }
+
+  /** Does not wait: the background thread writes everything out shortly. */
+  @Override
+  public void flush() {}
+
+  /** Waits until everything written so far has reached the disk. */
+  public void sync() {
+    long target = this.tail.get();
+    this.syncRequested.accumulateAndGet(target, Math::max);
+
+    while (this.synced.get() < target && this.thread.isAlive() && !this.failed) {
+      LockSupport.unpark(this.thread);
+      LockSupport.parkNanos(IDLE_NANOS / 10);
+    }
+  }
+
+  public static void syncAll() {
+    for (AsyncLogWriter writer : AsyncLogWriter.writers) {
+      writer.sync();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (this.closed) {
+      return;
+    }
+
+    this.sync();
+    this.closed = true;
+    LockSupport.unpark(this.thread);
+
+    try {
+      this.thread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    AsyncLogWriter.writers.remove(this);
+  }
+
+  private void drainLoop() {
+    long lastSync = System.nanoTime();
+    long reportedDrops = 0;
+
+    try {
+      while (true) {
+        boolean stopping = this.closed;
+        int written = this.drain();
+
+        long drops = this.dropped.get();
+        if (drops != reportedDrops) {
+          String note =
+              System.lineSeparator()
+                  + "[AsyncLogWriter dropped "
+                  + (drops - reportedDrops)
+                  + " writes to this log]"
+                  + System.lineSeparator();
+          this.ostream.write(note.getBytes(StandardCharsets.UTF_8));
+          reportedDrops = drops;
+          written++;
+        }
+
+        long now = System.nanoTime();
+        long position = this.head.get();
+        boolean syncDue =
+            position > this.synced.get()
+                && (now - lastSync >= SYNC_NANOS
+                    || this.syncRequested.get() > this.synced.get()
+                    || stopping);
+
+        if (syncDue) {
+          this.ostream.flush();
+          this.file.getChannel().force(false);
+          this.synced.set(position);
+          lastSync = now;
+        } else if (written > 0) {
+          // Hand the batch to the operating system, even if it is not yet on disk
+          this.ostream.flush();
+        }
+
+        if (stopping && position == this.tail.get()) {
+          break;
+        }
+
+        if (written == 0) {
+          LockSupport.parkNanos(IDLE_NANOS);
+        }
+      }
+    } catch (IOException e) {
+      this.failed = true;
+      System.err.println("Could not write to " + this.name + ": " + e.getMessage());
+    } finally {
+      try {
+        this.ostream.close();
+      } catch (IOException e) {
+      }
+    }
+  }
+
+  private int drain() throws IOException {
+    int count = 0;
+    long position = this.head.get();
+
+    while (position < this.tail.get()) {
+      int index = (int) (position & MASK);
+      byte[] chunk = this.ring.get(index);
+      if (chunk == null) {
+        // The slot has been claimed, but not yet filled
+        break;
+      }
+
+      this.ostream.write(chunk);
+      this.ring.set(index, null);
+      this.head.set(++position);
+      count++;
+    }
+
+    return count;
+  }
+}
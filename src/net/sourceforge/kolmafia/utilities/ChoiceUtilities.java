@@ -14,7 +14,6 @@ import net.sourceforge.kolmafia.session.ChoiceOption;
 
 /** Utilities for extracting data from a choice.php response */
 public class ChoiceUtilities {
-  private static final Pattern FORM_PATTERN = Pattern.compile("<form.*?</form>", Pattern.DOTALL);
   private static final Pattern OPTION_PATTERN1 =
       Pattern.compile("name=[\"']?option[\"']? value=[\"']?(\\d+)[\"']?");
   private static final Pattern TEXT_PATTERN1 =
@@ -116,9 +115,7 @@ public class ChoiceUtilities {
       return rv;
     }
 
-    Matcher m = FORM_PATTERN.matcher(responseText);
-    while (m.find()) {
-      String form = m.group();
+    for (String form : ResponseIndex.of(responseText).getForms()) {
       if (!form.contains("choice.php")) {
         continue;
       }
@@ -143,7 +140,7 @@ public class ChoiceUtilities {
       rv.put(key, text);
     }
 
-    m = LINK_PATTERN.matcher(responseText);
+    Matcher m = LINK_PATTERN.matcher(responseText);
     while (m.find()) {
       String form = m.group();
       if (!form.contains("choice.php")) {
@@ -240,9 +237,7 @@ public class ChoiceUtilities {
     }
 
     // Find all choice forms
-    Matcher m = FORM_PATTERN.matcher(responseText);
-    while (m.find()) {
-      String form = m.group();
+    for (String form : ResponseIndex.of(responseText).getForms()) {
       if (!form.contains("choice.php")) {
         continue;
       }
@@ -288,9 +283,7 @@ public class ChoiceUtilities {
     }
 
     // Find all choice forms
-    Matcher m = FORM_PATTERN.matcher(responseText);
-    while (m.find()) {
-      String form = m.group();
+    for (String form : ResponseIndex.of(responseText).getForms()) {
       if (!form.contains("choice.php")) {
         continue;
       }
@@ -342,9 +335,7 @@ public class ChoiceUtilities {
     }
 
     // Find all choice forms
-    Matcher m = FORM_PATTERN.matcher(responseText);
-    while (m.find()) {
-      String form = m.group();
+    for (String form : ResponseIndex.of(responseText).getForms()) {
       if (!form.contains("choice.php")) {
         continue;
       }
@@ -0,0 +1,318 @@
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.java.dev.spellcast.utilities.UtilityConstants;
+import net.sourceforge.kolmafia.KoLConstants;
+
+/**
+ * The larger data files, compiled at build time into one binary file shipped in the jar, so that
+ * loading them at startup neither decodes nor scans the text for tabs and comments.
+ *
+ * <p>For each file, the bundle holds its version and its records: the lines {@link
+ * FileUtilities#readData} would return, already split into fields. Nothing is decoded until a file
+ * is read. When running from a directory rather than a jar, the bundle is memory-mapped.
+ *
+ * <p>A data file in the user's data directory still overrides the bundled one, as does a bundled
+ * file of the wrong version; both are read as text, as before. Setting the system property
+ * <code>kolmafia.dataBundle</code> to false ignores the bundle entirely.
+ */
+public class DataBundle {
+  public static final String FILENAME = "databundle.bin";
+
+  private static final int MAGIC = 0x4B4D4442; // "KMDB"
+  private static final int FORMAT = 1;
+
+  private record Entry(int version, int records, int offset, int length) {}
+
+  private static final DataBundle EMPTY = new DataBundle(ByteBuffer.allocate(0), Map.of());
+
+  private static class Holder {
+    private static final DataBundle INSTANCE = DataBundle.load();
+  }
+
+  private final ByteBuffer buffer;
+  private final Map<String, Entry> entries;
+
+  private DataBundle(final ByteBuffer buffer, final Map<String, Entry> entries) {
+    this.buffer = buffer;
+    this.entries = entries;
+  }
+
+  public static DataBundle getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  private static DataBundle load() {
+    if (!Boolean.parseBoolean(System.getProperty("kolmafia.dataBundle", "true"))) {
+      return DataBundle.EMPTY;
+    }
+
+    String resource = KoLConstants.DATA_DIRECTORY + DataBundle.FILENAME;
+    URL url = UtilityConstants.SYSTEM_CLASSLOADER.getResource(resource);
+    if (url == null) {
+      url = UtilityConstants.MAINCLASS_CLASSLOADER.getResource(resource);
+    }
+    if (url == null) {
+      return DataBundle.EMPTY;
+    }
+
+    try {
+      if (url.getProtocol().equals("file")) {
+        return DataBundle.open(Path.of(url.toURI()));
+      }
+
+      // A compressed jar entry cannot be mapped, so read it in
+      try (InputStream istream = url.openStream()) {
+        return DataBundle.parse(ByteBuffer.wrap(istream.readAllBytes()));
+      }
+    } catch (Exception e) {
+      System.out.println(e.getMessage() + " trying to load " + resource + "; using text data.");
+      return DataBundle.EMPTY;
+    }
+  }
+
+  public static DataBundle open(final Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return DataBundle.parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  static DataBundle parse(final ByteBuffer buffer) throws IOException {
+    if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+      throw new IOException("Unrecognized data bundle");
+    }
+
+    int count = buffer.getInt();
+    Map<String, Entry> entries = new HashMap<>();
+
+    for (int i = 0; i < count; ++i) {
+      byte[] name = new byte[buffer.getShort()];
+      buffer.get(name);
+      Entry entry = new Entry(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+      if (entry.offset() < 0 || entry.offset() + entry.length() > buffer.capacity()) {
+        throw new IOException("Damaged data bundle");
+      }
+      entries.put(new String(name, StandardCharsets.UTF_8), entry);
+    }
+
+    return new DataBundle(buffer, entries);
+  }
+
+  /**
+   * Returns a reader for the records of a bundled file, already past its version number, or null
+   * if the file is not bundled, has been overridden, or is not the version asked for.
+   */
+  public BufferedReader getReader(final String filename, final int version) {
+    Entry entry = this.entries.get(filename);
+    if (entry == null || entry.version() != version) {
+      return null;
+    }
+
+    File override = new File(KoLConstants.ROOT_LOCATION, KoLConstants.DATA_DIRECTORY + filename);
+    if (override.exists()) {
+      return null;
+    }
+
+    return new RecordReader(
+        this.buffer.duplicate().position(entry.offset()).limit(entry.offset() + entry.length()),
+        entry.records());
+  }
+
+  /**
+   * Serves a bundled file's records to {@link FileUtilities#readData}. Anything reading it as text
+   * sees each record as a tab-separated line, with comments and blank lines gone.
+   */
+  public static class RecordReader extends BufferedReader {
+    private final ByteBuffer records;
+    private int remaining;
+    private byte[] scratch = new byte[256];
+    private BufferedReader text = null;
+
+    private RecordReader(final ByteBuffer records, final int count) {
+      super(Reader.nullReader());
+      this.records = records;
+      this.remaining = count;
+    }
+
+    public String[] readData() {
+      if (this.remaining == 0) {
+        return null;
+      }
+      this.remaining--;
+
+      String[] fields = new String[DataBundle.readVarInt(this.records)];
+      for (int i = 0; i < fields.length; ++i) {
+        int length = DataBundle.readVarInt(this.records);
+        if (length > this.scratch.length) {
+          this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+        this.records.get(this.scratch, 0, length);
+        fields[i] = new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+      }
+      return fields;
+    }
+
+    @Override
+    public String readLine() throws IOException {
+      if (this.text != null) {
+        return this.text.readLine();
+      }
+      String[] data = this.readData();
+      return data == null ? null : String.join("\t", data);
+    }
+
+    @Override
+    public int read() throws IOException {
+      return this.getText().read();
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+      return this.getText().read(cbuf, off, len);
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+      return this.text != null ? this.text.ready() : this.remaining > 0;
+    }
+
+    @Override
+    public void close() {
+      this.remaining = 0;
+    }
+
+    private BufferedReader getText() {
+      if (this.text == null) {
+        StringBuilder buffer = new StringBuilder();
+        String[] data;
+        while ((data = this.readData()) != null) {
+          buffer.append(String.join("\t", data)).append('\n');
+        }
+        this.text = new BufferedReader(new StringReader(buffer.toString()));
+      }
+      return this.text;
+    }
+  }
+
+  private static int readVarInt(final ByteBuffer buffer) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return value;
+  }
+
+  private static void writeVarInt(final OutputStream ostream, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      ostream.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    ostream.write(value);
+  }
+
+  /**
+   * Compiles the named data files into a bundle. Each must start, after any comments, with its
+   * version number.
+   */
+  public static void write(final File directory, final List<String> filenames, final File output)
+      throws IOException {
+    Map<String, byte[]> compiled = new HashMap<>();
+    Map<String, int[]> headers = new HashMap<>();
+
+    for (String filename : filenames) {
+      List<String> lines =
+          Files.readAllLines(new File(directory, filename).toPath(), StandardCharsets.UTF_8);
+      ByteArrayOutputStream records = new ByteArrayOutputStream();
+      Integer version = null;
+      int count = 0;
+
+      for (String line : lines) {
+        if (line.startsWith("#") || line.length() == 0) {
+          continue;
+        }
+        if (version == null) {
+          version = Integer.parseInt(line.trim());
+          continue;
+        }
+
+        String[] fields = line.split("\t", -1);
+        DataBundle.writeVarInt(records, fields.length);
+        for (String field : fields) {
+          byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+          DataBundle.writeVarInt(records, bytes.length);
+          records.write(bytes);
+        }
+        count++;
+      }
+
+      if (version == null) {
+        throw new IOException(filename + " has no version number");
+      }
+
+      compiled.put(filename, records.toByteArray());
+      headers.put(filename, new int[] {version, count});
+    }
+
+    int offset = 12;
+    for (String filename : filenames) {
+      offset += 2 + filename.getBytes(StandardCharsets.UTF_8).length + 16;
+    }
+
+    output.getParentFile().mkdirs();
+    try (DataOutputStream ostream = new DataOutputStream(Files.newOutputStream(output.toPath()))) {
+      ostream.writeInt(MAGIC);
+      ostream.writeInt(FORMAT);
+      ostream.writeInt(filenames.size());
+
+      for (String filename : filenames) {
+        byte[] name = filename.getBytes(StandardCharsets.UTF_8);
+        int[] header = headers.get(filename);
+        int length = compiled.get(filename).length;
+
+        ostream.writeShort(name.length);
+        ostream.write(name);
+        ostream.writeInt(header[0]);
+        ostream.writeInt(header[1]);
+        ostream.writeInt(offset);
+        ostream.writeInt(length);
+        offset += length;
+      }
+
+      for (String filename : filenames) {
+        ostream.write(compiled.get(filename));
+      }
+    }
+  }
+
+  /** Build step: DataBundle &lt;data directory&gt; &lt;output file&gt; &lt;file&gt;... */
+  public static void main(final String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("Usage: DataBundle <data directory> <output file> <file>...");
+      System.exit(1);
+    }
+
+    DataBundle.write(new File(args[0]), List.of(args).subList(2, args.length), new File(args[1]));
+  }
+}
@@ -76,7 +76,13 @@ public class FileUtilities {
   }
 
   public static final BufferedReader getVersionedReader(final String filename, final int version) {
-    BufferedReader reader =
+    // Use the precompiled records, unless the file is overridden
+    BufferedReader reader = DataBundle.getInstance().getReader(filename, version);
+    if (reader != null) {
+      return reader;
+    }
+
+    reader =
         FileUtilities.getReader(
             DataUtilities.getReader(KoLConstants.DATA_DIRECTORY, filename, true));
 
@@ -153,6 +159,10 @@ public class FileUtilities {
       return null;
     }
 
+    if (reader instanceof DataBundle.RecordReader records) {
+      return records.readData();
+    }
+
     String line = readLine(reader);
     return line == null ? null : line.split("\t", -1);
   }
@@ -0,0 +1,276 @@
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts what goes over the wire to KoL: requests, latency and bytes per page, retries after
+ * timeouts, and how often (and why) the HTTP client was replaced.
+ *
+ * <p>Latency is measured from sending the request until the whole response body has been read.
+ * Percentiles are taken over the most recent requests to each page.
+ */
+public class HttpMetrics {
+  private static final int SAMPLES = 1024;
+
+  private static final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+  private static final Map<String, AtomicLong> clientResets = new ConcurrentHashMap<>();
+  private static final AtomicLong retries = new AtomicLong();
+  private static volatile long since = System.currentTimeMillis();
+
+  private HttpMetrics() {}
+
+  public static void reset() {
+    HttpMetrics.endpoints.clear();
+    HttpMetrics.clientResets.clear();
+    HttpMetrics.retries.set(0);
+    HttpMetrics.since = System.currentTimeMillis();
+  }
+
+  /**
+   * Records one completed request.
+   *
+   * @param page the page requested, without query string
+   * @param nanos time from sending the request to reading the last byte of the response
+   * @param bytesOut bytes of URL and form data sent
+   * @param bytesIn bytes received, before decompression
+   * @param bytesDecoded bytes received, after decompression
+   */
+  public static void recordRequest(
+      final String page,
+      final long nanos,
+      final long bytesOut,
+      final long bytesIn,
+      final long bytesDecoded) {
+    HttpMetrics.endpoints
+        .computeIfAbsent(page, Endpoint::new)
+        .record(nanos, bytesOut, bytesIn, bytesDecoded);
+  }
+
+  public static void recordRetry() {
+    HttpMetrics.retries.incrementAndGet();
+  }
+
+  public static void recordClientReset(final String reason) {
+    HttpMetrics.clientResets.computeIfAbsent(reason, k -> new AtomicLong()).incrementAndGet();
+  }
+
+  public static long getRetries() {
+    return HttpMetrics.retries.get();
+  }
+
+  public static long getClientResets(final String reason) {
+    AtomicLong count = HttpMetrics.clientResets.get(reason);
+    return count == null ? 0 : count.get();
+  }
+
+  public static List<Snapshot> getSnapshots() {
+    List<Snapshot> snapshots = new ArrayList<>();
+    for (Endpoint endpoint : HttpMetrics.endpoints.values()) {
+      snapshots.add(endpoint.snapshot());
+    }
+    snapshots.sort(Comparator.comparingLong(Snapshot::count).reversed());
+    return snapshots;
+  }
+
+  public static Snapshot getSnapshot(final String page) {
+    Endpoint endpoint = HttpMetrics.endpoints.get(page);
+    return endpoint == null ? null : endpoint.snapshot();
+  }
+
+  /** Wraps a response body so that the bytes read from it are counted. */
+  public static CountingInputStream count(final InputStream istream) {
+    return istream == null ? null : new CountingInputStream(istream);
+  }
+
+  public record Snapshot(
+      String page,
+      long count,
+      long p50,
+      long p95,
+      long p99,
+      long bytesOut,
+      long bytesIn,
+      long bytesDecoded) {
+    /** Returns the fraction of the decoded response size which actually crossed the wire. */
+    public double compressionRatio() {
+      return this.bytesDecoded == 0 ? 1.0 : (double) this.bytesIn / this.bytesDecoded;
+    }
+  }
+
+  private static class Endpoint {
+    private final String page;
+    private final long[] samples = new long[SAMPLES];
+    private long count = 0;
+    private long bytesOut = 0;
+    private long bytesIn = 0;
+    private long bytesDecoded = 0;
+
+    Endpoint(final String page) {
+      this.page = page;
+    }
+
+    synchronized void record(
+        final long nanos, final long bytesOut, final long bytesIn, final long bytesDecoded) {
+      this.samples[(int) (this.count % SAMPLES)] = nanos;
+      this.count++;
+      this.bytesOut += bytesOut;
+      this.bytesIn += bytesIn;
+      this.bytesDecoded += bytesDecoded;
+    }
+
+    synchronized Snapshot snapshot() {
+      long[] sorted = Arrays.copyOf(this.samples, (int) Math.min(this.count, SAMPLES));
+      Arrays.sort(sorted);
+      return new Snapshot(
+          this.page,
+          this.count,
+          percentile(sorted, 50),
+          percentile(sorted, 95),
+          percentile(sorted, 99),
+          this.bytesOut,
+          this.bytesIn,
+          this.bytesDecoded);
+    }
+
+    private static long percentile(final long[] sorted, final int percent) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+      return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000000;
+    }
+  }
+
+  public static class CountingInputStream extends FilterInputStream {
+    private long count = 0;
+
+    private CountingInputStream(final InputStream istream) {
+      super(istream);
+    }
+
+    public long getCount() {
+      return this.count;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        this.count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        this.count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+      long skipped = super.skip(n);
+      this.count += skipped;
+      return skipped;
+    }
+  }
+
+  /** Returns the metrics as an HTML table, as shown in the CLI and the relay browser. */
+  public static String getHTMLTable() {
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("<table border=2 cols=8>");
+    buffer
+        .append("<tr>")
+        .append("<th>Page</th>")
+        .append("<th>Requests</th>")
+        .append("<th>p50 ms</th>")
+        .append("<th>p95 ms</th>")
+        .append("<th>p99 ms</th>")
+        .append("<th>KB Out</th>")
+        .append("<th>KB In</th>")
+        .append("<th>Gzip</th>")
+        .append("</tr>");
+
+    for (Snapshot snapshot : HttpMetrics.getSnapshots()) {
+      buffer
+          .append("<tr>")
+          .append("<td>")
+          .append(CharacterEntities.escape(snapshot.page()))
+          .append("</td>")
+          .append("<td>")
+          .append(snapshot.count())
+          .append("</td>")
+          .append("<td>")
+          .append(snapshot.p50())
+          .append("</td>")
+          .append("<td>")
+          .append(snapshot.p95())
+          .append("</td>")
+          .append("<td>")
+          .append(snapshot.p99())
+          .append("</td>")
+          .append("<td>")
+          .append(snapshot.bytesOut() / 1024)
+          .append("</td>")
+          .append("<td>")
+          .append(snapshot.bytesIn() / 1024)
+          .append("</td>")
+          .append("<td>")
+          .append(Math.round(snapshot.compressionRatio() * 100))
+          .append("%</td>")
+          .append("</tr>");
+    }
+
+    buffer.append("</table>");
+    buffer.append("<br>Retries after timeout: ").append(HttpMetrics.getRetries());
+    buffer.append("<br>Client resets:");
+    if (HttpMetrics.clientResets.isEmpty()) {
+      buffer.append(" none");
+    }
+    HttpMetrics.clientResets.forEach(
+        (reason, count) -> buffer.append(" ").append(reason).append("=").append(count.get()));
+
+    return buffer.toString();
+  }
+
+  /** Writes the metrics as tab separated values, one line per page. */
+  public static void export(final PrintStream ostream) {
+    ostream.println("# since\t" + HttpMetrics.since + "\tretries\t" + HttpMetrics.getRetries());
+    HttpMetrics.clientResets.forEach(
+        (reason, count) -> ostream.println("# reset\t" + reason + "\t" + count.get()));
+    ostream.println("page\trequests\tp50\tp95\tp99\tbytesOut\tbytesIn\tbytesDecoded");
+
+    for (Snapshot snapshot : HttpMetrics.getSnapshots()) {
+      ostream.println(
+          snapshot.page()
+              + "\t"
+              + snapshot.count()
+              + "\t"
+              + snapshot.p50()
+              + "\t"
+              + snapshot.p95()
+              + "\t"
+              + snapshot.p99()
+              + "\t"
+              + snapshot.bytesOut()
+              + "\t"
+              + snapshot.bytesIn()
+              + "\t"
+              + snapshot.bytesDecoded());
+    }
+  }
+}
@@ -1,11 +1,13 @@
 package net.sourceforge.kolmafia.utilities;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.function.UnaryOperator;
 import javax.swing.SwingUtilities;
 import net.java.dev.spellcast.utilities.DataUtilities;
 import net.sourceforge.kolmafia.KoLCharacter;
@@ -33,6 +35,34 @@ public class LogStream extends PrintStream implements Runnable {
       return pstream;
     }
 
+    return LogStream.initialize(newStream, file);
+  }
+
+  /**
+   * Opens a log which is appended to in the background, so that writing to it does not make the
+   * caller wait for the disk. See {@link AsyncLogWriter}.
+   */
+  public static PrintStream openAsyncStream(
+      final File file, final AsyncLogWriter.Overflow overflow) {
+    return LogStream.openAsyncStream(file, overflow, UnaryOperator.identity());
+  }
+
+  /** As above, with the given filter between the log and the background writer. */
+  public static PrintStream openAsyncStream(
+      final File file,
+      final AsyncLogWriter.Overflow overflow,
+      final UnaryOperator<OutputStream> filter) {
+    try {
+      AsyncLogWriter writer = new AsyncLogWriter(file, true, overflow);
+      return LogStream.initialize(
+          new LogStream(filter.apply(writer), StandardCharsets.UTF_8), file);
+    } catch (IOException e) {
+      // Fall back to writing as we always did
+      return LogStream.openStream(file, false);
+    }
+  }
+
+  private static PrintStream initialize(final LogStream newStream, final File file) {
     if (file.getName().startsWith("DEBUG")) {
       if (KoLDesktop.instanceExists()) {
         newStream.proxy = file;
@@ -16,25 +16,63 @@ public class ResettingHttpClient {
    */
   private static final int HTTP_CLIENT_REQUEST_LIMIT = 9900;
 
+  /**
+   * The server also closes connections which have been open for an hour, however many requests
+   * they have carried. Recreate the HttpClient a little before that, too.
+   */
+  private static final long HTTP_CLIENT_AGE_LIMIT = 55 * 60 * 1000L;
+
   private final Supplier<HttpClient> createClient;
   private HttpClient client;
+  private long clientCreated;
 
   public ResettingHttpClient(Supplier<HttpClient> createClient) {
     this.createClient = createClient;
     this.client = createClient.get();
+    this.clientCreated = System.currentTimeMillis();
   }
 
   public void resetClient() {
+    this.resetClient("requested");
+  }
+
+  private void resetClient(final String reason) {
     this.client = createClient.get();
+    this.clientCreated = System.currentTimeMillis();
     clientRequestsSent.set(0);
+    HttpMetrics.recordClientReset(reason);
+  }
+
+  public int getRequestsSent() {
+    return clientRequestsSent.get();
+  }
+
+  private void rotateIfOld() {
+    if (System.currentTimeMillis() - this.clientCreated >= HTTP_CLIENT_AGE_LIMIT) {
+      resetClient("age");
+    }
+  }
+
+  private void countRequest() {
+    if (clientRequestsSent.incrementAndGet() >= HTTP_CLIENT_REQUEST_LIMIT) {
+      resetClient("limit");
+    }
   }
 
   public <T> HttpResponse<T> send(HttpRequest req, HttpResponse.BodyHandler<T> handler)
       throws IOException, InterruptedException {
-    var resp = this.client.send(req, handler);
-    if (clientRequestsSent.incrementAndGet() >= HTTP_CLIENT_REQUEST_LIMIT) {
-      resetClient();
+    this.rotateIfOld();
+    HttpResponse<T> resp;
+    try {
+      resp = this.client.send(req, handler);
+    } catch (IOException e) {
+      // The server went away anyway; don't send the retry down the same connection
+      if (e.getMessage() != null && e.getMessage().contains("GOAWAY")) {
+        resetClient("goaway");
+      }
+      throw e;
     }
+    this.countRequest();
     return resp;
   }
 }
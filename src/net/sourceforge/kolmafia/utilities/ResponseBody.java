@@ -0,0 +1,78 @@
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The body of a server response. The (already decompressed) stream is read once into a per-thread
+ * buffer which is reused from one request to the next, and decoded from there directly into the
+ * response text. The original bytes are kept only if asked for, so that a response which is passed
+ * through to the browser unchanged need not be encoded again.
+ */
+public class ResponseBody {
+  private static final int INITIAL_CAPACITY = 64 * 1024;
+
+  // Don't hold on to the buffer for the occasional huge page
+  private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+  private static final ThreadLocal<byte[]> BUFFERS =
+      ThreadLocal.withInitial(() -> new byte[INITIAL_CAPACITY]);
+
+  public static final ResponseBody EMPTY = new ResponseBody("", new byte[0], 0);
+
+  private final String text;
+  private final byte[] bytes;
+  private final int length;
+
+  private ResponseBody(final String text, final byte[] bytes, final int length) {
+    this.text = text;
+    this.bytes = bytes;
+    this.length = length;
+  }
+
+  public static ResponseBody read(final InputStream istream, final boolean keepBytes) {
+    if (istream == null) {
+      return ResponseBody.EMPTY;
+    }
+
+    byte[] buffer = ResponseBody.BUFFERS.get();
+    int length = 0;
+
+    try (istream) {
+      int count;
+      while ((count = istream.read(buffer, length, buffer.length - length)) != -1) {
+        length += count;
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+      }
+    } catch (IOException e) {
+      return ResponseBody.EMPTY;
+    }
+
+    if (buffer.length <= MAX_RETAINED_CAPACITY) {
+      ResponseBody.BUFFERS.set(buffer);
+    }
+
+    String text = new String(buffer, 0, length, StandardCharsets.UTF_8);
+    byte[] bytes = keepBytes ? Arrays.copyOf(buffer, length) : null;
+
+    return new ResponseBody(text, bytes, length);
+  }
+
+  public String getText() {
+    return this.text;
+  }
+
+  /** Returns the number of bytes received. */
+  public int getLength() {
+    return this.length;
+  }
+
+  /** Returns the bytes as received, or <code>null</code> if they were not kept. */
+  public byte[] getBytes() {
+    return this.bytes;
+  }
+}
@@ -0,0 +1,255 @@
+package net.sourceforge.kolmafia.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of a response page, built with a single pass over the text. Many handlers look at the
+ * same responseText after every request; rather than each of them scanning the whole page with its
+ * own regular expression to find out whether there is anything of interest, they can ask the index
+ * where the tags, item descriptions, result tables and forms are.
+ *
+ * <p>The most recently built indexes are cached, keyed on the identity of the text, so every
+ * handler that looks at the same page shares one scan, even when handlers go back and forth between
+ * a page and the fragments of it they were handed.
+ */
+public class ResponseIndex {
+  private static final int[] NO_OFFSETS = new int[0];
+
+  // How many of the most recently built indexes to keep
+  static final int CACHE_SIZE = 8;
+
+  private static final ResponseIndex[] recentIndexes = new ResponseIndex[CACHE_SIZE];
+  private static int nextIndex = 0;
+
+  private final String text;
+  private final Map<String, Offsets> tags = new HashMap<>();
+  private final List<String> descItemIds = new ArrayList<>();
+  private final Offsets itemTables = new Offsets();
+  private final Offsets effectTables = new Offsets();
+
+  private ResponseIndex(final String text) {
+    this.text = text;
+    this.scan();
+  }
+
+  /**
+   * Returns the index for the specified text, building it if the text is not one of those most
+   * recently indexed.
+   */
+  public static ResponseIndex of(final String text) {
+    synchronized (ResponseIndex.recentIndexes) {
+      for (ResponseIndex index : ResponseIndex.recentIndexes) {
+        if (index != null && index.text == text) {
+          return index;
+        }
+      }
+    }
+
+    // Build outside the lock, so that handlers on other threads need not wait for this scan
+    ResponseIndex index = new ResponseIndex(text == null ? "" : text);
+
+    synchronized (ResponseIndex.recentIndexes) {
+      ResponseIndex.recentIndexes[ResponseIndex.nextIndex] = index;
+      ResponseIndex.nextIndex = (ResponseIndex.nextIndex + 1) % CACHE_SIZE;
+    }
+    return index;
+  }
+
+  public static void reset() {
+    synchronized (ResponseIndex.recentIndexes) {
+      Arrays.fill(ResponseIndex.recentIndexes, null);
+      ResponseIndex.nextIndex = 0;
+    }
+  }
+
+  public String getText() {
+    return this.text;
+  }
+
+  /**
+   * Returns the offsets of the '&lt;' of each tag with the specified name. Tag names are case
+   * sensitive. Closing tags are indexed with a leading slash ("/form") and only if the name is
+   * immediately followed by '&gt;'.
+   */
+  public int[] getTagOffsets(final String name) {
+    Offsets offsets = this.tags.get(name);
+    return offsets == null ? NO_OFFSETS : offsets.toArray();
+  }
+
+  public boolean hasTag(final String name) {
+    return this.tags.containsKey(name);
+  }
+
+  /** Returns the description ids of every onClick='descitem(...)' on the page, in page order. */
+  public List<String> getDescItemIds() {
+    return Collections.unmodifiableList(this.descItemIds);
+  }
+
+  /** Returns the offsets of each &lt;table class="item"&gt; result block. */
+  public int[] getItemTableOffsets() {
+    return this.itemTables.toArray();
+  }
+
+  public boolean hasItemTables() {
+    return this.itemTables.size > 0;
+  }
+
+  /** Returns the offsets of each &lt;table&gt;&lt;tr&gt;&lt;td&gt;&lt;img effect block. */
+  public int[] getEffectTableOffsets() {
+    return this.effectTables.toArray();
+  }
+
+  public boolean hasEffectTables() {
+    return this.effectTables.size > 0;
+  }
+
+  /**
+   * Returns the text of each &lt;form ...&gt; ... &lt;/form&gt; on the page, the same way that
+   * matching &lt;form.*?&lt;/form&gt; repeatedly would.
+   */
+  public List<String> getForms() {
+    int[] starts = this.getTagOffsets("form");
+    int[] ends = this.getTagOffsets("/form");
+    if (starts.length == 0 || ends.length == 0) {
+      return Collections.emptyList();
+    }
+
+    List<String> forms = new ArrayList<>();
+    int end = 0;
+    int next = 0;
+
+    for (int start : starts) {
+      if (start < end) {
+        // Nested in the previous form
+        continue;
+      }
+
+      while (next < ends.length && ends[next] < start) {
+        ++next;
+      }
+
+      if (next == ends.length) {
+        break;
+      }
+
+      end = ends[next] + "</form>".length();
+      forms.add(this.text.substring(start, end));
+    }
+
+    return forms;
+  }
+
+  private void scan() {
+    String text = this.text;
+    int length = text.length();
+
+    for (int i = 0; i < length; ++i) {
+      char c = text.charAt(i);
+
+      if (c == '<') {
+        i = this.scanTag(i);
+      } else if (c == 'd' && text.startsWith("descitem(", i)) {
+        i = this.scanDescItem(i);
+      }
+    }
+  }
+
+  private int scanTag(final int start) {
+    String text = this.text;
+    int length = text.length();
+
+    int nameStart = start + 1;
+    boolean closing = nameStart < length && text.charAt(nameStart) == '/';
+    if (closing) {
+      ++nameStart;
+    }
+
+    int nameEnd = nameStart;
+    while (nameEnd < length && Character.isLetterOrDigit(text.charAt(nameEnd))) {
+      ++nameEnd;
+    }
+
+    if (nameEnd == nameStart) {
+      return start;
+    }
+
+    if (closing && (nameEnd == length || text.charAt(nameEnd) != '>')) {
+      return nameEnd - 1;
+    }
+
+    String name = text.substring(nameStart, nameEnd);
+    if (closing) {
+      name = "/" + name;
+    }
+
+    this.tags.computeIfAbsent(name, k -> new Offsets()).add(start);
+
+    if (name.equals("table")) {
+      if (text.startsWith(" class=\"item\"", nameEnd)) {
+        this.itemTables.add(start);
+      } else if (text.startsWith("><tr><td><img", nameEnd)) {
+        this.effectTables.add(start);
+      }
+    }
+
+    return nameEnd - 1;
+  }
+
+  private int scanDescItem(final int start) {
+    String text = this.text;
+    int length = text.length();
+
+    int idStart = start + "descitem(".length();
+    int idEnd = idStart;
+    while (idEnd < length && text.charAt(idEnd) >= '0' && text.charAt(idEnd) <= '9') {
+      ++idEnd;
+    }
+
+    if (text.startsWith(")'", idEnd) && ResponseIndex.isOnClick(text, start)) {
+      this.descItemIds.add(text.substring(idStart, idEnd));
+    }
+
+    return idEnd - 1;
+  }
+
+  private static boolean isOnClick(final String text, int position) {
+    // on[cC]lick='(?:javascript:)?descitem(
+    if (position >= 11 && text.startsWith("javascript:", position - 11)) {
+      position -= 11;
+    }
+
+    if (position < 9) {
+      return false;
+    }
+
+    char c = text.charAt(position - 7);
+    return (c == 'c' || c == 'C')
+        && text.startsWith("on", position - 9)
+        && text.startsWith("lick='", position - 6);
+  }
+
+  private static class Offsets {
+    private int[] values = new int[4];
+    private int size = 0;
+
+    void add(final int value) {
+      if (this.size == this.values.length) {
+        int[] values = new int[this.size * 2];
+        System.arraycopy(this.values, 0, values, 0, this.size);
+        this.values = values;
+      }
+      this.values[this.size++] = value;
+    }
+
+    int[] toArray() {
+      int[] values = new int[this.size];
+      System.arraycopy(this.values, 0, values, 0, this.size);
+      return values;
+    }
+  }
+}
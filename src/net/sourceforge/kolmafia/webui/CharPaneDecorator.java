@@ -14,6 +14,8 @@ import net.sourceforge.kolmafia.KoLCharacter;
 import net.sourceforge.kolmafia.KoLConstants;
 import net.sourceforge.kolmafia.KoLmafia;
 import net.sourceforge.kolmafia.equipment.Slot;
+import net.sourceforge.kolmafia.listener.ItemListenerRegistry;
+import net.sourceforge.kolmafia.listener.PreferenceListenerRegistry;
 import net.sourceforge.kolmafia.maximizer.Evaluator;
 import net.sourceforge.kolmafia.moods.ManaBurnManager;
 import net.sourceforge.kolmafia.moods.MoodManager;
@@ -69,6 +71,98 @@ public class CharPaneDecorator {
 
   private CharPaneDecorator() {}
 
+  // The charpane is reloaded after nearly every page, often unchanged. The decorations depend on
+  // preferences, the inventory, and the character state below. Keeping the recent locations in the
+  // key means that reusing a decoration never skips a change to that list.
+  private record CacheKey(
+      int hash,
+      long preferences,
+      long items,
+      int skills,
+      FamiliarData familiar,
+      AdventureResult familiarItem,
+      boolean inFight,
+      LimitMode limitMode,
+      long hp,
+      long maxHP,
+      long mp,
+      long maxMP,
+      String effects,
+      String counters,
+      List<String> recentLocations,
+      String moodText,
+      List<AdventureResult> missingEffects) {
+    static CacheKey of(final String raw) {
+      return new CacheKey(
+          raw.hashCode(),
+          PreferenceListenerRegistry.getChangeCount(),
+          ItemListenerRegistry.getChangeCount(),
+          KoLConstants.availableSkills.size(),
+          KoLCharacter.getEffectiveFamiliar(),
+          EquipmentManager.getEquipment(Slot.FAMILIAR),
+          FightRequest.getCurrentRound() != 0,
+          KoLCharacter.getLimitMode(),
+          KoLCharacter.getCurrentHP(),
+          KoLCharacter.getMaximumHP(),
+          KoLCharacter.getCurrentMP(),
+          KoLCharacter.getMaximumMP(),
+          CacheKey.effectsText(),
+          CacheKey.countersText(),
+          List.copyOf(CharPaneDecorator.recentLocations),
+          CharPaneDecorator.getMoodText(),
+          MoodManager.getMissingEffects());
+    }
+
+    // Effects are equal if their names are, so note the durations too
+    private static String effectsText() {
+      StringBuilder buffer = new StringBuilder();
+      synchronized (KoLConstants.activeEffects) {
+        for (AdventureResult effect : KoLConstants.activeEffects) {
+          buffer.append(effect.getName()).append(':').append(effect.getCount()).append(';');
+        }
+      }
+      return buffer.toString();
+    }
+
+    private static String countersText() {
+      StringBuilder buffer = new StringBuilder();
+      for (TurnCounter counter : TurnCounter.getCounters()) {
+        buffer
+            .append(System.identityHashCode(counter))
+            .append(':')
+            .append(counter.getLabel())
+            .append(':')
+            .append(counter.getImage())
+            .append(':')
+            .append(counter.getTurnsRemaining())
+            .append(';');
+      }
+      return buffer.toString();
+    }
+  }
+
+  private record CachedDecoration(CacheKey key, String raw, String decorated) {}
+
+  private static volatile CachedDecoration cached = null;
+
+  /**
+   * Decorates the charpane, reusing the previous result if neither the charpane nor anything the
+   * decorations depend on has changed since.
+   */
+  public static final void decorateCached(final StringBuffer buffer) {
+    String raw = buffer.toString();
+    CachedDecoration previous = CharPaneDecorator.cached;
+
+    if (previous != null && previous.key.equals(CacheKey.of(raw)) && previous.raw.equals(raw)) {
+      buffer.setLength(0);
+      buffer.append(previous.decorated);
+      return;
+    }
+
+    CharPaneDecorator.decorate(buffer);
+    CharPaneDecorator.cached = new CachedDecoration(CacheKey.of(raw), raw, buffer.toString());
+  }
+
   public static final void decorate(final StringBuffer buffer) {
     // If you are playing Spelunky or Batfellow, the charpane is
     // entirely different.
@@ -110,17 +204,22 @@ public class CharPaneDecorator {
       if (KoLCharacter.inTheSource()) {
         TurnCounter.stopCounting("Source Agent");
       }
+    }
+
+    // The last changes are independent of one another, so make them in a single pass
+    PageEdits edits = new PageEdits(buffer);
 
+    if (limitmode != LimitMode.SPELUNKY && limitmode != LimitMode.BATMAN) {
       // Update the safety text every time we load the charpane
-      StringUtilities.singleStringReplace(
-          buffer, "onload='startup();'", "onload='startup();updateSafetyText();'");
+      edits.replaceFirst("onload='startup();'", "onload='startup();updateSafetyText();'");
     }
 
     // Add a "refresh" link at the end
-    StringUtilities.singleStringReplace(
-        buffer,
+    edits.replaceFirst(
         "</body>",
         "<center><font size=1>[<a href=\"charpane.php\">refresh</a>]</font></center></body>");
+
+    edits.applyTo(buffer);
   }
 
   private static void decorateStatus(final StringBuffer buffer) {
@@ -1412,5 +1511,6 @@ public class CharPaneDecorator {
 
   public static final void updateFromPreferences() {
     CharPaneDecorator.recentLocations.clear();
+    CharPaneDecorator.cached = null;
   }
 }
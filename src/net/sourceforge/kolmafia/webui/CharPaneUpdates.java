@@ -0,0 +1,220 @@
+package net.sourceforge.kolmafia.webui;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import net.sourceforge.kolmafia.AdventureResult;
+import net.sourceforge.kolmafia.FamiliarData;
+import net.sourceforge.kolmafia.KoLCharacter;
+import net.sourceforge.kolmafia.KoLConstants;
+import net.sourceforge.kolmafia.listener.CharacterListener;
+import net.sourceforge.kolmafia.listener.CharacterListenerRegistry;
+import org.json.JSONObject;
+
+/**
+ * Tracks what the character pane shows, as KoLmafia already knows it after each request, so that
+ * the relay browser can wait for changes instead of reloading charpane.php from KoL after every
+ * action.
+ *
+ * <p>Each change is numbered. A browser which has seen version <i>n</i> asks for anything newer;
+ * if it is one change behind, it gets just the fields which changed, otherwise the whole state.
+ * The request waits (a "long poll") until there is something newer or it times out, without a
+ * thread of its own: a single waiter thread answers them all.
+ */
+public class CharPaneUpdates {
+  public static final long MAX_WAIT = 20000;
+
+  private static final CharacterListener LISTENER = new CharacterListener(CharPaneUpdates::update);
+
+  private static boolean listening = false;
+  private static long version = 0;
+  private static Map<String, Object> state = new LinkedHashMap<>();
+  private static Map<String, Object> changes = new LinkedHashMap<>();
+
+  private static final List<Waiter> waiters = new ArrayList<>();
+  private static final ScheduledExecutorService WAITER =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "CharPaneUpdates");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private static class Waiter {
+    private final long since;
+    private final Consumer<JSONObject> callback;
+    private ScheduledFuture<?> timeout = null;
+    private boolean finished = false;
+
+    private Waiter(final long since, final Consumer<JSONObject> callback) {
+      this.since = since;
+      this.callback = callback;
+    }
+  }
+
+  private CharPaneUpdates() {}
+
+  /** Starts following the character, if we were not already. */
+  public static synchronized void start() {
+    if (!CharPaneUpdates.listening) {
+      CharacterListenerRegistry.addCharacterListener(CharPaneUpdates.LISTENER);
+      CharPaneUpdates.listening = true;
+      CharPaneUpdates.update();
+    }
+  }
+
+  public static synchronized void reset() {
+    CharacterListenerRegistry.removeCharacterListener(CharPaneUpdates.LISTENER);
+    CharPaneUpdates.listening = false;
+    CharPaneUpdates.version = 0;
+    CharPaneUpdates.state = new LinkedHashMap<>();
+    CharPaneUpdates.changes = new LinkedHashMap<>();
+  }
+
+  public static synchronized long getVersion() {
+    return CharPaneUpdates.version;
+  }
+
+  private static Map<String, Object> currentState() {
+    Map<String, Object> current = new LinkedHashMap<>();
+    current.put("hp", KoLCharacter.getCurrentHP());
+    current.put("maxhp", KoLCharacter.getMaximumHP());
+    current.put("mp", KoLCharacter.getCurrentMP());
+    current.put("maxmp", KoLCharacter.getMaximumMP());
+    current.put("meat", KoLCharacter.getAvailableMeat());
+    current.put("adventures", KoLCharacter.getAdventuresLeft());
+    current.put("turns", KoLCharacter.getCurrentRun());
+    current.put("level", KoLCharacter.getLevel());
+    current.put("muscle", KoLCharacter.getAdjustedMuscle());
+    current.put("mysticality", KoLCharacter.getAdjustedMysticality());
+    current.put("moxie", KoLCharacter.getAdjustedMoxie());
+    current.put("full", KoLCharacter.getFullness());
+    current.put("drunk", KoLCharacter.getInebriety());
+    current.put("spleen", KoLCharacter.getSpleenUse());
+
+    FamiliarData familiar = KoLCharacter.getEffectiveFamiliar();
+    current.put("familiar", familiar == null ? "" : familiar.getName());
+    current.put("familiarweight", familiar == null ? 0 : familiar.getModifiedWeight());
+
+    Map<String, Integer> effects = new LinkedHashMap<>();
+    synchronized (KoLConstants.activeEffects) {
+      for (AdventureResult effect : KoLConstants.activeEffects) {
+        effects.put(effect.getName(), effect.getCount());
+      }
+    }
+    current.put("effects", effects);
+
+    return current;
+  }
+
+  /** Compares what the character pane would show now with what it showed before. */
+  public static void update() {
+    Map<String, Object> current = CharPaneUpdates.currentState();
+    List<Waiter> ready;
+
+    synchronized (CharPaneUpdates.class) {
+      Map<String, Object> changed = new LinkedHashMap<>();
+      current.forEach(
+          (key, value) -> {
+            if (!value.equals(CharPaneUpdates.state.get(key))) {
+              changed.put(key, value);
+            }
+          });
+
+      if (changed.isEmpty()) {
+        return;
+      }
+
+      // The charpane shows current and maximum together
+      if (changed.containsKey("hp") || changed.containsKey("maxhp")) {
+        changed.put("hp", current.get("hp"));
+        changed.put("maxhp", current.get("maxhp"));
+      }
+      if (changed.containsKey("mp") || changed.containsKey("maxmp")) {
+        changed.put("mp", current.get("mp"));
+        changed.put("maxmp", current.get("maxmp"));
+      }
+
+      CharPaneUpdates.version++;
+      CharPaneUpdates.state = current;
+      CharPaneUpdates.changes = changed;
+
+      ready = new ArrayList<>(CharPaneUpdates.waiters);
+      CharPaneUpdates.waiters.clear();
+    }
+
+    for (Waiter waiter : ready) {
+      CharPaneUpdates.WAITER.execute(() -> CharPaneUpdates.finish(waiter));
+    }
+  }
+
+  /**
+   * Calls back with whatever changed after the given version, once something has or the given
+   * time has passed. Nothing waits in the meantime; the callback runs on the waiter thread.
+   */
+  public static void whenChanged(
+      final long since, final long timeout, final Consumer<JSONObject> callback) {
+    Waiter waiter = new Waiter(since, callback);
+
+    synchronized (CharPaneUpdates.class) {
+      if (CharPaneUpdates.version == since) {
+        CharPaneUpdates.waiters.add(waiter);
+        waiter.timeout =
+            CharPaneUpdates.WAITER.schedule(
+                () -> CharPaneUpdates.finish(waiter),
+                Math.min(timeout, MAX_WAIT),
+                TimeUnit.MILLISECONDS);
+        return;
+      }
+    }
+
+    CharPaneUpdates.WAITER.execute(() -> CharPaneUpdates.finish(waiter));
+  }
+
+  private static void finish(final Waiter waiter) {
+    JSONObject result;
+
+    synchronized (CharPaneUpdates.class) {
+      if (waiter.finished) {
+        return;
+      }
+      waiter.finished = true;
+      CharPaneUpdates.waiters.remove(waiter);
+      result = CharPaneUpdates.changesSince(waiter.since);
+    }
+
+    if (waiter.timeout != null) {
+      waiter.timeout.cancel(false);
+    }
+
+    waiter.callback.accept(result);
+  }
+
+  /**
+   * Returns whatever changed after the given version, without waiting. If nothing did, the result
+   * has the same version and no changes.
+   */
+  public static synchronized JSONObject changesSince(final long since) {
+    JSONObject result = new JSONObject();
+    result.put("version", CharPaneUpdates.version);
+
+    // A browser which knows of a later version than we do saw a previous session; it gets
+    // everything, as does one which has fallen behind.
+    if (CharPaneUpdates.version == since) {
+      result.put("changes", new JSONObject());
+    } else if (CharPaneUpdates.version == since + 1) {
+      result.put("changes", new JSONObject(CharPaneUpdates.changes));
+    } else {
+      result.put("changes", new JSONObject(CharPaneUpdates.state));
+      result.put("full", true);
+    }
+
+    return result;
+  }
+}
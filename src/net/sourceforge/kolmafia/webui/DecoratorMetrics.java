@@ -0,0 +1,110 @@
+package net.sourceforge.kolmafia.webui;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts how often each relay page decorator runs and how long it takes, so that the ones which
+ * slow down the relay browser can be found.
+ */
+public class DecoratorMetrics {
+  private static final Map<String, Timing> timings = new ConcurrentHashMap<>();
+
+  private DecoratorMetrics() {}
+
+  public record Snapshot(String name, long count, long totalNanos, long maxNanos) {
+    public long averageMicros() {
+      return this.count == 0 ? 0 : this.totalNanos / this.count / 1000;
+    }
+  }
+
+  private static class Timing {
+    private long count = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    synchronized void record(final long nanos) {
+      this.count++;
+      this.totalNanos += nanos;
+      this.maxNanos = Math.max(this.maxNanos, nanos);
+    }
+
+    synchronized Snapshot snapshot(final String name) {
+      return new Snapshot(name, this.count, this.totalNanos, this.maxNanos);
+    }
+  }
+
+  /** Runs the decorator, recording how long it took under the given name. */
+  public static void time(final String name, final Runnable decorator) {
+    long start = System.nanoTime();
+    try {
+      decorator.run();
+    } finally {
+      DecoratorMetrics.record(name, System.nanoTime() - start);
+    }
+  }
+
+  public static void record(final String name, final long nanos) {
+    DecoratorMetrics.timings.computeIfAbsent(name, k -> new Timing()).record(nanos);
+  }
+
+  public static void reset() {
+    DecoratorMetrics.timings.clear();
+  }
+
+  public static Snapshot getSnapshot(final String name) {
+    Timing timing = DecoratorMetrics.timings.get(name);
+    return timing == null ? null : timing.snapshot(name);
+  }
+
+  /** Returns the timings, the decorators which have taken the most time in total first. */
+  public static List<Snapshot> getSnapshots() {
+    List<Snapshot> snapshots = new ArrayList<>();
+    DecoratorMetrics.timings.forEach((name, timing) -> snapshots.add(timing.snapshot(name)));
+    snapshots.sort(Comparator.comparingLong(Snapshot::totalNanos).reversed());
+    return snapshots;
+  }
+
+  /** Returns the timings as an HTML table, as shown in the CLI and the relay browser. */
+  public static String getHTMLTable() {
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("<table border=2 cols=5>");
+    buffer
+        .append("<tr>")
+        .append("<th>Decorator</th>")
+        .append("<th>Calls</th>")
+        .append("<th>Total ms</th>")
+        .append("<th>Avg &micro;s</th>")
+        .append("<th>Max &micro;s</th>")
+        .append("</tr>");
+
+    for (Snapshot snapshot : DecoratorMetrics.getSnapshots()) {
+      buffer
+          .append("<tr>")
+          .append("<td>")
+          .append(snapshot.name())
+          .append("</td>")
+          .append("<td>")
+          .append(snapshot.count())
+          .append("</td>")
+          .append("<td>")
+          .append(snapshot.totalNanos() / 1000000)
+          .append("</td>")
+          .append("<td>")
+          .append(snapshot.averageMicros())
+          .append("</td>")
+          .append("<td>")
+          .append(snapshot.maxNanos() / 1000)
+          .append("</td>")
+          .append("</tr>");
+    }
+
+    buffer.append("</table>");
+
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,148 @@
+package net.sourceforge.kolmafia.webui;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A list of insertions and replacements against a page, all located by searching the page as it
+ * was before any of them were made, and applied together in a single copy.
+ *
+ * <p>Decorators which make a series of independent changes can use this instead of calling {@link
+ * StringBuffer#insert} or {@link net.sourceforge.kolmafia.utilities.StringUtilities} once per
+ * change, each of which searches the page from the start and shifts everything after the change.
+ * Since every edit is located in the original page, an edit cannot find text inserted by another.
+ *
+ * <p>Edits at the same offset are applied in the order they were added. An edit which overlaps a
+ * replacement already in the list is ignored.
+ */
+public class PageEdits {
+  private record Edit(int start, int end, String text, int sequence) {}
+
+  // Insertions at the start of a replacement go before it
+  private static final Comparator<Edit> ORDER =
+      Comparator.comparingInt(Edit::start)
+          .thenComparing(edit -> edit.end > edit.start)
+          .thenComparingInt(Edit::sequence);
+
+  private final String page;
+  private final List<Edit> edits = new ArrayList<>();
+
+  public PageEdits(final CharSequence page) {
+    this.page = page.toString();
+  }
+
+  /** Returns the page as it was before any edits. */
+  public String getPage() {
+    return this.page;
+  }
+
+  public int indexOf(final String searchString) {
+    return this.page.indexOf(searchString);
+  }
+
+  public int indexOf(final String searchString, final int fromIndex) {
+    return this.page.indexOf(searchString, fromIndex);
+  }
+
+  public int lastIndexOf(final String searchString) {
+    return this.page.lastIndexOf(searchString);
+  }
+
+  public int size() {
+    return this.edits.size();
+  }
+
+  public boolean isEmpty() {
+    return this.edits.isEmpty();
+  }
+
+  public boolean insert(final int offset, final String text) {
+    return this.replace(offset, offset, text);
+  }
+
+  public boolean replace(final int start, final int end, final String text) {
+    if (start < 0 || end < start || end > this.page.length()) {
+      return false;
+    }
+
+    for (Edit edit : this.edits) {
+      // An insertion may go at either end of a replacement, but not inside it
+      if (start < edit.end && edit.start < end) {
+        return false;
+      }
+    }
+
+    this.edits.add(new Edit(start, end, text, this.edits.size()));
+    return true;
+  }
+
+  public boolean insertBefore(final String searchString, final String text) {
+    int index = this.page.indexOf(searchString);
+    return index != -1 && this.insert(index, text);
+  }
+
+  public boolean insertAfter(final String searchString, final String text) {
+    int index = this.page.indexOf(searchString);
+    return index != -1 && this.insert(index + searchString.length(), text);
+  }
+
+  public boolean replaceFirst(final String searchString, final String text) {
+    int index = this.page.indexOf(searchString);
+    return index != -1 && this.replace(index, index + searchString.length(), text);
+  }
+
+  public int replaceAll(final String searchString, final String text) {
+    if (searchString.isEmpty()) {
+      return 0;
+    }
+
+    int count = 0;
+    int index = this.page.indexOf(searchString);
+    while (index != -1) {
+      if (this.replace(index, index + searchString.length(), text)) {
+        ++count;
+      }
+      index = this.page.indexOf(searchString, index + searchString.length());
+    }
+
+    return count;
+  }
+
+  /** Returns the page with all edits made. */
+  @Override
+  public String toString() {
+    if (this.edits.isEmpty()) {
+      return this.page;
+    }
+
+    this.edits.sort(ORDER);
+
+    int length = this.page.length();
+    for (Edit edit : this.edits) {
+      length += edit.text.length() - (edit.end - edit.start);
+    }
+
+    StringBuilder result = new StringBuilder(length);
+    int copied = 0;
+    for (Edit edit : this.edits) {
+      result.append(this.page, copied, edit.start);
+      result.append(edit.text);
+      copied = edit.end;
+    }
+    result.append(this.page, copied, this.page.length());
+
+    return result.toString();
+  }
+
+  /** Replaces the contents of the buffer, which should still hold the original page. */
+  public void applyTo(final StringBuffer buffer) {
+    if (this.edits.isEmpty()) {
+      return;
+    }
+
+    String result = this.toString();
+    buffer.setLength(0);
+    buffer.append(result);
+  }
+}
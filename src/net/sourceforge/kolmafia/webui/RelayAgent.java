@@ -1,12 +1,10 @@
 package net.sourceforge.kolmafia.webui;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.net.InetAddress;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Set;
@@ -24,12 +22,16 @@ import net.sourceforge.kolmafia.request.LogoutRequest;
 import net.sourceforge.kolmafia.request.RelayRequest;
 import net.sourceforge.kolmafia.session.ActionBarManager;
 import net.sourceforge.kolmafia.session.ChoiceManager;
+import net.sourceforge.kolmafia.session.CombatSession;
 import net.sourceforge.kolmafia.session.LeafletManager;
 import net.sourceforge.kolmafia.session.VolcanoMazeManager;
-import net.sourceforge.kolmafia.utilities.PauseObject;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
-public class RelayAgent extends Thread {
+/**
+ * Serves requests from the browser, one at a time, on behalf of the {@link RelayServer}. Each relay
+ * worker thread has its own agent, which it reuses for every connection it is handed.
+ */
+public class RelayAgent {
   private static GenericRequest errorRequest = null;
   private static String errorRequestPath = null;
 
@@ -45,67 +47,171 @@ public class RelayAgent extends Thread {
     RelayAgent.errorRequestPath = null;
   }
 
-  private final char[] data = new char[8192];
-  private final StringBuffer buffer = new StringBuffer();
-  private final PauseObject pauser = new PauseObject();
-
-  private Socket socket = null;
-  private BufferedReader reader;
-  private PrintStream writer;
+  private final String name;
+  private RelayConnection connection = null;
 
   private String path;
   private String requestMethod;
   private String isCheckingModified;
+  private boolean keepAlive;
+  private boolean waiting;
   private final RelayRequest request;
 
-  public RelayAgent(final int id) {
-    super("LocalRelayAgent" + id);
+  // What this agent has done, for the relay metrics
+  private volatile long connectionCount = 0;
+  private volatile long requestCount = 0;
+  private volatile long reusedCount = 0;
+  private volatile long errorCount = 0;
+  private volatile long bytesSent = 0;
+  private volatile long busyNanos = 0;
+
+  public RelayAgent(final String name) {
+    this.name = name;
     this.request = new RelayRequest(true);
   }
 
-  public boolean isWaiting() {
-    return this.socket == null;
+  public String getName() {
+    return this.name;
   }
 
-  public void setSocket(final Socket socket) {
-    this.socket = socket;
-    this.pauser.unpause();
+  public long getConnectionCount() {
+    return this.connectionCount;
   }
 
-  @Override
-  public void run() {
-    while (true) {
-      if (this.socket == null) {
-        this.pauser.pause();
-      }
+  public long getRequestCount() {
+    return this.requestCount;
+  }
 
-      try {
-        this.performRelay();
-      } finally {
-        this.closeRelay();
-      }
-    }
+  public long getReusedCount() {
+    return this.reusedCount;
+  }
+
+  public long getErrorCount() {
+    return this.errorCount;
+  }
+
+  public long getBytesSent() {
+    return this.bytesSent;
+  }
+
+  public long getBusyMillis() {
+    return this.busyNanos / 1000000;
   }
 
-  public void performRelay() {
-    if (this.socket == null) {
+  /**
+   * Serves the requests waiting on the connection. If the browser wants to keep the connection
+   * open, it is handed back to the server to wait for the next request; otherwise it is closed.
+   */
+  public void serve(final RelayConnection connection) {
+    this.connection = connection;
+    this.connectionCount++;
+
+    boolean keepAlive = false;
+    this.waiting = false;
+
+    try {
+      connection.socket.setSoTimeout(RelayServer.KEEP_ALIVE_TIMEOUT);
+
+      do {
+        keepAlive = this.performRelay();
+      } while (keepAlive && !this.waiting && connection.hasBufferedInput());
+    } catch (IOException e) {
+      keepAlive = false;
+    } finally {
+      this.connection = null;
+    }
+
+    if (this.waiting) {
+      // The connection belongs to the charpane update waiter now
       return;
     }
 
+    if (keepAlive) {
+      RelayServer.keepAlive(connection);
+    } else {
+      connection.close();
+    }
+  }
+
+  /**
+   * Reads one request from the browser and sends the response.
+   *
+   * @return <code>true</code> if the connection may be used for another request
+   */
+  public boolean performRelay() {
+    if (this.connection == null) {
+      return false;
+    }
+
     this.path = null;
-    this.reader = null;
-    this.writer = null;
+    this.keepAlive = false;
+
+    long start = System.nanoTime();
 
     try {
       if (!this.readBrowserRequest()) {
-        return;
+        return false;
+      }
+
+      if (this.connection.requests++ > 0) {
+        this.reusedCount++;
+      }
+      this.requestCount++;
+
+      if (this.path.startsWith("/KoLmafia/charpaneUpdates")) {
+        this.awaitCharPaneUpdates();
+        return false;
       }
 
       this.readServerResponse();
-      this.sendServerResponse();
+      return this.sendServerResponse() && this.keepAlive;
     } catch (IOException e) {
+      this.errorCount++;
     } catch (Exception e) {
+      this.errorCount++;
       StaticEntity.printStackTrace(e, "Horrible relay failure");
+    } finally {
+      this.busyNanos += System.nanoTime() - start;
+    }
+
+    return false;
+  }
+
+  /**
+   * Hands the connection to {@link CharPaneUpdates}, which answers the long poll once the character
+   * changes or the wait times out. This agent goes straight back to serving other connections.
+   */
+  private void awaitCharPaneUpdates() {
+    RelayConnection connection = this.connection;
+    boolean keepAlive = this.keepAlive;
+    long since = StringUtilities.parseLong(this.request.getFormField("since"));
+
+    this.waiting = true;
+    CharPaneUpdates.start();
+    CharPaneUpdates.whenChanged(
+        since,
+        CharPaneUpdates.MAX_WAIT,
+        changes -> RelayAgent.sendCharPaneUpdates(connection, keepAlive, changes.toString()));
+  }
+
+  private static void sendCharPaneUpdates(
+      final RelayConnection connection, final boolean keepAlive, final String changes) {
+    byte[] bytes = changes.getBytes(StandardCharsets.UTF_8);
+
+    PrintStream writer = connection.writer;
+    writer.println("HTTP/1.1 200 OK");
+    writer.println("Content-Type: application/json; charset=UTF-8");
+    writer.println("Cache-Control: no-cache, must-revalidate");
+    writer.println("Content-Length: " + bytes.length);
+    writer.println(keepAlive ? "Connection: keep-alive" : "Connection: close");
+    writer.println();
+    writer.write(bytes, 0, bytes.length);
+    writer.flush();
+
+    if (keepAlive && !writer.checkError()) {
+      RelayServer.keepAlive(connection);
+    } else {
+      connection.close();
     }
   }
 
@@ -114,9 +220,9 @@ public class RelayAgent extends Thread {
         RequestLogger.isDebugging() && Preferences.getBoolean("logBrowserInteractions");
     boolean tracing = RequestLogger.isTracing();
 
-    this.reader = new BufferedReader(new InputStreamReader(this.socket.getInputStream()));
+    RelayConnection connection = this.connection;
 
-    String requestLine = this.reader.readLine();
+    String requestLine = connection.readLine();
 
     if (requestLine == null) {
       return false;
@@ -131,7 +237,8 @@ public class RelayAgent extends Thread {
       RequestLogger.trace("From Browser: " + requestLine);
     }
 
-    if (!requestLine.contains("HTTP/1.1")) {
+    String version = requestLine.substring(requestLine.lastIndexOf(" ") + 1);
+    if (!version.equals("HTTP/1.1") && !version.equals("HTTP/1.0")) {
       KoLmafia.updateDisplay("Malformed HTTP request from browser.");
       return false;
     }
@@ -158,9 +265,12 @@ public class RelayAgent extends Thread {
 
     String host = null;
     String referer = null;
+    String connectionHeader = null;
 
     this.request.cookies = null;
-    while ((currentLine = this.reader.readLine()) != null && !currentLine.equals("")) {
+    this.request.ifNoneMatch = null;
+    this.request.acceptsGzip = false;
+    while ((currentLine = connection.readLine()) != null && !currentLine.equals("")) {
       if (debugging) {
         RequestLogger.updateDebugLog(currentLine);
       }
@@ -174,7 +284,10 @@ public class RelayAgent extends Thread {
       switch (headerType) {
         case "host" -> host = headerValue;
         case "referer" -> referer = headerValue;
+        case "connection" -> connectionHeader = headerValue.toLowerCase();
         case "if-modified-since" -> this.isCheckingModified = headerValue;
+        case "if-none-match" -> this.request.ifNoneMatch = headerValue;
+        case "accept-encoding" -> this.request.acceptsGzip = headerValue.contains("gzip");
         case "content-length" -> contentLength = StringUtilities.parseInt(headerValue);
         case "user-agent" -> GenericRequest.saveUserAgent(headerValue);
         case "cookie" -> {
@@ -207,16 +320,13 @@ public class RelayAgent extends Thread {
     }
 
     if (requestMethod.equals("POST")) {
-      int remaining = contentLength;
-
-      while (remaining > 0) {
-        int current = this.reader.read(this.data);
-        this.buffer.append(this.data, 0, current);
-        remaining -= current;
+      // Don't read past the body, into the next request on this connection
+      byte[] body = connection.readBody(contentLength);
+      if (body == null) {
+        return false;
       }
 
-      String fields = this.buffer.toString();
-      this.buffer.setLength(0);
+      String fields = new String(body, StandardCharsets.UTF_8);
 
       if (debugging) {
         RequestLogger.updateDebugLog(fields);
@@ -229,6 +339,10 @@ public class RelayAgent extends Thread {
       RequestLogger.updateDebugLog("----------");
     }
 
+    this.keepAlive =
+        RelayAgent.keepsAlive(version, connectionHeader)
+            && connection.requests < RelayServer.KEEP_ALIVE_MAX_REQUESTS;
+
     // Validate supplied password hashes
     String pwd = this.request.getFormField("pwd");
     if (pwd == null) {
@@ -252,6 +366,17 @@ public class RelayAgent extends Thread {
     return true;
   }
 
+  /**
+   * Returns true if the browser wants the connection kept open after the response. HTTP/1.1
+   * connections stay open unless the browser says otherwise; HTTP/1.0 ones only if it asks.
+   */
+  static boolean keepsAlive(final String version, final String connectionHeader) {
+    if (version.equals("HTTP/1.0")) {
+      return connectionHeader != null && connectionHeader.contains("keep-alive");
+    }
+    return connectionHeader == null || !connectionHeader.contains("close");
+  }
+
   private boolean isValidReferer(String host, String referer) {
     if (host != null) {
       validRefererHosts.add(host);
@@ -322,7 +447,14 @@ public class RelayAgent extends Thread {
   }
 
   private static boolean modifiedSince(String date, File file) {
-    return file != null && file.exists() && StringUtilities.parseDate(date) < file.lastModified();
+    if (file == null) {
+      return false;
+    }
+
+    // Don't go to disk for a file which was just served
+    RelayAssetCache.Asset asset = RelayAssetCache.getIfFresh(file);
+    long lastModified = asset != null ? asset.getLastModified() : file.lastModified();
+    return lastModified != 0L && StringUtilities.parseDate(date) < lastModified;
   }
 
   private boolean shouldSendNotModified() {
@@ -383,44 +515,41 @@ public class RelayAgent extends Thread {
     }
 
     if (this.path.equals("/fight.php?action=custom")) {
-      String fightResponse;
-      synchronized (FightRequest.INSTANCE) {
-        KoLmafia.forceContinue();
-        try {
-          FightRequest.INSTANCE.run();
-        } catch (Exception e) {
-          StaticEntity.printStackTrace(e);
-        }
-        fightResponse = FightRequest.lastDecoratedResponseText;
-      }
+      String fightResponse =
+          CombatSession.automate(
+              () -> {
+                KoLmafia.forceContinue();
+                try {
+                  FightRequest.INSTANCE.run();
+                } catch (Exception e) {
+                  StaticEntity.printStackTrace(e);
+                }
+              });
       this.request.pseudoResponse("HTTP/1.1 200 OK", fightResponse);
       RelayRequest.executeAfterAdventureScript();
     } else if (this.path.equals("/fight.php?action=abort")) {
-      String fightResponse;
-      synchronized (FightRequest.INSTANCE) {
-        fightResponse = FightRequest.lastDecoratedResponseText;
-      }
-      this.request.pseudoResponse("HTTP/1.1 200 OK", fightResponse);
+      // Show whatever was last published, even if a fight is being automated right now
+      this.request.pseudoResponse("HTTP/1.1 200 OK", CombatSession.getDecoratedText());
       RelayRequest.executeAfterAdventureScript();
     } else if (this.path.startsWith("/fight.php?hotkey=")) {
       String hotkey = this.request.getFormField("hotkey");
       String desiredAction =
           hotkey.equals("11") ? null : Preferences.getString("combatHotkey" + hotkey);
 
-      String fightResponse;
-      synchronized (FightRequest.INSTANCE) {
-        KoLmafia.forceContinue();
-        try {
-          if (desiredAction == null) {
-            FightRequest.INSTANCE.run();
-          } else {
-            FightRequest.INSTANCE.runOnce(desiredAction);
-          }
-        } catch (Exception e) {
-          StaticEntity.printStackTrace(e);
-        }
-        fightResponse = FightRequest.lastDecoratedResponseText;
-      }
+      String fightResponse =
+          CombatSession.automate(
+              () -> {
+                KoLmafia.forceContinue();
+                try {
+                  if (desiredAction == null) {
+                    FightRequest.INSTANCE.run();
+                  } else {
+                    FightRequest.INSTANCE.runOnce(desiredAction);
+                  }
+                } catch (Exception e) {
+                  StaticEntity.printStackTrace(e);
+                }
+              });
       this.request.pseudoResponse("HTTP/1.1 200 OK", fightResponse);
     } else if (this.path.equals("/choice.php?action=auto")) {
       automateChoiceAdventure(this.request);
@@ -471,41 +600,75 @@ public class RelayAgent extends Thread {
               + ")"
               + RelayAgent.NOCACHE_IMAGES);
 
-  private void sendServerResponse() throws IOException {
-    if (this.request.rawByteBuffer == null) {
+  private boolean sendServerResponse() throws IOException {
+    ByteBuffer mapped = this.request.mappedByteBuffer;
+
+    if (mapped == null && this.request.rawByteBuffer == null) {
       if (this.request.responseText == null) {
         // We did not make a request of KoL and did not
         // create a pseudoResponse
-        return;
+        return false;
       }
 
       if (Preferences.getBoolean("useImageCache")) {
-        StringBuilder responseBuffer = new StringBuilder();
         Matcher matcher = RelayAgent.IMAGE_PATTERN.matcher(this.request.responseText);
 
-        while (matcher.find()) {
-          if (matcher.group(2) != null) {
-            matcher.appendReplacement(responseBuffer, "$0");
-          } else {
-            matcher.appendReplacement(responseBuffer, "/images/");
-          }
+        if (matcher.find()) {
+          StringBuilder responseBuffer = new StringBuilder();
+
+          do {
+            if (matcher.group(2) != null) {
+              matcher.appendReplacement(responseBuffer, "$0");
+            } else {
+              matcher.appendReplacement(responseBuffer, "/images/");
+            }
+          } while (matcher.find());
+
+          matcher.appendTail(responseBuffer);
+
+          this.request.responseText = responseBuffer.toString();
         }
+      }
 
-        matcher.appendTail(responseBuffer);
+      // Pass through what KoL sent if it is unchanged; otherwise,
+      // convert the responseText into a byte buffer
+      byte[] bytes = this.request.getUnmodifiedResponseBytes();
+      this.request.rawByteBuffer =
+          bytes != null ? bytes : this.request.responseText.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // A Not Modified response, or the response to HEAD, has no body
+    boolean hasBody = this.request.responseCode != 304 && !this.requestMethod.equals("HEAD");
+    int length = mapped != null ? mapped.remaining() : this.request.rawByteBuffer.length;
+
+    PrintStream writer = this.connection.writer;
+    writer.println(this.request.statusLine);
+    this.request.printHeaders(writer);
+    if (hasBody) {
+      writer.println("Content-Length: " + length);
+    }
+    writer.println(this.keepAlive ? "Connection: keep-alive" : "Connection: close");
+    writer.println();
+    if (hasBody && mapped == null) {
+      writer.write(this.request.rawByteBuffer);
+    }
+    writer.flush();
 
-        this.request.responseText = responseBuffer.toString();
+    if (hasBody && mapped != null) {
+      // Large files go straight from the mapped file to the socket
+      while (mapped.hasRemaining()) {
+        this.connection.channel.write(mapped);
       }
+    }
 
-      // Convert the responseText into a byte buffer
-      this.request.rawByteBuffer = this.request.responseText.getBytes(StandardCharsets.UTF_8);
+    if (hasBody) {
+      this.bytesSent += length;
     }
 
-    this.writer = new PrintStream(this.socket.getOutputStream(), false);
-    this.writer.println(this.request.statusLine);
-    this.request.printHeaders(this.writer);
-    this.writer.println();
-    this.writer.write(this.request.rawByteBuffer);
-    this.writer.flush();
+    if (writer.checkError()) {
+      this.errorCount++;
+      return false;
+    }
 
     if (RequestLogger.isTracing()) {
       StringBuilder buffer = new StringBuilder("To Browser: ");
@@ -514,7 +677,7 @@ public class RelayAgent extends Thread {
       buffer.append(this.path);
       if (this.request.responseCode == 200) {
         buffer.append(" (");
-        buffer.append(this.request.rawByteBuffer.length);
+        buffer.append(length);
         buffer.append(" bytes)");
       } else if (this.request.responseCode == 302) {
         buffer.append(" -> ");
@@ -524,7 +687,7 @@ public class RelayAgent extends Thread {
     }
 
     if (!RequestLogger.isDebugging()) {
-      return;
+      return true;
     }
 
     boolean interactions = Preferences.getBoolean("logBrowserInteractions");
@@ -546,33 +709,8 @@ public class RelayAgent extends Thread {
     if (interactions) {
       RequestLogger.updateDebugLog("----------");
     }
-  }
 
-  private void closeRelay() {
-    try {
-      if (this.reader != null) {
-        this.reader.close();
-        this.reader = null;
-      }
-    } catch (IOException e) {
-      // The only time this happens is if the
-      // input is already closed.  Ignore.
-    }
-
-    if (this.writer != null) {
-      this.writer.close();
-      this.writer = null;
-    }
-
-    try {
-      if (this.socket != null) {
-        this.socket.close();
-        this.socket = null;
-      }
-    } catch (IOException e) {
-      // The only time this happens is if the
-      // socket is already closed.  Ignore.
-    }
+    return true;
   }
 
   private static final Set<String> validRefererHosts = new HashSet<>();
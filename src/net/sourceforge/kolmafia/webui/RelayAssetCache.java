@@ -0,0 +1,279 @@
+package net.sourceforge.kolmafia.webui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the contents of files served by the relay browser from the relay and images directories in
+ * memory, so that a page which loads dozens of scripts, stylesheets and images does not go to disk
+ * for each of them. Each file has a strong ETag, so the browser can revalidate without anything
+ * being read, and text files also keep a gzipped copy.
+ *
+ * <p>A cached file is trusted for a couple of seconds; after that, its size and modification date
+ * are checked before it is used again, and it is reread if either has changed. Files on the heap
+ * are evicted, least recently used first, once they total more than {@link #MAX_HEAP_BYTES}. Large
+ * files are memory mapped instead, except on Windows, where a mapped file cannot be replaced.
+ */
+public class RelayAssetCache {
+  static final long MAX_HEAP_BYTES = 32L * 1024 * 1024;
+  private static final int MAX_ENTRIES = 4096;
+  private static final long MAPPED_FILE_SIZE = 1024L * 1024;
+  private static final long REVALIDATE_INTERVAL = 2000;
+  private static final int MIN_GZIP_SIZE = 1024;
+
+  private static final boolean CAN_MAP = !System.getProperty("os.name").startsWith("Win");
+
+  private static final Map<File, Asset> assets = new LinkedHashMap<>(64, 0.75f, true);
+  private static long heapBytes = 0;
+
+  private RelayAssetCache() {}
+
+  public static final class Asset {
+    private final long lastModified;
+    private final long length;
+    private final byte[] bytes;
+    private final ByteBuffer mapped;
+    private final byte[] gzipped;
+    private final String etag;
+    private volatile long validated;
+
+    private Asset(
+        final long lastModified,
+        final long length,
+        final byte[] bytes,
+        final ByteBuffer mapped,
+        final byte[] gzipped,
+        final String etag) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.bytes = bytes;
+      this.mapped = mapped;
+      this.gzipped = gzipped;
+      this.etag = etag;
+      this.validated = System.currentTimeMillis();
+    }
+
+    public long getLastModified() {
+      return this.lastModified;
+    }
+
+    public long getLength() {
+      return this.length;
+    }
+
+    /** Returns the contents, or <code>null</code> if the file is memory mapped. */
+    public byte[] getBytes() {
+      return this.bytes;
+    }
+
+    /** Returns the memory mapped contents, or <code>null</code> if the file is on the heap. */
+    public ByteBuffer getMappedBuffer() {
+      return this.mapped == null ? null : this.mapped.duplicate();
+    }
+
+    /** Returns the gzipped contents, or <code>null</code> if the file is not worth compressing. */
+    public byte[] getGzippedBytes() {
+      return this.gzipped;
+    }
+
+    public String getETag() {
+      return this.etag;
+    }
+
+    public String getGzippedETag() {
+      return this.etag.substring(0, this.etag.length() - 1) + "-gz\"";
+    }
+
+    /** Returns true if an If-None-Match header names either version of this file. */
+    public boolean matches(final String ifNoneMatch) {
+      if (ifNoneMatch == null) {
+        return false;
+      }
+
+      for (String tag : ifNoneMatch.split(",")) {
+        tag = tag.trim();
+        if (tag.startsWith("W/")) {
+          tag = tag.substring(2);
+        }
+        if (tag.equals("*") || tag.equals(this.etag) || tag.equals(this.getGzippedETag())) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+
+    private long heapSize() {
+      return (this.bytes == null ? 0 : this.bytes.length)
+          + (this.gzipped == null ? 0 : this.gzipped.length);
+    }
+  }
+
+  /**
+   * Returns the cached file if it was loaded or checked against the file system within the last
+   * couple of seconds, without looking at the file system at all.
+   */
+  public static Asset getIfFresh(final File file) {
+    Asset asset;
+    synchronized (RelayAssetCache.assets) {
+      asset = RelayAssetCache.assets.get(file);
+    }
+
+    if (asset != null && System.currentTimeMillis() - asset.validated < REVALIDATE_INTERVAL) {
+      return asset;
+    }
+
+    return null;
+  }
+
+  /** Returns the contents of the file, reading it only if it is new or has changed. */
+  public static Asset get(final File file) {
+    if (file == null) {
+      return null;
+    }
+
+    Asset asset = RelayAssetCache.getIfFresh(file);
+    if (asset != null) {
+      return asset;
+    }
+
+    synchronized (RelayAssetCache.assets) {
+      asset = RelayAssetCache.assets.get(file);
+    }
+
+    if (asset != null
+        && file.lastModified() == asset.lastModified
+        && file.length() == asset.length) {
+      asset.validated = System.currentTimeMillis();
+      return asset;
+    }
+
+    Asset loaded = RelayAssetCache.load(file);
+
+    synchronized (RelayAssetCache.assets) {
+      Asset previous =
+          loaded == null
+              ? RelayAssetCache.assets.remove(file)
+              : RelayAssetCache.assets.put(file, loaded);
+
+      if (previous != null) {
+        RelayAssetCache.heapBytes -= previous.heapSize();
+      }
+
+      if (loaded != null) {
+        RelayAssetCache.heapBytes += loaded.heapSize();
+        RelayAssetCache.evict();
+      }
+    }
+
+    return loaded;
+  }
+
+  public static void clear() {
+    synchronized (RelayAssetCache.assets) {
+      RelayAssetCache.assets.clear();
+      RelayAssetCache.heapBytes = 0;
+    }
+  }
+
+  // for testing
+  static void expire() {
+    synchronized (RelayAssetCache.assets) {
+      for (Asset asset : RelayAssetCache.assets.values()) {
+        asset.validated = 0L;
+      }
+    }
+  }
+
+  public static long getHeapBytes() {
+    synchronized (RelayAssetCache.assets) {
+      return RelayAssetCache.heapBytes;
+    }
+  }
+
+  public static int size() {
+    synchronized (RelayAssetCache.assets) {
+      return RelayAssetCache.assets.size();
+    }
+  }
+
+  private static void evict() {
+    Iterator<Asset> it = RelayAssetCache.assets.values().iterator();
+    while (it.hasNext()
+        && (RelayAssetCache.heapBytes > MAX_HEAP_BYTES
+            || RelayAssetCache.assets.size() > MAX_ENTRIES)) {
+      RelayAssetCache.heapBytes -= it.next().heapSize();
+      it.remove();
+    }
+  }
+
+  private static Asset load(final File file) {
+    long lastModified = file.lastModified();
+    long length = file.length();
+
+    if (lastModified == 0L || !file.isFile()) {
+      return null;
+    }
+
+    try {
+      if (CAN_MAP && length >= MAPPED_FILE_SIZE) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+          ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+          CRC32 crc = new CRC32();
+          crc.update(mapped.duplicate());
+          return new Asset(
+              lastModified, mapped.remaining(), null, mapped, null, etag(crc, mapped.remaining()));
+        }
+      }
+
+      byte[] bytes = Files.readAllBytes(file.toPath());
+      CRC32 crc = new CRC32();
+      crc.update(bytes);
+
+      byte[] gzipped = null;
+      if (bytes.length >= MIN_GZIP_SIZE && RelayAssetCache.isCompressible(file.getName())) {
+        gzipped = RelayAssetCache.gzip(bytes);
+        if (gzipped.length >= bytes.length) {
+          gzipped = null;
+        }
+      }
+
+      return new Asset(lastModified, bytes.length, bytes, null, gzipped, etag(crc, bytes.length));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static String etag(final CRC32 crc, final long length) {
+    return "\"" + Long.toHexString(crc.getValue()) + "-" + Long.toHexString(length) + "\"";
+  }
+
+  private static boolean isCompressible(final String name) {
+    return name.endsWith(".js")
+        || name.endsWith(".css")
+        || name.endsWith(".html")
+        || name.endsWith(".htm")
+        || name.endsWith(".txt")
+        || name.endsWith(".json")
+        || name.endsWith(".svg")
+        || name.endsWith(".xml");
+  }
+
+  private static byte[] gzip(final byte[] bytes) throws IOException {
+    ByteArrayOutputStream ostream = new ByteArrayOutputStream(bytes.length / 3);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(ostream)) {
+      gzip.write(bytes);
+    }
+    return ostream.toByteArray();
+  }
+}
@@ -0,0 +1,100 @@
+package net.sourceforge.kolmafia.webui;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A connection from the browser to the relay server. The input and writer last as long as the
+ * connection does, since a keep-alive connection carries one request after another. Whatever the
+ * input has read ahead of the request being served stays with the connection, since it is the
+ * start of the next one.
+ */
+class RelayConnection {
+  final SocketChannel channel;
+  final Socket socket;
+  final PrintStream writer;
+
+  private final Input input;
+  private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+  int requests = 0;
+  volatile long lastActive;
+
+  RelayConnection(final SocketChannel channel) throws IOException {
+    this.channel = channel;
+    this.socket = channel.socket();
+    this.input = new Input(this.socket.getInputStream());
+    this.writer = new PrintStream(this.socket.getOutputStream(), false);
+    this.lastActive = System.currentTimeMillis();
+  }
+
+  /**
+   * Reads one line of a request's head, without its line ending.
+   *
+   * @return the line, or <code>null</code> if the browser closed the connection before sending one
+   */
+  String readLine() throws IOException {
+    this.line.reset();
+
+    int b;
+    while ((b = this.input.read()) != -1 && b != '\n') {
+      this.line.write(b);
+    }
+
+    if (b == -1 && this.line.size() == 0) {
+      return null;
+    }
+
+    byte[] bytes = this.line.toByteArray();
+    int length = bytes.length;
+    if (length > 0 && bytes[length - 1] == '\r') {
+      length--;
+    }
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads a request's body, which is exactly as many bytes as its Content-Length says, so as not to
+   * read into the next request.
+   *
+   * @return the body, or <code>null</code> if the browser closed the connection before sending it
+   */
+  byte[] readBody(final int length) throws IOException {
+    byte[] body = this.input.readNBytes(length);
+    return body.length == length ? body : null;
+  }
+
+  /**
+   * Returns true if the input has already read some of the next request from the socket. The
+   * selector will not see those bytes arrive, so the connection must be served again rather than
+   * handed back to it.
+   */
+  boolean hasBufferedInput() {
+    return this.input.buffered() > 0;
+  }
+
+  void close() {
+    try {
+      this.channel.close();
+    } catch (IOException e) {
+      // The only time this happens is if the
+      // socket is already closed.  Ignore.
+    }
+  }
+
+  private static class Input extends BufferedInputStream {
+    private Input(final InputStream in) {
+      super(in);
+    }
+
+    private synchronized int buffered() {
+      return this.count - this.pos;
+    }
+  }
+}
@@ -1,11 +1,28 @@
 package net.sourceforge.kolmafia.webui;
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
-import java.util.HashSet;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.sourceforge.kolmafia.KoLConstants;
 import net.sourceforge.kolmafia.KoLmafia;
 import net.sourceforge.kolmafia.StaticEntity;
@@ -13,13 +30,47 @@ import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.utilities.FileUtilities;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
+/**
+ * The relay server. A single thread accepts connections from the browser and watches the idle ones
+ * with a {@link Selector}; as soon as a request arrives on a connection, the connection is handed
+ * to a {@link RelayAgent} worker thread. Once the response has been sent, a keep-alive connection
+ * goes back to the selector rather than holding on to its worker.
+ *
+ * <p>A few workers are always kept; more are started while every worker is busy, up to a limit, and
+ * retire once they have been idle for a while. Past the limit, the browser is told to try again
+ * rather than wait behind requests which may take a long time to answer.
+ */
 public class RelayServer implements Runnable {
-  public static final Set<RelayAgent> agentThreads = new HashSet<>();
+  private static final int BACKLOG = 64;
+  static final int MIN_AGENTS = 4;
+  static final int MAX_AGENTS = 64;
+
+  // How long a worker beyond the first few waits for another connection before it retires
+  private static final long AGENT_IDLE_TIMEOUT = 60 * 1000;
+
+  // How long an idle keep-alive connection is held open
+  static final int KEEP_ALIVE_TIMEOUT = 15 * 1000;
+
+  // How many requests are served over one connection before it is closed
+  static final int KEEP_ALIVE_MAX_REQUESTS = 100;
+
+  public static final Set<Thread> agentThreads = ConcurrentHashMap.newKeySet();
+  private static final List<RelayAgent> agents = new CopyOnWriteArrayList<>();
+  private static final ThreadLocal<RelayAgent> AGENT =
+      ThreadLocal.withInitial(
+          () -> {
+            RelayAgent agent = new RelayAgent(Thread.currentThread().getName());
+            RelayServer.agents.add(agent);
+            return agent;
+          });
 
   private static long lastStatusMessage = 0;
   private static Thread relayThread = null;
 
-  private ServerSocket serverSocket = null;
+  private ServerSocketChannel serverChannel = null;
+  private Selector selector = null;
+  private volatile ExecutorService executor = null;
+  private final Queue<RelayConnection> idleConnections = new ConcurrentLinkedQueue<>();
   private static int port = 60080;
   private static boolean listening = false;
   private static boolean updateStatus = false;
@@ -27,7 +78,9 @@ public class RelayServer implements Runnable {
   private static final RelayServer INSTANCE = new RelayServer();
   private static final StringBuffer statusMessages = new StringBuffer();
 
-  private RelayServer() {
+  private RelayServer() {}
+
+  private static void loadRelayFiles() {
     for (int i = 0; i < KoLConstants.RELAY_FILES.length; ++i) {
       FileUtilities.loadLibrary(
           KoLConstants.RELAY_LOCATION, KoLConstants.RELAY_DIRECTORY, KoLConstants.RELAY_FILES[i]);
@@ -41,6 +94,7 @@ public class RelayServer implements Runnable {
 
   public static final synchronized void startThread() {
     if (RelayServer.relayThread == null) {
+      RelayServer.loadRelayFiles();
       Thread relayServer = new Thread(RelayServer.INSTANCE, "LocalRelayServer");
       relayServer.start();
       RelayServer.relayThread = relayServer;
@@ -91,12 +145,79 @@ public class RelayServer implements Runnable {
 
   public static final void stop() {
     RelayServer.listening = false;
+
+    Selector selector = RelayServer.INSTANCE.selector;
+    if (selector != null) {
+      selector.wakeup();
+    }
+  }
+
+  /** Returns the agents at work now, with what each has done. */
+  public static final List<RelayAgent> getAgents() {
+    return new ArrayList<>(RelayServer.agents);
+  }
+
+  /** Returns what each agent has done as an HTML table, as shown in the CLI and relay browser. */
+  public static final String getAgentTable() {
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("<table border=2 cols=7>");
+    buffer
+        .append("<tr>")
+        .append("<th>Agent</th>")
+        .append("<th>Connections</th>")
+        .append("<th>Requests</th>")
+        .append("<th>Kept Alive</th>")
+        .append("<th>Errors</th>")
+        .append("<th>KB Sent</th>")
+        .append("<th>Busy ms</th>")
+        .append("</tr>");
+
+    for (RelayAgent agent : RelayServer.agents) {
+      buffer
+          .append("<tr>")
+          .append("<td>")
+          .append(agent.getName())
+          .append("</td>")
+          .append("<td>")
+          .append(agent.getConnectionCount())
+          .append("</td>")
+          .append("<td>")
+          .append(agent.getRequestCount())
+          .append("</td>")
+          .append("<td>")
+          .append(agent.getReusedCount())
+          .append("</td>")
+          .append("<td>")
+          .append(agent.getErrorCount())
+          .append("</td>")
+          .append("<td>")
+          .append(agent.getBytesSent() / 1024)
+          .append("</td>")
+          .append("<td>")
+          .append(agent.getBusyMillis())
+          .append("</td>")
+          .append("</tr>");
+    }
+
+    buffer.append("</table>");
+
+    return buffer.toString();
   }
 
   @Override
   public void run() {
     boolean startedSuccessfully = true;
 
+    try {
+      this.selector = Selector.open();
+    } catch (IOException e) {
+      KoLmafia.updateDisplay(
+          KoLConstants.MafiaState.ERROR, "Unable to start relay server: " + e.getMessage());
+      RelayServer.relayThread = null;
+      return;
+    }
+
     int relayPort = Preferences.getInteger("relayPort");
     if (relayPort != 0) {
       RelayServer.port = relayPort;
@@ -128,13 +249,15 @@ public class RelayServer implements Runnable {
     }
 
     if (startedSuccessfully) {
+      this.executor = RelayServer.createExecutor(MIN_AGENTS, MAX_AGENTS);
       RelayServer.listening = true;
     }
 
     while (RelayServer.listening) {
       try {
-        this.dispatchAgent(this.serverSocket.accept());
-      } catch (Exception e) {
+        this.selector.select(1000);
+        this.selectConnections();
+      } catch (IOException | ClosedSelectorException e) {
         // If an exception occurs here, that means
         // someone closed the thread; just reset
         // the listening state and fall through.
@@ -146,58 +269,217 @@ public class RelayServer implements Runnable {
     this.closeAgents();
 
     try {
-      if (this.serverSocket != null) {
-        this.serverSocket.close();
+      if (this.serverChannel != null) {
+        this.serverChannel.close();
       }
-    } catch (Exception e) {
+      this.selector.close();
+    } catch (IOException e) {
       // The end result of a socket closing
       // should not throw an exception, but
       // if it does, the socket closes.
     }
 
-    this.serverSocket = null;
+    this.serverChannel = null;
+    this.selector = null;
     RelayServer.relayThread = null;
   }
 
+  /**
+   * Creates the pool of agent threads. Nothing is queued: a connection goes to an idle worker or a
+   * new one, and once there are maxAgents workers, all busy, it is rejected.
+   */
+  static ThreadPoolExecutor createExecutor(final int minAgents, final int maxAgents) {
+    AtomicInteger count = new AtomicInteger();
+
+    return new ThreadPoolExecutor(
+        minAgents,
+        maxAgents,
+        AGENT_IDLE_TIMEOUT,
+        TimeUnit.MILLISECONDS,
+        new SynchronousQueue<>(),
+        runnable -> {
+          String name = "LocalRelayAgent" + count.getAndIncrement();
+          Thread thread = new Thread(() -> RelayServer.runAgent(runnable, name), name);
+          RelayServer.agentThreads.add(thread);
+          return thread;
+        });
+  }
+
+  private static void runAgent(final Runnable runnable, final String name) {
+    try {
+      runnable.run();
+    } finally {
+      RelayServer.agentThreads.remove(Thread.currentThread());
+      RelayServer.agents.removeIf(agent -> agent.getName().equals(name));
+      RelayServer.AGENT.remove();
+    }
+  }
+
   private synchronized boolean openServerSocket() {
+    ServerSocketChannel channel = null;
+
     try {
+      channel = ServerSocketChannel.open();
+
       if (Preferences.getBoolean("relayAllowRemoteAccess")) {
-        this.serverSocket = new ServerSocket(RelayServer.port, 25);
+        channel.bind(new InetSocketAddress(RelayServer.port), BACKLOG);
       } else {
-        this.serverSocket =
-            new ServerSocket(RelayServer.port, 25, InetAddress.getByName("127.0.0.1"));
+        channel.bind(
+            new InetSocketAddress(InetAddress.getByName("127.0.0.1"), RelayServer.port), BACKLOG);
       }
 
+      channel.configureBlocking(false);
+      channel.register(this.selector, SelectionKey.OP_ACCEPT);
+
+      this.serverChannel = channel;
       return true;
     } catch (Exception e) {
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException e1) {
+        }
+      }
+
       return false;
     }
   }
 
-  private synchronized void closeAgents() {
-    for (RelayAgent agent : agentThreads) {
-      agent.setSocket(null);
+  private void selectConnections() throws IOException {
+    // Watch the connections which agents have finished with
+    RelayConnection idle;
+    while ((idle = this.idleConnections.poll()) != null) {
+      try {
+        idle.channel.configureBlocking(false);
+        idle.channel.register(this.selector, SelectionKey.OP_READ, idle);
+      } catch (IOException e) {
+        idle.close();
+      }
+    }
+
+    List<RelayConnection> ready = new ArrayList<>();
+    Set<SelectionKey> selected = this.selector.selectedKeys();
+
+    for (SelectionKey key : selected) {
+      if (!key.isValid()) {
+        continue;
+      }
+
+      if (key.isAcceptable()) {
+        this.acceptConnections();
+      } else if (key.isReadable()) {
+        key.cancel();
+        ready.add((RelayConnection) key.attachment());
+      }
+    }
+
+    selected.clear();
+
+    if (!ready.isEmpty()) {
+      // Deregister the cancelled keys, so the channels may block again
+      this.selector.selectNow();
+
+      for (RelayConnection connection : ready) {
+        try {
+          connection.channel.configureBlocking(true);
+          this.dispatchAgent(connection);
+        } catch (IOException e) {
+          connection.close();
+        }
+      }
+    }
+
+    this.closeIdleConnections();
+  }
+
+  private void acceptConnections() throws IOException {
+    SocketChannel channel;
+    while ((channel = this.serverChannel.accept()) != null) {
+      try {
+        channel.configureBlocking(false);
+        RelayConnection connection = new RelayConnection(channel);
+        channel.register(this.selector, SelectionKey.OP_READ, connection);
+      } catch (IOException e) {
+        channel.close();
+      }
     }
-    agentThreads.clear();
   }
 
-  private synchronized void dispatchAgent(final Socket socket) {
-    for (RelayAgent agent : agentThreads) {
-      if (agent.isWaiting()) {
-        agent.setSocket(socket);
-        return;
+  private void closeIdleConnections() {
+    long now = System.currentTimeMillis();
+
+    for (SelectionKey key : this.selector.keys()) {
+      if (key.attachment() instanceof RelayConnection connection
+          && now - connection.lastActive > KEEP_ALIVE_TIMEOUT) {
+        key.cancel();
+        connection.close();
       }
     }
+  }
 
-    this.createAgent(socket);
+  private void closeAgents() {
+    if (this.executor != null) {
+      this.executor.shutdownNow();
+      this.executor = null;
+    }
+
+    for (SelectionKey key : this.selector.keys()) {
+      if (key.attachment() instanceof RelayConnection connection) {
+        connection.close();
+      }
+    }
+
+    RelayConnection idle;
+    while ((idle = this.idleConnections.poll()) != null) {
+      idle.close();
+    }
   }
 
-  private synchronized void createAgent(final Socket socket) {
-    RelayAgent agent = new RelayAgent(RelayServer.agentThreads.size());
-    agent.setSocket(socket);
+  private void dispatchAgent(final RelayConnection connection) {
+    // An agent may hand back a connection as the server stops
+    ExecutorService executor = this.executor;
+    if (executor == null) {
+      connection.close();
+      return;
+    }
+
+    try {
+      executor.execute(() -> RelayServer.AGENT.get().serve(connection));
+    } catch (RejectedExecutionException e) {
+      RelayServer.refuse(connection);
+    }
+  }
+
+  /** Tells the browser that every agent is busy, and that it should ask again shortly. */
+  private static void refuse(final RelayConnection connection) {
+    PrintStream writer = connection.writer;
+    writer.println("HTTP/1.1 503 Service Unavailable");
+    writer.println("Retry-After: 1");
+    writer.println("Content-Length: 0");
+    writer.println("Connection: close");
+    writer.println();
+    writer.flush();
+    connection.close();
+  }
+
+  /** Called by an agent to hand back a keep-alive connection once its response is sent. */
+  static void keepAlive(final RelayConnection connection) {
+    Selector selector = RelayServer.INSTANCE.selector;
+    if (!RelayServer.listening || selector == null) {
+      connection.close();
+      return;
+    }
+
+    connection.lastActive = System.currentTimeMillis();
+
+    if (connection.hasBufferedInput()) {
+      // The next request has already been read, so the selector would wait for it in vain
+      RelayServer.INSTANCE.dispatchAgent(connection);
+      return;
+    }
 
-    RelayServer.agentThreads.add(agent);
-    agent.start();
+    RelayServer.INSTANCE.idleConnections.add(connection);
+    selector.wakeup();
   }
 
   public static final void addStatusMessage(final String message) {
@@ -10,7 +10,6 @@ import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.request.GenericRequest;
 import net.sourceforge.kolmafia.request.GenericRequest.TopMenuStyle;
 import net.sourceforge.kolmafia.session.LimitMode;
-import net.sourceforge.kolmafia.utilities.StringUtilities;
 
 public abstract class TopMenuDecorator {
   public static final void decorate(final StringBuffer buffer, final String location) {
@@ -41,27 +40,32 @@ public abstract class TopMenuDecorator {
       }
     }
 
+    // None of the changes depend on another, so locate them all in the page as KoL sent it and
+    // make them in a single pass.
+    PageEdits edits = new PageEdits(buffer);
+
     switch (GenericRequest.topMenuStyle) {
       case NORMAL ->
       // "normal" (links) style of topmenu.php
-      TopMenuDecorator.addScriptMenus(buffer, location);
+      TopMenuDecorator.addScriptMenus(edits, location);
       case COMPACT -> {
         // "compact" (dropdowns) style of topmenu.php
-        TopMenuDecorator.adjustCompactMenu(buffer);
-        TopMenuDecorator.addScriptMenus(buffer, location);
+        TopMenuDecorator.adjustCompactMenu(edits);
+        TopMenuDecorator.addScriptMenus(edits, location);
       }
       case FANCY ->
       // "fancy" (icons) style of topmenu.php
-      TopMenuDecorator.addFancyScriptMenus(buffer, location);
+      TopMenuDecorator.addFancyScriptMenus(edits, location);
     }
 
     // Send any logout link through KoLmafia's logout command so we clean up the GUI
-    StringUtilities.singleStringReplace(
-        buffer, "logout.php", "/KoLmafia/logout?pwd=" + GenericRequest.passwordHash);
+    edits.replaceFirst("logout.php", "/KoLmafia/logout?pwd=" + GenericRequest.passwordHash);
+
+    edits.applyTo(buffer);
   }
 
-  private static void addFancyScriptMenus(final StringBuffer buffer, final String location) {
-    int index = buffer.lastIndexOf("<div id=\"awesome\"");
+  private static void addFancyScriptMenus(final PageEdits edits, final String location) {
+    int index = edits.lastIndexOf("<div id=\"awesome\"");
     if (index == -1) {
       return;
     }
@@ -83,11 +87,11 @@ public abstract class TopMenuDecorator {
     menuBuffer.append("</div>");
 
     // Insert menus into topmenu
-    buffer.insert(index, menuBuffer.toString());
+    edits.insert(index, menuBuffer.toString());
   }
 
-  private static void addScriptMenus(final StringBuffer buffer, final String location) {
-    int index = buffer.lastIndexOf("</tr>");
+  private static void addScriptMenus(final PageEdits edits, final String location) {
+    int index = edits.lastIndexOf("</tr>");
     if (index == -1) {
       return;
     }
@@ -111,7 +115,7 @@ public abstract class TopMenuDecorator {
     menuBuffer.append("</table></div></td>");
 
     // Insert menus into topmenu
-    buffer.insert(index, menuBuffer.toString());
+    edits.insert(index, menuBuffer.toString());
   }
 
   private static void addQuickScriptsMenu(final StringBuilder buffer) {
@@ -169,15 +173,14 @@ public abstract class TopMenuDecorator {
     buffer.append("</tr>");
   }
 
-  private static void adjustCompactMenu(final StringBuffer buffer) {
-    TopMenuDecorator.mafiatizeFunctionMenu(buffer);
-    TopMenuDecorator.mafiatizeGotoMenu(buffer);
+  private static void adjustCompactMenu(final PageEdits edits) {
+    TopMenuDecorator.mafiatizeFunctionMenu(edits);
+    TopMenuDecorator.mafiatizeGotoMenu(edits);
 
     // Kill off the weird focusing problems inherent in the
     // Javascript.
 
-    StringUtilities.globalStringReplace(
-        buffer,
+    edits.replaceAll(
         "selectedIndex=0;",
         "selectedIndex=0; if ( parent && parent.mainpane ) parent.mainpane.focus();");
   }
@@ -185,35 +188,37 @@ public abstract class TopMenuDecorator {
   private static final Pattern FUNCTION_MENU_PATTERN =
       Pattern.compile("(<select name=\"loc\".*?)</select>", Pattern.DOTALL);
 
-  private static void mafiatizeFunctionMenu(final StringBuffer buffer) {
-    Matcher menuMatcher = TopMenuDecorator.FUNCTION_MENU_PATTERN.matcher(buffer.toString());
+  private static final String INVENTORY_OPTION =
+      "<option value=\"inventory.php\">Inventory</option>";
+
+  private static void mafiatizeFunctionMenu(final PageEdits edits) {
+    Matcher menuMatcher = TopMenuDecorator.FUNCTION_MENU_PATTERN.matcher(edits.getPage());
     if (!menuMatcher.find()) {
       return;
     }
 
-    StringBuffer functionMenu = new StringBuffer();
-    functionMenu.append(menuMatcher.group());
+    int index = edits.indexOf(INVENTORY_OPTION, menuMatcher.start());
+    if (index == -1 || index + INVENTORY_OPTION.length() > menuMatcher.end()) {
+      return;
+    }
 
-    StringUtilities.singleStringReplace(
-        functionMenu,
-        "<option value=\"inventory.php\">Inventory</option>",
+    edits.replace(
+        index,
+        index + INVENTORY_OPTION.length(),
         "<option value=\"inventory.php?which=1\">Consumables</option><option value=\"inventory.php?which=2\">Equipment</option><option value=\"inventory.php?which=3\">Misc Items</option><option value=\"sellstuff.php\">Sell Stuff</option>");
-
-    StringUtilities.singleStringReplace(buffer, menuMatcher.group(), functionMenu.toString());
   }
 
   private static final Pattern GOTO_MENU_PATTERN =
       Pattern.compile("(<select name=location.*?)</select>", Pattern.DOTALL);
 
-  private static void mafiatizeGotoMenu(final StringBuffer buffer) {
-    Matcher menuMatcher = TopMenuDecorator.GOTO_MENU_PATTERN.matcher(buffer.toString());
+  private static void mafiatizeGotoMenu(final PageEdits edits) {
+    Matcher menuMatcher = TopMenuDecorator.GOTO_MENU_PATTERN.matcher(edits.getPage());
     if (!menuMatcher.find()) {
       return;
     }
 
     String originalMenu = menuMatcher.group(1);
     StringBuilder gotoMenu = new StringBuilder();
-    gotoMenu.append(originalMenu);
 
     // Add special convenience areas not in normal menu
     for (int i = 0; i < KoLConstants.GOTO_MENU.length; ++i) {
@@ -244,8 +249,7 @@ public abstract class TopMenuDecorator {
       }
     }
 
-    gotoMenu.append("</select>");
-
-    StringUtilities.singleStringReplace(buffer, menuMatcher.group(), gotoMenu.toString());
+    // Add the new options just before the menu's </select>
+    edits.insert(menuMatcher.end(1), gotoMenu.toString());
   }
 }
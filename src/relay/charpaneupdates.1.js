@@ -0,0 +1,201 @@
+// Keeps the charpane up to date by asking KoLmafia what has changed,
+// rather than reloading it from KoL after every page.  Numbers and
+// effect durations which can be changed in place are; anything else
+// reloads the charpane.
+
+var charpaneInPlace = { "hp": 1, "maxhp": 1, "mp": 1, "maxmp": 1, "meat": 1,
+	"adventures": 1, "turns": 1, "drunk": 1, "effects": 1 };
+var charpaneState = {};
+
+// What KoL calls drunkenness depends on the character
+var charpaneDrunkLabels = { "Drunkenness:": 1, "Drunk:": 1, "Inebriety:": 1,
+	"Temulency:": 1, "Tipsiness:": 1 };
+
+
+function findCharpaneValue( alt )
+{
+	var images = document.getElementsByTagName( "img" );
+	for ( var i = 0; i < images.length; ++i )
+	{
+		if ( images[i].alt == alt )
+		{
+			var spans = images[i].parentNode.getElementsByTagName( "span" );
+			return spans.length > 0 ? spans[0] : null;
+		}
+	}
+
+	return null;
+}
+
+
+function setCharpanePoints( alt, current, maximum )
+{
+	var span = findCharpaneValue( alt );
+	if ( !span )
+		return false;
+
+	var links = span.getElementsByTagName( "a" );
+	if ( links.length > 0 )
+	{
+		links[0].innerHTML = current;
+		span.lastChild.nodeValue = " / " + maximum;
+	}
+	else
+	{
+		span.innerHTML = current + "&nbsp;/&nbsp;" + maximum;
+	}
+
+	return true;
+}
+
+
+function setCharpaneNumber( alt, value )
+{
+	var span = findCharpaneValue( alt );
+	if ( !span )
+		return false;
+
+	span.innerHTML = Number( value ).toLocaleString( "en-US" );
+	return true;
+}
+
+
+function setCharpaneDrunk( drunk )
+{
+	// The label and the value are in neighbouring cells, as in "Drunkenness: 10 / 31"
+	var cells = document.getElementsByTagName( "td" );
+	for ( var i = 0; i < cells.length - 1; ++i )
+	{
+		if ( !charpaneDrunkLabels[ cells[i].textContent.trim() ] )
+			continue;
+
+		var spans = cells[i + 1].getElementsByTagName( "span" );
+		var value = spans.length > 0 ? spans[0] : cells[i + 1];
+		if ( !/^\d+/.test( value.innerHTML ) )
+			return false;
+
+		value.innerHTML = value.innerHTML.replace( /^\d+/, drunk );
+		return true;
+	}
+
+	return false;
+}
+
+
+function setCharpaneEffects( effects )
+{
+	// Durations can change in place, but gaining or losing an effect
+	// means reloading.  Effects are shown either as "Name (5)" or, in
+	// the compact charpane, as an image named for the effect with "(5)"
+	// in the next cell.
+	var shown = [];
+
+	var fonts = document.getElementsByTagName( "font" );
+	for ( var i = 0; i < fonts.length; ++i )
+	{
+		var match = /^(.+) \(([^()]*)\)$/.exec( fonts[i].textContent );
+		if ( match )
+			shown.push( { name: match[1], node: fonts[i].lastChild } );
+	}
+
+	var images = document.getElementsByTagName( "img" );
+	for ( var i = 0; i < images.length; ++i )
+	{
+		var cell = images[i].parentNode.nextElementSibling;
+		if ( images[i].alt && cell && /^\([^()]*\)$/.test( cell.textContent ) )
+			shown.push( { name: images[i].alt, node: cell.lastChild } );
+	}
+
+	var count = 0;
+	for ( var i = 0; i < shown.length; ++i )
+	{
+		if ( !( shown[i].name in effects ) )
+			return false;
+		if ( !shown[i].node || shown[i].node.nodeType != 3 )
+			return false;
+		++count;
+	}
+
+	if ( count != Object.keys( effects ).length )
+		return false;
+
+	for ( var i = 0; i < shown.length; ++i )
+	{
+		// Intrinsic effects show no number, and keep it that way
+		var node = shown[i].node;
+		node.nodeValue = node.nodeValue.replace( /\(\d+\)$/, "(" + effects[ shown[i].name ] + ")" );
+	}
+
+	return true;
+}
+
+
+function applyCharpaneChanges( changes )
+{
+	for ( var key in changes )
+	{
+		if ( !charpaneInPlace[ key ] )
+			return false;
+		charpaneState[ key ] = changes[ key ];
+	}
+
+	if ( ( "hp" in changes || "maxhp" in changes ) &&
+	     !setCharpanePoints( "Hit Points", charpaneState.hp, charpaneState.maxhp ) )
+		return false;
+
+	if ( ( "mp" in changes || "maxmp" in changes ) &&
+	     !setCharpanePoints( "Mana Points", charpaneState.mp, charpaneState.maxmp ) )
+		return false;
+
+	if ( "meat" in changes && !setCharpaneNumber( "Meat", changes.meat ) )
+		return false;
+
+	if ( "adventures" in changes && !setCharpaneNumber( "Adventures Remaining", changes.adventures ) )
+		return false;
+
+	if ( "drunk" in changes && !setCharpaneDrunk( changes.drunk ) )
+		return false;
+
+	if ( "effects" in changes && !setCharpaneEffects( changes.effects ) )
+		return false;
+
+	// The charpane does not show turns played, so there is nothing to change
+
+	return true;
+}
+
+
+function followCharpaneUpdates()
+{
+	var httpObject = getHttpObject();
+	if ( !httpObject )
+		return;
+
+	httpObject.onreadystatechange = function()
+	{
+		if ( httpObject.readyState != 4 )
+			return;
+
+		if ( httpObject.status != 200 || !httpObject.responseText )
+		{
+			setTimeout( followCharpaneUpdates, 5000 );
+			return;
+		}
+
+		var update = JSON.parse( httpObject.responseText );
+		if ( update.full || !applyCharpaneChanges( update.changes ) )
+		{
+			location.reload();
+			return;
+		}
+
+		charpaneVersion = update.version;
+		followCharpaneUpdates();
+	}
+
+	httpObject.open( "GET", "/KoLmafia/charpaneUpdates?since=" + charpaneVersion + "&pwd=" + charpanePwd, true );
+	httpObject.send( null );
+}
+
+
+window.addEventListener( "load", followCharpaneUpdates );
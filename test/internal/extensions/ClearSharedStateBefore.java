@@ -18,6 +18,7 @@ import net.sourceforge.kolmafia.request.GenericRequest;
 import net.sourceforge.kolmafia.request.RelayRequest;
 import net.sourceforge.kolmafia.request.StandardRequest;
 import net.sourceforge.kolmafia.session.ChoiceManager;
+import net.sourceforge.kolmafia.session.CombatSession;
 import net.sourceforge.kolmafia.session.LimitMode;
 import net.sourceforge.kolmafia.textui.command.AbstractCommand;
 import org.junit.jupiter.api.extension.BeforeAllCallback;
@@ -62,6 +63,7 @@ public class ClearSharedStateBefore implements BeforeAllCallback {
     FightRequest.currentRound = 0;
     ChoiceManager.handlingChoice = false;
     ChoiceManager.reset();
+    CombatSession.reset();
   }
 
   public void deleteDirectoriesAndContents() {
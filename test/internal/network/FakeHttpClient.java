@@ -15,24 +15,34 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Predicate;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
 
 public class FakeHttpClient extends HttpClient {
 
-  private final List<HttpRequest> requests = new ArrayList<>();
-  private final Queue<FakeHttpResponse<String>> responses = new LinkedList<>();
-  private final Map<String, FakeHttpResponse<String>> responseMap = new HashMap<>();
+  // Requests may be sent from several threads at once
+  private final List<HttpRequest> requests = Collections.synchronizedList(new ArrayList<>());
+  private final Queue<FakeHttpResponse<String>> responses = new ConcurrentLinkedQueue<>();
+  private final Map<String, FakeHttpResponse<String>> responseMap = new ConcurrentHashMap<>();
+  private final List<Thread> requestThreads = Collections.synchronizedList(new ArrayList<>());
+
+  // Responses for whichever request matches, for requests which may be sent in any order
+  private final List<Map.Entry<Predicate<HttpRequest>, FakeHttpResponse<String>>> matchedResponses =
+      new CopyOnWriteArrayList<>();
 
   public void addResponse(int responseCode, String response) {
     addResponse(responseCode, new HashMap<>(), response);
@@ -50,21 +60,34 @@ public class FakeHttpClient extends HttpClient {
     responseMap.put(uri, response);
   }
 
+  public void addResponse(Predicate<HttpRequest> matches, FakeHttpResponse<String> response) {
+    matchedResponses.add(Map.entry(matches, response));
+  }
+
   public List<HttpRequest> getRequests() {
     return requests;
   }
 
+  /** Returns the thread which sent each request, in the same order as getRequests. */
+  public List<Thread> getRequestThreads() {
+    return requestThreads;
+  }
+
   public HttpRequest getLastRequest() {
-    if (requests.size() == 0) {
-      return null;
-    }
+    synchronized (requests) {
+      if (requests.size() == 0) {
+        return null;
+      }
 
-    return requests.get(requests.size() - 1);
+      return requests.get(requests.size() - 1);
+    }
   }
 
   public void clear() {
     this.requests.clear();
+    this.requestThreads.clear();
     this.responses.clear();
+    this.matchedResponses.clear();
   }
 
   @Override
@@ -115,8 +138,14 @@ public class FakeHttpClient extends HttpClient {
   @Override
   public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> responseBodyHandler)
       throws IOException, InterruptedException {
-    this.requests.add(request);
-    var response = responseMap.getOrDefault(request.uri().toString(), responses.poll());
+    synchronized (requests) {
+      this.requests.add(request);
+      this.requestThreads.add(Thread.currentThread());
+    }
+    var response = this.matchResponse(request);
+    if (response == null) {
+      response = responseMap.getOrDefault(request.uri().toString(), responses.poll());
+    }
 
     var responseCode = response != null ? response.statusCode() : 0;
     var headers = response != null ? response.rawHeaders() : new HashMap<String, List<String>>();
@@ -137,6 +166,15 @@ public class FakeHttpClient extends HttpClient {
     return new FakeHttpResponse<>(responseCode, headers, body);
   }
 
+  private FakeHttpResponse<String> matchResponse(HttpRequest request) {
+    for (var entry : matchedResponses) {
+      if (entry.getKey().test(request)) {
+        return entry.getValue();
+      }
+    }
+    return null;
+  }
+
   @Override
   public <T> CompletableFuture<HttpResponse<T>> sendAsync(
       HttpRequest request, BodyHandler<T> responseBodyHandler) {
@@ -92,7 +92,7 @@ public class AreaCombatDataTest {
 
   @AfterAll
   public static void deleteQueueFile() {
-    File queueF = new File(KoLConstants.DATA_LOCATION, "fakeusername_queue.ser");
+    File queueF = new File(KoLConstants.DATA_LOCATION, "fakeusername_queue.dat");
     if (queueF.exists()) {
       queueF.delete();
     }
@@ -11,7 +11,11 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import internal.helpers.Cleanups;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
 import net.sourceforge.kolmafia.persistence.AdventureDatabase;
 import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.request.AdventureRequest.ShadowRift;
@@ -20,6 +24,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 
@@ -143,4 +148,29 @@ class RequestLoggerTest {
       }
     }
   }
+
+  @Nested
+  class CompressSessionLogs {
+    @TempDir Path directory;
+
+    @Test
+    void compressesEarlierDaysOnly() throws IOException {
+      Files.writeString(this.directory.resolve("Some_Player_20260101.txt"), "old day\n");
+      Files.writeString(this.directory.resolve("Some_Player_20260102.txt"), "today\n");
+      Files.writeString(this.directory.resolve("Some_Player_Two_20260101.txt"), "other\n");
+
+      RequestLogger.compressSessionLogs(
+          this.directory.toFile(), "Some_Player", "Some_Player_20260102.txt");
+
+      assertTrue(Files.exists(this.directory.resolve("Some_Player_20260102.txt")));
+      assertTrue(Files.exists(this.directory.resolve("Some_Player_Two_20260101.txt")));
+      assertTrue(Files.notExists(this.directory.resolve("Some_Player_20260101.txt")));
+
+      try (var istream =
+          new GZIPInputStream(
+              Files.newInputStream(this.directory.resolve("Some_Player_20260101.txt.gz")))) {
+        assertThat(new String(istream.readAllBytes()), equalTo("old day\n"));
+      }
+    }
+  }
 }
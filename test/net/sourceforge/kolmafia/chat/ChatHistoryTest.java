@@ -0,0 +1,79 @@
+package net.sourceforge.kolmafia.chat;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ChatHistoryTest {
+  private static HistoryEntry add(final ChatHistory history) {
+    HistoryEntry entry = new HistoryEntry("", history.next());
+    history.publish(entry);
+    return entry;
+  }
+
+  private static List<Long> sequences(final List<HistoryEntry> entries) {
+    return entries.stream().map(HistoryEntry::getLocalLastSeen).toList();
+  }
+
+  @Test
+  void returnsEntriesSinceSequenceNumber() {
+    var history = new ChatHistory(8);
+    for (int i = 0; i < 5; ++i) {
+      add(history);
+    }
+
+    assertThat(sequences(history.since(2)), contains(3L, 4L, 5L));
+    assertThat(history.since(5), empty());
+  }
+
+  @Test
+  void cursorsAreIndependent() {
+    var history = new ChatHistory(8);
+    var relay = history.newCursor();
+    var gui = history.newCursor();
+
+    add(history);
+    add(history);
+    assertThat(sequences(relay.poll()), contains(1L, 2L));
+
+    add(history);
+    assertThat(sequences(relay.poll()), contains(3L));
+    assertThat(sequences(gui.poll()), contains(1L, 2L, 3L));
+    assertThat(relay.poll(), empty());
+    assertThat(relay.getBacklog(), equalTo(0L));
+  }
+
+  @Test
+  void slowReaderMissesOverwrittenEntries() {
+    var history = new ChatHistory(4);
+    var cursor = history.newCursor();
+
+    for (int i = 0; i < 10; ++i) {
+      add(history);
+    }
+
+    assertThat(cursor.getBacklog(), equalTo(10L));
+    assertThat(sequences(cursor.poll()), contains(7L, 8L, 9L, 10L));
+    assertThat(history.getMissed(), equalTo(6L));
+  }
+
+  @Test
+  void stopsAtEntryNotYetPublished() {
+    var history = new ChatHistory(8);
+    var cursor = history.newCursor();
+
+    add(history);
+    long pending = history.next();
+    add(history);
+
+    // The entry after the pending one is not skipped
+    assertThat(sequences(cursor.poll()), contains(1L));
+
+    history.publish(new HistoryEntry("", pending));
+    assertThat(sequences(cursor.poll()), contains(2L, 3L));
+  }
+}
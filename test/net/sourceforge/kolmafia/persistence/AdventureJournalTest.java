@@ -0,0 +1,82 @@
+package net.sourceforge.kolmafia.persistence;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AdventureJournalTest {
+  @TempDir File directory;
+
+  private static AdventureJournal.Record record(final int type, final Object... fields) {
+    return new AdventureJournal.Record(type, fields);
+  }
+
+  @Test
+  void readsBackWhatWasWrittenAndAppended() {
+    File file = new File(this.directory, "user_queue.dat");
+    AdventureJournal journal = new AdventureJournal(file);
+
+    journal.rewrite(List.of(record(1, "The Haunted Pantry", 1641), record(2, "Noob Cave")));
+    journal.append(record(1, "The Haunted Pantry", -3));
+    journal.append(record(2, "Noob Cave", "It's a Sign!"));
+
+    assertThat(
+        AdventureJournal.read(file),
+        contains(
+            record(1, "The Haunted Pantry", 1641),
+            record(2, "Noob Cave"),
+            record(1, "The Haunted Pantry", -3),
+            record(2, "Noob Cave", "It's a Sign!")));
+  }
+
+  @Test
+  void writesEachNameOnce() {
+    File once = new File(this.directory, "once.dat");
+    new AdventureJournal(once).rewrite(List.of(record(1, "The Haunted Pantry", 1)));
+
+    File twice = new File(this.directory, "twice.dat");
+    AdventureJournal journal = new AdventureJournal(twice);
+    journal.rewrite(List.of(record(1, "The Haunted Pantry", 1)));
+    journal.append(record(1, "The Haunted Pantry", 2));
+
+    // Type, field count and two one byte fields
+    assertThat(twice.length() - once.length(), equalTo(4L));
+  }
+
+  @Test
+  void ignoresPartialLastRecord() throws IOException {
+    File file = new File(this.directory, "user_turns.dat");
+    new AdventureJournal(file).rewrite(List.of(record(1, "The Haunted Pantry", 300)));
+
+    // A record with two fields, cut off after the first
+    Files.write(file.toPath(), new byte[] {1, 2, 1}, StandardOpenOption.APPEND);
+
+    assertThat(AdventureJournal.read(file), contains(record(1, "The Haunted Pantry", 300)));
+  }
+
+  @Test
+  void rewritesFileWhichIsGone() {
+    File file = new File(this.directory, "user_turns.dat");
+    AdventureJournal journal = new AdventureJournal(file);
+
+    assertThat(journal.append(record(1, "The Haunted Pantry", 1)), equalTo(true));
+    assertThat(file.exists(), equalTo(false));
+  }
+
+  @Test
+  void rejectsOtherFiles() throws IOException {
+    File file = new File(this.directory, "user_queue.ser");
+    Files.writeString(file.toPath(), "not a journal");
+
+    assertThat(AdventureJournal.read(file), nullValue());
+  }
+}
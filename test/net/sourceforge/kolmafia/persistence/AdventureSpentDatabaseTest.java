@@ -3,6 +3,11 @@ package net.sourceforge.kolmafia.persistence;
 import static internal.helpers.Networking.html;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.TreeMap;
 import net.sourceforge.kolmafia.AdventureResult;
 import net.sourceforge.kolmafia.KoLAdventure;
 import net.sourceforge.kolmafia.KoLCharacter;
@@ -70,6 +75,44 @@ public class AdventureSpentDatabaseTest {
     assertEquals(0, AdventureSpentDatabase.getTotalTrackedTurns());
   }
 
+  @Test
+  public void migratesSerializedTurnsAndAppendsNewOnes() throws IOException {
+    String user = KoLCharacter.baseUserName();
+    File legacy = new File(KoLConstants.DATA_LOCATION, user + "_turns.ser");
+    File file = new File(KoLConstants.DATA_LOCATION, user + "_turns.dat");
+
+    KoLConstants.DATA_LOCATION.mkdirs();
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(legacy))) {
+      TreeMap<String, Integer> turns = new TreeMap<>();
+      turns.put("The Haunted Pantry", 3);
+      out.writeObject(turns);
+    }
+
+    try {
+      AdventureSpentDatabase.deserialize();
+      assertFalse(legacy.exists());
+      assertTrue(file.exists());
+      assertEquals(3, AdventureSpentDatabase.getTurns("The Haunted Pantry"));
+
+      AdventureSpentDatabase.addTurn("The Haunted Pantry");
+      AdventureSpentDatabase.setTurns("The Haunted Bedroom", 2);
+      AdventureSpentDatabase.resetTurns(false);
+
+      AdventureSpentDatabase.deserialize();
+      assertEquals(4, AdventureSpentDatabase.getTurns("The Haunted Pantry"));
+      assertEquals(2, AdventureSpentDatabase.getTurns("The Haunted Bedroom"));
+      assertEquals(6, AdventureSpentDatabase.getTotalTrackedTurns());
+    } finally {
+      legacy.delete();
+      file.delete();
+
+      // Stop appending to the file
+      AdventureSpentDatabase.allowSerializationWrite = false;
+      AdventureSpentDatabase.deserialize();
+      AdventureSpentDatabase.allowSerializationWrite = true;
+    }
+  }
+
   @Test
   public void canCountFightChoiceFightInHauntedBedroom() {
     // Every encounter in The Haunted Bedroom is a fight followed by a choice adventure.
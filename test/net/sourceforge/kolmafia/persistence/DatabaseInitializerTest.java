@@ -0,0 +1,151 @@
+package net.sourceforge.kolmafia.persistence;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DatabaseInitializerTest {
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+  private final List<String> loaded = new CopyOnWriteArrayList<>();
+
+  @AfterEach
+  void afterEach() {
+    this.executor.shutdownNow();
+  }
+
+  private DatabaseInitializer.Node node(final String name, final String... dependencies) {
+    return new DatabaseInitializer.Node(name, () -> this.loaded.add(name), List.of(dependencies));
+  }
+
+  @Test
+  void loadsDependenciesFirst() {
+    var timings =
+        DatabaseInitializer.run(
+            List.of(
+                this.node("concoctions", "items"),
+                this.node("adventures", "items", "monsters"),
+                this.node("monsters", "items"),
+                this.node("items")),
+            this.executor);
+
+    assertThat(
+        timings.keySet(), containsInAnyOrder("items", "monsters", "concoctions", "adventures"));
+    assertThat(this.loaded.indexOf("items"), lessThan(this.loaded.indexOf("monsters")));
+    assertThat(this.loaded.indexOf("items"), lessThan(this.loaded.indexOf("concoctions")));
+    assertThat(this.loaded.indexOf("monsters"), lessThan(this.loaded.indexOf("adventures")));
+  }
+
+  @Test
+  void loadsIndependentDatabasesConcurrently() throws InterruptedException {
+    // Each of these can only finish once the other has started
+    var started = new CountDownLatch(2);
+    Runnable meet =
+        () -> {
+          started.countDown();
+          try {
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        };
+
+    DatabaseInitializer.run(
+        List.of(
+            new DatabaseInitializer.Node("effects", meet, List.of()),
+            new DatabaseInitializer.Node("skills", meet, List.of()),
+            this.node("items", "effects", "skills")),
+        this.executor);
+
+    assertThat(started.getCount(), lessThan(1L));
+    assertThat(this.loaded, contains("items"));
+  }
+
+  @Test
+  void keepsLoadingAfterFailure() {
+    DatabaseInitializer.run(
+        List.of(
+            new DatabaseInitializer.Node(
+                "items",
+                () -> {
+                  throw new IllegalStateException("damaged items.txt");
+                },
+                List.of()),
+            this.node("monsters", "items")),
+        this.executor);
+
+    assertThat(this.loaded, contains("monsters"));
+  }
+
+  @Test
+  void recordsDatabasesLoadedOnDemand() {
+    DatabaseInitializer.loadOnDemand("bookoffacts", () -> this.loaded.add("bookoffacts"));
+
+    var load =
+        DatabaseInitializer.getLoads().stream()
+            .filter(l -> l.name().equals("bookoffacts"))
+            .findFirst()
+            .orElseThrow();
+    assertTrue(load.onDemand());
+    assertThat(this.loaded, contains("bookoffacts"));
+  }
+
+  @Test
+  void loadsRealDatabasesWithoutDeadlock() throws Exception {
+    // Load every class afresh, so that no database has been initialized already by another test
+    String[] paths = System.getProperty("java.class.path").split(File.pathSeparator);
+    URL[] urls = new URL[paths.length];
+    for (int i = 0; i < paths.length; ++i) {
+      urls[i] = new File(paths[i]).toURI().toURL();
+    }
+
+    try (var loader = new URLClassLoader(urls, ClassLoader.getPlatformClassLoader())) {
+      var initializer = loader.loadClass(DatabaseInitializer.class.getName());
+      var loadAll = initializer.getDeclaredMethod("loadAll", Executor.class);
+      loadAll.setAccessible(true);
+
+      // If a database touches one it does not list as a dependency, two threads can each wait
+      // for the other to finish initializing a class, and this never returns.
+      var timings =
+          (Map<?, ?>)
+              assertTimeoutPreemptively(
+                  Duration.ofMinutes(2), () -> loadAll.invoke(null, this.executor));
+
+      var names = timings.keySet().stream().map(Object::toString).toList();
+      assertThat(names, hasItems("effects", "skills", "items", "monsters", "adventures"));
+    }
+  }
+
+  @Test
+  void rejectsUnknownDependencies() {
+    var graph = List.of(this.node("monsters", "items"));
+    assertThrows(
+        IllegalArgumentException.class, () -> DatabaseInitializer.run(graph, this.executor));
+  }
+
+  @Test
+  void rejectsCycles() {
+    var graph = List.of(this.node("items", "concoctions"), this.node("concoctions", "items"));
+    assertThrows(
+        IllegalArgumentException.class, () -> DatabaseInitializer.run(graph, this.executor));
+  }
+}
@@ -5,6 +5,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.arrayWithSize;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.startsWith;
@@ -26,6 +27,7 @@ public class MallPriceDatabaseTest {
     MallPriceDatabase.savePricesToFile = false;
     String MallPriceFileName = "data/" + "mallprices.txt";
     Utilities.verboseDelete(MallPriceFileName);
+    Utilities.verboseDelete("data/mallprices.bin");
     MallPriceDatabase.updatePrices(MallPriceFileName);
   }
 
@@ -78,4 +80,17 @@ public class MallPriceDatabaseTest {
     assertThat(lines[2], matchesPattern("^600\t\\d+\t5$"));
     assertThat(lines[3], matchesPattern("^607\t\\d+\t50$"));
   }
+
+  @Test
+  void recordsPricesForItemsPastTheEndOfTheIndex() {
+    int itemId = ItemDatabase.maxItemId() + 5000;
+
+    MallPriceDatabase.recordPrice(itemId, 1234, true);
+    assertThat(MallPriceDatabase.getPrice(itemId), equalTo(1234));
+    assertThat(MallPriceDatabase.getAge(itemId), lessThan(1.0f));
+
+    // Leave it out of what other tests write
+    MallPriceDatabase.recordPrice(itemId, 0, true);
+    assertThat(MallPriceDatabase.getPrice(itemId), equalTo(0));
+  }
 }
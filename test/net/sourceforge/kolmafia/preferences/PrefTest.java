@@ -0,0 +1,83 @@
+package net.sourceforge.kolmafia.preferences;
+
+import static internal.helpers.Player.withProperty;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import net.sourceforge.kolmafia.KoLCharacter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PrefTest {
+  @BeforeEach
+  void beforeEach() {
+    KoLCharacter.reset("PrefTest");
+  }
+
+  @AfterEach
+  void afterEach() {
+    KoLCharacter.reset("");
+  }
+
+  @Test
+  void sameNameGivesSameHandle() {
+    assertThat(
+        Preferences.intPref("autoBuyPriceLimit"),
+        sameInstance(Preferences.intPref("autoBuyPriceLimit")));
+  }
+
+  @Test
+  void handleSeesEveryChange() {
+    IntPref pref = Preferences.intPref("autoBuyPriceLimit");
+
+    try (var cleanups = withProperty("autoBuyPriceLimit", 1000)) {
+      assertThat(pref.get(), equalTo(1000));
+
+      Preferences.setInteger("autoBuyPriceLimit", 2000);
+      assertThat(pref.get(), equalTo(2000));
+
+      pref.set(3000);
+      assertThat(pref.get(), equalTo(3000));
+      assertThat(Preferences.getInteger("autoBuyPriceLimit"), equalTo(3000));
+
+      Preferences.setString("autoBuyPriceLimit", "4000");
+      assertThat(pref.get(), equalTo(4000));
+    }
+  }
+
+  @Test
+  void handleSeesPreferencesReloaded() {
+    BoolPref pref = Preferences.boolPref("maximizerFoldables");
+
+    pref.set(false);
+    assertThat(pref.get(), is(false));
+
+    // Nothing is saved, so this reloads the default
+    Preferences.reset("PrefTest");
+    assertThat(pref.get(), is(true));
+  }
+
+  @Test
+  void handleSeesGlobalPreferences() {
+    DoublePref pref = Preferences.doublePref("pingLoginThreshold");
+
+    try (var cleanups = withProperty("pingLoginThreshold", "1.5")) {
+      assertThat(pref.get(), equalTo(1.5));
+    }
+  }
+
+  @Test
+  void onlyPreferencesWithDefaultsHaveHandles() {
+    assertThrows(IllegalArgumentException.class, () -> Preferences.intPref("noSuchPreference"));
+  }
+
+  @Test
+  void handleHasOneType() {
+    Preferences.intPref("autoBuyPriceLimit");
+    assertThrows(IllegalArgumentException.class, () -> Preferences.boolPref("autoBuyPriceLimit"));
+  }
+}
@@ -4,6 +4,7 @@ import static internal.helpers.Player.withProperty;
 import static internal.helpers.Player.withSavePreferencesToFile;
 import static internal.matchers.Preference.isSetTo;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -12,6 +13,8 @@ import internal.helpers.Cleanups;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.TreeMap;
 import net.java.dev.spellcast.utilities.DataUtilities;
 import net.sourceforge.kolmafia.KoLCharacter;
@@ -41,6 +44,26 @@ class PreferencesTest {
     if (userFile.exists()) {
       userFile.delete();
     }
+    File journalFile = new File("settings/" + USER_NAME.toLowerCase() + "_prefs.journal");
+    if (journalFile.exists()) {
+      journalFile.delete();
+    }
+  }
+
+  // What is saved for a user: the preferences file, followed by changes since it was written
+  private static String saved(String userName) throws IOException {
+    String base = "settings/" + userName.toLowerCase();
+    String contents =
+        new String(
+            DataUtilities.getInputStream(new File(base + "_prefs.txt")).readAllBytes(),
+            StandardCharsets.UTF_8);
+
+    File journalFile = new File(base + "_prefs.journal");
+    if (journalFile.exists()) {
+      contents += Files.readString(journalFile.toPath(), StandardCharsets.UTF_8);
+    }
+
+    return contents;
   }
 
   @Test
@@ -657,17 +680,11 @@ class PreferencesTest {
       var cleanups =
           new Cleanups(withSavePreferencesToFile(), withProperty("saveSettingsOnSet", true));
       try (cleanups) {
-        File userFile =
-            new File("settings/" + KoLCharacter.getUserName().toLowerCase() + "_prefs.txt");
-        String contents =
-            new String(
-                DataUtilities.getInputStream(userFile).readAllBytes(), StandardCharsets.UTF_8);
+        String contents = saved(KoLCharacter.getUserName());
         assertThat(contents, not(containsString("\nxyz=abc\n")));
 
         try (var cleanups2 = withProperty("xyz", "abc")) {
-          contents =
-              new String(
-                  DataUtilities.getInputStream(userFile).readAllBytes(), StandardCharsets.UTF_8);
+          contents = saved(KoLCharacter.getUserName());
           assertThat(contents, containsString("\nxyz=abc\n"));
         }
       }
@@ -675,10 +692,7 @@ class PreferencesTest {
 
     @Test
     public void canToggle() throws IOException {
-      File userFile =
-          new File("settings/" + KoLCharacter.getUserName().toLowerCase() + "_prefs.txt");
-      String contents =
-          new String(DataUtilities.getInputStream(userFile).readAllBytes(), StandardCharsets.UTF_8);
+      String contents = saved(KoLCharacter.getUserName());
       assertThat(contents, not(containsString("\nxyz=abc\n")));
 
       var cleanups =
@@ -687,21 +701,100 @@ class PreferencesTest {
               withProperty("saveSettingsOnSet", false),
               withProperty("xyz", "abc"));
       try (cleanups) {
-        contents =
-            new String(
-                DataUtilities.getInputStream(userFile).readAllBytes(), StandardCharsets.UTF_8);
+        contents = saved(KoLCharacter.getUserName());
         assertThat(contents, not(containsString("\nxyz=abc\n")));
 
         var cleanups2 =
             new Cleanups(withProperty("saveSettingsOnSet", true), withProperty("wxy", "def"));
         try (cleanups2) {
-          contents =
-              new String(
-                  DataUtilities.getInputStream(userFile).readAllBytes(), StandardCharsets.UTF_8);
+          contents = saved(KoLCharacter.getUserName());
           assertThat(contents, containsString("\nxyz=abc\n"));
           assertThat(contents, containsString("\nwxy=def\n"));
         }
       }
     }
   }
+
+  @Nested
+  class Journal {
+    private File journalFile() {
+      return new File("settings/" + KoLCharacter.getUserName().toLowerCase() + "_prefs.journal");
+    }
+
+    @Test
+    public void appendsChangesRatherThanRewriting() throws IOException {
+      var cleanups =
+          new Cleanups(withSavePreferencesToFile(), withProperty("saveSettingsOnSet", true));
+      try (cleanups) {
+        File userFile =
+            new File("settings/" + KoLCharacter.getUserName().toLowerCase() + "_prefs.txt");
+        long modified = userFile.lastModified();
+        long length = userFile.length();
+
+        Preferences.setString("journaledPref", "one=1");
+        Preferences.setString("journaledPref", "two");
+
+        assertThat(userFile.length(), equalTo(length));
+        assertThat(userFile.lastModified(), equalTo(modified));
+        assertThat(
+            Files.readString(journalFile().toPath()),
+            containsString("journaledPref=one\\=1\njournaledPref=two\n"));
+      }
+    }
+
+    @Test
+    public void replaysJournalWhenLoading() throws IOException {
+      var cleanups =
+          new Cleanups(withSavePreferencesToFile(), withProperty("saveSettingsOnSet", true));
+      try (cleanups) {
+        Preferences.setString("journaledPref", "kept");
+        Preferences.setString("removedPref", "gone");
+        Preferences.removeProperty("removedPref", false);
+
+        // Load the file, as if after a crash
+        Preferences.reset(KoLCharacter.getUserName());
+
+        assertEquals("kept", Preferences.getString("journaledPref"));
+        assertFalse(Preferences.propertyExists("removedPref", false));
+
+        // The journal has been folded into the file
+        File userFile =
+            new File("settings/" + KoLCharacter.getUserName().toLowerCase() + "_prefs.txt");
+        assertThat(
+            Files.readString(userFile.toPath()), containsString("\njournaledPref=kept\n"));
+      }
+    }
+
+    @Test
+    public void replaysDailiesRemovedAtRollover() {
+      var cleanups =
+          new Cleanups(withSavePreferencesToFile(), withProperty("saveSettingsOnSet", true));
+      try (cleanups) {
+        Preferences.setString("_journaledDaily", "today");
+        Preferences.resetDailies();
+
+        // Load the file, as if after a crash
+        Preferences.reset(KoLCharacter.getUserName());
+
+        assertFalse(Preferences.propertyExists("_journaledDaily", false));
+      }
+    }
+
+    @Test
+    public void ignoresPartialLastRecord() throws IOException {
+      var cleanups =
+          new Cleanups(withSavePreferencesToFile(), withProperty("saveSettingsOnSet", true));
+      try (cleanups) {
+        Preferences.setString("journaledPref", "whole");
+        Files.writeString(
+            journalFile().toPath(),
+            "journaledPref=torn",
+            StandardOpenOption.APPEND);
+
+        Preferences.reset(KoLCharacter.getUserName());
+
+        assertEquals("whole", Preferences.getString("journaledPref"));
+      }
+    }
+  }
 }
@@ -0,0 +1,121 @@
+package net.sourceforge.kolmafia.request;
+
+import static internal.helpers.Player.withNextResponse;
+import static internal.helpers.Player.withProperty;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import internal.helpers.Cleanups;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ApiRefreshTest {
+  private final ApiRefresh refresh = ApiRefresh.get(ApiRefresh.Kind.CLOSET);
+  private final AtomicInteger fetches = new AtomicInteger();
+
+  @BeforeEach
+  void beforeEach() {
+    this.refresh.invalidate();
+    ApiRefresh.resetMetrics();
+    this.fetches.set(0);
+  }
+
+  private Supplier<GenericRequest> fetch() {
+    return () -> {
+      this.fetches.incrementAndGet();
+      GenericRequest request = new GenericRequest("api.php");
+      request.responseText = "{}";
+      return request;
+    };
+  }
+
+  @Test
+  void reusesRecentRefreshWhenNothingChanged() {
+    try (var cleanups = withProperty("apiRefreshWindow", 60000)) {
+      this.refresh.refresh(false, this.fetch());
+      this.refresh.refresh(false, this.fetch());
+
+      assertThat(this.fetches.get(), equalTo(1));
+      assertThat(this.refresh.getRequested(), equalTo(2L));
+      assertThat(this.refresh.getSaved(), equalTo(1L));
+    }
+  }
+
+  @Test
+  void refreshesAgainAfterRequestWhichMayChangeThings() {
+    var cleanups =
+        new Cleanups(
+            withProperty("apiRefreshWindow", 60000),
+            withNextResponse(200, "<html><body>You're fine.</body></html>"));
+
+    try (cleanups) {
+      this.refresh.refresh(false, this.fetch());
+      new GenericRequest("showplayer.php?who=1").run();
+      this.refresh.refresh(false, this.fetch());
+
+      assertThat(this.fetches.get(), equalTo(2));
+      assertThat(this.refresh.getSaved(), equalTo(0L));
+    }
+  }
+
+  @Test
+  void forcedRefreshAlwaysFetches() {
+    try (var cleanups = withProperty("apiRefreshWindow", 60000)) {
+      this.refresh.refresh(false, this.fetch());
+      this.refresh.refresh(true, this.fetch());
+
+      assertThat(this.fetches.get(), equalTo(2));
+    }
+  }
+
+  @Test
+  void doesNotReuseAfterWindow() {
+    try (var cleanups = withProperty("apiRefreshWindow", -1)) {
+      this.refresh.refresh(false, this.fetch());
+      this.refresh.refresh(false, this.fetch());
+
+      assertThat(this.fetches.get(), equalTo(2));
+    }
+  }
+
+  @Test
+  void joinsRefreshInFlight() throws InterruptedException {
+    var started = new CountDownLatch(1);
+    var finish = new CountDownLatch(1);
+
+    Supplier<GenericRequest> slow =
+        () -> {
+          started.countDown();
+          try {
+            finish.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return this.fetch().get();
+        };
+
+    try (var cleanups = withProperty("apiRefreshWindow", -1)) {
+      Thread first = new Thread(() -> this.refresh.refresh(false, slow));
+      first.start();
+      started.await();
+
+      Thread second = new Thread(() -> this.refresh.refresh(false, this.fetch()));
+      second.start();
+
+      // Give the second refresh time to find the first in flight
+      while (second.getState() != Thread.State.WAITING) {
+        Thread.sleep(1);
+      }
+
+      finish.countDown();
+      first.join();
+      second.join();
+
+      assertThat(this.fetches.get(), equalTo(1));
+      assertThat(this.refresh.getSaved(), equalTo(1L));
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package net.sourceforge.kolmafia.session;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CombatSessionTest {
+  @BeforeEach
+  void beforeEach() {
+    CombatSession.reset();
+  }
+
+  @Test
+  void publishesEachRound() {
+    var session = CombatSession.begin();
+    CombatSession.publish(1, "round one");
+
+    assertThat(CombatSession.getDecoratedText(), equalTo("round one"));
+    assertThat(session.getSnapshot().round(), equalTo(1));
+
+    CombatSession.publish(2, "round two");
+    assertThat(CombatSession.getDecoratedText(), equalTo("round two"));
+  }
+
+  @Test
+  void newCombatKeepsLastPageUntilFirstRound() {
+    var first = CombatSession.begin();
+    CombatSession.publish(3, "you win");
+
+    var second = CombatSession.begin();
+    assertThat(second.getId(), not(first.getId()));
+    assertThat(CombatSession.getDecoratedText(), equalTo("you win"));
+    assertThat(second.getSnapshot().round(), equalTo(0));
+  }
+
+  @Test
+  void readersDoNotWaitForAutomatedFight() throws Exception {
+    CombatSession.begin();
+    CombatSession.publish(1, "round one");
+
+    var started = new CountDownLatch(1);
+    var finish = new CountDownLatch(1);
+    var fight =
+        CompletableFuture.supplyAsync(
+            () ->
+                CombatSession.automate(
+                    () -> {
+                      started.countDown();
+                      try {
+                        finish.await(10, TimeUnit.SECONDS);
+                      } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                      }
+                      CombatSession.publish(5, "round five");
+                    }));
+
+    assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(CombatSession.isAutomating(), is(true));
+
+    // Neither a reader nor a second automation request waits for the fight
+    assertThat(CombatSession.getDecoratedText(), equalTo("round one"));
+    assertThat(CombatSession.automate(() -> CombatSession.publish(9, "no")), equalTo("round one"));
+
+    finish.countDown();
+    assertThat(fight.get(10, TimeUnit.SECONDS), equalTo("round five"));
+    assertThat(CombatSession.isAutomating(), is(false));
+  }
+}
@@ -1,9 +1,16 @@
 package net.sourceforge.kolmafia.session;
 
+import static internal.helpers.Networking.getPostRequestBody;
 import static internal.helpers.Networking.html;
 import static internal.helpers.Player.withHttpClientBuilder;
 import static internal.helpers.Player.withMeat;
 import static internal.helpers.Player.withProperty;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -14,7 +21,9 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mockStatic;
 
 import internal.helpers.Cleanups;
+import internal.helpers.Networking;
 import internal.network.FakeHttpClientBuilder;
+import internal.network.FakeHttpResponse;
 import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -767,6 +776,50 @@ public class MallPriceManagerTest {
     }
   }
 
+  @Test
+  public void canGetMallPricesByCategoryConcurrently() {
+    var builder = new FakeHttpClientBuilder();
+    var client = builder.client;
+
+    // Three pages, so that the two after the first are fetched at once. The third is the last item
+    // on the second again, so merging the pages out of order would split its stores in two.
+    String page1 =
+        html("request/test_mall_search_unlockers_page_1.html").replace("of 33)", "of 63)");
+    String page2 = html("request/test_mall_search_unlockers_page_2.html");
+    String page3 =
+        page2.substring(0, page2.indexOf("<a name=\"results_8063\">"))
+            + page2.substring(page2.indexOf("<a name=\"results_5170\">"));
+
+    var cleanups =
+        new Cleanups(withHttpClientBuilder(builder), withProperty("mallSearchThreads", 2));
+    try (cleanups) {
+      client.addResponse(200, page1);
+      client.addResponse(
+          request -> getPostRequestBody(request).contains("start=30"),
+          new FakeHttpResponse<>(200, page2));
+      client.addResponse(
+          request -> getPostRequestBody(request).contains("start=60"),
+          new FakeHttpResponse<>(200, page3));
+
+      // The first page says how many more there are; the rest are fetched and parsed apart
+      int count = MallPriceManager.getMallPrices("unlockers", "");
+      assertEquals(32, count);
+
+      var requests = client.getRequests();
+      assertEquals(3, requests.size());
+      assertThat(getPostRequestBody(requests.get(0)), not(containsString("start=")));
+      var bodies = requests.stream().map(Networking::getPostRequestBody).toList();
+      assertThat(bodies, hasItem(containsString("start=30")));
+      assertThat(bodies, hasItem(containsString("start=60")));
+
+      // The first page is fetched here, the others on two threads of their own
+      var threads = client.getRequestThreads();
+      assertThat(threads.get(0), sameInstance(Thread.currentThread()));
+      assertThat(Set.copyOf(threads.subList(1, 3)), hasSize(2));
+      assertThat(threads.subList(1, 3), not(hasItem(Thread.currentThread())));
+    }
+  }
+
   @Test
   public void canSearchMallStore() {
     // Not actually used in MallPriceManager, but may as well test the fourth
@@ -0,0 +1,100 @@
+package net.sourceforge.kolmafia.session;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.sourceforge.kolmafia.KoLConstants.MafiaState;
+import net.sourceforge.kolmafia.KoLmafia;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class MallSearchBatchTest {
+  @AfterEach
+  void afterEach() {
+    KoLmafia.forceContinue();
+  }
+
+  @Test
+  void runsSearchesInTurnWithOneThread() {
+    List<Thread> threads = new CopyOnWriteArrayList<>();
+    List<Integer> order = new CopyOnWriteArrayList<>();
+    List<Runnable> searches = new ArrayList<>();
+    for (int i = 0; i < 3; ++i) {
+      int search = i;
+      searches.add(
+          () -> {
+            threads.add(Thread.currentThread());
+            order.add(search);
+          });
+    }
+
+    int count = new MallSearchBatch(1, 0).runAll(searches);
+
+    assertThat(count, equalTo(3));
+    assertThat(order, contains(0, 1, 2));
+    assertThat(threads, everyItem(sameInstance(Thread.currentThread())));
+  }
+
+  @Test
+  void runsSearchesConcurrently() {
+    // Each of these can only finish once the other has started
+    var started = new CountDownLatch(2);
+    Runnable meet =
+        () -> {
+          started.countDown();
+          try {
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        };
+
+    int count = new MallSearchBatch(2, 0).runAll(List.of(meet, meet));
+
+    assertThat(started.getCount(), lessThan(1L));
+    assertThat(count, equalTo(2));
+  }
+
+  @Test
+  void spacesOutSearches() {
+    List<Long> starts = new CopyOnWriteArrayList<>();
+    Runnable search = () -> starts.add(System.nanoTime());
+
+    new MallSearchBatch(3, 50).runAll(List.of(search, search, search));
+
+    List<Long> sorted = new ArrayList<>(starts);
+    Collections.sort(sorted);
+    long span = TimeUnit.NANOSECONDS.toMillis(sorted.get(2) - sorted.get(0));
+    assertThat(span, greaterThanOrEqualTo(90L));
+  }
+
+  @Test
+  void skipsSearchesOnceToldToStop() {
+    List<Integer> ran = new CopyOnWriteArrayList<>();
+    List<Runnable> searches =
+        List.of(
+            () -> ran.add(1),
+            () -> {
+              ran.add(2);
+              KoLmafia.updateDisplay(MafiaState.ABORT, "Stop.");
+            },
+            () -> ran.add(3));
+
+    int count = new MallSearchBatch(1, 0).runAll(searches);
+
+    assertThat(ran, contains(1, 2));
+    assertThat(count, equalTo(2));
+  }
+}
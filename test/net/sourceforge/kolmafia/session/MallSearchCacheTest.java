@@ -0,0 +1,91 @@
+package net.sourceforge.kolmafia.session;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.sourceforge.kolmafia.request.PurchaseRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class MallSearchCacheTest {
+  private final MallSearchCache cache = new MallSearchCache();
+
+  private final int size = MallPriceManager.MALL_SEARCH_CACHE_SIZE;
+  private final int freshness = MallPriceManager.MALL_SEARCH_FRESHNESS;
+  private final int retention = MallPriceManager.MALL_SEARCH_RETENTION;
+
+  @AfterEach
+  void afterEach() {
+    MallPriceManager.MALL_SEARCH_CACHE_SIZE = this.size;
+    MallPriceManager.MALL_SEARCH_FRESHNESS = this.freshness;
+    MallPriceManager.MALL_SEARCH_RETENTION = this.retention;
+    this.cache.clear();
+  }
+
+  @Test
+  void stopsExpiringOnceCleared() {
+    assertThat(this.cache.isExpiring(), is(false));
+
+    this.cache.put(1, new ArrayList<>());
+    assertThat(this.cache.isExpiring(), is(true));
+
+    this.cache.clear();
+    assertThat(this.cache.isExpiring(), is(false));
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedSearch() {
+    MallPriceManager.MALL_SEARCH_CACHE_SIZE = 2;
+    List<PurchaseRequest> first = new ArrayList<>();
+    List<PurchaseRequest> third = new ArrayList<>();
+
+    this.cache.put(1, first);
+    this.cache.put(2, new ArrayList<>());
+    this.cache.get(1);
+    this.cache.put(3, third);
+
+    assertThat(this.cache.get(1), sameInstance(first));
+    assertThat(this.cache.get(2), nullValue());
+    assertThat(this.cache.get(3), sameInstance(third));
+    assertThat(this.cache.getSummary(), containsString("1 evicted"));
+  }
+
+  @Test
+  void holdsStaleSearchesWeakly() {
+    List<PurchaseRequest> search = new ArrayList<>();
+    this.cache.put(1, search);
+
+    MallPriceManager.MALL_SEARCH_FRESHNESS = 0;
+    this.cache.expire();
+
+    // Still reachable from here, so not reclaimed
+    assertThat(this.cache.get(1), sameInstance(search));
+    assertThat(this.cache.getSummary(), containsString("0 held, 1 weakly held"));
+  }
+
+  @Test
+  void dropsSearchesPastRetention() {
+    this.cache.put(1, new ArrayList<>());
+
+    MallPriceManager.MALL_SEARCH_RETENTION = 0;
+    this.cache.expire();
+
+    assertThat(this.cache.get(1), nullValue());
+    assertThat(this.cache.getSummary(), containsString("1 expired"));
+  }
+
+  @Test
+  void countsLookups() {
+    this.cache.countLookup(true);
+    this.cache.countLookup(true);
+    this.cache.countLookup(true);
+    this.cache.countLookup(false);
+
+    assertThat(this.cache.getSummary(), containsString("3 hits, 1 misses (75% hit rate)"));
+  }
+}
@@ -0,0 +1,156 @@
+package net.sourceforge.kolmafia.session;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SessionLogIndexTest {
+  private static final String PANTRY =
+      """
+      [1] The Haunted Pantry
+      Encounter: drunken half-orc hobo
+      Round 1: You win the fight!
+      You acquire an item: seal-clubbing club
+      You acquire an item: hobo code binder (2)
+
+      """;
+
+  private static final String ALLEY =
+      """
+      [2] The Sleazy Back Alley
+      Encounter: big creepy spider
+      You acquire an item: spider web
+
+      """;
+
+  @TempDir Path directory;
+
+  private File writeLog(final String date, final String text) throws IOException {
+    File log = this.directory.resolve("Some_Player_" + date + ".txt").toFile();
+    Files.writeString(log.toPath(), "Logged in\n" + text, StandardCharsets.UTF_8);
+    return log;
+  }
+
+  @Test
+  void indexesAdventuresEncountersAndItems() {
+    assertThat(
+        SessionLogIndex.indexLine(10, "[123] The Haunted Pantry"),
+        equalTo("A\t10\t123\tThe Haunted Pantry"));
+    assertThat(
+        SessionLogIndex.indexLine(20, "Encounter: big creepy spider"),
+        equalTo("E\t20\tbig creepy spider"));
+    assertThat(
+        SessionLogIndex.indexLine(30, "You acquire an item: hobo code binder (2)"),
+        equalTo("I\t30\thobo code binder"));
+    assertThat(SessionLogIndex.indexLine(40, "Round 1: You win the fight!"), nullValue());
+  }
+
+  @Test
+  void findsAdventuresInUnindexedLog() throws IOException {
+    this.writeLog("20260101", PANTRY + ALLEY);
+
+    var matches =
+        SessionLogIndex.search(
+            this.directory.toFile(),
+            "Some_Player",
+            "20260101",
+            SessionLogIndex.Query.parse("item=spider"));
+
+    assertThat(matches, hasSize(1));
+    assertThat(matches.get(0).adventure().turn(), equalTo(2));
+    assertThat(matches.get(0).text(), equalTo(ALLEY));
+    assertThat(Files.exists(this.directory.resolve("Some_Player_20260101.idx")), equalTo(true));
+  }
+
+  @Test
+  void filtersByTurnAndLocation() throws IOException {
+    this.writeLog("20260101", PANTRY + ALLEY);
+    File directory = this.directory.toFile();
+
+    var byTurn =
+        SessionLogIndex.search(
+            directory, "Some_Player", "20260101", SessionLogIndex.Query.parse("turns=1-1"));
+    assertThat(byTurn, hasSize(1));
+    assertThat(byTurn.get(0).text(), equalTo(PANTRY));
+    assertThat(
+        byTurn.get(0).adventure().items(), contains("seal-clubbing club", "hobo code binder"));
+
+    var byLocation =
+        SessionLogIndex.search(
+            directory, "Some_Player", "20260101", SessionLogIndex.Query.parse("loc=alley"));
+    assertThat(byLocation, hasSize(1));
+    assertThat(byLocation.get(0).adventure().encounters(), contains("big creepy spider"));
+  }
+
+  @Test
+  void readsAdventuresFromCompressedLog() throws IOException {
+    // Enough adventures to need several compressed blocks
+    StringBuilder text = new StringBuilder();
+    for (int turn = 1; turn <= 3000; ++turn) {
+      text.append("[").append(turn).append("] The Haunted Pantry\n");
+      text.append("Encounter: monster ").append(turn).append("\n");
+      text.append("You acquire an item: thing ").append(turn).append("\n\n");
+    }
+    File log = this.writeLog("20260101", text.toString());
+    File compressed = new File(log.getPath() + ".gz");
+
+    SessionLogIndex.compress(log, compressed);
+    Files.delete(log.toPath());
+
+    // Any gzip reader still sees the whole log
+    try (var istream = new GZIPInputStream(Files.newInputStream(compressed.toPath()))) {
+      assertThat(
+          new String(istream.readAllBytes(), StandardCharsets.UTF_8),
+          equalTo("Logged in\n" + text));
+    }
+
+    var matches =
+        SessionLogIndex.search(
+            this.directory.toFile(),
+            "Some_Player",
+            "20260101",
+            SessionLogIndex.Query.parse("encounter=monster 2999"));
+    assertThat(matches, hasSize(1));
+    assertThat(
+        matches.get(0).text(),
+        equalTo(
+            "[2999] The Haunted Pantry\nEncounter: monster 2999\nYou acquire an item: thing"
+                + " 2999\n\n"));
+  }
+
+  @Test
+  void indexesLogAsItIsWritten() throws IOException {
+    File log = this.writeLog("20260102", PANTRY);
+    File directory = this.directory.toFile();
+
+    var filter = SessionLogIndex.indexing(log);
+    try (var out =
+        new PrintStream(
+            filter.apply(new FileOutputStream(log, true)), true, StandardCharsets.UTF_8)) {
+      out.print(ALLEY);
+    }
+
+    List<String> index = Files.readAllLines(this.directory.resolve("Some_Player_20260102.idx"));
+    assertThat(index.get(0), equalTo("A\t10\t1\tThe Haunted Pantry"));
+
+    var matches =
+        SessionLogIndex.search(
+            directory, "Some_Player", "20260102", SessionLogIndex.Query.parse("item=web"));
+    assertThat(matches, hasSize(1));
+    assertThat(matches.get(0).text(), equalTo(ALLEY));
+  }
+}
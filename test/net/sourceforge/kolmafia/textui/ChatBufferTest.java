@@ -1,15 +1,23 @@
 package net.sourceforge.kolmafia.textui;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import net.java.dev.spellcast.utilities.ChatBuffer;
 import net.sourceforge.kolmafia.chat.ChatFormatter;
 import net.sourceforge.kolmafia.chat.ChatManager;
 import net.sourceforge.kolmafia.chat.InternalMessage;
 import net.sourceforge.kolmafia.chat.StyledChatBuffer;
 import net.sourceforge.kolmafia.utilities.FileUtilities;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class ChatBufferTest {
   @Test
@@ -62,4 +70,31 @@ public class ChatBufferTest {
     // it, it should remain unchanged.
     assertTrue(builder.toString().contains(displayHTML));
   }
+
+  @Test
+  public void keepsOnlyRecentLinesAndPagesOlderFromLog(@TempDir File dir) {
+    ChatBuffer buffer = new ChatBuffer("paging");
+    buffer.setLogFile(new File(dir, "paging.html"));
+
+    try {
+      for (int i = 0; i < 600; ++i) {
+        buffer.append("line " + i + "<br>");
+      }
+
+      assertThat(buffer.getContent(), not(containsString("line 100<br>")));
+      assertThat(buffer.getContent(), startsWith("line 101<br>"));
+      assertThat(buffer.hasOlder(), is(true));
+      assertThat(buffer.getHTMLContent(), containsString(ChatBuffer.OLDER_MESSAGES_LINK));
+
+      buffer.showOlder(50);
+      assertThat(buffer.getContent(), startsWith("line 51<br>"));
+
+      buffer.showOlder(100);
+      assertThat(buffer.getContent(), startsWith("line 0<br>"));
+      assertThat(buffer.hasOlder(), is(false));
+      assertThat(buffer.getHTMLContent(), not(containsString(ChatBuffer.OLDER_MESSAGES_LINK)));
+    } finally {
+      buffer.dispose();
+    }
+  }
 }
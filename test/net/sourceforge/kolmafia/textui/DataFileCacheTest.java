@@ -0,0 +1,146 @@
+package net.sourceforge.kolmafia.textui;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import net.sourceforge.kolmafia.KoLConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DataFileCacheTest {
+  private static final String FILENAME = "datafilecache_test.txt";
+
+  private final Path file = KoLConstants.DATA_LOCATION.toPath().resolve(FILENAME);
+  private final Path script = KoLConstants.SCRIPT_LOCATION.toPath().resolve(FILENAME);
+
+  private final int mapThreshold = DataFileCache.MAP_THRESHOLD;
+  private final long cacheBytes = DataFileCache.CACHE_BYTES;
+
+  @BeforeEach
+  void beforeEach() throws IOException {
+    DataFileCache.clearCache();
+    Files.createDirectories(this.file.getParent());
+  }
+
+  @AfterEach
+  void afterEach() throws IOException {
+    DataFileCache.MAP_THRESHOLD = this.mapThreshold;
+    DataFileCache.CACHE_BYTES = this.cacheBytes;
+    DataFileCache.clearCache();
+    Files.deleteIfExists(this.file);
+    Files.deleteIfExists(this.script);
+  }
+
+  private static String read() {
+    return new String(DataFileCache.getBytes(FILENAME), StandardCharsets.UTF_8);
+  }
+
+  // Changes the file without changing its size or modification time
+  private void replaceUnseen(final String text) throws IOException {
+    FileTime modified = Files.getLastModifiedTime(this.file);
+    Files.writeString(this.file, text);
+    Files.setLastModifiedTime(this.file, modified);
+  }
+
+  @Test
+  void readsBackWhatWasWritten() {
+    assertTrue(DataFileCache.printBytes(FILENAME, "written".getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(read(), equalTo("written"));
+  }
+
+  @Test
+  void keepsFileWhileItsModificationTimeAndSizeAreTheSame() throws IOException {
+    Files.writeString(this.file, "aaaa");
+    assertThat(read(), equalTo("aaaa"));
+
+    this.replaceUnseen("bbbb");
+
+    assertThat(read(), equalTo("aaaa"));
+  }
+
+  @Test
+  void rereadsFileWhichHasChanged() throws IOException {
+    Files.writeString(this.file, "aaaa");
+    assertThat(read(), equalTo("aaaa"));
+
+    Files.writeString(this.file, "bbbbbbbb");
+
+    assertThat(read(), equalTo("bbbbbbbb"));
+  }
+
+  @Test
+  void dropsFilesPastTheByteLimit() throws IOException {
+    DataFileCache.CACHE_BYTES = 0;
+    Files.writeString(this.file, "aaaa");
+    assertThat(read(), equalTo("aaaa"));
+
+    this.replaceUnseen("bbbb");
+
+    assertThat(read(), equalTo("bbbb"));
+  }
+
+  @Test
+  void mapsLargeFiles() throws IOException {
+    assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+    DataFileCache.MAP_THRESHOLD = 4;
+    Files.writeString(this.file, "first\tline\nsecond\tline\n");
+
+    assertTrue(DataFileCache.getBuffer(FILENAME).isDirect());
+    try (BufferedReader reader = DataFileCache.getReader(FILENAME)) {
+      assertThat(reader.readLine(), equalTo("first\tline"));
+      assertThat(reader.readLine(), equalTo("second\tline"));
+    }
+    assertThat(read(), equalTo("first\tline\nsecond\tline\n"));
+  }
+
+  @Test
+  void mappedFileRewrittenWhileBeingReadIsReadInFull() throws IOException {
+    assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+    DataFileCache.MAP_THRESHOLD = 4;
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10000; ++i) {
+      text.append("line\t").append(i).append("\n");
+    }
+    Files.writeString(this.file, text);
+
+    try (BufferedReader reader = DataFileCache.getReader(FILENAME)) {
+      assertThat(reader.readLine(), equalTo("line\t0"));
+
+      // Writing a shorter file must not truncate the one still being read
+      assertTrue(DataFileCache.printBytes(FILENAME, "short".getBytes(StandardCharsets.UTF_8)));
+
+      String line;
+      String last = null;
+      int count = 1;
+      while ((line = reader.readLine()) != null) {
+        last = line;
+        count++;
+      }
+      assertThat(count, equalTo(10000));
+      assertThat(last, equalTo("line\t9999"));
+    }
+
+    assertThat(read(), equalTo("short"));
+  }
+
+  @Test
+  void findsFileCreatedWhereNameIsLookedForFirst() throws IOException {
+    Files.writeString(this.file, "data");
+    assertThat(read(), equalTo("data"));
+
+    Files.createDirectories(this.script.getParent());
+    Files.writeString(this.script, "script");
+
+    assertThat(read(), equalTo("script"));
+  }
+}
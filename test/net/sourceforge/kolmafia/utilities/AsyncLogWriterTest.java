@@ -0,0 +1,86 @@
+package net.sourceforge.kolmafia.utilities;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AsyncLogWriterTest {
+  @TempDir Path directory;
+
+  @Test
+  void syncWritesEverythingSoFar() throws IOException {
+    File file = this.directory.resolve("session.txt").toFile();
+    var writer = new AsyncLogWriter(file, false, AsyncLogWriter.Overflow.BLOCK);
+
+    try (var out = new PrintStream(writer, true, StandardCharsets.UTF_8)) {
+      out.println("one");
+      out.println("two");
+      writer.sync();
+
+      assertThat(Files.readAllLines(file.toPath()), equalTo(List.of("one", "two")));
+    }
+  }
+
+  @Test
+  void blockingLogKeepsEveryLineFromEveryThread() throws Exception {
+    File file = this.directory.resolve("session.txt").toFile();
+    var writer = new AsyncLogWriter(file, false, AsyncLogWriter.Overflow.BLOCK);
+
+    try (var out = new PrintStream(writer, true, StandardCharsets.UTF_8)) {
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 4; ++t) {
+        int id = t;
+        // More lines than the ring holds, so that writers must wait for room
+        threads.add(
+            new Thread(
+                () -> {
+                  for (int i = 0; i < 5000; ++i) {
+                    out.println(id + ":" + i);
+                  }
+                }));
+      }
+      threads.forEach(Thread::start);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+
+    List<String> lines = Files.readAllLines(file.toPath());
+    assertThat(lines, hasSize(20000));
+
+    // Each thread's lines are in the order it wrote them
+    int[] next = new int[4];
+    for (String line : lines) {
+      String[] parts = line.split(":");
+      int id = Integer.parseInt(parts[0]);
+      assertThat(Integer.parseInt(parts[1]), equalTo(next[id]++));
+    }
+  }
+
+  @Test
+  void closeAppendsToExistingFile() throws IOException {
+    File file = this.directory.resolve("debug.txt").toFile();
+    Files.writeString(file.toPath(), "before\n");
+
+    try (var out =
+        new PrintStream(
+            new AsyncLogWriter(file, true, AsyncLogWriter.Overflow.DROP),
+            true,
+            StandardCharsets.UTF_8)) {
+      out.println("after");
+    }
+
+    assertThat(Files.readAllLines(file.toPath()), equalTo(List.of("before", "after")));
+  }
+}
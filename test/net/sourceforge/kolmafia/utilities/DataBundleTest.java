@@ -0,0 +1,68 @@
+package net.sourceforge.kolmafia.utilities;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DataBundleTest {
+  @TempDir Path directory;
+
+  private DataBundle bundle;
+
+  @BeforeEach
+  void beforeEach() throws IOException {
+    Files.writeString(
+        this.directory.resolve("bundletest.txt"),
+        "# A comment\n\n3\n# Another comment\n1\tfirst\t\n2\tsecond é\n",
+        StandardCharsets.UTF_8);
+
+    File output = this.directory.resolve("bundle.bin").toFile();
+    DataBundle.write(this.directory.toFile(), List.of("bundletest.txt"), output);
+    // Parse rather than map it, so that the temporary directory can be deleted on any platform
+    this.bundle = DataBundle.parse(ByteBuffer.wrap(Files.readAllBytes(output.toPath())));
+  }
+
+  @Test
+  void readsRecordsAsTextWouldBeRead() throws IOException {
+    try (BufferedReader reader = this.bundle.getReader("bundletest.txt", 3)) {
+      assertThat(reader, instanceOf(DataBundle.RecordReader.class));
+      assertThat(FileUtilities.readData(reader), arrayContaining("1", "first", ""));
+      assertThat(FileUtilities.readData(reader), arrayContaining("2", "second é"));
+      assertThat(FileUtilities.readData(reader), nullValue());
+    }
+  }
+
+  @Test
+  void readsRecordsAsLines() throws IOException {
+    try (BufferedReader reader = this.bundle.getReader("bundletest.txt", 3)) {
+      assertThat(reader.readLine(), equalTo("1\tfirst\t"));
+      assertThat((char) reader.read(), equalTo('2'));
+      assertThat(reader.readLine(), equalTo("\tsecond é"));
+      assertThat(reader.readLine(), nullValue());
+    }
+  }
+
+  @Test
+  void ignoresOtherVersions() {
+    assertThat(this.bundle.getReader("bundletest.txt", 4), nullValue());
+  }
+
+  @Test
+  void ignoresFilesNotBundled() {
+    assertThat(this.bundle.getReader("items.txt", 1), nullValue());
+  }
+}
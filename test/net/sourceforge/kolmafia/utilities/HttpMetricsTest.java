@@ -0,0 +1,71 @@
+package net.sourceforge.kolmafia.utilities;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HttpMetricsTest {
+  @BeforeEach
+  void beforeEach() {
+    HttpMetrics.reset();
+  }
+
+  @Test
+  void recordsPercentilesPerPage() {
+    for (int i = 1; i <= 100; i++) {
+      HttpMetrics.recordRequest("fight.php", i * 1000000L, 10, 100, 400);
+    }
+    HttpMetrics.recordRequest("api.php", 5000000L, 10, 100, 100);
+
+    var fight = HttpMetrics.getSnapshot("fight.php");
+    assertThat(fight.count(), is(100L));
+    assertThat(fight.p50(), is(50L));
+    assertThat(fight.p95(), is(95L));
+    assertThat(fight.p99(), is(99L));
+    assertThat(fight.bytesIn(), is(10000L));
+    assertThat(fight.compressionRatio(), is(0.25));
+
+    assertThat(HttpMetrics.getSnapshot("api.php").p99(), is(5L));
+    assertThat(HttpMetrics.getSnapshot("choice.php"), nullValue());
+  }
+
+  @Test
+  void countsRetriesAndResets() {
+    HttpMetrics.recordRetry();
+    HttpMetrics.recordClientReset("limit");
+    HttpMetrics.recordClientReset("limit");
+
+    assertThat(HttpMetrics.getRetries(), is(1L));
+    assertThat(HttpMetrics.getClientResets("limit"), is(2L));
+    assertThat(HttpMetrics.getClientResets("goaway"), is(0L));
+    assertThat(HttpMetrics.getHTMLTable(), containsString("limit=2"));
+  }
+
+  @Test
+  void countsBytesRead() throws IOException {
+    var istream = HttpMetrics.count(new ByteArrayInputStream(new byte[1234]));
+    istream.readAllBytes();
+    assertThat(istream.getCount(), is(1234L));
+  }
+
+  @Test
+  void exportsTabSeparatedValues() {
+    HttpMetrics.recordRequest("choice.php", 2000000L, 20, 300, 900);
+
+    var bytes = new ByteArrayOutputStream();
+    HttpMetrics.export(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+
+    assertThat(
+        bytes.toString(StandardCharsets.UTF_8),
+        containsString("choice.php\t1\t2\t2\t2\t20\t300\t900"));
+  }
+}
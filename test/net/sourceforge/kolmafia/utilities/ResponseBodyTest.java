@@ -0,0 +1,77 @@
+package net.sourceforge.kolmafia.utilities;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+
+class ResponseBodyTest {
+  @Test
+  void readsText() {
+    var bytes = "<html>Hello, world! é</html>".getBytes(StandardCharsets.UTF_8);
+    var body = ResponseBody.read(new ByteArrayInputStream(bytes), false);
+
+    assertThat(body.getText(), equalTo("<html>Hello, world! é</html>"));
+    assertThat(body.getBytes(), nullValue());
+  }
+
+  @Test
+  void keepsBytesIfAsked() {
+    var bytes = "<html>Hello, world!</html>".getBytes(StandardCharsets.UTF_8);
+    var body = ResponseBody.read(new ByteArrayInputStream(bytes), true);
+
+    assertThat(body.getBytes(), equalTo(bytes));
+  }
+
+  @Test
+  void readsResponsesLargerThanTheBuffer() {
+    var text = "0123456789abcdef".repeat(20000);
+    var body =
+        ResponseBody.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), true);
+
+    assertThat(body.getText(), equalTo(text));
+    assertThat(body.getBytes().length, equalTo(text.length()));
+
+    // The buffer is reused for the next response
+    body = ResponseBody.read(new ByteArrayInputStream("short".getBytes()), false);
+    assertThat(body.getText(), equalTo("short"));
+  }
+
+  @Test
+  void readsGzippedResponses() throws IOException {
+    var text = "<html>Compressed</html>".repeat(100);
+    var compressed = new ByteArrayOutputStream();
+    try (var ostream = new GZIPOutputStream(compressed)) {
+      ostream.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    var body =
+        ResponseBody.read(
+            new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())), false);
+
+    assertThat(body.getText(), equalTo(text));
+  }
+
+  @Test
+  void failedReadIsEmpty() {
+    var istream =
+        new InputStream() {
+          @Override
+          public int read() throws IOException {
+            throw new IOException("connection reset");
+          }
+        };
+
+    assertThat(ResponseBody.read(istream, true), sameInstance(ResponseBody.EMPTY));
+    assertThat(ResponseBody.read(null, true), sameInstance(ResponseBody.EMPTY));
+  }
+}
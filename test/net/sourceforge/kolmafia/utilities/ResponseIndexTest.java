@@ -0,0 +1,109 @@
+package net.sourceforge.kolmafia.utilities;
+
+import static internal.helpers.Networking.html;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.sourceforge.kolmafia.session.ResponseTextParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ResponseIndexTest {
+  private static final Pattern FORM_PATTERN = Pattern.compile("<form.*?</form>", Pattern.DOTALL);
+
+  @Test
+  void indexIsSharedForTheSameText() {
+    String text = "<html><body>Hello</body></html>";
+    assertThat(ResponseIndex.of(text), sameInstance(ResponseIndex.of(text)));
+  }
+
+  @Test
+  void indexIsSharedWhenAlternatingBetweenTexts() {
+    String page = "<html><body>Page</body></html>";
+    String fragment = "<table class=\"item\"></table>";
+
+    var pageIndex = ResponseIndex.of(page);
+    var fragmentIndex = ResponseIndex.of(fragment);
+
+    assertThat(ResponseIndex.of(page), sameInstance(pageIndex));
+    assertThat(ResponseIndex.of(fragment), sameInstance(fragmentIndex));
+  }
+
+  @Test
+  void indexesTags() {
+    var index = ResponseIndex.of("<table><tr><td>x</td></tr></table><form a=b></form >");
+    assertThat(index.getTagOffsets("table").length, is(1));
+    assertThat(index.getTagOffsets("td")[0], is(11));
+    assertThat(index.hasTag("/table"), is(true));
+    assertThat(index.hasTag("form"), is(true));
+    // Only closing tags immediately followed by > are indexed
+    assertThat(index.hasTag("/form"), is(false));
+    assertThat(index.getForms(), empty());
+  }
+
+  @Test
+  void findsDescItems() {
+    var index =
+        ResponseIndex.of(
+            "<img onClick='descitem(123)'><img onclick='javascript:descitem(456)'>"
+                + "<img onclick=\"descitem(789)\"><a href=\"descitem(1)\">");
+    assertThat(index.getDescItemIds(), contains("123", "456"));
+  }
+
+  @Test
+  void findsResultTables() {
+    var index =
+        ResponseIndex.of(
+            "<table class=\"item\" style=\"float: none\" rel=\"id=1\"><tr><td></td></tr></table>");
+    assertThat(index.hasItemTables(), is(true));
+    assertThat(index.hasEffectTables(), is(false));
+
+    index =
+        ResponseIndex.of(
+            "<table><tr><td><img src=\"x\" onClick='eff(\"abc\");'></td></tr></table>");
+    assertThat(index.hasItemTables(), is(false));
+    assertThat(index.getEffectTableOffsets().length, is(1));
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "request/test_adventures_spent_fight_1_3.html",
+        "request/test_fight_oil_slick.html",
+        "request/test_campground_small.html",
+      })
+  void matchesRegularExpressions(final String file) {
+    String text = html(file);
+    var index = ResponseIndex.of(text);
+
+    List<String> descIds = new ArrayList<>();
+    Matcher matcher = ResponseTextParser.ITEM_DESC_PATTERN.matcher(text);
+    while (matcher.find()) {
+      descIds.add(matcher.group(1));
+    }
+    assertThat(index.getDescItemIds(), equalTo(descIds));
+
+    List<String> forms = new ArrayList<>();
+    matcher = FORM_PATTERN.matcher(text);
+    while (matcher.find()) {
+      forms.add(matcher.group());
+    }
+    assertThat(index.getForms(), equalTo(forms));
+  }
+
+  @Test
+  void findsChoiceForms() {
+    var index = ResponseIndex.of(html("request/test_adventures_spent_fight_1_3.html"));
+    assertThat(index.getForms(), hasSize(5));
+  }
+}
@@ -1,12 +1,15 @@
 package net.sourceforge.kolmafia.webui;
 
 import static internal.helpers.Networking.html;
+import static internal.helpers.Player.withCounter;
 import static internal.helpers.Player.withEquipped;
 import static internal.helpers.Player.withFamiliar;
 import static internal.helpers.Player.withProperty;
 import static internal.helpers.Player.withSkill;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 
 import internal.helpers.Cleanups;
 import net.sourceforge.kolmafia.KoLAdventure;
@@ -20,6 +23,7 @@ import net.sourceforge.kolmafia.request.CharPaneRequest;
 import net.sourceforge.kolmafia.request.GenericRequest;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
@@ -87,4 +91,52 @@ public class CharPaneDecoratorTest {
                   + " drams\">distill</a>)"));
     }
   }
+
+  @Test
+  public void cachedDecorationMatchesFreshDecoration() {
+    String input = html("request/test_charpane_basic.html");
+    CharPaneRequest.processResults(input);
+
+    var expected = new StringBuffer(input);
+    CharPaneDecorator.decorate(expected);
+
+    var first = new StringBuffer(input);
+    CharPaneDecorator.decorateCached(first);
+    var second = new StringBuffer(input);
+    CharPaneDecorator.decorateCached(second);
+
+    assertThat(first.toString(), equalTo(expected.toString()));
+    assertThat(second.toString(), equalTo(expected.toString()));
+
+    // A preference change means the decorations may differ
+    try (var cleanups = withProperty("olfactedMonster", "novelty tropical skeleton")) {
+      var fresh = new StringBuffer(input);
+      CharPaneDecorator.decorate(fresh);
+      var cached = new StringBuffer(input);
+      CharPaneDecorator.decorateCached(cached);
+
+      assertThat(cached.toString(), equalTo(fresh.toString()));
+    }
+  }
+
+  @Test
+  public void cachedDecorationShowsNewCounter() {
+    String input = html("request/test_charpane_basic.html");
+    CharPaneRequest.processResults(input);
+
+    var before = new StringBuffer(input);
+    CharPaneDecorator.decorateCached(before);
+    assertThat(before.toString(), not(containsString("Cached Counter")));
+
+    // The charpane from KoL is the same, but the counter must still appear
+    try (var cleanups = withCounter(5, "Cached Counter", "watch.gif")) {
+      var fresh = new StringBuffer(input);
+      CharPaneDecorator.decorate(fresh);
+      var cached = new StringBuffer(input);
+      CharPaneDecorator.decorateCached(cached);
+
+      assertThat(cached.toString(), containsString("Cached Counter"));
+      assertThat(cached.toString(), equalTo(fresh.toString()));
+    }
+  }
 }
@@ -0,0 +1,154 @@
+package net.sourceforge.kolmafia.webui;
+
+import static internal.helpers.Player.withHP;
+import static internal.helpers.Player.withMeat;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import internal.helpers.Cleanups;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CharPaneUpdatesTest {
+  @BeforeEach
+  void beforeEach() {
+    CharPaneUpdates.reset();
+  }
+
+  @AfterEach
+  void afterEach() {
+    CharPaneUpdates.reset();
+  }
+
+  private static JSONObject awaitChanges(final long since, final long timeout) throws Exception {
+    var result = new CompletableFuture<JSONObject>();
+    CharPaneUpdates.whenChanged(since, timeout, result::complete);
+    return result.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void sendsOnlyChangedFieldsToCurrentBrowser() throws Exception {
+    var cleanups = new Cleanups(withHP(10, 50, 50), withMeat(100));
+
+    try (cleanups) {
+      CharPaneUpdates.start();
+      long version = CharPaneUpdates.getVersion();
+
+      try (var more = withHP(20, 50, 50)) {
+        CharPaneUpdates.update();
+
+        var result = awaitChanges(version, CharPaneUpdates.MAX_WAIT);
+        assertThat(result.getLong("version"), equalTo(version + 1));
+        assertThat(result.has("full"), is(false));
+
+        var changes = result.getJSONObject("changes");
+        assertThat(changes.getLong("hp"), equalTo(20L));
+        assertThat(changes.getLong("maxhp"), equalTo(50L));
+        assertThat(changes.has("meat"), is(false));
+      }
+    }
+  }
+
+  @Test
+  void sendsEverythingToBrowserWhichFellBehind() throws Exception {
+    var cleanups = new Cleanups(withHP(10, 50, 50), withMeat(100));
+
+    try (cleanups) {
+      CharPaneUpdates.start();
+      long version = CharPaneUpdates.getVersion();
+
+      try (var more = withMeat(200)) {
+        CharPaneUpdates.update();
+
+        var result = awaitChanges(version - 1, CharPaneUpdates.MAX_WAIT);
+        assertThat(result.getBoolean("full"), is(true));
+        assertThat(result.getJSONObject("changes").getLong("meat"), equalTo(200L));
+        assertThat(result.getJSONObject("changes").getLong("hp"), equalTo(10L));
+      }
+    }
+  }
+
+  @Test
+  void callsBackOnceSomethingChanges() throws Exception {
+    var cleanups = new Cleanups(withHP(10, 50, 50), withMeat(100));
+
+    try (cleanups) {
+      CharPaneUpdates.start();
+      long version = CharPaneUpdates.getVersion();
+
+      var result = new CompletableFuture<JSONObject>();
+      CharPaneUpdates.whenChanged(version, CharPaneUpdates.MAX_WAIT, result::complete);
+
+      // Nothing changed, so this does not count as a new version
+      CharPaneUpdates.update();
+      assertThat(result.isDone(), is(false));
+
+      try (var more = withMeat(200)) {
+        CharPaneUpdates.update();
+
+        var update = result.get(10, TimeUnit.SECONDS);
+        assertThat(update.getLong("version"), equalTo(version + 1));
+        assertThat(update.getJSONObject("changes").getLong("meat"), equalTo(200L));
+      }
+    }
+  }
+
+  @Test
+  void callsBackWithNoChangesOnceWaitIsOver() throws Exception {
+    CharPaneUpdates.start();
+    long version = CharPaneUpdates.getVersion();
+
+    var result = awaitChanges(version, 10);
+    assertThat(result.getLong("version"), equalTo(version));
+    assertThat(result.getJSONObject("changes").isEmpty(), is(true));
+  }
+
+  @Test
+  void callsBackOnlyOnce() throws Exception {
+    var cleanups = new Cleanups(withMeat(100));
+
+    try (cleanups) {
+      CharPaneUpdates.start();
+      long version = CharPaneUpdates.getVersion();
+
+      var calls = new AtomicInteger();
+      var result = new CompletableFuture<JSONObject>();
+      CharPaneUpdates.whenChanged(
+          version,
+          50,
+          update -> {
+            calls.incrementAndGet();
+            result.complete(update);
+          });
+
+      try (var more = withMeat(200)) {
+        CharPaneUpdates.update();
+        result.get(10, TimeUnit.SECONDS);
+      }
+
+      // Let the wait run out, which must not answer a second time
+      Thread.sleep(200);
+      assertThat(calls.get(), equalTo(1));
+    }
+  }
+
+  @Test
+  void answersAtOnceWithoutWaiting() {
+    var cleanups = new Cleanups(withMeat(100));
+
+    try (cleanups) {
+      CharPaneUpdates.start();
+      long version = CharPaneUpdates.getVersion();
+
+      var result = CharPaneUpdates.changesSince(version);
+      assertThat(result.getLong("version"), equalTo(version));
+      assertThat(result.getJSONObject("changes").isEmpty(), is(true));
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package net.sourceforge.kolmafia.webui;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.jupiter.api.Test;
+
+class PageEditsTest {
+  private static final String PAGE = "<html><head></head><body>text</body></html>";
+
+  @Test
+  void noEditsLeavesPageAlone() {
+    var buffer = new StringBuffer(PAGE);
+    new PageEdits(buffer).applyTo(buffer);
+
+    assertThat(buffer.toString(), equalTo(PAGE));
+  }
+
+  @Test
+  void insertionsAtSamePointKeepTheirOrder() {
+    var edits = new PageEdits(PAGE);
+    edits.insertBefore("</head>", "<script>");
+    edits.insertBefore("</head>", "<link>");
+
+    assertThat(
+        edits.toString(), equalTo("<html><head><script><link></head><body>text</body></html>"));
+  }
+
+  @Test
+  void editsAreLocatedInOriginalPage() {
+    var edits = new PageEdits(PAGE);
+    edits.insertAfter("<body>", "before ");
+    edits.replaceFirst("text", "words");
+    edits.insertBefore("</body>", " after");
+    // This does not see the text inserted above
+    assertThat(edits.replaceFirst("words", "nothing"), is(false));
+
+    var buffer = new StringBuffer(PAGE);
+    edits.applyTo(buffer);
+    assertThat(
+        buffer.toString(), equalTo("<html><head></head><body>before words after</body></html>"));
+  }
+
+  @Test
+  void replacesAllOccurrences() {
+    var edits = new PageEdits("a=0; b=0; c=0;");
+
+    assertThat(edits.replaceAll("=0;", "=1;"), is(3));
+    assertThat(edits.toString(), equalTo("a=1; b=1; c=1;"));
+  }
+
+  @Test
+  void overlappingEditsAreIgnored() {
+    var edits = new PageEdits("abcdef");
+
+    assertThat(edits.replace(1, 4, "X"), is(true));
+    assertThat(edits.replace(3, 5, "Y"), is(false));
+    assertThat(edits.insert(2, "Z"), is(false));
+    // Either end of a replacement is fine
+    assertThat(edits.insert(1, "<"), is(true));
+    assertThat(edits.insert(4, ">"), is(true));
+
+    assertThat(edits.toString(), equalTo("a<X>ef"));
+  }
+
+  @Test
+  void missingTextMakesNoEdit() {
+    var edits = new PageEdits(PAGE);
+
+    assertThat(edits.insertBefore("</table>", "x"), is(false));
+    assertThat(edits.isEmpty(), is(true));
+  }
+}
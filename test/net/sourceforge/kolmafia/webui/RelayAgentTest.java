@@ -0,0 +1,23 @@
+package net.sourceforge.kolmafia.webui;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class RelayAgentTest {
+  @ParameterizedTest
+  @CsvSource({
+    "HTTP/1.1, , true",
+    "HTTP/1.1, keep-alive, true",
+    "HTTP/1.1, close, false",
+    "HTTP/1.0, , false",
+    "HTTP/1.0, keep-alive, true",
+    "HTTP/1.0, close, false",
+  })
+  void keepsConnectionAliveAsBrowserAsks(
+      final String version, final String connection, final boolean expected) {
+    assertThat(RelayAgent.keepsAlive(version, connection), equalTo(expected));
+  }
+}
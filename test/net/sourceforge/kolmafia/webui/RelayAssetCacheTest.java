@@ -0,0 +1,116 @@
+package net.sourceforge.kolmafia.webui;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RelayAssetCacheTest {
+  @TempDir Path directory;
+
+  @BeforeEach
+  void beforeEach() {
+    RelayAssetCache.clear();
+  }
+
+  private File write(final String name, final String contents) throws IOException {
+    Path path = this.directory.resolve(name);
+    Files.writeString(path, contents);
+    return path.toFile();
+  }
+
+  @Test
+  void servesCachedFileWithoutRereading() throws IOException {
+    File file = this.write("script.js", "var x = 1;\n");
+
+    var asset = RelayAssetCache.get(file);
+    assertThat(asset, notNullValue());
+    assertThat(RelayAssetCache.getIfFresh(file), sameInstance(asset));
+    assertThat(RelayAssetCache.get(file), sameInstance(asset));
+  }
+
+  @Test
+  void rereadsChangedFile() throws IOException {
+    File file = this.write("script.js", "var x = 1;\n");
+    var asset = RelayAssetCache.get(file);
+
+    Files.writeString(file.toPath(), "var x = 2;\n");
+    file.setLastModified(asset.getLastModified() + 10000);
+
+    // Still trusted until it is revalidated
+    assertThat(RelayAssetCache.getIfFresh(file), sameInstance(asset));
+
+    RelayAssetCache.expire();
+    assertThat(RelayAssetCache.getIfFresh(file), nullValue());
+
+    var changed = RelayAssetCache.get(file);
+    assertThat(changed.getETag(), not(asset.getETag()));
+    assertThat(RelayAssetCache.getIfFresh(file), sameInstance(changed));
+  }
+
+  @Test
+  void missingFileIsNotCached() {
+    assertThat(RelayAssetCache.get(this.directory.resolve("missing.css").toFile()), nullValue());
+    assertThat(RelayAssetCache.size(), is(0));
+  }
+
+  @Test
+  void matchesETags() throws IOException {
+    var asset = RelayAssetCache.get(this.write("style.css", "body { color: red; }"));
+
+    assertThat(asset.matches(asset.getETag()), is(true));
+    assertThat(asset.matches("\"other\", W/" + asset.getETag()), is(true));
+    assertThat(asset.matches(asset.getGzippedETag()), is(true));
+    assertThat(asset.matches("\"other\""), is(false));
+    assertThat(asset.matches(null), is(false));
+  }
+
+  @Test
+  void compressesLargeTextFiles() throws IOException {
+    String contents = "function f() { return 1; }\n".repeat(200);
+    var asset = RelayAssetCache.get(this.write("script.js", contents));
+
+    byte[] gzipped = asset.getGzippedBytes();
+    assertThat(gzipped.length, lessThan(contents.length()));
+    try (var istream = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+      assertThat(new String(istream.readAllBytes()), is(contents));
+    }
+  }
+
+  @Test
+  void doesNotCompressImagesOrSmallFiles() throws IOException {
+    assertThat(
+        RelayAssetCache.get(this.write("image.gif", "x".repeat(4096))).getGzippedBytes(),
+        nullValue());
+    assertThat(
+        RelayAssetCache.get(this.write("small.js", "var x;")).getGzippedBytes(), nullValue());
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedFiles() throws IOException {
+    // Small enough to be kept on the heap rather than mapped
+    int size = 512 * 1024;
+    File first = this.write("first.gif", "a".repeat(size));
+    RelayAssetCache.get(first);
+
+    for (int i = 0; i < RelayAssetCache.MAX_HEAP_BYTES / size; i++) {
+      RelayAssetCache.get(this.write("next" + i + ".gif", "b".repeat(size)));
+    }
+
+    assertThat(RelayAssetCache.getIfFresh(first), nullValue());
+    assertThat(RelayAssetCache.getHeapBytes() <= RelayAssetCache.MAX_HEAP_BYTES, is(true));
+  }
+}
@@ -0,0 +1,91 @@
+package net.sourceforge.kolmafia.webui;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RelayConnectionTest {
+  private ServerSocketChannel server;
+  private Socket browser;
+  private RelayConnection connection;
+
+  @BeforeEach
+  void beforeEach() throws IOException {
+    this.server = ServerSocketChannel.open();
+    this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    this.browser =
+        new Socket(InetAddress.getLoopbackAddress(), this.server.socket().getLocalPort());
+    this.connection = new RelayConnection(this.server.accept());
+  }
+
+  @AfterEach
+  void afterEach() throws IOException {
+    this.connection.close();
+    this.browser.close();
+    this.server.close();
+  }
+
+  private void send(final String text) throws IOException {
+    OutputStream out = this.browser.getOutputStream();
+    out.write(text.getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+
+  @Test
+  void keepsPipelinedRequestReadAhead() throws IOException {
+    this.send("GET /one HTTP/1.1\r\nHost: localhost\r\n\r\nGET /two HTTP/1.1\r\n\r\n");
+
+    assertThat(this.connection.readLine(), equalTo("GET /one HTTP/1.1"));
+    assertThat(this.connection.readLine(), equalTo("Host: localhost"));
+    assertThat(this.connection.readLine(), equalTo(""));
+
+    // The second request arrived with the first, so the selector will never see it
+    assertThat(this.connection.hasBufferedInput(), is(true));
+    assertThat(this.connection.readLine(), equalTo("GET /two HTTP/1.1"));
+    assertThat(this.connection.readLine(), equalTo(""));
+    assertThat(this.connection.hasBufferedInput(), is(false));
+  }
+
+  @Test
+  void readsBodyByContentLengthInBytes() throws IOException {
+    String body = "message=café ☕";
+    int length = body.getBytes(StandardCharsets.UTF_8).length;
+    this.send(
+        "POST /submit HTTP/1.1\r\nContent-Length: "
+            + length
+            + "\r\n\r\n"
+            + body
+            + "GET /next HTTP/1.1\r\n\r\n");
+
+    assertThat(this.connection.readLine(), equalTo("POST /submit HTTP/1.1"));
+    assertThat(this.connection.readLine(), equalTo("Content-Length: " + length));
+    assertThat(this.connection.readLine(), equalTo(""));
+
+    byte[] read = this.connection.readBody(length);
+    assertThat(new String(read, StandardCharsets.UTF_8), equalTo(body));
+    assertThat(this.connection.readLine(), equalTo("GET /next HTTP/1.1"));
+  }
+
+  @Test
+  void returnsNothingOnceBrowserCloses() throws IOException {
+    this.send("POST /submit HTTP/1.1\r\n\r\nabc");
+    this.browser.shutdownOutput();
+
+    assertThat(this.connection.readLine(), equalTo("POST /submit HTTP/1.1"));
+    assertThat(this.connection.readLine(), equalTo(""));
+    assertThat(this.connection.readBody(10), nullValue());
+    assertThat(this.connection.readLine(), nullValue());
+  }
+}
@@ -0,0 +1,61 @@
+package net.sourceforge.kolmafia.webui;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class RelayServerTest {
+  @Test
+  void startsAgentsUntilLimitThenRefuses() throws InterruptedException {
+    var executor = RelayServer.createExecutor(1, 3);
+    var started = new CountDownLatch(3);
+    var release = new CountDownLatch(1);
+    Runnable busy =
+        () -> {
+          started.countDown();
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        };
+
+    try {
+      for (int i = 0; i < 3; ++i) {
+        executor.execute(busy);
+      }
+
+      // Every connection has its own agent, though only one is kept when idle
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      assertThat(executor.getPoolSize(), equalTo(3));
+
+      // Once every agent is busy, a connection is refused rather than queued behind them
+      assertThrows(RejectedExecutionException.class, () -> executor.execute(busy));
+      assertThat(executor.getQueue().size(), equalTo(0));
+
+      release.countDown();
+
+      // Once an agent is free again, it takes the next connection
+      var served = new CountDownLatch(1);
+      boolean accepted = false;
+      long deadline = System.currentTimeMillis() + 10000;
+      while (!accepted && System.currentTimeMillis() < deadline) {
+        try {
+          executor.execute(served::countDown);
+          accepted = true;
+        } catch (RejectedExecutionException e) {
+          Thread.sleep(10);
+        }
+      }
+      assertTrue(served.await(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}